@@ -86,7 +86,9 @@ import org.elasticsearch.search.MockSearchService;
 import org.elasticsearch.test.junit.listeners.LoggingListener;
 import org.elasticsearch.test.junit.listeners.ReproduceInfoPrinter;
 import org.elasticsearch.threadpool.ThreadPool;
+import org.elasticsearch.transport.MockLocalTransportPlugin;
 import org.elasticsearch.transport.MockTcpTransportPlugin;
+import org.elasticsearch.transport.nio.MockDirectPageRecycler;
 import org.elasticsearch.transport.nio.NioTransportPlugin;
 import org.joda.time.DateTimeZone;
 import org.junit.After;
@@ -388,6 +390,7 @@ public abstract class ESTestCase extends LuceneTestCase {
     protected static void checkStaticState(boolean afterClass) throws Exception {
         if (afterClass) {
             MockPageCacheRecycler.ensureAllPagesAreReleased();
+            MockDirectPageRecycler.ensureAllPagesAreReleased();
         }
         MockBigArrays.ensureAllArraysAreReleased();
 
@@ -513,6 +516,17 @@ public abstract class ESTestCase extends LuceneTestCase {
         return (byte) random().nextInt();
     }
 
+    /**
+     * Helper method to create a byte array of a given length populated with random byte values
+     *
+     * @see #randomByte()
+     */
+    public static byte[] randomByteArrayOfLength(int size) {
+        byte[] bytes = new byte[size];
+        random().nextBytes(bytes);
+        return bytes;
+    }
+
     public static short randomShort() {
         return (short) random().nextInt();
     }
@@ -980,16 +994,28 @@ public abstract class ESTestCase extends LuceneTestCase {
 
     private static boolean useNio;
 
+    /**
+     * Connects the nodes of a test cluster in memory instead of through loopback sockets, see
+     * {@link org.elasticsearch.transport.MockLocalTransport}.
+     */
+    private static final boolean USE_LOCAL_TRANSPORT = Boolean.parseBoolean(System.getProperty("tests.transport.local", "false"));
+
     @BeforeClass
     public static void setUseNio() throws Exception {
         useNio = randomBoolean();
     }
 
     public static String getTestTransportType() {
+        if (USE_LOCAL_TRANSPORT) {
+            return MockLocalTransportPlugin.MOCK_LOCAL_TRANSPORT_NAME;
+        }
         return useNio ? NioTransportPlugin.NIO_TRANSPORT_NAME : MockTcpTransportPlugin.MOCK_TCP_TRANSPORT_NAME;
     }
 
     public static Class<? extends Plugin> getTestTransportPlugin() {
+        if (USE_LOCAL_TRANSPORT) {
+            return MockLocalTransportPlugin.class;
+        }
         return useNio ? NioTransportPlugin.class : MockTcpTransportPlugin.class;
     }
 
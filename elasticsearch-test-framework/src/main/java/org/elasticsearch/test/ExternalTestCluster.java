@@ -15,6 +15,7 @@ import org.elasticsearch.common.settings.Settings;
 import org.elasticsearch.common.transport.TransportAddress;
 import org.elasticsearch.env.Environment;
 import org.elasticsearch.plugins.Plugin;
+import org.elasticsearch.transport.MockLocalTransportPlugin;
 import org.elasticsearch.transport.MockTcpTransportPlugin;
 import org.elasticsearch.transport.MockTransportClient;
 import org.elasticsearch.transport.nio.NioTransportPlugin;
@@ -64,6 +65,10 @@ public final class ExternalTestCluster extends TestCluster {
 
         if (addMockTcpTransport) {
             String transport = getTestTransportType();
+            if (transport.equals(MockLocalTransportPlugin.MOCK_LOCAL_TRANSPORT_NAME)) {
+                // the external nodes run in other JVMs, so the client has to use sockets
+                transport = MockTcpTransportPlugin.MOCK_TCP_TRANSPORT_NAME;
+            }
             clientSettingsBuilder.put(NetworkModule.TRANSPORT_TYPE_KEY, transport);
             if (pluginClasses.contains(MockTcpTransportPlugin.class) == false &&
                 pluginClasses.contains(NioTransportPlugin.class) == false) {
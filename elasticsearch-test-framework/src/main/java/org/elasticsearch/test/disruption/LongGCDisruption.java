@@ -5,6 +5,10 @@ import org.elasticsearch.common.SuppressForbidden;
 import org.elasticsearch.common.unit.TimeValue;
 import org.elasticsearch.common.util.concurrent.AbstractRunnable;
 import org.elasticsearch.test.InternalTestCluster;
+import org.elasticsearch.test.transport.MockTransportService;
+import org.elasticsearch.transport.MockTcpTransport;
+import org.elasticsearch.transport.Transport;
+import org.elasticsearch.transport.TransportService;
 
 import java.lang.management.ManagementFactory;
 import java.lang.management.ThreadInfo;
@@ -45,6 +49,7 @@ public class LongGCDisruption extends SingleNodeDisruption {
     @Override
     public synchronized void startDisrupting() {
         if (suspendedThreads == null) {
+            ensureTransportThreadsCanBeSuspended();
             boolean success = false;
             try {
                 suspendedThreads = ConcurrentHashMap.newKeySet();
@@ -150,6 +155,23 @@ public class LongGCDisruption extends SingleNodeDisruption {
         }
     }
 
+    /**
+     * The threads of a {@link MockTcpTransport} that runs on virtual threads are neither listed nor suspended, so
+     * the node would keep reading and answering requests while it is supposed to be paused.
+     */
+    private void ensureTransportThreadsCanBeSuspended() {
+        if (cluster == null) {
+            return;
+        }
+        TransportService transportService = cluster.getInstance(TransportService.class, disruptedNode);
+        Transport transport = transportService instanceof MockTransportService
+            ? ((MockTransportService) transportService).original() : cluster.getInstance(Transport.class, disruptedNode);
+        if (transport instanceof MockTcpTransport && ((MockTcpTransport) transport).usesVirtualThreads()) {
+            throw new IllegalStateException("cannot suspend the transport threads of node [" + disruptedNode
+                + "], they are virtual threads, disable [" + MockTcpTransport.VIRTUAL_THREADS.getKey() + "]");
+        }
+    }
+
     public boolean isDisruptedNodeThread(String threadName) {
         return threadName.contains("[" + disruptedNode + "]");
     }
@@ -6,6 +6,7 @@ import org.elasticsearch.cluster.ClusterState;
 import org.elasticsearch.cluster.NodeConnectionsService;
 import org.elasticsearch.cluster.service.ClusterService;
 import org.elasticsearch.common.logging.Loggers;
+import org.elasticsearch.common.unit.ByteSizeValue;
 import org.elasticsearch.common.unit.TimeValue;
 import org.elasticsearch.common.util.set.Sets;
 import org.elasticsearch.test.InternalTestCluster;
@@ -13,12 +14,16 @@ import org.elasticsearch.test.transport.MockTransportService;
 import org.elasticsearch.transport.ConnectTransportException;
 import org.elasticsearch.transport.TransportService;
 
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Random;
 import java.util.Set;
+import java.util.concurrent.TimeUnit;
 import java.util.function.BiConsumer;
+import java.util.function.LongSupplier;
 
 import static org.junit.Assert.assertFalse;
 
@@ -484,4 +489,270 @@ public class NetworkDisruption implements ServiceDisruptionScheme {
         }
     }
 
+    /**
+     * Creates the random number generator of a link of a network disruption type that is seeded from the test seed, so
+     * the disruption can be reproduced. Every link gets its own generator, so the disruption of a link does not depend on
+     * the traffic of the other links.
+     */
+    static Random linkRandom(long seed, String sourceNode, String targetNode) {
+        return new Random(seed ^ (sourceNode + "->" + targetNode).hashCode());
+    }
+
+    /**
+     * Simulates a link with a limited bandwidth. Each link has a token bucket that is refilled with the bandwidth and holds
+     * at most the burst size. Requests that are larger than the bytes left in the bucket are delayed until the bucket has
+     * been refilled, so they are queued behind the earlier requests of the link.
+     */
+    public static class NetworkBandwidth extends NetworkLinkDisruptionType {
+
+        private final ByteSizeValue bytesPerSecond;
+        private final ByteSizeValue burst;
+
+        /**
+         * Limits the bandwidth of each disrupted link.
+         *
+         * @param bytesPerSecond the number of bytes that can be sent per second
+         * @param burst          the number of bytes that can be sent at once after a link was idle
+         */
+        public NetworkBandwidth(ByteSizeValue bytesPerSecond, ByteSizeValue burst) {
+            if (bytesPerSecond.getBytes() <= 0) {
+                throw new IllegalArgumentException("bandwidth must be positive but was [" + bytesPerSecond + "]");
+            }
+            this.bytesPerSecond = bytesPerSecond;
+            this.burst = burst;
+        }
+
+        /**
+         * Limits the bandwidth of each disrupted link to a random value between min and max, with a burst of a tenth of a
+         * second of traffic.
+         *
+         * @param random instance to use for randomization of the bandwidth
+         * @param min    minimum bandwidth per second
+         * @param max    maximum bandwidth per second
+         */
+        public static NetworkBandwidth random(Random random, ByteSizeValue min, ByteSizeValue max) {
+            long bytesPerSecond = min.getBytes() == max.getBytes() ? min.getBytes() :
+                min.getBytes() + (long) (random.nextDouble() * (max.getBytes() - min.getBytes()));
+            return new NetworkBandwidth(new ByteSizeValue(bytesPerSecond), new ByteSizeValue(Math.max(1, bytesPerSecond / 10)));
+        }
+
+        /**
+         * Creates the token bucket of a link.
+         *
+         * @param nanoTime the clock the bucket is refilled with
+         */
+        public MockTransportService.LinkShaper newLinkShaper(LongSupplier nanoTime) {
+            return new TokenBucket(bytesPerSecond.getBytes(), burst.getBytes(), nanoTime);
+        }
+
+        @Override
+        public void applyDisruption(MockTransportService sourceTransportService, MockTransportService targetTransportService) {
+            sourceTransportService.addShapingRule(targetTransportService, newLinkShaper(sourceTransportService.nanoTimeSource()));
+        }
+
+        @Override
+        public String toString() {
+            return "network bandwidth of [" + bytesPerSecond + "/s] with bursts of [" + burst + "]";
+        }
+
+        private static final class TokenBucket implements MockTransportService.LinkShaper {
+
+            private final double bytesPerNanosecond;
+            private final long burst;
+            private final LongSupplier nanoTime;
+            private double tokens;
+            private long lastRefillNanos;
+
+            TokenBucket(long bytesPerSecond, long burst, LongSupplier nanoTime) {
+                this.bytesPerNanosecond = bytesPerSecond / (double) TimeUnit.SECONDS.toNanos(1);
+                this.burst = burst;
+                this.nanoTime = nanoTime;
+                this.tokens = burst;
+                this.lastRefillNanos = nanoTime.getAsLong();
+            }
+
+            @Override
+            public synchronized List<TimeValue> shape(String action, int length) {
+                final long nowNanos = nanoTime.getAsLong();
+                tokens = Math.min(burst, tokens + (nowNanos - lastRefillNanos) * bytesPerNanosecond);
+                lastRefillNanos = nowNanos;
+                // the bucket goes into debt for a request that does not fit, later requests wait until the debt is paid off
+                tokens -= length;
+                long delayNanos = tokens >= 0 ? 0 : (long) Math.ceil(-tokens / bytesPerNanosecond);
+                return Collections.singletonList(TimeValue.timeValueNanos(delayNanos));
+            }
+        }
+    }
+
+    /**
+     * Simulates a link with a varying latency. Each request is delayed by a base delay plus a random jitter that follows
+     * a {@link JitterDistribution}. Requests of a link can overtake each other, like requests sent over different
+     * connections. The jitter of a link is seeded from the seed of the disruption, so it can be reproduced.
+     */
+    public static class NetworkJitter extends NetworkLinkDisruptionType {
+
+        private final TimeValue baseDelay;
+        private final TimeValue jitter;
+        private final JitterDistribution distribution;
+        private final long seed;
+
+        /**
+         * Delays requests by a base delay plus a random jitter.
+         *
+         * @param baseDelay    delay of every request
+         * @param jitter       scale of the jitter, its meaning depends on the distribution
+         * @param distribution distribution of the jitter
+         * @param seed         seed of the jitter
+         */
+        public NetworkJitter(TimeValue baseDelay, TimeValue jitter, JitterDistribution distribution, long seed) {
+            this.baseDelay = baseDelay;
+            this.jitter = jitter;
+            this.distribution = distribution;
+            this.seed = seed;
+        }
+
+        /**
+         * Delays requests by a base delay plus a random jitter of the given scale that follows a random distribution.
+         *
+         * @param random    instance to use for randomization of the distribution and the seed
+         * @param baseDelay delay of every request
+         * @param jitter    scale of the jitter
+         */
+        public static NetworkJitter random(Random random, TimeValue baseDelay, TimeValue jitter) {
+            return new NetworkJitter(baseDelay, jitter, RandomPicks.randomFrom(random, JitterDistribution.values()), random.nextLong());
+        }
+
+        /**
+         * Creates the shaper of the link from the source to the target node.
+         */
+        public MockTransportService.LinkShaper newLinkShaper(String sourceNode, String targetNode) {
+            final Random random = linkRandom(seed, sourceNode, targetNode);
+            return (action, length) -> {
+                final long jitterNanos;
+                synchronized (random) {
+                    jitterNanos = distribution.sample(random, jitter.nanos());
+                }
+                return Collections.singletonList(TimeValue.timeValueNanos(baseDelay.nanos() + jitterNanos));
+            };
+        }
+
+        @Override
+        public void applyDisruption(MockTransportService sourceTransportService, MockTransportService targetTransportService) {
+            sourceTransportService.addShapingRule(targetTransportService,
+                newLinkShaper(sourceTransportService.getLocalNode().getName(), targetTransportService.getLocalNode().getName()));
+        }
+
+        @Override
+        public String toString() {
+            return "network delays of [" + baseDelay + "] with " + distribution + " jitter of [" + jitter + "]";
+        }
+    }
+
+    /**
+     * Distributions of the jitter of {@link NetworkJitter}.
+     */
+    public enum JitterDistribution {
+        /**
+         * Uniformly distributed between zero and the jitter.
+         */
+        UNIFORM {
+            @Override
+            long sample(Random random, long jitterNanos) {
+                return (long) (random.nextDouble() * jitterNanos);
+            }
+        },
+        /**
+         * Exponentially distributed with the jitter as mean, which models a long tail of slow requests.
+         */
+        EXPONENTIAL {
+            @Override
+            long sample(Random random, long jitterNanos) {
+                return (long) (-Math.log(1 - random.nextDouble()) * jitterNanos);
+            }
+        },
+        /**
+         * The absolute value of a normal distribution with the jitter as standard deviation.
+         */
+        NORMAL {
+            @Override
+            long sample(Random random, long jitterNanos) {
+                return (long) Math.abs(random.nextGaussian() * jitterNanos);
+            }
+        };
+
+        abstract long sample(Random random, long jitterNanos);
+    }
+
+    /**
+     * Simulates a lossy link that drops or duplicates requests with a given probability. A dropped request is never
+     * answered and a duplicated request is handled twice by the target node, the second response is discarded by the source
+     * node. Which requests of a link are dropped or duplicated is seeded from the seed of the disruption, so it can be
+     * reproduced.
+     */
+    public static class NetworkPacketLoss extends NetworkLinkDisruptionType {
+
+        private final double dropProbability;
+        private final double duplicateProbability;
+        private final long seed;
+
+        /**
+         * Drops or duplicates requests with the given probabilities.
+         *
+         * @param dropProbability      probability that a request is dropped
+         * @param duplicateProbability probability that a request that was not dropped is sent twice
+         * @param seed                 seed of the decisions
+         */
+        public NetworkPacketLoss(double dropProbability, double duplicateProbability, long seed) {
+            if (dropProbability < 0 || dropProbability > 1) {
+                throw new IllegalArgumentException("drop probability must be between 0 and 1 but was [" + dropProbability + "]");
+            }
+            if (duplicateProbability < 0 || duplicateProbability > 1) {
+                throw new IllegalArgumentException("duplicate probability must be between 0 and 1 but was [" + duplicateProbability + "]");
+            }
+            this.dropProbability = dropProbability;
+            this.duplicateProbability = duplicateProbability;
+            this.seed = seed;
+        }
+
+        /**
+         * Drops and duplicates requests with the given probabilities, seeded from the given random instance.
+         *
+         * @param random               instance to use for the seed
+         * @param dropProbability      probability that a request is dropped
+         * @param duplicateProbability probability that a request that was not dropped is sent twice
+         */
+        public static NetworkPacketLoss random(Random random, double dropProbability, double duplicateProbability) {
+            return new NetworkPacketLoss(dropProbability, duplicateProbability, random.nextLong());
+        }
+
+        /**
+         * Creates the shaper of the link from the source to the target node.
+         */
+        public MockTransportService.LinkShaper newLinkShaper(String sourceNode, String targetNode) {
+            final Random random = linkRandom(seed, sourceNode, targetNode);
+            final List<TimeValue> once = Collections.singletonList(TimeValue.ZERO);
+            final List<TimeValue> twice = Arrays.asList(TimeValue.ZERO, TimeValue.ZERO);
+            return (action, length) -> {
+                synchronized (random) {
+                    if (random.nextDouble() < dropProbability) {
+                        return Collections.emptyList();
+                    }
+                    return random.nextDouble() < duplicateProbability ? twice : once;
+                }
+            };
+        }
+
+        @Override
+        public void applyDisruption(MockTransportService sourceTransportService, MockTransportService targetTransportService) {
+            sourceTransportService.addShapingRule(targetTransportService,
+                newLinkShaper(sourceTransportService.getLocalNode().getName(), targetTransportService.getLocalNode().getName()));
+        }
+
+        @Override
+        public String toString() {
+            return "network packet loss with drop probability [" + dropProbability + "] and duplicate probability ["
+                + duplicateProbability + "]";
+        }
+    }
+
 }
@@ -11,6 +11,7 @@ import org.elasticsearch.common.io.stream.BytesStreamOutput;
 import org.elasticsearch.common.transport.BoundTransportAddress;
 import org.elasticsearch.common.transport.TransportAddress;
 import org.elasticsearch.common.util.concurrent.ConcurrentCollections;
+import org.elasticsearch.common.util.concurrent.ReleasableLock;
 import org.elasticsearch.transport.ConnectTransportException;
 import org.elasticsearch.transport.ConnectionProfile;
 import org.elasticsearch.transport.RemoteTransportException;
@@ -31,10 +32,12 @@ import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.BlockingQueue;
+import java.util.Queue;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 import static org.apache.lucene.util.LuceneTestCase.rarely;
 
@@ -58,13 +61,35 @@ public class CapturingTransport implements Transport {
     }
 
     private ConcurrentMap<Long, Tuple<DiscoveryNode, String>> requests = new ConcurrentHashMap<>();
-    private BlockingQueue<CapturedRequest> capturedRequests = ConcurrentCollections.newBlockingQueue();
     private final AtomicLong requestId = new AtomicLong();
+    private final int maxCapturedRequests;
+    // captures run concurrently under the read lock, clearing takes the write lock so it atomically swaps all indexes
+    private final ReadWriteLock capturesLock = new ReentrantReadWriteLock();
+    private final ReleasableLock captureLock = new ReleasableLock(capturesLock.readLock());
+    private final ReleasableLock clearLock = new ReleasableLock(capturesLock.writeLock());
+    private volatile Captures captures = new Captures();
+
+    public CapturingTransport() {
+        this(Integer.MAX_VALUE);
+    }
 
+    /**
+     * Creates a transport that keeps at most the given number of captured requests until it is cleared and only counts
+     * the requests beyond that. A transport that keeps no requests only counts them, which keeps tests that send many
+     * requests cheap.
+     *
+     * @param maxCapturedRequests the maximum number of captured requests to keep
+     */
+    public CapturingTransport(int maxCapturedRequests) {
+        if (maxCapturedRequests < 0) {
+            throw new IllegalArgumentException("max captured requests must not be negative but was [" + maxCapturedRequests + "]");
+        }
+        this.maxCapturedRequests = maxCapturedRequests;
+    }
 
     /** returns all requests captured so far. Doesn't clear the captured request list. See {@link #clear()} */
     public CapturedRequest[] capturedRequests() {
-        return capturedRequests.toArray(new CapturedRequest[0]);
+        return captures.all.toArray(new CapturedRequest[0]);
     }
 
     /**
@@ -75,9 +100,7 @@ public class CapturingTransport implements Transport {
      * @return the captured requests
      */
     public CapturedRequest[] getCapturedRequestsAndClear() {
-        CapturedRequest[] capturedRequests = capturedRequests();
-        clear();
-        return capturedRequests;
+        return clearCaptures().all.toArray(new CapturedRequest[0]);
     }
 
     /**
@@ -85,16 +108,7 @@ public class CapturingTransport implements Transport {
      * Doesn't clear the captured request list. See {@link #clear()}
      */
     public Map<String, List<CapturedRequest>> capturedRequestsByTargetNode() {
-        Map<String, List<CapturedRequest>> map = new HashMap<>();
-        for (CapturedRequest request : capturedRequests) {
-            List<CapturedRequest> nodeList = map.get(request.node.getId());
-            if (nodeList == null) {
-                nodeList = new ArrayList<>();
-                map.put(request.node.getId(), nodeList);
-            }
-            nodeList.add(request);
-        }
-        return map;
+        return captures.byTargetNode();
     }
 
     /**
@@ -106,14 +120,102 @@ public class CapturingTransport implements Transport {
      * @return the captured requests grouped by target node
      */
     public Map<String, List<CapturedRequest>> getCapturedRequestsByTargetNodeAndClear() {
-        Map<String, List<CapturedRequest>> map = capturedRequestsByTargetNode();
-        clear();
-        return map;
+        return clearCaptures().byTargetNode();
+    }
+
+    /** returns the requests captured so far for the given target node. Doesn't clear the captured request list */
+    public List<CapturedRequest> capturedRequestsForNode(String nodeId) {
+        return copyOf(captures.byNode.get(nodeId));
+    }
+
+    /** returns the requests captured so far for the given action. Doesn't clear the captured request list */
+    public List<CapturedRequest> capturedRequestsForAction(String action) {
+        return copyOf(captures.byAction.get(action));
+    }
+
+    /** returns the number of requests captured so far, including the requests that were only counted */
+    public long capturedRequestCount() {
+        return captures.count.get();
+    }
+
+    /** returns the number of requests captured so far for the given target node, including the requests that were only counted */
+    public long capturedRequestCountForNode(String nodeId) {
+        return count(captures.countByNode.get(nodeId));
+    }
+
+    /** returns the number of requests captured so far for the given action, including the requests that were only counted */
+    public long capturedRequestCountForAction(String action) {
+        return count(captures.countByAction.get(action));
     }
 
     /** clears captured requests */
     public void clear() {
-        capturedRequests.clear();
+        clearCaptures();
+    }
+
+    private Captures clearCaptures() {
+        try (ReleasableLock ignored = clearLock.acquire()) {
+            Captures cleared = captures;
+            captures = new Captures();
+            return cleared;
+        }
+    }
+
+    private void capture(CapturedRequest capturedRequest) {
+        try (ReleasableLock ignored = captureLock.acquire()) {
+            final Captures current = captures;
+            if (current.count(capturedRequest, maxCapturedRequests)) {
+                // the target of requests that are only counted is not kept either, so they can't fail with a local error
+                requests.put(capturedRequest.requestId, Tuple.tuple(capturedRequest.node, capturedRequest.action));
+                current.keep(capturedRequest);
+            }
+        }
+    }
+
+    private static List<CapturedRequest> copyOf(Queue<CapturedRequest> requests) {
+        return requests == null ? Collections.emptyList() : new ArrayList<>(requests);
+    }
+
+    private static long count(AtomicLong count) {
+        return count == null ? 0 : count.get();
+    }
+
+    /**
+     * The captured requests and counts since the last clear, indexed by target node and action as they are captured.
+     */
+    private static final class Captures {
+
+        final Queue<CapturedRequest> all = ConcurrentCollections.newQueue();
+        final ConcurrentMap<String, Queue<CapturedRequest>> byNode = ConcurrentCollections.newConcurrentMap();
+        final ConcurrentMap<String, Queue<CapturedRequest>> byAction = ConcurrentCollections.newConcurrentMap();
+        final AtomicLong count = new AtomicLong();
+        final ConcurrentMap<String, AtomicLong> countByNode = ConcurrentCollections.newConcurrentMap();
+        final ConcurrentMap<String, AtomicLong> countByAction = ConcurrentCollections.newConcurrentMap();
+
+        /**
+         * Counts the request.
+         *
+         * @return whether the request should be kept
+         */
+        boolean count(CapturedRequest capturedRequest, int maxCapturedRequests) {
+            countByNode.computeIfAbsent(capturedRequest.node.getId(), k -> new AtomicLong()).incrementAndGet();
+            countByAction.computeIfAbsent(capturedRequest.action, k -> new AtomicLong()).incrementAndGet();
+            return count.incrementAndGet() <= maxCapturedRequests;
+        }
+
+        void keep(CapturedRequest capturedRequest) {
+            all.add(capturedRequest);
+            byNode.computeIfAbsent(capturedRequest.node.getId(), k -> ConcurrentCollections.newQueue()).add(capturedRequest);
+            byAction.computeIfAbsent(capturedRequest.action, k -> ConcurrentCollections.newQueue()).add(capturedRequest);
+        }
+
+        Map<String, List<CapturedRequest>> byTargetNode() {
+            Map<String, List<CapturedRequest>> map = new HashMap<>(byNode.size());
+            for (Map.Entry<String, Queue<CapturedRequest>> entry : byNode.entrySet()) {
+                map.put(entry.getKey(), new ArrayList<>(entry.getValue()));
+            }
+            return map;
+        }
     }
 
     /** simulate a response for the given requestId */
@@ -184,8 +286,7 @@ public class CapturingTransport implements Transport {
             @Override
             public void sendRequest(long requestId, String action, TransportRequest request, TransportRequestOptions options)
                 throws IOException, TransportException {
-                requests.put(requestId, Tuple.tuple(node, action));
-                capturedRequests.add(new CapturedRequest(node, requestId, action, request));
+                capture(new CapturedRequest(node, requestId, action, request));
             }
 
             @Override
@@ -0,0 +1,139 @@
+package org.elasticsearch.test.transport;
+
+import org.elasticsearch.common.unit.TimeValue;
+import org.elasticsearch.threadpool.ThreadPool;
+import org.elasticsearch.transport.nio.TimerWheel;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * Holds the delayed sends of a single link of a {@link MockTransportService}. The sends are kept in a {@link TimerWheel}
+ * and a single task on the generic thread pool is scheduled for the earliest delay that passes, so a rule that delays
+ * thousands of requests does not schedule a task per request on the thread pool. Expired sends run in the order they
+ * expire on the thread of that task, up to one tick after their delay passed. The delays are measured with the given
+ * clock, which follows the virtual clock of a {@link org.elasticsearch.threadpool.DeterministicThreadPool} in tests that
+ * use one, and no task is scheduled while no send is pending.
+ */
+final class DelayedSendScheduler {
+
+    static final TimeValue TICK = TimeValue.timeValueMillis(10);
+
+    private final ThreadPool threadPool;
+    private final LongSupplier nanoTime;
+    private final TimerWheel wheel;
+    private final Set<Runnable> pending = new LinkedHashSet<>();
+    private final List<Runnable> expired = new ArrayList<>();
+    private ScheduledFuture<?> nextRun;
+    private long nextRunNanos;
+    private boolean closed;
+
+    DelayedSendScheduler(ThreadPool threadPool, LongSupplier nanoTime) {
+        this.threadPool = threadPool;
+        this.nanoTime = nanoTime;
+        this.wheel = new TimerWheel(nanoTime.getAsLong(), TICK.nanos(), TimerWheel.DEFAULT_SLOTS);
+    }
+
+    /**
+     * Runs the send once the delay has passed, or right away if the scheduler was already closed. The send runs with
+     * the thread context of the caller.
+     */
+    void schedule(TimeValue delay, Runnable send) {
+        final Runnable contextPreservingSend = threadPool.getThreadContext().preserveContext(send);
+        final List<Runnable> toRun;
+        synchronized (this) {
+            if (closed) {
+                toRun = Collections.singletonList(contextPreservingSend);
+            } else {
+                // the wheel is only advanced by the scheduled task, catch up before computing the slot of the new send
+                final long nowNanos = nanoTime.getAsLong();
+                wheel.advance(nowNanos);
+                toRun = drainExpired();
+                pending.add(contextPreservingSend);
+                wheel.schedule(nowNanos, delay.nanos(), () -> {
+                    if (pending.remove(contextPreservingSend)) {
+                        expired.add(contextPreservingSend);
+                    }
+                });
+                scheduleNextRun(nowNanos);
+            }
+        }
+        toRun.forEach(Runnable::run);
+    }
+
+    /**
+     * Closes the scheduler and runs all pending sends right away, in the order they were scheduled. Sends that are
+     * scheduled after this call run right away as well.
+     */
+    void close() {
+        final List<Runnable> toRun;
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            toRun = drainExpired();
+            toRun.addAll(pending);
+            pending.clear();
+            cancelNextRun();
+        }
+        toRun.forEach(Runnable::run);
+    }
+
+    /**
+     * @return the number of sends that are waiting for their delay to pass
+     */
+    synchronized int pendingSends() {
+        return pending.size();
+    }
+
+    private void run() {
+        final List<Runnable> toRun;
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            nextRun = null;
+            final long nowNanos = nanoTime.getAsLong();
+            wheel.advance(nowNanos);
+            toRun = drainExpired();
+            scheduleNextRun(nowNanos);
+        }
+        toRun.forEach(Runnable::run);
+    }
+
+    /**
+     * Makes sure that a task runs at the earliest deadline of the wheel, unless no send is pending.
+     */
+    private void scheduleNextRun(long nowNanos) {
+        final long delayNanos = wheel.nanosUntilNextDeadline(nowNanos);
+        if (delayNanos == -1) {
+            cancelNextRun();
+        } else if (nextRun == null || nowNanos + delayNanos - nextRunNanos < 0) {
+            cancelNextRun();
+            nextRunNanos = nowNanos + delayNanos;
+            // the thread pool schedules in milliseconds, a task that runs early would only schedule itself again
+            final long delayMillis = TimeUnit.NANOSECONDS.toMillis(delayNanos + TimeUnit.MILLISECONDS.toNanos(1) - 1);
+            nextRun = threadPool.schedule(TimeValue.timeValueMillis(delayMillis), ThreadPool.Names.GENERIC, this::run);
+        }
+    }
+
+    private List<Runnable> drainExpired() {
+        List<Runnable> drained = new ArrayList<>(expired);
+        expired.clear();
+        return drained;
+    }
+
+    private void cancelNextRun() {
+        if (nextRun != null) {
+            nextRun.cancel(false);
+            nextRun = null;
+        }
+    }
+}
@@ -10,9 +10,13 @@ import org.elasticsearch.common.Nullable;
 import org.elasticsearch.common.UUIDs;
 import org.elasticsearch.common.component.Lifecycle;
 import org.elasticsearch.common.component.LifecycleListener;
+import org.elasticsearch.common.bytes.BytesReference;
 import org.elasticsearch.common.io.stream.BytesStreamOutput;
 import org.elasticsearch.common.io.stream.NamedWriteableRegistry;
+import org.elasticsearch.common.io.stream.StreamInput;
+import org.elasticsearch.common.io.stream.StreamOutput;
 import org.elasticsearch.common.network.NetworkService;
+import org.elasticsearch.common.regex.Regex;
 import org.elasticsearch.common.settings.ClusterSettings;
 import org.elasticsearch.common.settings.Setting;
 import org.elasticsearch.common.settings.Settings;
@@ -27,11 +31,11 @@ import org.elasticsearch.node.Node;
 import org.elasticsearch.plugins.Plugin;
 import org.elasticsearch.tasks.TaskManager;
 import org.elasticsearch.test.tasks.MockTaskManager;
+import org.elasticsearch.threadpool.DeterministicThreadPool;
 import org.elasticsearch.threadpool.ThreadPool;
 import org.elasticsearch.transport.ConnectTransportException;
 import org.elasticsearch.transport.ConnectionProfile;
 import org.elasticsearch.transport.MockTcpTransport;
-import org.elasticsearch.transport.RequestHandlerRegistry;
 import org.elasticsearch.transport.TcpTransport;
 import org.elasticsearch.transport.Transport;
 import org.elasticsearch.transport.TransportException;
@@ -49,14 +53,14 @@ import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
-import java.util.Queue;
 import java.util.Set;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.function.Function;
+import java.util.function.LongSupplier;
 
 /**
  * A mock transport service that allows to simulate different network topology failures.
@@ -339,9 +343,7 @@ public final class MockTransportService extends TransportService {
     public void addUnresponsiveRule(TransportAddress transportAddress, final TimeValue duration) {
         final long startTime = System.currentTimeMillis();
 
-        addDelegate(transportAddress, new ClearableTransport(original) {
-            private final Queue<Runnable> requestsToSendWhenCleared = new LinkedBlockingDeque<>();
-            private boolean cleared = false;
+        addDelegate(transportAddress, new DelayingTransport(original) {
 
             TimeValue getDelay() {
                 return new TimeValue(duration.millis() - (System.currentTimeMillis() - startTime));
@@ -398,58 +400,200 @@ public final class MockTransportService extends TransportService {
                 }
             }
 
+            @Override
+            TimeValue getDelay(String action) {
+                // delayed sending - even if larger then the request timeout to simulated a potential late response from target node
+                return getDelay();
+            }
+        });
+    }
+
+    /**
+     * Adds a rule that delays each send request with an action matching one of the given patterns by the given delay.
+     * Other requests and connecting are not affected. Requests that are still delayed when the rule is cleared are sent
+     * right away.
+     *
+     * @param delay the amount of time to delay each matching request
+     * @param actionPatterns simple patterns (see {@link Regex#simpleMatch(String[], String)}) of the actions to delay,
+     *                       every action is delayed if no pattern is given
+     */
+    public void addDelayRule(TransportService transportService, final TimeValue delay, final String... actionPatterns) {
+        for (TransportAddress transportAddress : extractTransportAddresses(transportService)) {
+            addDelayRule(transportAddress, delay, actionPatterns);
+        }
+    }
+
+    /**
+     * Adds a rule that delays each send request with an action matching one of the given patterns by the given delay.
+     * Other requests and connecting are not affected. Requests that are still delayed when the rule is cleared are sent
+     * right away.
+     *
+     * @param delay the amount of time to delay each matching request
+     * @param actionPatterns simple patterns (see {@link Regex#simpleMatch(String[], String)}) of the actions to delay,
+     *                       every action is delayed if no pattern is given
+     */
+    public void addDelayRule(TransportAddress transportAddress, final TimeValue delay, final String... actionPatterns) {
+        final boolean allActions = actionPatterns.length == 0;
+        addDelegate(transportAddress, new DelayingTransport(original) {
+            @Override
+            TimeValue getDelay(String action) {
+                return allActions || Regex.simpleMatch(actionPatterns, action) ? delay : TimeValue.ZERO;
+            }
+        });
+    }
+
+    /**
+     * Adds a rule that shapes the requests sent to the given transport service, see {@link LinkShaper}.
+     */
+    public void addShapingRule(TransportService transportService, final LinkShaper shaper) {
+        for (TransportAddress transportAddress : extractTransportAddresses(transportService)) {
+            addShapingRule(transportAddress, shaper);
+        }
+    }
+
+    /**
+     * Adds a rule that shapes the requests sent to the given transport address, see {@link LinkShaper}. Requests that are
+     * still delayed when the rule is cleared are sent right away.
+     */
+    public void addShapingRule(TransportAddress transportAddress, final LinkShaper shaper) {
+        addDelegate(transportAddress, new DelayedSendTransport(original) {
             @Override
             protected void sendRequest(Connection connection, long requestId, String action, TransportRequest request,
                                        TransportRequestOptions options) throws IOException {
-                // delayed sending - even if larger then the request timeout to simulated a potential late response from target node
-                TimeValue delay = getDelay();
-                if (delay.millis() <= 0) {
-                    connection.sendRequest(requestId, action, request, options);
-                    return;
+                final SerializedRequest serializedRequest = serialize(connection, request);
+                for (TimeValue delay : shaper.shape(action, serializedRequest.length())) {
+                    sendAfter(delay, connection, requestId, action, serializedRequest, options);
                 }
+            }
+        });
+    }
 
-                // poor mans request cloning...
-                RequestHandlerRegistry reg = MockTransportService.this.getRequestHandler(action);
-                BytesStreamOutput bStream = new BytesStreamOutput();
-                request.writeTo(bStream);
-                final TransportRequest clonedRequest = reg.newRequest(bStream.bytes().streamInput());
+    /**
+     * Returns the clock the delays of the rules of this service are measured with. The delays follow the virtual clock of a
+     * {@link DeterministicThreadPool}, so delayed requests are sent when the test advances the time of the thread pool, and
+     * {@link System#nanoTime()} otherwise.
+     */
+    public LongSupplier nanoTimeSource() {
+        if (threadPool instanceof DeterministicThreadPool) {
+            return () -> TimeUnit.MILLISECONDS.toNanos(threadPool.relativeTimeInMillis());
+        }
+        return System::nanoTime;
+    }
 
-                Runnable runnable = new AbstractRunnable() {
-                    AtomicBoolean requestSent = new AtomicBoolean();
+    /**
+     * Decides when and how often each request sent over a link is sent, which allows to model links with a limited
+     * bandwidth, jitter or loss. A shaper is called by all threads that send requests over the link and must be thread safe.
+     */
+    @FunctionalInterface
+    public interface LinkShaper {
 
-                    @Override
-                    public void onFailure(Exception e) {
-                        logger.debug("failed to send delayed request", e);
-                    }
+        /**
+         * @param action the action of the request
+         * @param length the length of the serialized request in bytes
+         * @return the delays after which the request is sent. The request is dropped if there is no delay and is sent more
+         *         than once if there are several delays.
+         */
+        List<TimeValue> shape(String action, int length);
+    }
 
-                    @Override
-                    protected void doRun() throws IOException {
-                        if (requestSent.compareAndSet(false, true)) {
-                            connection.sendRequest(requestId, action, clonedRequest, options);
-                        }
-                    }
-                };
+    /**
+     * A transport that sends requests after a delay. The delayed requests are serialized once when they are sent, so later
+     * changes to the request object do not affect the delayed send, and are kept in a {@link DelayedSendScheduler} of the
+     * link instead of being scheduled on the thread pool one by one.
+     */
+    private abstract class DelayedSendTransport extends ClearableTransport {
 
-                // store the request to send it once the rule is cleared.
-                synchronized (this) {
-                    if (cleared) {
-                        runnable.run();
-                    } else {
-                        requestsToSendWhenCleared.add(runnable);
-                        threadPool.schedule(delay, ThreadPool.Names.GENERIC, runnable);
-                    }
-                }
+        private final DelayedSendScheduler scheduler = new DelayedSendScheduler(threadPool, nanoTimeSource());
+
+        DelayedSendTransport(Transport transport) {
+            super(transport);
+        }
+
+        SerializedRequest serialize(Connection connection, TransportRequest request) throws IOException {
+            BytesStreamOutput bStream = new BytesStreamOutput();
+            bStream.setVersion(connection.getVersion());
+            request.writeTo(bStream);
+            return new SerializedRequest(bStream.bytes());
+        }
+
+        /**
+         * Sends the serialized request once the delay has passed, or right away if the delay is not positive.
+         */
+        void sendAfter(TimeValue delay, Connection connection, long requestId, String action, SerializedRequest serializedRequest,
+                       TransportRequestOptions options) throws IOException {
+            if (delay.nanos() <= 0) {
+                connection.sendRequest(requestId, action, serializedRequest, options);
+                return;
             }
+            scheduler.schedule(delay, new AbstractRunnable() {
+                @Override
+                public void onFailure(Exception e) {
+                    logger.debug("failed to send delayed request", e);
+                }
 
-            @Override
-            public void clearRule() {
-                synchronized (this) {
-                    assert cleared == false;
-                    cleared = true;
-                    requestsToSendWhenCleared.forEach(Runnable::run);
+                @Override
+                protected void doRun() throws IOException {
+                    connection.sendRequest(requestId, action, serializedRequest, options);
                 }
+            });
+        }
+
+        @Override
+        public void clearRule() {
+            scheduler.close();
+        }
+    }
+
+    /**
+     * A transport that delays send requests by a per action delay.
+     */
+    private abstract class DelayingTransport extends DelayedSendTransport {
+
+        DelayingTransport(Transport transport) {
+            super(transport);
+        }
+
+        /**
+         * @return the delay of a request with the given action, the request is sent right away if it is not positive
+         */
+        abstract TimeValue getDelay(String action);
+
+        @Override
+        protected void sendRequest(Connection connection, long requestId, String action, TransportRequest request,
+                                   TransportRequestOptions options) throws IOException {
+            TimeValue delay = getDelay(action);
+            if (delay.nanos() <= 0) {
+                connection.sendRequest(requestId, action, request, options);
+            } else {
+                sendAfter(delay, connection, requestId, action, serialize(connection, request), options);
             }
-        });
+        }
+    }
+
+    /**
+     * A request that writes the bytes another request was serialized to.
+     */
+    private static final class SerializedRequest extends TransportRequest {
+
+        private final BytesReference bytes;
+
+        SerializedRequest(BytesReference bytes) {
+            this.bytes = bytes;
+        }
+
+        int length() {
+            return bytes.length();
+        }
+
+        @Override
+        public void readFrom(StreamInput in) {
+            throw new UnsupportedOperationException("serialized requests are only sent");
+        }
+
+        @Override
+        public void writeTo(StreamOutput out) throws IOException {
+            bytes.writeTo(out);
+        }
     }
 
     /**
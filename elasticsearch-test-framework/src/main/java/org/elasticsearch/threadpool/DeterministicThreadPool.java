@@ -0,0 +1,306 @@
+package org.elasticsearch.threadpool;
+
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.unit.TimeValue;
+import org.elasticsearch.common.util.concurrent.EsRejectedExecutionException;
+import org.elasticsearch.node.Node;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Random;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A thread pool for unit tests that runs all tasks on the thread of the test and has a virtual clock. Tasks that are
+ * submitted to an executor are queued and only run when the test calls {@link #runRandomTask()} or one of the other
+ * {@code run} methods, which pick the next task from the queue with a random instance, so a seed determines the order
+ * of the tasks. Scheduled tasks become runnable once the virtual clock reached their time, and {@link #advanceTime()}
+ * moves the clock to the next scheduled task right away, so tests of timeouts and retries don't wait for real time
+ * to pass.
+ * <p>
+ * The queue can be filled from any thread, but the tasks must only be run by one thread. {@link #scheduler()} is not
+ * supported since its tasks would run on real time.
+ */
+public class DeterministicThreadPool extends ThreadPool {
+
+    private final Random random;
+    private final ExecutorService deterministicExecutor = new DeterministicExecutorService();
+    private final List<Runnable> runnableTasks = new ArrayList<>();
+    private final PriorityQueue<DeferredTask> deferredTasks = new PriorityQueue<>();
+    private long currentTimeMillis;
+    private long deferredTaskCount;
+    private boolean shutdown;
+
+    public DeterministicThreadPool(String name, Random random) {
+        this(name, Settings.EMPTY, random);
+    }
+
+    public DeterministicThreadPool(String name, Settings settings, Random random) {
+        super(Settings.builder().put(Node.NODE_NAME_SETTING.getKey(), name).put(settings).build());
+        this.random = random;
+    }
+
+    /**
+     * @return whether there are tasks that can run at the current time
+     */
+    public synchronized boolean hasRunnableTasks() {
+        return runnableTasks.isEmpty() == false;
+    }
+
+    /**
+     * @return whether there are tasks that are scheduled to run at a later time
+     */
+    public synchronized boolean hasDeferredTasks() {
+        return deferredTasks.isEmpty() == false;
+    }
+
+    /**
+     * Runs one randomly picked task of the tasks that can run at the current time.
+     */
+    public void runRandomTask() {
+        final Runnable task;
+        synchronized (this) {
+            if (runnableTasks.isEmpty()) {
+                throw new IllegalStateException("no task can run at [" + currentTimeMillis + "ms]");
+            }
+            // swap the picked task with the last one, so it can be removed in constant time
+            int index = random.nextInt(runnableTasks.size());
+            Collections.swap(runnableTasks, index, runnableTasks.size() - 1);
+            task = runnableTasks.remove(runnableTasks.size() - 1);
+        }
+        task.run();
+    }
+
+    /**
+     * Runs tasks in random order until no task can run at the current time, including the tasks that are submitted by the
+     * tasks that run.
+     */
+    public void runAllRunnableTasks() {
+        while (hasRunnableTasks()) {
+            runRandomTask();
+        }
+    }
+
+    /**
+     * Moves the virtual clock to the time of the next scheduled task and makes all tasks runnable whose time has come.
+     */
+    public synchronized void advanceTime() {
+        if (deferredTasks.isEmpty()) {
+            throw new IllegalStateException("no task is scheduled after [" + currentTimeMillis + "ms]");
+        }
+        currentTimeMillis = Math.max(currentTimeMillis, deferredTasks.peek().executionTimeMillis);
+        while (deferredTasks.isEmpty() == false && deferredTasks.peek().executionTimeMillis <= currentTimeMillis) {
+            runnableTasks.add(deferredTasks.poll().task);
+        }
+    }
+
+    /**
+     * Runs all tasks and advances the virtual clock until no task is left. This does not return while periodic tasks are
+     * scheduled, use {@link #runAllTasksUntil(long)} for those.
+     */
+    public void runAllTasks() {
+        while (true) {
+            runAllRunnableTasks();
+            if (hasDeferredTasks() == false) {
+                return;
+            }
+            advanceTime();
+        }
+    }
+
+    /**
+     * Runs all tasks and advances the virtual clock until no task can run before the given time, and then moves the clock
+     * to the given time.
+     *
+     * @param timeMillis the time of the virtual clock to stop at
+     */
+    public void runAllTasksUntil(long timeMillis) {
+        while (true) {
+            runAllRunnableTasks();
+            synchronized (this) {
+                if (deferredTasks.isEmpty() || deferredTasks.peek().executionTimeMillis > timeMillis) {
+                    currentTimeMillis = Math.max(currentTimeMillis, timeMillis);
+                    return;
+                }
+                advanceTime();
+            }
+        }
+    }
+
+    @Override
+    public synchronized long relativeTimeInMillis() {
+        return currentTimeMillis;
+    }
+
+    @Override
+    public synchronized long absoluteTimeInMillis() {
+        return currentTimeMillis;
+    }
+
+    @Override
+    public ExecutorService generic() {
+        return deterministicExecutor;
+    }
+
+    @Override
+    public ExecutorService executor(String name) {
+        // fails for unknown thread pools like the real executors do
+        super.executor(name);
+        return deterministicExecutor;
+    }
+
+    @Override
+    public ScheduledExecutorService scheduler() {
+        throw new UnsupportedOperationException("the scheduler runs on real time, schedule tasks on the thread pool instead");
+    }
+
+    @Override
+    public ScheduledFuture<?> schedule(TimeValue delay, String executor, Runnable command) {
+        // fails for unknown thread pools like the real executors do
+        super.executor(executor);
+        final Runnable task = getThreadContext().preserveContext(command);
+        synchronized (this) {
+            ensureNotShutdown();
+            DeferredTask deferredTask = new DeferredTask(currentTimeMillis + Math.max(0, delay.millis()), deferredTaskCount++, task);
+            deferredTasks.add(deferredTask);
+            return deferredTask;
+        }
+    }
+
+    @Override
+    public void shutdown() {
+        synchronized (this) {
+            shutdown = true;
+        }
+        super.shutdown();
+    }
+
+    @Override
+    public void shutdownNow() {
+        synchronized (this) {
+            shutdown = true;
+            runnableTasks.clear();
+            deferredTasks.clear();
+        }
+        super.shutdownNow();
+    }
+
+    private void ensureNotShutdown() {
+        assert Thread.holdsLock(this);
+        if (shutdown) {
+            throw new EsRejectedExecutionException("thread pool is shut down", true);
+        }
+    }
+
+    private synchronized void enqueue(Runnable command) {
+        ensureNotShutdown();
+        runnableTasks.add(getThreadContext().preserveContext(command));
+    }
+
+    private synchronized boolean cancel(DeferredTask deferredTask) {
+        return deferredTasks.remove(deferredTask);
+    }
+
+    /**
+     * The executor of all thread pools, it adds the tasks to the queue of runnable tasks.
+     */
+    private final class DeterministicExecutorService extends AbstractExecutorService {
+
+        @Override
+        public void execute(Runnable command) {
+            enqueue(command);
+        }
+
+        @Override
+        public void shutdown() {
+            throw new UnsupportedOperationException("shut down the thread pool instead");
+        }
+
+        @Override
+        public List<Runnable> shutdownNow() {
+            throw new UnsupportedOperationException("shut down the thread pool instead");
+        }
+
+        @Override
+        public boolean isShutdown() {
+            synchronized (DeterministicThreadPool.this) {
+                return shutdown;
+            }
+        }
+
+        @Override
+        public boolean isTerminated() {
+            return isShutdown();
+        }
+
+        @Override
+        public boolean awaitTermination(long timeout, TimeUnit unit) {
+            return isShutdown();
+        }
+    }
+
+    /**
+     * A task that runs once the virtual clock reached its execution time. Tasks with the same execution time keep the order
+     * they were scheduled in.
+     */
+    private final class DeferredTask implements ScheduledFuture<Void> {
+
+        private final long executionTimeMillis;
+        private final long sequenceNumber;
+        private final Runnable task;
+        private volatile boolean cancelled;
+
+        private DeferredTask(long executionTimeMillis, long sequenceNumber, Runnable task) {
+            this.executionTimeMillis = executionTimeMillis;
+            this.sequenceNumber = sequenceNumber;
+            this.task = task;
+        }
+
+        @Override
+        public long getDelay(TimeUnit unit) {
+            return unit.convert(executionTimeMillis - relativeTimeInMillis(), TimeUnit.MILLISECONDS);
+        }
+
+        @Override
+        public int compareTo(Delayed other) {
+            DeferredTask otherTask = (DeferredTask) other;
+            int compare = Long.compare(executionTimeMillis, otherTask.executionTimeMillis);
+            return compare != 0 ? compare : Long.compare(sequenceNumber, otherTask.sequenceNumber);
+        }
+
+        @Override
+        public boolean cancel(boolean mayInterruptIfRunning) {
+            if (DeterministicThreadPool.this.cancel(this)) {
+                cancelled = true;
+            }
+            return cancelled;
+        }
+
+        @Override
+        public boolean isCancelled() {
+            return cancelled;
+        }
+
+        @Override
+        public boolean isDone() {
+            return cancelled || getDelay(TimeUnit.MILLISECONDS) <= 0;
+        }
+
+        @Override
+        public Void get() {
+            throw new UnsupportedOperationException("waiting blocks the only thread that runs tasks");
+        }
+
+        @Override
+        public Void get(long timeout, TimeUnit unit) {
+            throw new UnsupportedOperationException("waiting blocks the only thread that runs tasks");
+        }
+    }
+}
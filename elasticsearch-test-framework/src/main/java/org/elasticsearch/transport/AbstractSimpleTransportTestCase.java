@@ -68,6 +68,7 @@ import static java.util.Collections.emptySet;
 import static org.hamcrest.Matchers.containsString;
 import static org.hamcrest.Matchers.empty;
 import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
 import static org.hamcrest.Matchers.hasToString;
 import static org.hamcrest.Matchers.instanceOf;
 import static org.hamcrest.Matchers.notNullValue;
@@ -1514,6 +1515,56 @@ public abstract class AbstractSimpleTransportTestCase extends ESTestCase {
         expectThrows(ConnectTransportException.class, () -> serviceB.openConnection(nodeA, MockTcpTransport.LIGHT_PROFILE));
     }
 
+    public void testMockDelayRule() throws Exception {
+        TransportRequestHandler<StringMessageRequest> handler =
+            (request, channel) -> channel.sendResponse(new StringMessageResponse("hello " + request.message));
+        serviceA.registerRequestHandler("internal:delayed/hello", StringMessageRequest::new, ThreadPool.Names.GENERIC, handler);
+        serviceA.registerRequestHandler("internal:direct/hello", StringMessageRequest::new, ThreadPool.Names.GENERIC, handler);
+        TransportResponseHandler<StringMessageResponse> responseHandler = new TransportResponseHandler<StringMessageResponse>() {
+            @Override
+            public StringMessageResponse newInstance() {
+                return new StringMessageResponse();
+            }
+
+            @Override
+            public String executor() {
+                return ThreadPool.Names.SAME;
+            }
+
+            @Override
+            public void handleResponse(StringMessageResponse response) {
+            }
+
+            @Override
+            public void handleException(TransportException exp) {
+            }
+        };
+
+        serviceB.addDelayRule(serviceA, TimeValue.timeValueHours(1), "internal:delayed/*");
+        StringMessageRequest delayedRequest = new StringMessageRequest("moshe");
+        TransportFuture<StringMessageResponse> delayed = serviceB.submitRequest(nodeA, "internal:delayed/hello", delayedRequest,
+            responseHandler);
+        // the delayed request is serialized when it is sent, changes made afterwards are not sent
+        delayedRequest.message = "changed";
+        StringMessageResponse direct = serviceB.submitRequest(nodeA, "internal:direct/hello", new StringMessageRequest("moshe"),
+            responseHandler).txGet(10, TimeUnit.SECONDS);
+        assertThat(direct.message, equalTo("hello moshe"));
+        assertFalse(delayed.isDone());
+
+        // clearing the rule sends the delayed requests right away
+        serviceB.clearRule(serviceA);
+        assertThat(delayed.txGet(10, TimeUnit.SECONDS).message, equalTo("hello moshe"));
+
+        final TimeValue delay = TimeValue.timeValueMillis(randomIntBetween(50, 200));
+        serviceB.addDelayRule(serviceA, delay);
+        final long startNanos = System.nanoTime();
+        StringMessageResponse response = serviceB.submitRequest(nodeA, "internal:direct/hello", new StringMessageRequest("moshe"),
+            responseHandler).txGet(10, TimeUnit.SECONDS);
+        assertThat(response.message, equalTo("hello moshe"));
+        assertThat(System.nanoTime() - startNanos, greaterThanOrEqualTo(delay.nanos()));
+        serviceB.clearRule(serviceA);
+    }
+
 
     public void testHostOnMessages() throws InterruptedException {
         final CountDownLatch latch = new CountDownLatch(2);
@@ -0,0 +1,337 @@
+package org.elasticsearch.transport;
+
+import org.elasticsearch.Version;
+import org.elasticsearch.action.ActionListener;
+import org.elasticsearch.cluster.node.DiscoveryNode;
+import org.elasticsearch.common.bytes.BytesArray;
+import org.elasticsearch.common.bytes.BytesReference;
+import org.elasticsearch.common.io.stream.NamedWriteableRegistry;
+import org.elasticsearch.common.network.NetworkService;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.unit.TimeValue;
+import org.elasticsearch.common.util.BigArrays;
+import org.elasticsearch.common.util.concurrent.AbstractRunnable;
+import org.elasticsearch.common.util.concurrent.EsExecutors;
+import org.elasticsearch.indices.breaker.CircuitBreakerService;
+import org.elasticsearch.threadpool.ThreadPool;
+import org.elasticsearch.transport.nio.SerialExecutor;
+
+import java.io.IOException;
+import java.io.StreamCorruptedException;
+import java.net.BindException;
+import java.net.ConnectException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A TcpTransport implementation that connects nodes of the same JVM without sockets. Server channels are
+ * registered by their bound address in a JVM wide registry, and connecting to an address creates a pair of
+ * in-memory channels. Messages are still fully serialized: every frame is copied and handed to the peer channel,
+ * which decodes it on a worker thread in the order it was sent. This avoids the kernel copies, file descriptors
+ * and ports of loopback sockets while still exercising the wire format. Since the transport sits below
+ * {@link org.elasticsearch.test.transport.MockTransportService}, its rules and network disruptions apply as
+ * with any other transport.
+ */
+public class MockLocalTransport extends TcpTransport {
+
+    private static final ConcurrentMap<InetSocketAddress, LocalServerChannel> SERVER_CHANNELS = new ConcurrentHashMap<>();
+    // the ports of client channels and of servers bound to port 0, they only identify a channel
+    private static final AtomicInteger EPHEMERAL_PORTS = new AtomicInteger(32768);
+
+    private final ExecutorService executor;
+    private final Version mockVersion;
+
+    public MockLocalTransport(Settings settings, ThreadPool threadPool, BigArrays bigArrays,
+                              CircuitBreakerService circuitBreakerService, NamedWriteableRegistry namedWriteableRegistry,
+                              NetworkService networkService) {
+        this(settings, threadPool, bigArrays, circuitBreakerService, namedWriteableRegistry, networkService, Version.CURRENT);
+    }
+
+    public MockLocalTransport(Settings settings, ThreadPool threadPool, BigArrays bigArrays,
+                              CircuitBreakerService circuitBreakerService, NamedWriteableRegistry namedWriteableRegistry,
+                              NetworkService networkService, Version mockVersion) {
+        super("mock-local-transport", settings, threadPool, bigArrays, circuitBreakerService, namedWriteableRegistry, networkService);
+        // the threads only run while frames are pending, using the mock transport prefix marks them as transport threads
+        executor = Executors.newCachedThreadPool(EsExecutors.daemonThreadFactory(settings,
+            Transports.TEST_MOCK_TRANSPORT_THREAD_PREFIX));
+        this.mockVersion = mockVersion;
+    }
+
+    @Override
+    protected LocalServerChannel bind(String name, InetSocketAddress address) throws IOException {
+        if (address.getPort() == 0) {
+            while (true) {
+                InetSocketAddress ephemeralAddress = new InetSocketAddress(address.getAddress(), nextEphemeralPort());
+                LocalServerChannel serverChannel = new LocalServerChannel(ephemeralAddress, name);
+                if (SERVER_CHANNELS.putIfAbsent(ephemeralAddress, serverChannel) == null) {
+                    return serverChannel;
+                }
+            }
+        }
+        LocalServerChannel serverChannel = new LocalServerChannel(address, name);
+        if (SERVER_CHANNELS.putIfAbsent(address, serverChannel) != null) {
+            throw new BindException("Address already in use: " + address);
+        }
+        return serverChannel;
+    }
+
+    @Override
+    protected LocalChannel initiateChannel(DiscoveryNode node, TimeValue connectTimeout, ActionListener<Void> connectListener)
+        throws IOException {
+        InetSocketAddress address = node.getAddress().address();
+        LocalServerChannel serverChannel = SERVER_CHANNELS.get(address);
+        if (serverChannel == null || serverChannel.isOpen() == false) {
+            throw new ConnectException("Connection refused: " + address);
+        }
+        InetSocketAddress clientAddress = new InetSocketAddress(InetAddress.getLoopbackAddress(), nextEphemeralPort());
+        LocalChannel channel = new LocalChannel(clientAddress, "none");
+        serverChannel.accept(channel);
+        connectListener.onResponse(null);
+        return channel;
+    }
+
+    @Override
+    protected ConnectionProfile resolveConnectionProfile(ConnectionProfile connectionProfile) {
+        ConnectionProfile connectionProfile1 = resolveConnectionProfile(connectionProfile, defaultConnectionProfile);
+        ConnectionProfile.Builder builder = new ConnectionProfile.Builder(MockTcpTransport.LIGHT_PROFILE);
+        builder.setHandshakeTimeout(connectionProfile1.getHandshakeTimeout());
+        builder.setConnectTimeout(connectionProfile1.getConnectTimeout());
+        return builder.build();
+    }
+
+    @Override
+    protected void doStart() {
+        boolean success = false;
+        try {
+            if (NetworkService.NETWORK_SERVER.get(settings)) {
+                // loop through all profiles and start them up, special handling for default one
+                for (ProfileSettings profileSettings : profileSettings) {
+                    bindServer(profileSettings);
+                }
+            }
+            super.doStart();
+            success = true;
+        } finally {
+            if (success == false) {
+                doStop();
+            }
+        }
+    }
+
+    @Override
+    protected void stopInternal() {
+        ThreadPool.terminate(executor, 10, TimeUnit.SECONDS);
+    }
+
+    @Override
+    protected Version getCurrentVersion() {
+        return mockVersion;
+    }
+
+    private static int nextEphemeralPort() {
+        return EPHEMERAL_PORTS.updateAndGet(port -> port == 65535 ? 32768 : port + 1);
+    }
+
+    private void receive(LocalChannel channel, BytesReference frame) throws IOException {
+        final int headerSize = TcpHeader.MARKER_BYTES_SIZE + TcpHeader.MESSAGE_LENGTH_SIZE;
+        if (TcpTransport.validateMessageHeader(frame)) {
+            int messageLength = frame.length() - headerSize;
+            int declaredLength = ((frame.get(2) & 0xFF) << 24) | ((frame.get(3) & 0xFF) << 16) | ((frame.get(4) & 0xFF) << 8)
+                | (frame.get(5) & 0xFF);
+            if (declaredLength != messageLength) {
+                throw new StreamCorruptedException("frame of [" + frame.length() + "] bytes declares a message of [" + declaredLength
+                    + "] bytes");
+            }
+            InetSocketAddress remoteAddress = channel.peer.getLocalAddress();
+            messageReceived(frame.slice(headerSize, messageLength), channel, channel.profile, remoteAddress, messageLength);
+        } else {
+            // ping message - we just drop all stuff
+        }
+    }
+
+    /**
+     * A server channel that accepts the connections of clients of any transport in this JVM.
+     */
+    public final class LocalServerChannel implements TcpChannel {
+
+        private final InetSocketAddress localAddress;
+        private final String profile;
+        private final AtomicBoolean isOpen = new AtomicBoolean(true);
+        private final Set<LocalChannel> workerChannels = Collections.newSetFromMap(new ConcurrentHashMap<>());
+        private final CompletableFuture<Void> closeFuture = new CompletableFuture<>();
+
+        LocalServerChannel(InetSocketAddress localAddress, String profile) {
+            this.localAddress = localAddress;
+            this.profile = profile;
+        }
+
+        private synchronized void accept(LocalChannel clientChannel) throws IOException {
+            if (isOpen.get() == false) {
+                throw new ConnectException("Connection refused: " + localAddress);
+            }
+            // like the accepted channels of MockTcpTransport, the channel reports the port of the client
+            LocalChannel serverSideChannel = new LocalChannel(new InetSocketAddress(localAddress.getAddress(),
+                clientChannel.getLocalAddress().getPort()), profile);
+            serverSideChannel.peer = clientChannel;
+            clientChannel.peer = serverSideChannel;
+            serverSideChannel.addCloseListener(ActionListener.wrap(() -> workerChannels.remove(serverSideChannel)));
+            workerChannels.add(serverSideChannel);
+            serverAcceptedChannel(serverSideChannel);
+        }
+
+        @Override
+        public void close() {
+            if (isOpen.compareAndSet(true, false)) {
+                synchronized (this) {
+                    SERVER_CHANNELS.remove(localAddress, this);
+                    TcpChannel.closeChannels(new ArrayList<>(workerChannels), false);
+                }
+                closeFuture.complete(null);
+            }
+        }
+
+        @Override
+        public void addCloseListener(ActionListener<Void> listener) {
+            closeFuture.whenComplete(ActionListener.toBiConsumer(listener));
+        }
+
+        @Override
+        public void setSoLinger(int value) {
+        }
+
+        @Override
+        public boolean isOpen() {
+            return isOpen.get();
+        }
+
+        @Override
+        public InetSocketAddress getLocalAddress() {
+            return localAddress;
+        }
+
+        @Override
+        public void sendMessage(BytesReference reference, ActionListener<Void> listener) {
+            throw new UnsupportedOperationException("cannot send a message to a server channel");
+        }
+
+        @Override
+        public String toString() {
+            return "LocalServerChannel{" +
+                "profile='" + profile + '\'' +
+                ", isOpen=" + isOpen +
+                ", localAddress=" + localAddress +
+                '}';
+        }
+    }
+
+    /**
+     * One end of an in-memory connection. Frames sent on a channel are copied and decoded by its peer in the
+     * order they were sent. Closing a channel closes its peer once the peer has received all frames sent
+     * before the close.
+     */
+    public final class LocalChannel implements TcpChannel {
+
+        private final InetSocketAddress localAddress;
+        private final String profile;
+        private final AtomicBoolean isOpen = new AtomicBoolean(true);
+        private final SerialExecutor inbound = new SerialExecutor(executor);
+        private final CompletableFuture<Void> closeFuture = new CompletableFuture<>();
+        private volatile LocalChannel peer;
+
+        LocalChannel(InetSocketAddress localAddress, String profile) {
+            this.localAddress = localAddress;
+            this.profile = profile;
+        }
+
+        @Override
+        public void sendMessage(BytesReference reference, ActionListener<Void> listener) {
+            final LocalChannel receiver = peer;
+            if (isOpen.get() == false || receiver.isOpen() == false) {
+                listener.onFailure(new TransportException("channel is closed: " + this));
+                return;
+            }
+            try {
+                // the caller may release the reference once the listener was notified
+                receiver.deliver(new BytesArray(BytesReference.toBytes(reference)));
+            } catch (RejectedExecutionException e) {
+                listener.onFailure(new TransportException("peer of channel is stopped: " + this, e));
+                return;
+            }
+            listener.onResponse(null);
+        }
+
+        private void deliver(BytesReference frame) {
+            inbound.execute(new AbstractRunnable() {
+                @Override
+                public void onFailure(Exception e) {
+                    if (isOpen.get()) {
+                        onException(LocalChannel.this, e);
+                    }
+                }
+
+                @Override
+                protected void doRun() throws Exception {
+                    if (isOpen.get()) {
+                        receive(LocalChannel.this, frame);
+                    }
+                }
+            });
+        }
+
+        @Override
+        public void close() {
+            if (isOpen.compareAndSet(true, false)) {
+                final LocalChannel receiver = peer;
+                if (receiver != null) {
+                    try {
+                        // like a socket, the peer reads the frames that were sent before it sees the close
+                        receiver.inbound.execute(receiver::close);
+                    } catch (RejectedExecutionException e) {
+                        receiver.close();
+                    }
+                }
+                closeFuture.complete(null);
+            }
+        }
+
+        @Override
+        public void addCloseListener(ActionListener<Void> listener) {
+            closeFuture.whenComplete(ActionListener.toBiConsumer(listener));
+        }
+
+        @Override
+        public void setSoLinger(int value) {
+        }
+
+        @Override
+        public boolean isOpen() {
+            return isOpen.get();
+        }
+
+        @Override
+        public InetSocketAddress getLocalAddress() {
+            return localAddress;
+        }
+
+        @Override
+        public String toString() {
+            return "LocalChannel{" +
+                "profile='" + profile + '\'' +
+                ", isOpen=" + isOpen +
+                ", localAddress=" + localAddress +
+                '}';
+        }
+    }
+}
@@ -11,6 +11,7 @@ import org.elasticsearch.common.io.stream.InputStreamStreamInput;
 import org.elasticsearch.common.io.stream.NamedWriteableRegistry;
 import org.elasticsearch.common.io.stream.StreamInput;
 import org.elasticsearch.common.network.NetworkService;
+import org.elasticsearch.common.settings.Setting;
 import org.elasticsearch.common.settings.Settings;
 import org.elasticsearch.common.unit.ByteSizeValue;
 import org.elasticsearch.common.unit.TimeValue;
@@ -28,6 +29,7 @@ import java.io.BufferedOutputStream;
 import java.io.Closeable;
 import java.io.IOException;
 import java.io.OutputStream;
+import java.lang.reflect.Method;
 import java.net.InetSocketAddress;
 import java.net.ServerSocket;
 import java.net.Socket;
@@ -42,8 +44,11 @@ import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.Executor;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
 import java.util.function.Consumer;
 
 /**
@@ -59,6 +64,19 @@ public class MockTcpTransport extends TcpTransport {
      */
     public static final ConnectionProfile LIGHT_PROFILE;
 
+    /**
+     * Runs the accept and read loops on virtual threads if the JVM supports them. Every connection blocks a
+     * thread for its whole lifetime, so a virtual thread saves a platform thread per connection. The transport
+     * falls back to platform threads if virtual threads are not available. The threads keep the mock transport
+     * name prefix, but {@link Thread#enumerate} does not list virtual threads and they cannot be suspended, so a
+     * {@link org.elasticsearch.test.disruption.LongGCDisruption} cannot pause the transport of a node with this
+     * setting and refuses to start.
+     */
+    public static final Setting<Boolean> VIRTUAL_THREADS =
+        Setting.boolSetting("transport.mock.virtual_threads", false, Setting.Property.NodeScope);
+
+    private static final int SEND_BUFFER_SIZE = 8192;
+
     private final Set<MockChannel> openChannels = new HashSet<>();
 
     static {
@@ -73,6 +91,7 @@ public class MockTcpTransport extends TcpTransport {
     }
 
     private final ExecutorService executor;
+    private final boolean virtualThreads;
     private final Version mockVersion;
 
     public MockTcpTransport(Settings settings, ThreadPool threadPool, BigArrays bigArrays,
@@ -86,12 +105,67 @@ public class MockTcpTransport extends TcpTransport {
                             CircuitBreakerService circuitBreakerService, NamedWriteableRegistry namedWriteableRegistry,
                             NetworkService networkService, Version mockVersion) {
         super("mock-tcp-transport", settings, threadPool, bigArrays, circuitBreakerService, namedWriteableRegistry, networkService);
-        // we have our own crazy cached threadpool this one is not bounded at all...
-        // using the ES thread factory here is crucial for tests otherwise disruption tests won't block that thread
-        executor = Executors.newCachedThreadPool(EsExecutors.daemonThreadFactory(settings, Transports.TEST_MOCK_TRANSPORT_THREAD_PREFIX));
+        ExecutorService virtualThreadExecutor = null;
+        if (VIRTUAL_THREADS.get(settings)) {
+            virtualThreadExecutor = newVirtualThreadExecutor(EsExecutors.threadName(settings,
+                Transports.TEST_MOCK_TRANSPORT_THREAD_PREFIX));
+            if (virtualThreadExecutor == null) {
+                logger.debug("virtual threads are not supported by this JVM, falling back to platform threads");
+            }
+        }
+        if (virtualThreadExecutor != null) {
+            executor = virtualThreadExecutor;
+            virtualThreads = true;
+        } else {
+            // we have our own crazy cached threadpool this one is not bounded at all...
+            // using the ES thread factory here is crucial for tests otherwise disruption tests won't block that thread
+            executor = Executors.newCachedThreadPool(EsExecutors.daemonThreadFactory(settings,
+                Transports.TEST_MOCK_TRANSPORT_THREAD_PREFIX));
+            virtualThreads = false;
+        }
         this.mockVersion = mockVersion;
     }
 
+    /**
+     * Creates an executor that starts a new virtual thread per task. Virtual threads are only available on newer
+     * JVMs, so they are looked up reflectively.
+     *
+     * @param threadName the name prefix of the threads, it must contain the mock transport thread prefix so that
+     *                   the threads are recognized as transport threads
+     * @return the executor, or null if the JVM does not support virtual threads
+     */
+    static ExecutorService newVirtualThreadExecutor(String threadName) {
+        final ThreadFactory virtualThreadFactory;
+        final Method newThreadPerTaskExecutor;
+        try {
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+            virtualThreadFactory = (ThreadFactory) builderClass.getMethod("factory").invoke(builder);
+            newThreadPerTaskExecutor = Executors.class.getMethod("newThreadPerTaskExecutor", ThreadFactory.class);
+        } catch (ReflectiveOperationException | SecurityException e) {
+            return null;
+        }
+        // name the threads like the ES thread factory does, virtual threads are always daemon threads
+        final AtomicInteger threadNumber = new AtomicInteger(1);
+        final ThreadFactory namedThreadFactory = r -> {
+            Thread thread = virtualThreadFactory.newThread(r);
+            thread.setName(threadName + "[T#" + threadNumber.getAndIncrement() + "]");
+            return thread;
+        };
+        try {
+            return (ExecutorService) newThreadPerTaskExecutor.invoke(null, namedThreadFactory);
+        } catch (ReflectiveOperationException e) {
+            return null;
+        }
+    }
+
+    /**
+     * @return true if the accept and read loops run on virtual threads
+     */
+    public boolean usesVirtualThreads() {
+        return virtualThreads;
+    }
+
     @Override
     protected MockChannel bind(final String name, InetSocketAddress address) throws IOException {
         MockServerSocket socket = new MockServerSocket();
@@ -211,6 +285,9 @@ public class MockTcpTransport extends TcpTransport {
         private final CancellableThreads cancellableThreads = new CancellableThreads();
         private final Closeable onClose;
         private final CompletableFuture<Void> closeFuture = new CompletableFuture<>();
+        // guards the output stream, senders do not contend with close0 which synchronizes on the channel
+        private final ReentrantLock sendLock = new ReentrantLock();
+        private OutputStream outputStream;
 
         /**
          * Constructs a new MockChannel instance intended for handling the actual incoming / outgoing traffic.
@@ -367,10 +444,17 @@ public class MockTcpTransport extends TcpTransport {
         @Override
         public void sendMessage(BytesReference reference, ActionListener<Void> listener) {
             try {
-                synchronized (this) {
-                    OutputStream outputStream = new BufferedOutputStream(activeChannel.getOutputStream());
+                sendLock.lock();
+                try {
+                    if (outputStream == null) {
+                        outputStream = new BufferedOutputStream(activeChannel.getOutputStream(), SEND_BUFFER_SIZE);
+                    }
+                    // chunks of at least the buffer size already bypass the buffer, while the small chunks of a
+                    // composite reference are combined into one write to the socket
                     reference.writeTo(outputStream);
                     outputStream.flush();
+                } finally {
+                    sendLock.unlock();
                 }
                 listener.onResponse(null);
             } catch (IOException e) {
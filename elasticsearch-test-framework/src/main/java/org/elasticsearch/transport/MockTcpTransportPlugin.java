@@ -2,6 +2,7 @@ package org.elasticsearch.transport;
 
 import org.elasticsearch.common.io.stream.NamedWriteableRegistry;
 import org.elasticsearch.common.network.NetworkService;
+import org.elasticsearch.common.settings.Setting;
 import org.elasticsearch.common.settings.Settings;
 import org.elasticsearch.common.util.BigArrays;
 import org.elasticsearch.common.util.PageCacheRecycler;
@@ -11,6 +12,7 @@ import org.elasticsearch.plugins.Plugin;
 import org.elasticsearch.threadpool.ThreadPool;
 
 import java.util.Collections;
+import java.util.List;
 import java.util.Map;
 import java.util.function.Supplier;
 
@@ -18,6 +20,11 @@ public class MockTcpTransportPlugin extends Plugin implements NetworkPlugin {
 
     public static final String MOCK_TCP_TRANSPORT_NAME = "mock-socket-network";
 
+    @Override
+    public List<Setting<?>> getSettings() {
+        return Collections.singletonList(MockTcpTransport.VIRTUAL_THREADS);
+    }
+
     @Override
     public Map<String, Supplier<Transport>> getTransports(Settings settings, ThreadPool threadPool, BigArrays bigArrays,
                                                           PageCacheRecycler pageCacheRecycler,
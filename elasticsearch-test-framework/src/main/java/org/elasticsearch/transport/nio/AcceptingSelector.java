@@ -31,10 +31,13 @@ public class AcceptingSelector extends ESSelector {
     void processKey(SelectionKey selectionKey) {
         NioServerSocketChannel serverChannel = (NioServerSocketChannel) selectionKey.attachment();
         if (selectionKey.isAcceptable()) {
+            beginHandler("accept", serverChannel);
             try {
                 eventHandler.acceptChannel(serverChannel);
             } catch (IOException e) {
                 eventHandler.acceptException(serverChannel, e);
+            } finally {
+                endHandler();
             }
         }
     }
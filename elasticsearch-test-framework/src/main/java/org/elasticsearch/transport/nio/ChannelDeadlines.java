@@ -0,0 +1,121 @@
+package org.elasticsearch.transport.nio;
+
+import org.elasticsearch.action.ActionListener;
+import org.elasticsearch.common.unit.TimeValue;
+import org.elasticsearch.transport.nio.channel.NioSocketChannel;
+
+import java.net.SocketTimeoutException;
+import java.util.function.Consumer;
+import java.util.function.ToLongFunction;
+
+/**
+ * Deadlines of {@link NioSocketChannel}s that are enforced by the timer wheel of the selector of the
+ * channel. The methods of this class must be called from the selector thread of the channel. Activity
+ * deadlines are not pushed back on each read or write. Instead the timeout checks the last activity of the
+ * channel when it fires and is scheduled again for the remaining time if there was activity in between,
+ * so at most one timeout per deadline and channel is pending at any time.
+ */
+public final class ChannelDeadlines {
+
+    private ChannelDeadlines() {}
+
+    /**
+     * Fails the connection process of the channel if it has not completed once the timeout has passed. Like the
+     * activity deadlines, the timeout checks the elapsed time when it fires and is scheduled again for the remaining
+     * time if it fired early.
+     *
+     * @param channel the connecting channel
+     * @param startNanos the {@link System#nanoTime()} at which the channel started to connect
+     * @param timeoutNanos the connect timeout
+     */
+    public static void scheduleConnectTimeout(NioSocketChannel channel, long startNanos, long timeoutNanos) {
+        if (channel.isConnectComplete() || channel.isOpen() == false) {
+            return;
+        }
+        ConnectTimeout connectTimeout = new ConnectTimeout(channel, startNanos, timeoutNanos);
+        connectTimeout.schedule(timeoutNanos - (System.nanoTime() - startNanos));
+        // connections complete on the selector thread, so the timeout can be cancelled right away
+        channel.addConnectListener(ActionListener.wrap(v -> connectTimeout.cancel(), e -> connectTimeout.cancel()));
+    }
+
+    /**
+     * Fails the channel with a {@link SocketTimeoutException} if it did not read any bytes for the timeout.
+     *
+     * @param channel the channel
+     * @param timeoutNanos the read timeout
+     */
+    public static void scheduleReadDeadline(NioSocketChannel channel, long timeoutNanos) {
+        scheduleActivityDeadline(channel, timeoutNanos, timeoutNanos, NioSocketChannel::getLastReadNanos, c -> {
+            SocketTimeoutException exception = new SocketTimeoutException("no bytes read for ["
+                + TimeValue.timeValueNanos(timeoutNanos) + "]");
+            c.getExceptionContext().accept(c, exception);
+        });
+    }
+
+    /**
+     * Closes the channel if it neither read nor wrote any bytes for the timeout.
+     *
+     * @param channel the channel
+     * @param timeoutNanos the idle timeout
+     */
+    public static void scheduleIdleDeadline(NioSocketChannel channel, long timeoutNanos) {
+        scheduleActivityDeadline(channel, timeoutNanos, timeoutNanos,
+            c -> Math.max(c.getLastReadNanos(), c.getLastWriteNanos()), NioSocketChannel::close);
+    }
+
+    private static void scheduleActivityDeadline(NioSocketChannel channel, long timeoutNanos, long delayNanos,
+                                                 ToLongFunction<NioSocketChannel> lastActivity, Consumer<NioSocketChannel> onExpiry) {
+        channel.getSelector().scheduleTimeout(delayNanos, () -> {
+            if (channel.isOpen() == false) {
+                return;
+            }
+            long inactiveNanos = System.nanoTime() - lastActivity.applyAsLong(channel);
+            if (inactiveNanos >= timeoutNanos) {
+                onExpiry.accept(channel);
+            } else {
+                scheduleActivityDeadline(channel, timeoutNanos, timeoutNanos - inactiveNanos, lastActivity, onExpiry);
+            }
+        });
+    }
+
+    private static final class ConnectTimeout implements Runnable {
+
+        private final NioSocketChannel channel;
+        private final long startNanos;
+        private final long timeoutNanos;
+        private TimerWheel.Timeout timeout;
+
+        private ConnectTimeout(NioSocketChannel channel, long startNanos, long timeoutNanos) {
+            this.channel = channel;
+            this.startNanos = startNanos;
+            this.timeoutNanos = timeoutNanos;
+        }
+
+        private void schedule(long delayNanos) {
+            timeout = channel.getSelector().scheduleTimeout(delayNanos, this);
+        }
+
+        @Override
+        public void run() {
+            if (channel.isOpen() == false || channel.isConnectComplete()) {
+                return;
+            }
+            long elapsedNanos = System.nanoTime() - startNanos;
+            if (elapsedNanos < timeoutNanos) {
+                schedule(timeoutNanos - elapsedNanos);
+                return;
+            }
+            SocketTimeoutException exception = new SocketTimeoutException("connect timed out after ["
+                + TimeValue.timeValueNanos(timeoutNanos) + "]");
+            if (channel.failConnect(exception)) {
+                channel.getExceptionContext().accept(channel, exception);
+            }
+        }
+
+        private void cancel() {
+            if (channel.getSelector().isOnCurrentThread()) {
+                timeout.cancel();
+            }
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package org.elasticsearch.transport.nio;
+
+import java.net.InetSocketAddress;
+
+/**
+ * A point in time view of the bytes transferred and pending for a {@link org.elasticsearch.transport.nio.channel.NioSocketChannel}.
+ */
+public class ChannelStats {
+
+    private final InetSocketAddress remoteAddress;
+    private final long bytesRead;
+    private final long bytesWritten;
+    private final long pendingWriteBytes;
+
+    public ChannelStats(InetSocketAddress remoteAddress, long bytesRead, long bytesWritten, long pendingWriteBytes) {
+        this.remoteAddress = remoteAddress;
+        this.bytesRead = bytesRead;
+        this.bytesWritten = bytesWritten;
+        this.pendingWriteBytes = pendingWriteBytes;
+    }
+
+    public InetSocketAddress getRemoteAddress() {
+        return remoteAddress;
+    }
+
+    public long getBytesRead() {
+        return bytesRead;
+    }
+
+    public long getBytesWritten() {
+        return bytesWritten;
+    }
+
+    /**
+     * @return the bytes of messages that were sent to the channel but not yet written
+     */
+    public long getPendingWriteBytes() {
+        return pendingWriteBytes;
+    }
+
+    public long getTotalBytes() {
+        return bytesRead + bytesWritten;
+    }
+
+    @Override
+    public String toString() {
+        return "ChannelStats{remoteAddress=" + remoteAddress + ", bytesRead=" + bytesRead + ", bytesWritten=" + bytesWritten
+            + ", pendingWriteBytes=" + pendingWriteBytes + "}";
+    }
+}
@@ -0,0 +1,54 @@
+package org.elasticsearch.transport.nio;
+
+import org.elasticsearch.common.component.AbstractComponent;
+import org.elasticsearch.common.lease.Releasable;
+import org.elasticsearch.common.recycler.AbstractRecyclerC;
+import org.elasticsearch.common.recycler.Recycler;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.util.BigArrays;
+import org.elasticsearch.common.util.concurrent.EsExecutors;
+
+import java.nio.ByteBuffer;
+
+import static org.elasticsearch.common.recycler.Recyclers.concurrent;
+import static org.elasticsearch.common.recycler.Recyclers.dequeFactory;
+
+/**
+ * A recycler of direct {@link ByteBuffer} pages that are used by {@link InboundChannelBuffer} when reading
+ * from a socket and by {@link PagedByteBufferStreamOutput} when writing to one. Reading into or writing
+ * from a heap buffer forces the JDK to copy the bytes through a temporary direct buffer of its own. Using
+ * pooled direct pages avoids that copy. Pages must be released
+ * explicitly by closing the {@link Recycler.V} returned from {@link #directPage()}. Up to
+ * {@link NioTransport#NIO_DIRECT_READ_PAGES_POOL_SIZE} pages are kept for reuse, additional pages are
+ * dropped on release and left to the garbage collector.
+ */
+public class DirectPageRecycler extends AbstractComponent implements Releasable {
+
+    private final Recycler<ByteBuffer> directPage;
+
+    public DirectPageRecycler(Settings settings) {
+        super(settings);
+        final int maxPooledPages = NioTransport.NIO_DIRECT_READ_PAGES_POOL_SIZE.get(settings);
+        final int availableProcessors = EsExecutors.numberOfProcessors(settings);
+        directPage = concurrent(dequeFactory(new AbstractRecyclerC<ByteBuffer>() {
+            @Override
+            public ByteBuffer newInstance(int sizing) {
+                return ByteBuffer.allocateDirect(BigArrays.BYTE_PAGE_SIZE);
+            }
+
+            @Override
+            public void recycle(ByteBuffer value) {
+                value.clear();
+            }
+        }, Math.max(1, maxPooledPages / availableProcessors)), availableProcessors);
+    }
+
+    @Override
+    public void close() {
+        directPage.close();
+    }
+
+    public Recycler.V<ByteBuffer> directPage() {
+        return directPage.obtain();
+    }
+}
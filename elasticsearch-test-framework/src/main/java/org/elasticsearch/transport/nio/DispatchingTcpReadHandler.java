@@ -0,0 +1,88 @@
+package org.elasticsearch.transport.nio;
+
+import org.apache.lucene.util.BytesRef;
+import org.elasticsearch.common.bytes.BytesArray;
+import org.elasticsearch.common.bytes.BytesReference;
+import org.elasticsearch.transport.nio.channel.SelectionKeyUtils;
+import org.elasticsearch.transport.nio.channel.TcpNioSocketChannel;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A {@link TcpReadHandler} that hands messages to a pool of worker threads instead of handling them on the
+ * selector thread. The messages of a channel are handled one at a time and in the order they were read. As
+ * the bytes of a message are released by the read context once this handler returns, the message is copied
+ * before it is dispatched. Reads of the channel are paused once the bytes of dispatched messages that have
+ * not been handled yet exceed the high water mark and they are resumed once the backlog drops to the low
+ * water mark. Reads are only paused and resumed on the selector thread, the dispatch threads just ask the
+ * selector to check the backlog once it dropped low enough.
+ */
+public class DispatchingTcpReadHandler extends TcpReadHandler {
+
+    private final SerialExecutor executor;
+    private final long highWaterMark;
+    private final long lowWaterMark;
+    private final AtomicLong backlogBytes = new AtomicLong();
+    // only written on the selector thread
+    private volatile boolean readsPaused;
+
+    public DispatchingTcpReadHandler(String profile, NioTransport transport, Executor executor, long highWaterMark) {
+        super(profile, transport);
+        this.executor = new SerialExecutor(executor);
+        this.highWaterMark = highWaterMark;
+        this.lowWaterMark = highWaterMark / 2;
+    }
+
+    @Override
+    public void handleMessage(BytesReference reference, TcpNioSocketChannel channel, int messageBytesLength) {
+        assert channel.getSelector().isOnCurrentThread() : "Must be on selector thread to dispatch messages";
+        // toBytes would return the page itself if the message fills it, so the message is always copied
+        BytesReference message = new BytesArray(BytesRef.deepCopyOf(reference.toBytesRef()));
+        long backlog = backlogBytes.addAndGet(messageBytesLength);
+        if (backlog >= highWaterMark && readsPaused == false) {
+            readsPaused = true;
+            SelectionKeyUtils.removeReadInterested(channel);
+        }
+        executor.execute(() -> {
+            try {
+                handleDispatchedMessage(message, channel, messageBytesLength);
+            } catch (Exception e) {
+                handleException(channel, e);
+            } finally {
+                if (backlogBytes.addAndGet(-messageBytesLength) <= lowWaterMark && readsPaused) {
+                    channel.getSelector().queueTask(() -> resumeReads(channel));
+                }
+            }
+        });
+    }
+
+    // pkg-private for testing
+    void handleDispatchedMessage(BytesReference message, TcpNioSocketChannel channel, int messageBytesLength) {
+        super.handleMessage(message, channel, messageBytesLength);
+    }
+
+    /**
+     * Returns the number of bytes of dispatched messages that have not been handled yet.
+     *
+     * @return the backlog in bytes
+     */
+    public long getBacklogBytes() {
+        return backlogBytes.get();
+    }
+
+    public boolean isReadPaused() {
+        return readsPaused;
+    }
+
+    private void resumeReads(TcpNioSocketChannel channel) {
+        assert channel.getSelector().isOnCurrentThread() : "Must be on selector thread to resume reads";
+        // more messages may have been dispatched since the task was queued, or an earlier task resumed reads already
+        if (readsPaused && backlogBytes.get() <= lowWaterMark) {
+            readsPaused = false;
+            if (channel.isOpen()) {
+                SelectionKeyUtils.setReadInterested(channel);
+            }
+        }
+    }
+}
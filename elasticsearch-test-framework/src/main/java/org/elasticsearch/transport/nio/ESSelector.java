@@ -13,7 +13,9 @@ import java.util.Iterator;
 import java.util.Set;
 import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.concurrent.locks.ReentrantLock;
 import java.util.stream.Collectors;
 
@@ -27,6 +29,9 @@ import java.util.stream.Collectors;
  */
 public abstract class ESSelector implements Closeable {
 
+    // the spin time never drops below this, so that a quiet period does not disable spinning for good
+    private static final long MIN_SPIN_NANOS = TimeUnit.MICROSECONDS.toNanos(1);
+
     final Selector selector;
     final ConcurrentLinkedQueue<NioChannel> channelsToClose = new ConcurrentLinkedQueue<>();
 
@@ -34,16 +39,48 @@ public abstract class ESSelector implements Closeable {
     private final ReentrantLock runLock = new ReentrantLock();
     private final CountDownLatch exitedLoop = new CountDownLatch(1);
     private final AtomicBoolean isClosed = new AtomicBoolean(false);
+    private final AtomicBoolean wakeupPending = new AtomicBoolean(false);
+    private final LongAdder issuedWakeups = new LongAdder();
+    private final LongAdder suppressedWakeups = new LongAdder();
+    private final LongHistogram loopNanos = new LongHistogram();
+    private final LongHistogram readyKeys = new LongHistogram();
     private final PlainActionFuture<Boolean> isRunningFuture = PlainActionFuture.newFuture();
+    private final long maxSpinNanos;
+    // only updated by the selector thread
+    private long spinNanos;
+    private volatile long spinHits;
+    private volatile long spinMisses;
     private volatile Thread thread;
+    // handler tracking for the SelectorWatchdog, written by the selector thread and read by the watchdog thread
+    private volatile boolean watched;
+    private volatile RunningHandler runningHandler;
+    // only used by the selector thread
+    private long handlerCount;
+    private int handlerDepth;
+    private String handlerAction;
 
     ESSelector(EventHandler eventHandler) throws IOException {
         this(eventHandler, Selector.open());
     }
 
     ESSelector(EventHandler eventHandler, Selector selector) throws IOException {
+        this(eventHandler, selector, 0);
+    }
+
+    /**
+     * Creates a selector that polls the raw selector with {@link Selector#selectNow()} for up to the given
+     * spin time before it blocks in a select call. This trades CPU for lower latency. The spin time adapts:
+     * it doubles, up to the maximum, whenever spinning finds ready keys and it halves whenever it does not.
+     *
+     * @param eventHandler the event handler
+     * @param selector the raw selector
+     * @param maxSpinNanos the maximum spin time in nanoseconds, 0 disables spinning
+     */
+    ESSelector(EventHandler eventHandler, Selector selector, long maxSpinNanos) throws IOException {
         this.eventHandler = eventHandler;
         this.selector = selector;
+        this.maxSpinNanos = maxSpinNanos;
+        this.spinNanos = maxSpinNanos;
     }
 
     /**
@@ -78,10 +115,15 @@ public abstract class ESSelector implements Closeable {
 
     void singleLoop() {
         try {
+            // must be reset before the queues are drained, anything queued after this point issues a new wakeup
+            wakeupPending.set(false);
+            long startNanos = System.nanoTime();
             closePendingChannels();
             preSelect();
+            long preSelectNanos = System.nanoTime() - startNanos;
 
-            int ready = selector.select(300);
+            int ready = select();
+            startNanos = System.nanoTime();
             if (ready > 0) {
                 Set<SelectionKey> selectionKeys = selector.selectedKeys();
                 Iterator<SelectionKey> keyIterator = selectionKeys.iterator();
@@ -99,6 +141,9 @@ public abstract class ESSelector implements Closeable {
                     }
                 }
             }
+            // the time blocked in select is left out, it only measures how long the selector is busy
+            loopNanos.record(preSelectNanos + System.nanoTime() - startNanos);
+            readyKeys.record(ready);
         } catch (ClosedSelectorException e) {
             if (isOpen()) {
                 throw e;
@@ -110,6 +155,35 @@ public abstract class ESSelector implements Closeable {
         }
     }
 
+    private int select() throws IOException {
+        if (maxSpinNanos > 0) {
+            final long deadline = System.nanoTime() + spinNanos;
+            do {
+                int ready = selector.selectNow();
+                if (ready > 0) {
+                    spinNanos = Math.min(maxSpinNanos, spinNanos << 1);
+                    spinHits++;
+                    return ready;
+                } else if (wakeupPending.get()) {
+                    // work was queued with the selector, go back to the loop so it is handled without blocking
+                    return 0;
+                }
+            } while (System.nanoTime() - deadline < 0);
+            spinNanos = Math.max(MIN_SPIN_NANOS, spinNanos >> 1);
+            spinMisses++;
+        }
+        return selector.select(selectTimeoutMillis());
+    }
+
+    /**
+     * Returns how long a blocking select call may wait for ready keys.
+     *
+     * @return the select timeout in milliseconds
+     */
+    long selectTimeoutMillis() {
+        return 300;
+    }
+
     void cleanupAndCloseChannels() {
         cleanup();
         channelsToClose.addAll(selector.keys().stream().map(sk -> (NioChannel) sk.attachment()).collect(Collectors.toList()));
@@ -144,9 +218,73 @@ public abstract class ESSelector implements Closeable {
         return Thread.currentThread() == thread;
     }
 
+    /**
+     * Wakes up the selector if it is blocked in, or about to enter, a select call. At most one wakeup is
+     * issued per select cycle. Wakeups from the selector thread itself are suppressed as the selector will
+     * drain its queues before it selects again.
+     */
     void wakeup() {
-        // TODO: Do we need the wakeup optimizations that some other libraries use?
-        selector.wakeup();
+        if (isOnCurrentThread() == false && wakeupPending.compareAndSet(false, true)) {
+            issuedWakeups.increment();
+            selector.wakeup();
+        } else {
+            suppressedWakeups.increment();
+        }
+    }
+
+    /**
+     * Returns the number of wakeups that resulted in a call to {@link Selector#wakeup()}.
+     *
+     * @return the number of issued wakeups
+     */
+    public long getIssuedWakeups() {
+        return issuedWakeups.sum();
+    }
+
+    /**
+     * Returns the number of wakeups that were skipped because the selector was running on the calling
+     * thread or a wakeup was already pending for the current select cycle.
+     *
+     * @return the number of suppressed wakeups
+     */
+    public long getSuppressedWakeups() {
+        return suppressedWakeups.sum();
+    }
+
+    /**
+     * Returns the time in nanoseconds each loop spent outside of the raw select call.
+     *
+     * @return the histogram of busy time per loop
+     */
+    public LongHistogram getLoopNanos() {
+        return loopNanos;
+    }
+
+    /**
+     * Returns the number of keys that were ready after each select call.
+     *
+     * @return the histogram of ready keys per loop
+     */
+    public LongHistogram getReadyKeys() {
+        return readyKeys;
+    }
+
+    /**
+     * Returns the number of times spinning found ready keys before the spin time ran out.
+     *
+     * @return the number of spin hits
+     */
+    public long getSpinHits() {
+        return spinHits;
+    }
+
+    /**
+     * Returns the number of times the spin time ran out and the selector fell back to a blocking select.
+     *
+     * @return the number of spin misses
+     */
+    public long getSpinMisses() {
+        return spinMisses;
     }
 
     @Override
@@ -214,10 +352,107 @@ public abstract class ESSelector implements Closeable {
         }
     }
 
+    /**
+     * Marks the start of a handler invocation on the selector thread. This is a no-op unless the selector is
+     * watched by a {@link SelectorWatchdog}. Nested invocations are attributed to the outermost one.
+     *
+     * @param action the name of the handler
+     * @param target the channel, listener or task that is handled
+     */
+    void beginHandler(String action, Object target) {
+        if (watched && handlerDepth++ == 0) {
+            handlerAction = action;
+            runningHandler = new RunningHandler(++handlerCount, System.nanoTime(), action, target, thread);
+        }
+    }
+
+    /**
+     * Marks the end of the handler invocation started by the last call to {@link #beginHandler(String, Object)}.
+     */
+    void endHandler() {
+        if (watched && handlerDepth > 0 && --handlerDepth == 0) {
+            runningHandler = null;
+        }
+    }
+
+    /**
+     * Marks the start of handling a message of the given transport action within the running handler invocation.
+     * Until {@link #endTransportAction()} is called the time is reported as an invocation of its own that carries
+     * the transport action, so a slow message is not hidden behind the name of the handler that read it.
+     *
+     * @param transportAction the action of the message
+     */
+    void beginTransportAction(String transportAction) {
+        RunningHandler handler = runningHandler;
+        if (handler != null) {
+            runningHandler = new RunningHandler(++handlerCount, System.nanoTime(), transportAction, handler.target, thread);
+        }
+    }
+
+    /**
+     * Marks the end of the message started by the last call to {@link #beginTransportAction(String)}, the rest of
+     * the running handler invocation is reported under the name of the handler again.
+     */
+    void endTransportAction() {
+        RunningHandler handler = runningHandler;
+        if (handler != null) {
+            runningHandler = new RunningHandler(++handlerCount, System.nanoTime(), handlerAction, handler.target, thread);
+        }
+    }
+
+    boolean isWatched() {
+        return watched;
+    }
+
+    void setWatched(boolean watched) {
+        this.watched = watched;
+    }
+
+    /**
+     * Returns the handler invocation that has been running on the selector thread since at least the given
+     * time, or null if there is none.
+     *
+     * @param startedBeforeNanos the latest start time in nanoseconds
+     * @return the running invocation
+     */
+    RunningHandler getHandlerStartedBefore(long startedBeforeNanos) {
+        RunningHandler handler = runningHandler;
+        if (handler == null || handler.startNanos - startedBeforeNanos > 0) {
+            return null;
+        }
+        return handler;
+    }
+
+    /**
+     * A handler invocation on the selector thread. Each invocation is published as a new immutable instance, so the
+     * watchdog always reads a consistent snapshot.
+     */
+    static final class RunningHandler {
+
+        final long id;
+        final long startNanos;
+        final String action;
+        final Object target;
+        final Thread thread;
+
+        private RunningHandler(long id, long startNanos, String action, Object target, Thread thread) {
+            this.id = id;
+            this.startNanos = startNanos;
+            this.action = action;
+            this.target = target;
+            this.thread = thread;
+        }
+    }
+
     private void closePendingChannels() {
         NioChannel channel;
         while ((channel = channelsToClose.poll()) != null) {
-            eventHandler.handleClose(channel);
+            beginHandler("close", channel);
+            try {
+                eventHandler.handleClose(channel);
+            } finally {
+                endHandler();
+            }
         }
     }
 }
@@ -0,0 +1,84 @@
+package org.elasticsearch.transport.nio;
+
+import org.elasticsearch.action.ActionListener;
+import org.elasticsearch.common.bytes.BytesReference;
+import org.elasticsearch.transport.nio.channel.NioSocketChannel;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+
+/**
+ * A write operation for a header followed by a region of a file. The header is written from its buffers like
+ * any other operation. The file region is then transferred with {@link FileChannel#transferTo} on the selector
+ * thread, so its bytes are copied from the file to the socket by the kernel and never reach the heap. This is
+ * meant for large payloads that already sit in a file, such as the chunks of a file recovery. The operation is
+ * never part of a gathering write.
+ */
+public class FileRegionWriteOperation extends WriteOperation {
+
+    private final FileChannel file;
+    private final long position;
+    private final long count;
+    private long transferred;
+
+    public FileRegionWriteOperation(NioSocketChannel channel, BytesReference header, FileChannel file, long position, long count,
+                                    ActionListener<Void> listener) {
+        super(channel, header, listener);
+        if (position < 0 || count < 0) {
+            throw new IllegalArgumentException("file region position [" + position + "] and count [" + count
+                + "] must not be negative");
+        }
+        this.file = file;
+        this.position = position;
+        this.count = count;
+    }
+
+    @Override
+    public int flush() throws IOException {
+        int written = 0;
+        if (super.getRemaining() > 0) {
+            written = super.flush();
+            if (super.getRemaining() > 0) {
+                return written;
+            }
+        }
+        while (transferred < count) {
+            long filePosition = position + transferred;
+            int transferredNow = getChannel().transferFrom(file, filePosition, (int) Math.min(count - transferred, Integer.MAX_VALUE));
+            if (transferredNow == 0) {
+                if (filePosition >= file.size()) {
+                    // transferTo returns 0 past the end of the file, the region could never be completed
+                    throw new EOFException("file region [" + position + "-" + (position + count) + "] ends past the end of the file ["
+                        + file.size() + "]");
+                }
+                // the socket send buffer is full
+                break;
+            }
+            transferred += transferredNow;
+            written += transferredNow;
+        }
+        return written;
+    }
+
+    @Override
+    public boolean isFullyFlushed() {
+        return super.isFullyFlushed() && transferred == count;
+    }
+
+    /**
+     * Returns the number of bytes of the header and the file region that have not been written yet, capped at
+     * {@link Integer#MAX_VALUE}.
+     *
+     * @return the remaining bytes
+     */
+    @Override
+    public int getRemaining() {
+        return (int) Math.min(Integer.MAX_VALUE, super.getRemaining() + count - transferred);
+    }
+
+    @Override
+    public boolean isGatherable() {
+        return false;
+    }
+}
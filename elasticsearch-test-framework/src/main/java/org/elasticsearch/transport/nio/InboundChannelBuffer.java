@@ -73,6 +73,32 @@ public final class InboundChannelBuffer implements Releasable {
         }
     }
 
+    /**
+     * Releases the pages past the current index back to their recycler. The pages are allocated again by
+     * the next call to {@link #ensureCapacity(long)}, so this should be called for channels that are not
+     * expected to read for some time.
+     */
+    public void releaseUnusedPages() {
+        if (isClosed.get()) {
+            return;
+        }
+        if (internalIndex == 0) {
+            // nothing is buffered, so the offset into the first page can be dropped as well
+            Page page;
+            while ((page = pages.pollLast()) != null) {
+                page.close();
+            }
+            capacity = 0;
+            offset = 0;
+        } else {
+            int pagesInUse = numPages(internalIndex + offset);
+            while (pages.size() > pagesInUse) {
+                pages.removeLast().close();
+                capacity -= PAGE_SIZE;
+            }
+        }
+    }
+
     /**
      * This method will release bytes from the head of this buffer. If you release bytes past the current
      * index the index is truncated to zero.
@@ -164,6 +190,70 @@ public final class InboundChannelBuffer implements Releasable {
         return buffers;
     }
 
+    /**
+     * This method will return an array of {@link ByteBuffer} representing the bytes from the from index
+     * up to the to index of this buffer. The buffers will be duplicates of the internal buffers, so any
+     * modifications to the markers {@link ByteBuffer#position()}, {@link ByteBuffer#limit()}, etc will not
+     * modify the this class.
+     *
+     * @param from the index to slice from
+     * @param to the index to slice up to
+     * @return the byte buffers
+     */
+    public ByteBuffer[] sliceBuffers(long from, long to) {
+        if (from < 0 || from > to || to > capacity) {
+            throw new IndexOutOfBoundsException("can't slice a channel buffer with capacity [" + capacity +
+                "], with slice parameters from [" + from + "] to [" + to + "]");
+        } else if (from == to) {
+            return EMPTY_BYTE_BUFFER_ARRAY;
+        }
+        long fromWithOffset = from + offset;
+        long lastWithOffset = to + offset - 1;
+        int firstPageIndex = pageIndex(fromWithOffset);
+
+        ByteBuffer[] buffers = new ByteBuffer[pageIndex(lastWithOffset) - firstPageIndex + 1];
+        Iterator<Page> pageIterator = pages.iterator();
+        for (int i = 0; i < firstPageIndex; ++i) {
+            pageIterator.next();
+        }
+        for (int i = 0; i < buffers.length; ++i) {
+            buffers[i] = pageIterator.next().byteBuffer.duplicate();
+        }
+        ByteBuffer lastBuffer = buffers[buffers.length - 1];
+        lastBuffer.limit(lastBuffer.position() + indexInPage(lastWithOffset) + 1);
+        ByteBuffer firstBuffer = buffers[0];
+        firstBuffer.position(firstBuffer.position() + indexInPage(fromWithOffset));
+
+        return buffers;
+    }
+
+    /**
+     * This method will return the byte at the index passed. The byte is read in place, no buffers are
+     * duplicated or sliced.
+     *
+     * @param index the index of the byte
+     * @return the byte
+     */
+    public byte getByte(long index) {
+        if (index < 0 || index >= capacity) {
+            throw new IndexOutOfBoundsException("can't get byte [" + index + "] from a channel buffer with capacity [" +
+                capacity + "]");
+        }
+        long indexWithOffset = index + offset;
+        int pageIndex = pageIndex(indexWithOffset);
+        ByteBuffer byteBuffer;
+        if (pageIndex == 0) {
+            byteBuffer = pages.peekFirst().byteBuffer;
+        } else {
+            Iterator<Page> pageIterator = pages.iterator();
+            for (int i = 0; i < pageIndex; ++i) {
+                pageIterator.next();
+            }
+            byteBuffer = pageIterator.next().byteBuffer;
+        }
+        return byteBuffer.get(byteBuffer.position() + indexInPage(indexWithOffset));
+    }
+
     public void incrementIndex(long delta) {
         if (delta < 0) {
             throw new IllegalArgumentException("Cannot increment an index with a negative delta [" + delta + "]");
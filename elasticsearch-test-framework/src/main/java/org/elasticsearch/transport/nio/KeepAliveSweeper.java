@@ -0,0 +1,112 @@
+package org.elasticsearch.transport.nio;
+
+import org.elasticsearch.action.ActionListener;
+import org.elasticsearch.common.bytes.BytesArray;
+import org.elasticsearch.common.bytes.BytesReference;
+import org.elasticsearch.transport.nio.channel.NioSocketChannel;
+import org.elasticsearch.transport.nio.channel.ReadContext;
+import org.elasticsearch.transport.nio.channel.WriteContext;
+
+/**
+ * Periodically sweeps the channels of a {@link SocketSelector} on its selector thread. Channels that did not
+ * write for the ping interval are sent a ping frame, which the other side reads and drops, so that an idle
+ * connection still shows activity to its peer. Channels that did not read anything, pings included, for the
+ * timeout are closed as the peer is considered dead or the connection half-open. Channels that did not read
+ * for the ping interval release the pages of their read buffer that do not hold any bytes. Channels with queued
+ * writes or with pending writes above the high water mark are not idle and are not pinged, so pings do not add to
+ * the backlog of a slow peer.
+ * <p>
+ * A channel is only kept open by the timeout if its peer writes at least every timeout, so the peer should
+ * ping at a shorter interval, either through this sweeper or through the transport ping schedule.
+ */
+public final class KeepAliveSweeper {
+
+    // the header of a message with a length of -1, see TcpFrameDecoder
+    private static final BytesReference PING = new BytesArray(new byte[] {'E', 'S', -1, -1, -1, -1});
+
+    private final SocketSelector selector;
+    private final long pingIntervalNanos;
+    private final long timeoutNanos;
+    private final ActionListener<Void> pingListener;
+    private volatile long pingsSent;
+    private volatile long channelsClosed;
+
+    /**
+     * @param selector the selector whose channels are swept
+     * @param pingIntervalNanos the time without writes after which a ping is sent, this is also the sweep interval
+     * @param timeoutNanos the time without reads after which a channel is closed, -1 to never close channels
+     */
+    public KeepAliveSweeper(SocketSelector selector, long pingIntervalNanos, long timeoutNanos) {
+        if (pingIntervalNanos <= 0) {
+            throw new IllegalArgumentException("ping interval must be positive but was [" + pingIntervalNanos + "]");
+        }
+        this.selector = selector;
+        this.pingIntervalNanos = pingIntervalNanos;
+        this.timeoutNanos = timeoutNanos;
+        // a failed ping is not acted on here, the write failure is handled by the write path of the channel
+        this.pingListener = ActionListener.wrap(v -> {}, e -> {});
+    }
+
+    /**
+     * Schedules the first sweep. This can be called from any thread.
+     */
+    public void start() {
+        selector.queueTask(this::scheduleSweep);
+    }
+
+    /**
+     * @return the number of pings that were sent
+     */
+    public long getPingsSent() {
+        return pingsSent;
+    }
+
+    /**
+     * @return the number of channels that were closed because they did not read for the timeout
+     */
+    public long getChannelsClosed() {
+        return channelsClosed;
+    }
+
+    private void scheduleSweep() {
+        if (selector.isOpen()) {
+            selector.scheduleTimeout(pingIntervalNanos, () -> {
+                try {
+                    sweep(System.nanoTime());
+                } finally {
+                    scheduleSweep();
+                }
+            });
+        }
+    }
+
+    // Package visibility for testing
+    void sweep(long nowNanos) {
+        assert selector.isOnCurrentThread() : "Must be on selector thread to sweep channels";
+        for (NioSocketChannel channel : selector.getChannels()) {
+            if (channel.isOpen() == false || channel.isConnectComplete() == false) {
+                // connecting channels are covered by the connect timeout
+                continue;
+            }
+            long readIdleNanos = nowNanos - channel.getLastReadNanos();
+            if (timeoutNanos > 0 && readIdleNanos >= timeoutNanos) {
+                // closing the channel releases all pages of its read buffer
+                channel.close();
+                channelsClosed++;
+                continue;
+            }
+            if (readIdleNanos >= pingIntervalNanos) {
+                ReadContext readContext = channel.getReadContext();
+                if (readContext != null) {
+                    readContext.releaseUnusedBuffers();
+                }
+            }
+            WriteContext writeContext = channel.getWriteContext();
+            if (writeContext != null && nowNanos - channel.getLastWriteNanos() >= pingIntervalNanos
+                && writeContext.hasQueuedWriteOps() == false && writeContext.isBelowHighWaterMark()) {
+                writeContext.sendMessage(PING, pingListener);
+                pingsSent++;
+            }
+        }
+    }
+}
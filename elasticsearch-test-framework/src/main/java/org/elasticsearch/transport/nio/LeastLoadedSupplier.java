@@ -0,0 +1,54 @@
+package org.elasticsearch.transport.nio;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+import java.util.function.ToLongFunction;
+
+/**
+ * Supplies the selector with the lowest load as determined by the load function. Selectors with equal load are
+ * compared by the tie breaker, which should reflect assignments right away when the load only catches up with them
+ * later. The scan starts at a rotating offset so that selectors that are still equal are handed out in a round robin
+ * fashion. The load is read without any coordination with the selectors, concurrent callers may therefore pick the
+ * same selector.
+ */
+public class LeastLoadedSupplier<S> implements Supplier<S> {
+
+    private final S[] selectors;
+    private final ToLongFunction<S> loadFunction;
+    private final ToLongFunction<S> tieBreaker;
+    private final AtomicInteger counter = new AtomicInteger(0);
+
+    public LeastLoadedSupplier(S[] selectors, ToLongFunction<S> loadFunction) {
+        this(selectors, loadFunction, (s) -> 0L);
+    }
+
+    public LeastLoadedSupplier(S[] selectors, ToLongFunction<S> loadFunction, ToLongFunction<S> tieBreaker) {
+        this.selectors = selectors;
+        this.loadFunction = loadFunction;
+        this.tieBreaker = tieBreaker;
+    }
+
+    @Override
+    public S get() {
+        final int offset = Math.floorMod(counter.getAndIncrement(), selectors.length);
+        S leastLoaded = selectors[offset];
+        long minLoad = loadFunction.applyAsLong(leastLoaded);
+        long minTie = tieBreaker.applyAsLong(leastLoaded);
+        for (int i = 1; i < selectors.length && (minLoad > 0 || minTie > 0); ++i) {
+            S selector = selectors[(offset + i) % selectors.length];
+            long load = loadFunction.applyAsLong(selector);
+            if (load < minLoad) {
+                leastLoaded = selector;
+                minLoad = load;
+                minTie = tieBreaker.applyAsLong(selector);
+            } else if (load == minLoad) {
+                long tie = tieBreaker.applyAsLong(selector);
+                if (tie < minTie) {
+                    leastLoaded = selector;
+                    minTie = tie;
+                }
+            }
+        }
+        return leastLoaded;
+    }
+}
@@ -0,0 +1,97 @@
+package org.elasticsearch.transport.nio;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A histogram of non-negative long values with one bucket per power of two. Recording is cheap enough to
+ * be done for every iteration of a selector loop. The reported percentiles are the upper bounds of the
+ * buckets, so they are accurate to within a factor of two. A histogram has a single writer, normally the
+ * selector thread, while any thread may read it. Values are published with lazy sets, a reader may
+ * therefore see slightly stale counts.
+ */
+public class LongHistogram {
+
+    private static final int BUCKETS = 64;
+    // the last slots hold the total count, the sum and the max
+    private static final int COUNT = BUCKETS;
+    private static final int SUM = BUCKETS + 1;
+    private static final int MAX = BUCKETS + 2;
+
+    private final AtomicLongArray values = new AtomicLongArray(BUCKETS + 3);
+
+    public void record(long value) {
+        if (value < 0) {
+            value = 0;
+        }
+        int bucket = BUCKETS - Long.numberOfLeadingZeros(value);
+        values.lazySet(bucket, values.get(bucket) + 1);
+        values.lazySet(COUNT, values.get(COUNT) + 1);
+        values.lazySet(SUM, values.get(SUM) + value);
+        if (value > values.get(MAX)) {
+            values.lazySet(MAX, value);
+        }
+    }
+
+    public long getCount() {
+        return values.get(COUNT);
+    }
+
+    public long getSum() {
+        return values.get(SUM);
+    }
+
+    public long getMax() {
+        return values.get(MAX);
+    }
+
+    public double getMean() {
+        long count = getCount();
+        return count == 0 ? 0 : (double) getSum() / count;
+    }
+
+    /**
+     * Returns the upper bound of the bucket containing the given percentile, capped by the max recorded value.
+     *
+     * @param percentile between 0 and 100
+     * @return the estimated value at the percentile
+     */
+    public long getPercentile(double percentile) {
+        if (percentile < 0 || percentile > 100) {
+            throw new IllegalArgumentException("percentile must be between 0 and 100 but was [" + percentile + "]");
+        }
+        long count = getCount();
+        if (count == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(count * percentile / 100));
+        long seen = 0;
+        for (int bucket = 0; bucket < BUCKETS; ++bucket) {
+            seen += values.get(bucket);
+            if (seen >= rank) {
+                // the upper bound of the last bucket overflows to Long.MAX_VALUE
+                long upperBound = bucket == 0 ? 0 : (1L << bucket) - 1;
+                return Math.min(upperBound, getMax());
+            }
+        }
+        return getMax();
+    }
+
+    /**
+     * Returns a copy of this histogram that is not affected by later recordings.
+     *
+     * @return the copy
+     */
+    public LongHistogram snapshot() {
+        LongHistogram snapshot = new LongHistogram();
+        for (int i = 0; i < values.length(); ++i) {
+            snapshot.values.lazySet(i, values.get(i));
+        }
+        return snapshot;
+    }
+
+    @Override
+    public String toString() {
+        return "{count=" + getCount() + ", mean=" + getMean() + ", p50=" + getPercentile(50) + ", p99=" + getPercentile(99)
+            + ", max=" + getMax() + "}";
+    }
+}
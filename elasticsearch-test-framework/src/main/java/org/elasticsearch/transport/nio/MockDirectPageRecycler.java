@@ -0,0 +1,85 @@
+package org.elasticsearch.transport.nio;
+
+import org.elasticsearch.common.recycler.Recycler.V;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.util.set.Sets;
+import org.elasticsearch.test.ESTestCase;
+
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * A {@link DirectPageRecycler} that keeps track of acquired pages, see
+ * {@link org.elasticsearch.common.util.MockPageCacheRecycler}.
+ */
+public class MockDirectPageRecycler extends DirectPageRecycler {
+
+    private static final ConcurrentMap<Object, Throwable> ACQUIRED_PAGES = new ConcurrentHashMap<>();
+
+    public static void ensureAllPagesAreReleased() throws Exception {
+        final Map<Object, Throwable> masterCopy = new HashMap<>(ACQUIRED_PAGES);
+        if (!masterCopy.isEmpty()) {
+            // not empty, we might be executing on a shared cluster that keeps on obtaining
+            // and releasing pages, lets make sure that after a reasonable timeout, all master
+            // copy (snapshot) have been released
+            boolean success =
+                    ESTestCase.awaitBusy(() -> Sets.haveEmptyIntersection(masterCopy.keySet(), ACQUIRED_PAGES.keySet()));
+            if (!success) {
+                masterCopy.keySet().retainAll(ACQUIRED_PAGES.keySet());
+                ACQUIRED_PAGES.keySet().removeAll(masterCopy.keySet()); // remove all existing master copy we will report on
+                if (!masterCopy.isEmpty()) {
+                    final Throwable t = masterCopy.entrySet().iterator().next().getValue();
+                    throw new RuntimeException(masterCopy.size() + " direct pages have not been released", t);
+                }
+            }
+        }
+    }
+
+    private final Random random;
+
+    public MockDirectPageRecycler(Settings settings) {
+        super(settings);
+        // see MockPageCacheRecycler, the random bytes only serve to detect reads from released pages
+        random = new Random(0);
+    }
+
+    @Override
+    public V<ByteBuffer> directPage() {
+        final V<ByteBuffer> page = super.directPage();
+        fillRandom(page.v());
+        ACQUIRED_PAGES.put(page, new Throwable());
+        return new V<ByteBuffer>() {
+
+            @Override
+            public void close() {
+                final Throwable t = ACQUIRED_PAGES.remove(page);
+                if (t == null) {
+                    throw new IllegalStateException("Releasing a direct page that has not been acquired");
+                }
+                fillRandom(page.v());
+                page.close();
+            }
+
+            @Override
+            public ByteBuffer v() {
+                return page.v();
+            }
+
+            @Override
+            public boolean isRecycled() {
+                return page.isRecycled();
+            }
+        };
+    }
+
+    private void fillRandom(ByteBuffer buffer) {
+        final byte value = (byte) random.nextInt(1 << 8);
+        for (int i = 0; i < buffer.capacity(); ++i) {
+            buffer.put(i, value);
+        }
+    }
+}
@@ -2,13 +2,16 @@ package org.elasticsearch.transport.nio;
 
 import org.apache.logging.log4j.Logger;
 import org.apache.lucene.util.IOUtils;
+import org.elasticsearch.action.ActionListener;
 import org.elasticsearch.transport.nio.channel.ChannelFactory;
 import org.elasticsearch.transport.nio.channel.NioServerSocketChannel;
 import org.elasticsearch.transport.nio.channel.NioSocketChannel;
 
 import java.io.IOException;
 import java.net.InetSocketAddress;
+import java.nio.channels.Selector;
 import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.function.BiFunction;
@@ -28,12 +31,14 @@ import java.util.stream.Stream;
  */
 public class NioGroup implements AutoCloseable {
 
+    // held while a port is claimed and bound by SO_REUSEPORT server channels
+    private static final Object REUSE_PORT_BIND_LOCK = new Object();
 
     private final ArrayList<AcceptingSelector> acceptors;
     private final RoundRobinSupplier<AcceptingSelector> acceptorSupplier;
 
     private final ArrayList<SocketSelector> socketSelectors;
-    private final RoundRobinSupplier<SocketSelector> socketSelectorSupplier;
+    private final Supplier<SocketSelector> socketSelectorSupplier;
 
     private final AtomicBoolean isOpen = new AtomicBoolean(true);
 
@@ -41,19 +46,38 @@ public class NioGroup implements AutoCloseable {
                     BiFunction<Logger, Supplier<SocketSelector>, AcceptorEventHandler> acceptorEventHandlerFunction,
                     ThreadFactory socketSelectorThreadFactory, int socketSelectorCount,
                     Function<Logger, SocketEventHandler> socketEventHandlerFunction) throws IOException {
+        this(logger, acceptorThreadFactory, acceptorCount, acceptorEventHandlerFunction, socketSelectorThreadFactory,
+            socketSelectorCount, socketEventHandlerFunction, SelectorAssignment.ROUND_ROBIN);
+    }
+
+    public NioGroup(Logger logger, ThreadFactory acceptorThreadFactory, int acceptorCount,
+                    BiFunction<Logger, Supplier<SocketSelector>, AcceptorEventHandler> acceptorEventHandlerFunction,
+                    ThreadFactory socketSelectorThreadFactory, int socketSelectorCount,
+                    Function<Logger, SocketEventHandler> socketEventHandlerFunction,
+                    SelectorAssignment selectorAssignment) throws IOException {
+        this(logger, acceptorThreadFactory, acceptorCount, acceptorEventHandlerFunction, socketSelectorThreadFactory,
+            socketSelectorCount, socketEventHandlerFunction, selectorAssignment, 0);
+    }
+
+    public NioGroup(Logger logger, ThreadFactory acceptorThreadFactory, int acceptorCount,
+                    BiFunction<Logger, Supplier<SocketSelector>, AcceptorEventHandler> acceptorEventHandlerFunction,
+                    ThreadFactory socketSelectorThreadFactory, int socketSelectorCount,
+                    Function<Logger, SocketEventHandler> socketEventHandlerFunction,
+                    SelectorAssignment selectorAssignment, long socketSelectorSpinNanos) throws IOException {
         acceptors = new ArrayList<>(acceptorCount);
         socketSelectors = new ArrayList<>(socketSelectorCount);
 
         try {
             for (int i = 0; i < socketSelectorCount; ++i) {
-                SocketSelector selector = new SocketSelector(socketEventHandlerFunction.apply(logger));
+                SocketSelector selector = new SocketSelector(socketEventHandlerFunction.apply(logger), Selector.open(),
+                    socketSelectorSpinNanos);
                 socketSelectors.add(selector);
             }
             startSelectors(socketSelectors, socketSelectorThreadFactory);
 
             for (int i = 0; i < acceptorCount; ++i) {
                 SocketSelector[] childSelectors = this.socketSelectors.toArray(new SocketSelector[this.socketSelectors.size()]);
-                Supplier<SocketSelector> selectorSupplier = new RoundRobinSupplier<>(childSelectors);
+                Supplier<SocketSelector> selectorSupplier = selectorAssignment.supplier(childSelectors);
                 AcceptingSelector acceptor = new AcceptingSelector(acceptorEventHandlerFunction.apply(logger, selectorSupplier));
                 acceptors.add(acceptor);
             }
@@ -67,7 +91,7 @@ public class NioGroup implements AutoCloseable {
             throw e;
         }
 
-        socketSelectorSupplier = new RoundRobinSupplier<>(socketSelectors.toArray(new SocketSelector[socketSelectors.size()]));
+        socketSelectorSupplier = selectorAssignment.supplier(socketSelectors.toArray(new SocketSelector[socketSelectors.size()]));
         acceptorSupplier = new RoundRobinSupplier<>(acceptors.toArray(new AcceptingSelector[acceptors.size()]));
     }
 
@@ -80,11 +104,95 @@ public class NioGroup implements AutoCloseable {
         return factory.openNioServerSocketChannel(address, acceptorSupplier.get());
     }
 
+    /**
+     * Binds a server channel to the given address. If reusePort is set and this group has more than one
+     * acceptor, then one SO_REUSEPORT server channel is bound per acceptor so that each acceptor has its own
+     * listen queue. The port is claimed without SO_REUSEPORT before, so binding fails if it is in use, and other
+     * transports of this JVM cannot bind it between the claim and the bind of the channels. A process that binds
+     * the port with SO_REUSEPORT in between still shares it. The channel bound by the first acceptor is returned,
+     * closing it closes the others.
+     *
+     * @param address to bind to
+     * @param factory to create the server channels
+     * @param reusePort whether to bind a server channel per acceptor
+     * @param <S> the server channel type
+     * @return the channel bound by the first acceptor
+     * @throws IOException related to binding the channels
+     */
+    public <S extends NioServerSocketChannel> S bindServerChannel(InetSocketAddress address, ChannelFactory<S, ?> factory,
+                                                                  boolean reusePort) throws IOException {
+        if (reusePort == false || acceptors.size() <= 1) {
+            return bindServerChannel(address, factory);
+        }
+        ensureOpen();
+        final S primary;
+        final List<S> siblings = new ArrayList<>(acceptors.size() - 1);
+        synchronized (REUSE_PORT_BIND_LOCK) {
+            // the address may have an ephemeral port, the claimed address has the port that was picked
+            InetSocketAddress claimedAddress = factory.claimServerAddress(address);
+            primary = factory.openReusePortServerSocketChannel(claimedAddress, acceptors.get(0));
+            try {
+                for (int i = 1; i < acceptors.size(); ++i) {
+                    siblings.add(factory.openReusePortServerSocketChannel(claimedAddress, acceptors.get(i)));
+                }
+            } catch (IOException | RuntimeException e) {
+                primary.close();
+                siblings.forEach(NioServerSocketChannel::close);
+                throw e;
+            }
+        }
+        primary.addCloseListener(ActionListener.wrap(v -> siblings.forEach(NioServerSocketChannel::close),
+            e -> siblings.forEach(NioServerSocketChannel::close)));
+        return primary;
+    }
+
     public <S extends NioSocketChannel> S openChannel(InetSocketAddress address, ChannelFactory<?, S> factory) throws IOException {
         ensureOpen();
         return factory.openNioChannel(address, socketSelectorSupplier.get());
     }
 
+    /**
+     * Returns the current load of each socket selector of this group, in the order in which the selectors
+     * were created.
+     *
+     * @return the selector loads
+     */
+    public List<SelectorLoad> getSocketSelectorLoads() {
+        return socketSelectors.stream().map(SocketSelector::getLoad).collect(Collectors.toList());
+    }
+
+    /**
+     * Returns a snapshot of the statistics of each socket selector of this group, in the order in which the
+     * selectors were created.
+     *
+     * @return the selector stats
+     */
+    public List<SelectorStats> getSocketSelectorStats() {
+        return socketSelectors.stream().map(SocketSelector::getStats).collect(Collectors.toList());
+    }
+
+    /**
+     * Has the watchdog watch the handler invocations of every selector of this group.
+     *
+     * @param watchdog the watchdog
+     */
+    public void watch(SelectorWatchdog watchdog) {
+        Stream.concat(acceptors.stream(), socketSelectors.stream()).forEach(watchdog::watch);
+    }
+
+    /**
+     * Starts a {@link KeepAliveSweeper} on every socket selector of this group.
+     *
+     * @param pingIntervalNanos the time without writes after which a channel is pinged
+     * @param timeoutNanos the time without reads after which a channel is closed, -1 to never close channels
+     */
+    public void startKeepAlive(long pingIntervalNanos, long timeoutNanos) {
+        ensureOpen();
+        for (SocketSelector selector : socketSelectors) {
+            new KeepAliveSweeper(selector, pingIntervalNanos, timeoutNanos).start();
+        }
+    }
+
     @Override
     public void close() throws IOException {
         if (isOpen.compareAndSet(true, false)) {
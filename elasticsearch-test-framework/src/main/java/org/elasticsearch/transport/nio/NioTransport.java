@@ -4,13 +4,18 @@ import org.apache.logging.log4j.Logger;
 import org.elasticsearch.ElasticsearchException;
 import org.elasticsearch.action.ActionListener;
 import org.elasticsearch.cluster.node.DiscoveryNode;
+import org.elasticsearch.common.breaker.CircuitBreaker;
 import org.elasticsearch.common.io.stream.NamedWriteableRegistry;
+import org.elasticsearch.common.lease.Releasables;
 import org.elasticsearch.common.network.NetworkService;
 import org.elasticsearch.common.recycler.Recycler;
 import org.elasticsearch.common.settings.Setting;
 import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.unit.ByteSizeUnit;
+import org.elasticsearch.common.unit.ByteSizeValue;
 import org.elasticsearch.common.unit.TimeValue;
 import org.elasticsearch.common.util.BigArrays;
+import org.elasticsearch.common.util.MockPageCacheRecycler;
 import org.elasticsearch.common.util.PageCacheRecycler;
 import org.elasticsearch.common.util.concurrent.EsExecutors;
 import org.elasticsearch.indices.breaker.CircuitBreakerService;
@@ -28,10 +33,15 @@ import org.elasticsearch.transport.nio.channel.TcpWriteContext;
 import java.io.IOException;
 import java.net.InetSocketAddress;
 import java.nio.ByteBuffer;
+import java.util.Locale;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
 import java.util.function.Consumer;
 import java.util.function.Supplier;
 
+import static org.elasticsearch.common.settings.Setting.boolSetting;
+import static org.elasticsearch.common.settings.Setting.byteSizeSetting;
 import static org.elasticsearch.common.settings.Setting.intSetting;
 import static org.elasticsearch.common.util.concurrent.ConcurrentCollections.newConcurrentMap;
 import static org.elasticsearch.common.util.concurrent.EsExecutors.daemonThreadFactory;
@@ -49,9 +59,104 @@ public class NioTransport extends TcpTransport {
     public static final Setting<Integer> NIO_ACCEPTOR_COUNT =
         intSetting("transport.nio.acceptor_count", 1, 1, Setting.Property.NodeScope);
 
+    // binds one SO_REUSEPORT server channel per acceptor instead of sharing a single one, the port is claimed without
+    // SO_REUSEPORT first so that a port in use by another node fails the bind, see NioGroup#bindServerChannel
+    public static final Setting<Boolean> NIO_ACCEPTOR_REUSE_PORT =
+        boolSetting("transport.nio.acceptor.reuse_port", false, Setting.Property.NodeScope);
+
+    public static final Setting<Boolean> NIO_DIRECT_READ_PAGES =
+        boolSetting("transport.nio.direct_read_pages", false, Setting.Property.NodeScope);
+
+    public static final Setting<Boolean> NIO_DIRECT_WRITE_PAGES =
+        boolSetting("transport.nio.direct_write_pages", false, Setting.Property.NodeScope);
+
+    public static final Setting<Integer> NIO_DIRECT_READ_PAGES_POOL_SIZE =
+        intSetting("transport.nio.direct_read_pages.pool_size", 256, 1, Setting.Property.NodeScope);
+
+    public static final Setting<ByteSizeValue> NIO_WRITE_GATHERING_MAX_BYTES =
+        byteSizeSetting("transport.nio.write.gathering_max_bytes", new ByteSizeValue(256, ByteSizeUnit.KB),
+            new ByteSizeValue(0), new ByteSizeValue(Integer.MAX_VALUE), Setting.Property.NodeScope);
+
+    public static final Setting<Integer> NIO_WRITE_GATHERING_MAX_BUFFERS =
+        intSetting("transport.nio.write.gathering_max_buffers", 64, 1, 1024, Setting.Property.NodeScope);
+
+    public static final Setting<Integer> NIO_READ_MIN_PAGES =
+        intSetting("transport.nio.read.min_pages", 1, 1, 1024, Setting.Property.NodeScope);
+
+    public static final Setting<Integer> NIO_READ_MAX_PAGES =
+        intSetting("transport.nio.read.max_pages", 16, 1, 1024, Setting.Property.NodeScope);
+
+    public static final Setting<ByteSizeValue> NIO_READ_BUDGET =
+        byteSizeSetting("transport.nio.read.budget", new ByteSizeValue(1, ByteSizeUnit.MB), new ByteSizeValue(1),
+            new ByteSizeValue(Integer.MAX_VALUE), Setting.Property.NodeScope);
+
+    public static final Setting<ByteSizeValue> NIO_WRITE_HIGH_WATER_MARK =
+        byteSizeSetting("transport.nio.write.high_water_mark", new ByteSizeValue(8, ByteSizeUnit.MB), Setting.Property.NodeScope);
+
+    public static final Setting<ByteSizeValue> NIO_WRITE_LOW_WATER_MARK =
+        byteSizeSetting("transport.nio.write.low_water_mark", new ByteSizeValue(4, ByteSizeUnit.MB), Setting.Property.NodeScope);
+
+    // -1 means that pending writes are not limited
+    public static final Setting<ByteSizeValue> NIO_WRITE_PENDING_LIMIT =
+        byteSizeSetting("transport.nio.write.pending_limit", new ByteSizeValue(-1), Setting.Property.NodeScope);
+
+    public static final Setting<Boolean> NIO_WRITE_PENDING_BREAKER =
+        boolSetting("transport.nio.write.pending_breaker", false, Setting.Property.NodeScope);
+
+    // 0 disables spinning, the selectors block in select right away
+    public static final Setting<TimeValue> NIO_SELECTOR_SPIN_TIME =
+        Setting.timeSetting("transport.nio.selector.spin_time", TimeValue.ZERO, TimeValue.ZERO, Setting.Property.NodeScope);
+
+    // -1 disables the deadline
+    public static final Setting<TimeValue> NIO_READ_TIMEOUT =
+        Setting.timeSetting("transport.nio.read_timeout", TimeValue.MINUS_ONE, TimeValue.MINUS_ONE, Setting.Property.NodeScope);
+
+    // -1 disables the deadline
+    public static final Setting<TimeValue> NIO_IDLE_TIMEOUT =
+        Setting.timeSetting("transport.nio.idle_timeout", TimeValue.MINUS_ONE, TimeValue.MINUS_ONE, Setting.Property.NodeScope);
+
+    // -1 disables keepalive pings and the sweep of idle channels
+    public static final Setting<TimeValue> NIO_KEEPALIVE_INTERVAL =
+        Setting.timeSetting("transport.nio.keepalive.interval", TimeValue.MINUS_ONE, TimeValue.MINUS_ONE, Setting.Property.NodeScope);
+
+    // -1 means that channels are only pinged and never closed by the sweep
+    public static final Setting<TimeValue> NIO_KEEPALIVE_TIMEOUT =
+        Setting.timeSetting("transport.nio.keepalive.timeout", TimeValue.MINUS_ONE, TimeValue.MINUS_ONE, Setting.Property.NodeScope);
+
+    // -1 disables the watchdog
+    public static final Setting<TimeValue> NIO_SLOW_HANDLER_THRESHOLD =
+        Setting.timeSetting("transport.nio.slow_handler_threshold", TimeValue.MINUS_ONE, TimeValue.MINUS_ONE,
+            Setting.Property.NodeScope);
+
+    public static final Setting<SelectorAssignment> NIO_SELECTOR_ASSIGNMENT =
+        new Setting<>("transport.nio.selector_assignment", SelectorAssignment.ROUND_ROBIN.toString(), SelectorAssignment::parse,
+            Setting.Property.NodeScope);
+
+    public static final Setting<DispatchMode> NIO_DISPATCH_MODE =
+        new Setting<>("transport.nio.dispatch_mode", DispatchMode.INLINE.toString(), DispatchMode::parse, Setting.Property.NodeScope);
+
+    public static final Setting.AffixSetting<DispatchMode> NIO_DISPATCH_MODE_PROFILE = Setting.affixKeySetting("transport.profiles.",
+        "nio.dispatch_mode", key -> new Setting<>(key, NIO_DISPATCH_MODE, DispatchMode::parse, Setting.Property.NodeScope));
+
+    public static final Setting<Integer> NIO_DISPATCH_WORKER_COUNT =
+        new Setting<>("transport.nio.dispatch.worker_count",
+            (s) -> Integer.toString(EsExecutors.numberOfProcessors(s)),
+            (s) -> Setting.parseInt(s, 1, "transport.nio.dispatch.worker_count"), Setting.Property.NodeScope);
+
+    public static final Setting<ByteSizeValue> NIO_DISPATCH_HIGH_WATER_MARK =
+        byteSizeSetting("transport.nio.dispatch.high_water_mark", new ByteSizeValue(8, ByteSizeUnit.MB), Setting.Property.NodeScope);
+
+    // each channel queues at most one batch of its messages at a time, if the queue is full the selector handles them itself
+    public static final Setting<Integer> NIO_DISPATCH_QUEUE_SIZE =
+        Setting.intSetting("transport.nio.dispatch.queue_size", 1000, 1, Setting.Property.NodeScope);
+
     private final PageCacheRecycler pageCacheRecycler;
+    private final CircuitBreakerService circuitBreakerService;
     private final ConcurrentMap<String, TcpChannelFactory> profileToChannelFactory = newConcurrentMap();
     private volatile NioGroup nioGroup;
+    private volatile SelectorWatchdog selectorWatchdog;
+    private volatile DirectPageRecycler directPageRecycler;
+    private ExecutorService dispatchExecutor;
     private volatile TcpChannelFactory clientChannelFactory;
 
     public NioTransport(Settings settings, ThreadPool threadPool, NetworkService networkService, BigArrays bigArrays,
@@ -59,12 +164,13 @@ public class NioTransport extends TcpTransport {
                         CircuitBreakerService circuitBreakerService) {
         super("nio", settings, threadPool, bigArrays, circuitBreakerService, namedWriteableRegistry, networkService);
         this.pageCacheRecycler = pageCacheRecycler;
+        this.circuitBreakerService = circuitBreakerService;
     }
 
     @Override
     protected TcpNioServerSocketChannel bind(String name, InetSocketAddress address) throws IOException {
         TcpChannelFactory channelFactory = this.profileToChannelFactory.get(name);
-        return nioGroup.bindServerChannel(address, channelFactory);
+        return nioGroup.bindServerChannel(address, channelFactory, NIO_ACCEPTOR_REUSE_PORT.get(settings));
     }
 
     @Override
@@ -72,6 +178,11 @@ public class NioTransport extends TcpTransport {
         throws IOException {
         TcpNioSocketChannel channel = nioGroup.openChannel(node.getAddress().address(), clientChannelFactory);
         channel.addConnectListener(connectListener);
+        if (connectTimeout != null && connectTimeout.nanos() > 0) {
+            final long startNanos = System.nanoTime();
+            final long timeoutNanos = connectTimeout.nanos();
+            channel.getSelector().queueTask(() -> ChannelDeadlines.scheduleConnectTimeout(channel, startNanos, timeoutNanos));
+        }
         return channel;
     }
 
@@ -84,18 +195,39 @@ public class NioTransport extends TcpTransport {
             if (useNetworkServer) {
                 acceptorCount = NioTransport.NIO_ACCEPTOR_COUNT.get(settings);
             }
+            if (NIO_DIRECT_READ_PAGES.get(settings) || NIO_DIRECT_WRITE_PAGES.get(settings)) {
+                directPageRecycler = createDirectPageRecycler(settings);
+            }
             nioGroup = new NioGroup(logger, daemonThreadFactory(this.settings, TRANSPORT_ACCEPTOR_THREAD_NAME_PREFIX), acceptorCount,
                 AcceptorEventHandler::new, daemonThreadFactory(this.settings, TRANSPORT_WORKER_THREAD_NAME_PREFIX),
-                NioTransport.NIO_WORKER_COUNT.get(settings), this::getSocketEventHandler);
+                NioTransport.NIO_WORKER_COUNT.get(settings), this::getSocketEventHandler, NIO_SELECTOR_ASSIGNMENT.get(settings),
+                NIO_SELECTOR_SPIN_TIME.get(settings).nanos());
+            final long keepAliveIntervalNanos = NIO_KEEPALIVE_INTERVAL.get(settings).nanos();
+            if (keepAliveIntervalNanos > 0) {
+                final long keepAliveTimeoutNanos = NIO_KEEPALIVE_TIMEOUT.get(settings).nanos();
+                if (keepAliveTimeoutNanos > 0 && keepAliveTimeoutNanos <= keepAliveIntervalNanos) {
+                    throw new IllegalArgumentException("[" + NIO_KEEPALIVE_TIMEOUT.getKey() + "] must be greater than ["
+                        + NIO_KEEPALIVE_INTERVAL.getKey() + "]");
+                }
+                nioGroup.startKeepAlive(keepAliveIntervalNanos, keepAliveTimeoutNanos);
+            }
+            final long slowHandlerThresholdNanos = NIO_SLOW_HANDLER_THRESHOLD.get(settings).nanos();
+            if (slowHandlerThresholdNanos > 0) {
+                selectorWatchdog = new SelectorWatchdog(daemonThreadFactory(this.settings, "nio_selector_watchdog"),
+                    slowHandlerThresholdNanos, this::onSlowHandler);
+                nioGroup.watch(selectorWatchdog);
+            }
 
             ProfileSettings clientProfileSettings = new ProfileSettings(settings, "default");
-            clientChannelFactory = new TcpChannelFactory(clientProfileSettings, getContextSetter("client"), getServerContextSetter());
+            Consumer<NioSocketChannel> clientContextSetter = getContextSetter("client", NIO_DISPATCH_MODE.get(settings));
+            clientChannelFactory = new TcpChannelFactory(clientProfileSettings, clientContextSetter, getServerContextSetter());
 
             if (useNetworkServer) {
                 // loop through all profiles and start them up, special handling for default one
                 for (ProfileSettings profileSettings : profileSettings) {
                     String profileName = profileSettings.profileName;
-                    Consumer<NioSocketChannel> contextSetter = getContextSetter(profileName);
+                    DispatchMode dispatchMode = NIO_DISPATCH_MODE_PROFILE.getConcreteSettingForNamespace(profileName).get(settings);
+                    Consumer<NioSocketChannel> contextSetter = getContextSetter(profileName, dispatchMode);
                     TcpChannelFactory factory = new TcpChannelFactory(profileSettings, contextSetter, getServerContextSetter());
                     profileToChannelFactory.putIfAbsent(profileName, factory);
                     bindServer(profileSettings);
@@ -116,29 +248,153 @@ public class NioTransport extends TcpTransport {
     @Override
     protected void stopInternal() {
         try {
+            if (logger.isDebugEnabled()) {
+                logger.debug("nio stats on stop: {}", new NioTransportStats(nioGroup.getSocketSelectorStats()));
+            }
             nioGroup.close();
         } catch (Exception e) {
             logger.warn("unexpected exception while stopping nio group", e);
         }
+        if (selectorWatchdog != null) {
+            selectorWatchdog.close();
+        }
         profileToChannelFactory.clear();
+        Releasables.close(directPageRecycler);
+        synchronized (this) {
+            if (dispatchExecutor != null) {
+                ThreadPool.terminate(dispatchExecutor, 10, TimeUnit.SECONDS);
+            }
+        }
+    }
+
+    /**
+     * Returns the event loop statistics of this transport. The transport must be started.
+     *
+     * @return the nio stats
+     */
+    public NioTransportStats getNioStats() {
+        final NioGroup nioGroup = this.nioGroup;
+        if (nioGroup == null) {
+            throw new IllegalStateException("transport has not been started");
+        }
+        return new NioTransportStats(nioGroup.getSocketSelectorStats());
+    }
+
+    /**
+     * Returns the number of handler invocations that blocked a selector thread for longer than
+     * {@link #NIO_SLOW_HANDLER_THRESHOLD}. Tests can assert that this is 0 to check that nothing blocks the
+     * selector threads. This is always 0 if the watchdog is disabled.
+     *
+     * @return the number of slow handlers
+     */
+    public long getSlowHandlerCount() {
+        final SelectorWatchdog selectorWatchdog = this.selectorWatchdog;
+        return selectorWatchdog == null ? 0 : selectorWatchdog.getSlowHandlerCount();
+    }
+
+    /**
+     * Called by the selector watchdog for each handler invocation that ran for longer than
+     * {@link #NIO_SLOW_HANDLER_THRESHOLD} on a selector thread.
+     *
+     * @param slowHandler the slow handler invocation
+     */
+    protected void onSlowHandler(SelectorWatchdog.SlowHandler slowHandler) {
+        logger.warn("{}", slowHandler);
     }
 
     protected SocketEventHandler getSocketEventHandler(Logger logger) {
         return new SocketEventHandler(logger);
     }
 
+    /**
+     * Creates the recycler of direct pages used if {@link #NIO_DIRECT_READ_PAGES} or {@link #NIO_DIRECT_WRITE_PAGES}
+     * is enabled. Pages are tracked for leaks if this transport runs with a {@link MockPageCacheRecycler}.
+     */
+    protected DirectPageRecycler createDirectPageRecycler(Settings settings) {
+        if (pageCacheRecycler instanceof MockPageCacheRecycler) {
+            return new MockDirectPageRecycler(settings);
+        }
+        return new DirectPageRecycler(settings);
+    }
+
     final void exceptionCaught(NioSocketChannel channel, Exception exception) {
         onException((TcpNioSocketChannel) channel, exception);
     }
 
-    private Consumer<NioSocketChannel> getContextSetter(String profileName) {
+    private Consumer<NioSocketChannel> getContextSetter(String profileName, DispatchMode dispatchMode) {
+        final int maxGatheringBytes = Math.toIntExact(NIO_WRITE_GATHERING_MAX_BYTES.get(settings).getBytes());
+        final int maxGatheringBuffers = NIO_WRITE_GATHERING_MAX_BUFFERS.get(settings);
+        final long writeHighWaterMark = NIO_WRITE_HIGH_WATER_MARK.get(settings).getBytes();
+        final long writeLowWaterMark = NIO_WRITE_LOW_WATER_MARK.get(settings).getBytes();
+        if (writeLowWaterMark > writeHighWaterMark) {
+            throw new IllegalArgumentException("[" + NIO_WRITE_LOW_WATER_MARK.getKey() + "] must not be greater than ["
+                + NIO_WRITE_HIGH_WATER_MARK.getKey() + "]");
+        }
+        final long pendingLimit = NIO_WRITE_PENDING_LIMIT.get(settings).getBytes();
+        final CircuitBreaker breaker = NIO_WRITE_PENDING_BREAKER.get(settings)
+            ? circuitBreakerService.getBreaker(CircuitBreaker.IN_FLIGHT_REQUESTS) : null;
+        final int minReadPages = NIO_READ_MIN_PAGES.get(settings);
+        final int maxReadPages = NIO_READ_MAX_PAGES.get(settings);
+        if (minReadPages > maxReadPages) {
+            throw new IllegalArgumentException("[" + NIO_READ_MIN_PAGES.getKey() + "] must not be greater than ["
+                + NIO_READ_MAX_PAGES.getKey() + "]");
+        }
+        final long readBudget = NIO_READ_BUDGET.get(settings).getBytes();
+        final DirectPageRecycler directPageRecycler = this.directPageRecycler;
+        final Supplier<Recycler.V<ByteBuffer>> writePageSupplier = NIO_DIRECT_WRITE_PAGES.get(settings) && directPageRecycler != null
+            ? directPageRecycler::directPage : null;
+        final long readTimeoutNanos = NIO_READ_TIMEOUT.get(settings).nanos();
+        final long idleTimeoutNanos = NIO_IDLE_TIMEOUT.get(settings).nanos();
+        final Supplier<TcpReadHandler> readHandlerSupplier;
+        if (dispatchMode == DispatchMode.WORKER) {
+            final ExecutorService executor = getDispatchExecutor();
+            final long dispatchHighWaterMark = NIO_DISPATCH_HIGH_WATER_MARK.get(settings).getBytes();
+            readHandlerSupplier = () -> new DispatchingTcpReadHandler(profileName, this, executor, dispatchHighWaterMark);
+        } else {
+            readHandlerSupplier = () -> new TcpReadHandler(profileName, this);
+        }
         return (c) -> {
-            Supplier<InboundChannelBuffer.Page> pageSupplier = () -> {
-                Recycler.V<byte[]> bytes = pageCacheRecycler.bytePage(false);
-                return new InboundChannelBuffer.Page(ByteBuffer.wrap(bytes.v()), bytes);
+            Supplier<InboundChannelBuffer.Page> pageSupplier = getPageSupplier();
+            TcpReadContext readContext = new TcpReadContext(c, readHandlerSupplier.get(), new InboundChannelBuffer(pageSupplier),
+                minReadPages, maxReadPages, readBudget);
+            c.setContexts(readContext,
+                new TcpWriteContext(c, maxGatheringBytes, maxGatheringBuffers, writeHighWaterMark, writeLowWaterMark, pendingLimit,
+                    breaker, writePageSupplier),
+                this::exceptionCaught);
+            if (readTimeoutNanos > 0 || idleTimeoutNanos > 0) {
+                c.getSelector().queueTask(() -> {
+                    if (readTimeoutNanos > 0) {
+                        ChannelDeadlines.scheduleReadDeadline(c, readTimeoutNanos);
+                    }
+                    if (idleTimeoutNanos > 0) {
+                        ChannelDeadlines.scheduleIdleDeadline(c, idleTimeoutNanos);
+                    }
+                });
+            }
+        };
+    }
+
+    private synchronized ExecutorService getDispatchExecutor() {
+        if (dispatchExecutor == null) {
+            // dispatch threads carry the worker prefix as they handle messages just like the selector threads do
+            dispatchExecutor = EsExecutors.newFixed(TRANSPORT_WORKER_THREAD_NAME_PREFIX + "_dispatch",
+                NIO_DISPATCH_WORKER_COUNT.get(settings), NIO_DISPATCH_QUEUE_SIZE.get(settings),
+                daemonThreadFactory(this.settings, TRANSPORT_WORKER_THREAD_NAME_PREFIX + "_dispatch"), threadPool.getThreadContext());
+        }
+        return dispatchExecutor;
+    }
+
+    private Supplier<InboundChannelBuffer.Page> getPageSupplier() {
+        final DirectPageRecycler directPageRecycler = this.directPageRecycler;
+        if (directPageRecycler != null && NIO_DIRECT_READ_PAGES.get(settings)) {
+            return () -> {
+                Recycler.V<ByteBuffer> page = directPageRecycler.directPage();
+                return new InboundChannelBuffer.Page(page.v(), page);
             };
-            c.setContexts(new TcpReadContext(c, new TcpReadHandler(profileName, this), new InboundChannelBuffer(pageSupplier)),
-                new TcpWriteContext(c), this::exceptionCaught);
+        }
+        return () -> {
+            Recycler.V<byte[]> bytes = pageCacheRecycler.bytePage(false);
+            return new InboundChannelBuffer.Page(ByteBuffer.wrap(bytes.v()), bytes);
         };
     }
 
@@ -150,4 +406,30 @@ public class NioTransport extends TcpTransport {
     private Consumer<NioServerSocketChannel> getServerContextSetter() {
         return (c) -> c.setAcceptContext(this::acceptChannel);
     }
+
+    /**
+     * Determines where inbound messages are handled. {@link #INLINE} handles messages on the selector thread
+     * that read them, {@link #WORKER} hands them to a pool of dispatch threads while keeping the order of the
+     * messages of a channel.
+     */
+    public enum DispatchMode {
+        INLINE,
+        WORKER;
+
+        public static DispatchMode parse(String value) {
+            switch (value) {
+                case "inline":
+                    return INLINE;
+                case "worker":
+                    return WORKER;
+                default:
+                    throw new IllegalArgumentException("unknown nio dispatch mode [" + value + "], must be one of [inline, worker]");
+            }
+        }
+
+        @Override
+        public String toString() {
+            return name().toLowerCase(Locale.ROOT);
+        }
+    }
 }
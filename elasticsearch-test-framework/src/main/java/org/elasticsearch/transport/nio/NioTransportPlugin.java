@@ -2,6 +2,7 @@ package org.elasticsearch.transport.nio;
 
 import org.elasticsearch.common.io.stream.NamedWriteableRegistry;
 import org.elasticsearch.common.network.NetworkService;
+import org.elasticsearch.common.settings.Setting;
 import org.elasticsearch.common.settings.Settings;
 import org.elasticsearch.common.util.BigArrays;
 import org.elasticsearch.common.util.PageCacheRecycler;
@@ -11,7 +12,9 @@ import org.elasticsearch.plugins.Plugin;
 import org.elasticsearch.threadpool.ThreadPool;
 import org.elasticsearch.transport.Transport;
 
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.List;
 import java.util.Map;
 import java.util.function.Supplier;
 
@@ -19,6 +22,36 @@ public class NioTransportPlugin extends Plugin implements NetworkPlugin {
 
     public static final String NIO_TRANSPORT_NAME = "nio-transport";
 
+    @Override
+    public List<Setting<?>> getSettings() {
+        return Arrays.asList(
+            NioTransport.NIO_ACCEPTOR_REUSE_PORT,
+            NioTransport.NIO_DIRECT_READ_PAGES,
+            NioTransport.NIO_DIRECT_READ_PAGES_POOL_SIZE,
+            NioTransport.NIO_DIRECT_WRITE_PAGES,
+            NioTransport.NIO_WRITE_GATHERING_MAX_BYTES,
+            NioTransport.NIO_WRITE_GATHERING_MAX_BUFFERS,
+            NioTransport.NIO_READ_MIN_PAGES,
+            NioTransport.NIO_READ_MAX_PAGES,
+            NioTransport.NIO_READ_BUDGET,
+            NioTransport.NIO_WRITE_HIGH_WATER_MARK,
+            NioTransport.NIO_WRITE_LOW_WATER_MARK,
+            NioTransport.NIO_WRITE_PENDING_LIMIT,
+            NioTransport.NIO_WRITE_PENDING_BREAKER,
+            NioTransport.NIO_SELECTOR_ASSIGNMENT,
+            NioTransport.NIO_SELECTOR_SPIN_TIME,
+            NioTransport.NIO_SLOW_HANDLER_THRESHOLD,
+            NioTransport.NIO_KEEPALIVE_INTERVAL,
+            NioTransport.NIO_KEEPALIVE_TIMEOUT,
+            NioTransport.NIO_READ_TIMEOUT,
+            NioTransport.NIO_IDLE_TIMEOUT,
+            NioTransport.NIO_DISPATCH_MODE,
+            NioTransport.NIO_DISPATCH_MODE_PROFILE,
+            NioTransport.NIO_DISPATCH_WORKER_COUNT,
+            NioTransport.NIO_DISPATCH_HIGH_WATER_MARK,
+            NioTransport.NIO_DISPATCH_QUEUE_SIZE);
+    }
+
     @Override
     public Map<String, Supplier<Transport>> getTransports(Settings settings, ThreadPool threadPool, BigArrays bigArrays,
                                                           PageCacheRecycler pageCacheRecycler,
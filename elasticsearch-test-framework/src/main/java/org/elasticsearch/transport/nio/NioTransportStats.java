@@ -0,0 +1,45 @@
+package org.elasticsearch.transport.nio;
+
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * The event loop statistics of a {@link NioTransport}. The transport stats of core have no room for
+ * selector level metrics, so they are exposed through this object instead.
+ */
+public class NioTransportStats {
+
+    private final List<SelectorStats> selectors;
+
+    public NioTransportStats(List<SelectorStats> selectors) {
+        this.selectors = Collections.unmodifiableList(selectors);
+    }
+
+    /**
+     * @return the stats of each socket selector in the order in which the selectors were created
+     */
+    public List<SelectorStats> getSelectors() {
+        return selectors;
+    }
+
+    /**
+     * Returns the channels that transferred the most bytes across all selectors.
+     *
+     * @param limit the maximum number of channels to return
+     * @return the channels sorted by bytes transferred in descending order
+     */
+    public List<ChannelStats> getHottestChannels(int limit) {
+        return selectors.stream()
+            .flatMap(s -> s.getChannels().stream())
+            .sorted(Comparator.comparingLong(ChannelStats::getTotalBytes).reversed())
+            .limit(limit)
+            .collect(Collectors.toList());
+    }
+
+    @Override
+    public String toString() {
+        return "NioTransportStats{selectors=" + selectors + ", hottestChannels=" + getHottestChannels(5) + "}";
+    }
+}
@@ -0,0 +1,109 @@
+package org.elasticsearch.transport.nio;
+
+import org.elasticsearch.common.io.stream.StreamOutput;
+import org.elasticsearch.common.lease.Releasable;
+import org.elasticsearch.common.lease.Releasables;
+import org.elasticsearch.common.recycler.Recycler;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.function.Supplier;
+
+/**
+ * A {@link StreamOutput} that writes into recycled {@link ByteBuffer} pages, for example the direct pages of a
+ * {@link DirectPageRecycler}. The written pages can be handed to a {@link WriteOperation}, which takes
+ * ownership of them and releases them once the operation completes. Otherwise the pages must be released by
+ * closing the stream.
+ */
+public class PagedByteBufferStreamOutput extends StreamOutput implements Releasable {
+
+    private final Supplier<Recycler.V<ByteBuffer>> pageSupplier;
+    private final ArrayList<Recycler.V<ByteBuffer>> pages = new ArrayList<>();
+    private ByteBuffer currentPage;
+    private long size;
+    private boolean closed;
+
+    public PagedByteBufferStreamOutput(Supplier<Recycler.V<ByteBuffer>> pageSupplier) {
+        this.pageSupplier = pageSupplier;
+    }
+
+    @Override
+    public void writeByte(byte b) {
+        ensurePage();
+        currentPage.put(b);
+        size++;
+    }
+
+    @Override
+    public void writeBytes(byte[] b, int offset, int length) {
+        while (length > 0) {
+            ensurePage();
+            int toWrite = Math.min(currentPage.remaining(), length);
+            currentPage.put(b, offset, toWrite);
+            offset += toWrite;
+            length -= toWrite;
+            size += toWrite;
+        }
+    }
+
+    @Override
+    public void flush() {
+    }
+
+    @Override
+    public void reset() {
+        releasePages();
+        size = 0;
+    }
+
+    /**
+     * @return the number of bytes written to this stream
+     */
+    public long size() {
+        return size;
+    }
+
+    /**
+     * Returns buffers over the written bytes of the pages. The buffers share their content with the pages, so
+     * they must not be used once the pages were released.
+     *
+     * @return a buffer per page
+     */
+    public ByteBuffer[] toByteBuffers() {
+        ByteBuffer[] buffers = new ByteBuffer[pages.size()];
+        for (int i = 0; i < buffers.length; ++i) {
+            ByteBuffer buffer = pages.get(i).v().duplicate();
+            buffer.flip();
+            buffers[i] = buffer;
+        }
+        return buffers;
+    }
+
+    @Override
+    public void close() {
+        if (closed == false) {
+            closed = true;
+            releasePages();
+        }
+    }
+
+    private void ensurePage() {
+        if (closed) {
+            throw new IllegalStateException("stream is already closed");
+        }
+        if (currentPage == null || currentPage.hasRemaining() == false) {
+            Recycler.V<ByteBuffer> page = pageSupplier.get();
+            pages.add(page);
+            currentPage = page.v();
+        }
+    }
+
+    private void releasePages() {
+        try {
+            Releasables.close(pages);
+        } finally {
+            pages.clear();
+            currentPage = null;
+        }
+    }
+}
@@ -7,14 +7,21 @@ public class RoundRobinSupplier<S> implements Supplier<S> {
 
     private final S[] selectors;
     private final int count;
-    private AtomicInteger counter = new AtomicInteger(0);
+    private final AtomicInteger counter;
 
     public RoundRobinSupplier(S[] selectors) {
+        this(selectors, 0);
+    }
+
+    // pkg-private for testing
+    RoundRobinSupplier(S[] selectors, int initialCounter) {
         this.count = selectors.length;
         this.selectors = selectors;
+        this.counter = new AtomicInteger(initialCounter);
     }
 
     public S get() {
-        return selectors[counter.getAndIncrement() % count];
+        // the counter wraps around to negative values on overflow which must not produce a negative index
+        return selectors[Math.floorMod(counter.getAndIncrement(), count)];
     }
 }
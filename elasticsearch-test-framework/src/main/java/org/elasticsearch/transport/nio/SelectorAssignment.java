@@ -0,0 +1,60 @@
+package org.elasticsearch.transport.nio;
+
+import java.util.Locale;
+import java.util.function.Supplier;
+
+/**
+ * Determines which {@link SocketSelector} a new channel is registered with.
+ */
+public enum SelectorAssignment {
+
+    /**
+     * Hands out the selectors in turn.
+     */
+    ROUND_ROBIN {
+        @Override
+        Supplier<SocketSelector> supplier(SocketSelector[] selectors) {
+            return new RoundRobinSupplier<>(selectors);
+        }
+    },
+    /**
+     * Hands out the selector with the fewest open channels.
+     */
+    LEAST_CHANNELS {
+        @Override
+        Supplier<SocketSelector> supplier(SocketSelector[] selectors) {
+            return new LeastLoadedSupplier<>(selectors, SocketSelector::getChannelCount);
+        }
+    },
+    /**
+     * Hands out the selector that read and wrote the fewest bytes recently. The recent bytes only change once per load
+     * window, so selectors with equal recent bytes are compared by their channels, which count new channels right away.
+     */
+    LEAST_RECENT_BYTES {
+        @Override
+        Supplier<SocketSelector> supplier(SocketSelector[] selectors) {
+            return new LeastLoadedSupplier<>(selectors, SocketSelector::getRecentBytes, SocketSelector::getChannelCount);
+        }
+    };
+
+    abstract Supplier<SocketSelector> supplier(SocketSelector[] selectors);
+
+    public static SelectorAssignment parse(String value) {
+        switch (value) {
+            case "round_robin":
+                return ROUND_ROBIN;
+            case "least_channels":
+                return LEAST_CHANNELS;
+            case "least_recent_bytes":
+                return LEAST_RECENT_BYTES;
+            default:
+                throw new IllegalArgumentException("unknown nio selector assignment [" + value
+                    + "], must be one of [round_robin, least_channels, least_recent_bytes]");
+        }
+    }
+
+    @Override
+    public String toString() {
+        return name().toLowerCase(Locale.ROOT);
+    }
+}
@@ -0,0 +1,43 @@
+package org.elasticsearch.transport.nio;
+
+/**
+ * A point in time view of the load of a {@link SocketSelector}.
+ */
+public class SelectorLoad {
+
+    private final int channelCount;
+    private final long recentBytes;
+    private final long totalBytes;
+
+    public SelectorLoad(int channelCount, long recentBytes, long totalBytes) {
+        this.channelCount = channelCount;
+        this.recentBytes = recentBytes;
+        this.totalBytes = totalBytes;
+    }
+
+    /**
+     * @return the number of channels registered with the selector that have not been closed
+     */
+    public int getChannelCount() {
+        return channelCount;
+    }
+
+    /**
+     * @return the decayed average of bytes read and written by the selector per second
+     */
+    public long getRecentBytes() {
+        return recentBytes;
+    }
+
+    /**
+     * @return the bytes read and written by the selector since it was created
+     */
+    public long getTotalBytes() {
+        return totalBytes;
+    }
+
+    @Override
+    public String toString() {
+        return "SelectorLoad{channels=" + channelCount + ", recentBytes=" + recentBytes + ", totalBytes=" + totalBytes + "}";
+    }
+}
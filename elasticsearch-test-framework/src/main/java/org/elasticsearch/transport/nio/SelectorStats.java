@@ -0,0 +1,83 @@
+package org.elasticsearch.transport.nio;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A point in time view of the statistics of a {@link SocketSelector}. The histograms are snapshots that
+ * are not affected by later activity of the selector.
+ */
+public class SelectorStats {
+
+    private final SelectorLoad load;
+    private final LongHistogram loopNanos;
+    private final LongHistogram readyKeys;
+    private final LongHistogram queuedWriteDepth;
+    private final LongHistogram listenerNanos;
+    private final long issuedWakeups;
+    private final long suppressedWakeups;
+    private final List<ChannelStats> channels;
+
+    public SelectorStats(SelectorLoad load, LongHistogram loopNanos, LongHistogram readyKeys, LongHistogram queuedWriteDepth,
+                         LongHistogram listenerNanos, long issuedWakeups, long suppressedWakeups, List<ChannelStats> channels) {
+        this.load = load;
+        this.loopNanos = loopNanos;
+        this.readyKeys = readyKeys;
+        this.queuedWriteDepth = queuedWriteDepth;
+        this.listenerNanos = listenerNanos;
+        this.issuedWakeups = issuedWakeups;
+        this.suppressedWakeups = suppressedWakeups;
+        this.channels = Collections.unmodifiableList(channels);
+    }
+
+    public SelectorLoad getLoad() {
+        return load;
+    }
+
+    /**
+     * @return the time in nanoseconds each loop spent outside of the raw select call
+     */
+    public LongHistogram getLoopNanos() {
+        return loopNanos;
+    }
+
+    /**
+     * @return the number of ready keys per select call
+     */
+    public LongHistogram getReadyKeys() {
+        return readyKeys;
+    }
+
+    /**
+     * @return the number of writes queued by other threads that were picked up per loop
+     */
+    public LongHistogram getQueuedWriteDepth() {
+        return queuedWriteDepth;
+    }
+
+    /**
+     * @return the time in nanoseconds spent executing listeners on the selector thread
+     */
+    public LongHistogram getListenerNanos() {
+        return listenerNanos;
+    }
+
+    public long getIssuedWakeups() {
+        return issuedWakeups;
+    }
+
+    public long getSuppressedWakeups() {
+        return suppressedWakeups;
+    }
+
+    public List<ChannelStats> getChannels() {
+        return channels;
+    }
+
+    @Override
+    public String toString() {
+        return "SelectorStats{load=" + load + ", loopNanos=" + loopNanos + ", readyKeys=" + readyKeys
+            + ", queuedWriteDepth=" + queuedWriteDepth + ", listenerNanos=" + listenerNanos + ", issuedWakeups=" + issuedWakeups
+            + ", suppressedWakeups=" + suppressedWakeups + ", channels=" + channels.size() + "}";
+    }
+}
@@ -0,0 +1,190 @@
+package org.elasticsearch.transport.nio;
+
+import org.elasticsearch.common.unit.TimeValue;
+
+import java.io.Closeable;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * Watches the handler invocations of a set of {@link ESSelector}s from a dedicated thread. Every handler that
+ * runs on a selector thread for longer than the threshold is reported once, together with a stack trace of the
+ * selector thread that is sampled while the handler is still running. Any blocking call in a handler stalls
+ * all channels of the selector, so this is meant to find the handlers that block.
+ */
+public class SelectorWatchdog implements Closeable {
+
+    private static final StackTraceElement[] NO_STACK_TRACE = new StackTraceElement[0];
+
+    private final long thresholdNanos;
+    private final long intervalMillis;
+    private final Consumer<SlowHandler> slowHandlerConsumer;
+    private final List<ESSelector> selectors = new CopyOnWriteArrayList<>();
+    private final Map<ESSelector, Long> lastReported = new ConcurrentHashMap<>();
+    private final LongAdder slowHandlerCount = new LongAdder();
+    private final CountDownLatch closed = new CountDownLatch(1);
+    private final CountDownLatch exited = new CountDownLatch(1);
+
+    /**
+     * Creates a watchdog and starts its thread.
+     *
+     * @param threadFactory to create the watchdog thread
+     * @param thresholdNanos the time after which a handler invocation is reported
+     * @param slowHandlerConsumer to call with each slow handler invocation
+     */
+    public SelectorWatchdog(ThreadFactory threadFactory, long thresholdNanos, Consumer<SlowHandler> slowHandlerConsumer) {
+        if (thresholdNanos <= 0) {
+            throw new IllegalArgumentException("threshold must be positive but was [" + thresholdNanos + "]");
+        }
+        this.thresholdNanos = thresholdNanos;
+        // checking a few times per threshold bounds how late a slow handler is caught
+        this.intervalMillis = Math.max(1, TimeUnit.NANOSECONDS.toMillis(thresholdNanos) / 4);
+        this.slowHandlerConsumer = slowHandlerConsumer;
+        threadFactory.newThread(this::run).start();
+    }
+
+    /**
+     * Starts watching the handler invocations of the selector.
+     *
+     * @param selector to watch
+     */
+    public void watch(ESSelector selector) {
+        selector.setWatched(true);
+        selectors.add(selector);
+    }
+
+    /**
+     * Returns the number of handler invocations that ran for longer than the threshold.
+     *
+     * @return the number of slow handlers
+     */
+    public long getSlowHandlerCount() {
+        return slowHandlerCount.sum();
+    }
+
+    @Override
+    public void close() {
+        closed.countDown();
+        try {
+            exited.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Thread was interrupted while waiting for the selector watchdog to stop", e);
+        }
+    }
+
+    private void run() {
+        try {
+            while (closed.await(intervalMillis, TimeUnit.MILLISECONDS) == false) {
+                check(System.nanoTime());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            exited.countDown();
+        }
+    }
+
+    // Package visibility for testing
+    void check(long nowNanos) {
+        final long startedBeforeNanos = nowNanos - thresholdNanos;
+        for (ESSelector selector : selectors) {
+            ESSelector.RunningHandler handler = selector.getHandlerStartedBefore(startedBeforeNanos);
+            if (handler != null && Long.valueOf(handler.id).equals(lastReported.put(selector, handler.id)) == false) {
+                StackTraceElement[] stackTrace = sampleStackTrace(handler.thread);
+                ESSelector.RunningHandler stillRunning = selector.getHandlerStartedBefore(startedBeforeNanos);
+                if (stillRunning != handler) {
+                    // the handler returned while the stack was sampled, the stack trace shows something else
+                    stackTrace = NO_STACK_TRACE;
+                }
+                slowHandlerCount.increment();
+                String threadName = handler.thread == null ? "unknown" : handler.thread.getName();
+                slowHandlerConsumer.accept(new SlowHandler(threadName, handler.action, String.valueOf(handler.target),
+                    nowNanos - handler.startNanos, stackTrace));
+            }
+        }
+    }
+
+    private static StackTraceElement[] sampleStackTrace(Thread thread) {
+        if (thread == null) {
+            return NO_STACK_TRACE;
+        }
+        try {
+            return thread.getStackTrace();
+        } catch (SecurityException e) {
+            return NO_STACK_TRACE;
+        }
+    }
+
+    /**
+     * A handler invocation on a selector thread that ran for longer than the threshold of the watchdog.
+     */
+    public static final class SlowHandler {
+
+        private final String threadName;
+        private final String action;
+        private final String target;
+        private final long elapsedNanos;
+        private final StackTraceElement[] stackTrace;
+
+        SlowHandler(String threadName, String action, String target, long elapsedNanos, StackTraceElement[] stackTrace) {
+            this.threadName = threadName;
+            this.action = action;
+            this.target = target;
+            this.elapsedNanos = elapsedNanos;
+            this.stackTrace = stackTrace;
+        }
+
+        public String getThreadName() {
+            return threadName;
+        }
+
+        /**
+         * Returns the transport action of the message that was handled, or the name of the handler if the action is
+         * not known, for example read, write, listener or task.
+         */
+        public String getAction() {
+            return action;
+        }
+
+        /**
+         * Returns the channel, listener or task the handler was invoked for.
+         */
+        public String getTarget() {
+            return target;
+        }
+
+        /**
+         * Returns how long the handler had been running when it was found, it may have run for longer.
+         */
+        public long getElapsedNanos() {
+            return elapsedNanos;
+        }
+
+        /**
+         * Returns the stack trace of the selector thread sampled while the handler was running. This is empty
+         * if the stack trace could not be sampled in time.
+         */
+        public StackTraceElement[] getStackTrace() {
+            return stackTrace;
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder builder = new StringBuilder("slow [").append(action).append("] handler on [").append(threadName)
+                .append("] for [").append(target).append("] has been running for [")
+                .append(TimeValue.timeValueNanos(elapsedNanos)).append("]");
+            for (StackTraceElement element : stackTrace) {
+                builder.append("\n\tat ").append(element);
+            }
+            return builder.toString();
+        }
+    }
+}
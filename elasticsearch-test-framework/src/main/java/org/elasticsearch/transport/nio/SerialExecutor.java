@@ -0,0 +1,87 @@
+package org.elasticsearch.transport.nio;
+
+import org.elasticsearch.common.util.concurrent.EsRejectedExecutionException;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * An executor that runs its tasks one at a time and in submission order on a shared executor. This is used
+ * to hand the messages of a channel to a pool of worker threads without losing the order in which they were
+ * read. To be fair to other channels sharing the executor, at most {@link #MAX_TASKS_PER_RUN} tasks are run
+ * before the remaining tasks are resubmitted. If the shared executor rejects the tasks because its queue is
+ * full, they run on the submitting thread instead, which throttles the submitter.
+ */
+public class SerialExecutor implements Executor {
+
+    static final int MAX_TASKS_PER_RUN = 16;
+
+    private final Executor executor;
+    private final ConcurrentLinkedQueue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger pendingTasks = new AtomicInteger();
+
+    public SerialExecutor(Executor executor) {
+        this.executor = executor;
+    }
+
+    @Override
+    public void execute(Runnable task) {
+        tasks.offer(task);
+        if (pendingTasks.getAndIncrement() == 0 && trySubmit() == false) {
+            runTasks();
+        }
+    }
+
+    /**
+     * Returns the number of tasks that have been submitted and have not completed yet.
+     *
+     * @return the number of pending tasks
+     */
+    public int getPendingTasks() {
+        return pendingTasks.get();
+    }
+
+    private boolean trySubmit() {
+        try {
+            executor.execute(this::runTasks);
+            return true;
+        } catch (EsRejectedExecutionException e) {
+            if (e.isExecutorShutdown()) {
+                throw e;
+            }
+            return false;
+        }
+    }
+
+    private void runTasks() {
+        while (runBatch() && trySubmit() == false) {
+            // the shared executor is saturated, keep running the remaining tasks on this thread
+        }
+    }
+
+    /**
+     * Runs up to {@link #MAX_TASKS_PER_RUN} tasks.
+     *
+     * @return whether tasks are left that need another run
+     */
+    private boolean runBatch() {
+        for (int i = 0; i < MAX_TASKS_PER_RUN; ++i) {
+            Runnable task = tasks.poll();
+            assert task != null : "a pending task must be queued";
+            try {
+                task.run();
+            } catch (RuntimeException | Error e) {
+                // a failing task must not stall the tasks submitted after it
+                if (pendingTasks.decrementAndGet() != 0 && trySubmit() == false) {
+                    runTasks();
+                }
+                throw e;
+            }
+            if (pendingTasks.decrementAndGet() == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -138,6 +138,16 @@ public class SocketEventHandler extends EventHandler {
         logger.warn(new ParameterizedMessage("exception while executing listener: {}", listener), exception);
     }
 
+    /**
+     * This method is called when a task queued with the selector throws an exception.
+     *
+     * @param task that was run
+     * @param exception that occurred
+     */
+    void taskException(Runnable task, Exception exception) {
+        logger.warn(new ParameterizedMessage("exception while running selector task: {}", task), exception);
+    }
+
     private void exceptionCaught(NioSocketChannel channel, Exception e) {
         channel.getExceptionContext().accept(channel, e);
     }
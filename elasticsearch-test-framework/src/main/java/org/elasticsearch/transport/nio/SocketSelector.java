@@ -1,6 +1,7 @@
 package org.elasticsearch.transport.nio;
 
 import org.elasticsearch.action.ActionListener;
+import org.elasticsearch.common.util.concurrent.ConcurrentCollections;
 import org.elasticsearch.transport.nio.channel.NioSocketChannel;
 import org.elasticsearch.transport.nio.channel.SelectionKeyUtils;
 import org.elasticsearch.transport.nio.channel.WriteContext;
@@ -10,7 +11,12 @@ import java.nio.channels.ClosedChannelException;
 import java.nio.channels.ClosedSelectorException;
 import java.nio.channels.SelectionKey;
 import java.nio.channels.Selector;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
 import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Selector implementation that handles {@link NioSocketChannel}. It's main piece of functionality is
@@ -18,9 +24,21 @@ import java.util.concurrent.ConcurrentLinkedQueue;
  */
 public class SocketSelector extends ESSelector {
 
+    private static final long LOAD_WINDOW_NANOS = TimeUnit.SECONDS.toNanos(1);
+
     private final ConcurrentLinkedQueue<NioSocketChannel> newChannels = new ConcurrentLinkedQueue<>();
     private final ConcurrentLinkedQueue<WriteOperation> queuedWrites = new ConcurrentLinkedQueue<>();
+    private final ConcurrentLinkedQueue<Runnable> queuedTasks = new ConcurrentLinkedQueue<>();
     private final SocketEventHandler eventHandler;
+    private final TimerWheel timerWheel = new TimerWheel(System.nanoTime());
+    private final Set<NioSocketChannel> channels = ConcurrentCollections.newConcurrentSet();
+    private final LongHistogram queuedWriteDepth = new LongHistogram();
+    private final LongHistogram listenerNanos = new LongHistogram();
+    // only updated by the selector thread
+    private long loadWindowStart = System.nanoTime();
+    private long loadWindowBytes;
+    private volatile long recentBytes;
+    private volatile long totalBytes;
 
     public SocketSelector(SocketEventHandler eventHandler) throws IOException {
         super(eventHandler);
@@ -32,12 +50,22 @@ public class SocketSelector extends ESSelector {
         this.eventHandler = eventHandler;
     }
 
+    public SocketSelector(SocketEventHandler eventHandler, Selector selector, long maxSpinNanos) throws IOException {
+        super(eventHandler, selector, maxSpinNanos);
+        this.eventHandler = eventHandler;
+    }
+
     @Override
     void processKey(SelectionKey selectionKey) {
         NioSocketChannel nioSocketChannel = (NioSocketChannel) selectionKey.attachment();
         int ops = selectionKey.readyOps();
         if ((ops & SelectionKey.OP_CONNECT) != 0) {
-            attemptConnect(nioSocketChannel, true);
+            beginHandler("connect", nioSocketChannel);
+            try {
+                attemptConnect(nioSocketChannel, true);
+            } finally {
+                endHandler();
+            }
         }
 
         if (nioSocketChannel.isConnectComplete()) {
@@ -53,8 +81,22 @@ public class SocketSelector extends ESSelector {
 
     @Override
     void preSelect() {
+        updateRecentBytes();
         setUpNewChannels();
         handleQueuedWrites();
+        runQueuedTasks();
+        timerWheel.advance(System.nanoTime());
+    }
+
+    @Override
+    long selectTimeoutMillis() {
+        long nanos = timerWheel.nanosUntilNextDeadline(System.nanoTime());
+        if (nanos == -1) {
+            return super.selectTimeoutMillis();
+        }
+        // wake up for the tick of the earliest timeout, rounded up as a timeout of 0 would block without a limit
+        long millis = Math.max(1, TimeUnit.NANOSECONDS.toMillis(nanos + TimeUnit.MILLISECONDS.toNanos(1) - 1));
+        return Math.min(millis, super.selectTimeoutMillis());
     }
 
     @Override
@@ -63,6 +105,7 @@ public class SocketSelector extends ESSelector {
         while ((op = queuedWrites.poll()) != null) {
             executeFailedListener(op.getListener(), new ClosedSelectorException());
         }
+        queuedTasks.clear();
         channelsToClose.addAll(newChannels);
     }
 
@@ -74,9 +117,72 @@ public class SocketSelector extends ESSelector {
     public void scheduleForRegistration(NioSocketChannel nioSocketChannel) {
         newChannels.offer(nioSocketChannel);
         ensureSelectorOpenForEnqueuing(newChannels, nioSocketChannel);
+        channels.add(nioSocketChannel);
+        nioSocketChannel.addCloseListener(ActionListener.wrap(v -> channels.remove(nioSocketChannel),
+            e -> channels.remove(nioSocketChannel)));
         wakeup();
     }
 
+    /**
+     * Records bytes that were read from or written to a channel of this selector. This method should only be
+     * called by the selector thread.
+     *
+     * @param bytes the number of bytes transferred
+     */
+    public void recordBytes(int bytes) {
+        loadWindowBytes += bytes;
+        totalBytes += bytes;
+    }
+
+    /**
+     * Returns the number of channels that were scheduled for registration with this selector and have not
+     * been closed yet.
+     *
+     * @return the number of channels
+     */
+    public int getChannelCount() {
+        return channels.size();
+    }
+
+    /**
+     * Returns the channels that were scheduled for registration with this selector and have not been closed yet.
+     *
+     * @return a read-only view of the channels
+     */
+    Set<NioSocketChannel> getChannels() {
+        return Collections.unmodifiableSet(channels);
+    }
+
+    /**
+     * Returns the decayed average of the bytes read and written per second by the channels of this selector.
+     *
+     * @return the recent bytes
+     */
+    public long getRecentBytes() {
+        return recentBytes;
+    }
+
+    public SelectorLoad getLoad() {
+        return new SelectorLoad(channels.size(), recentBytes, totalBytes);
+    }
+
+    /**
+     * Returns a snapshot of the statistics of this selector and of the channels registered with it.
+     *
+     * @return the selector stats
+     */
+    public SelectorStats getStats() {
+        List<ChannelStats> channelStats = new ArrayList<>();
+        for (NioSocketChannel channel : channels) {
+            WriteContext writeContext = channel.getWriteContext();
+            long pendingWriteBytes = writeContext == null ? 0 : writeContext.getPendingWriteBytes();
+            channelStats.add(new ChannelStats(channel.getRemoteAddress(), channel.getBytesRead(), channel.getBytesWritten(),
+                pendingWriteBytes));
+        }
+        return new SelectorStats(getLoad(), getLoopNanos().snapshot(), getReadyKeys().snapshot(), queuedWriteDepth.snapshot(),
+            listenerNanos.snapshot(), getIssuedWakeups(), getSuppressedWakeups(), channelStats);
+    }
+
 
     /**
      * Queues a write operation to be handled by the event loop. This can be called by any thread and is the
@@ -96,6 +202,43 @@ public class SocketSelector extends ESSelector {
         }
     }
 
+    /**
+     * Queues a task to be run by the event loop. This can be called by any thread and is the api available
+     * for non-selector threads to act on channels, for example to change the interest ops of a channel. Tasks
+     * that are still queued when the selector is closed are dropped.
+     *
+     * @param task to be run on the selector thread
+     */
+    public void queueTask(Runnable task) {
+        queuedTasks.offer(task);
+        if (isOpen()) {
+            wakeup();
+        }
+    }
+
+    /**
+     * Schedules a task to run on the selector thread once the delay has passed. This can only be called from
+     * the selector thread, other threads can schedule a timeout from a task queued with
+     * {@link #queueTask(Runnable)}.
+     *
+     * @param delayNanos the delay in nanoseconds
+     * @param task the task to run
+     * @return the timeout, which can be cancelled from the selector thread
+     */
+    public TimerWheel.Timeout scheduleTimeout(long delayNanos, Runnable task) {
+        assert isOnCurrentThread() : "Must be on selector thread to schedule timeouts";
+        return timerWheel.schedule(System.nanoTime(), delayNanos, () -> {
+            beginHandler("timeout", task);
+            try {
+                task.run();
+            } catch (Exception e) {
+                eventHandler.taskException(task, e);
+            } finally {
+                endHandler();
+            }
+        });
+    }
+
     /**
      * Queues a write operation directly in a channel's buffer. Channel buffers are only safe to be accessed
      * by the selector thread. As a result, this method should only be called by the selector thread.
@@ -123,10 +266,15 @@ public class SocketSelector extends ESSelector {
      */
     public <V> void executeListener(ActionListener<V> listener, V value) {
         assert isOnCurrentThread() : "Must be on selector thread";
+        long startNanos = System.nanoTime();
+        beginHandler("listener", listener);
         try {
             listener.onResponse(value);
         } catch (Exception e) {
             eventHandler.listenerException(listener, e);
+        } finally {
+            endHandler();
+            listenerNanos.record(System.nanoTime() - startNanos);
         }
     }
 
@@ -139,38 +287,76 @@ public class SocketSelector extends ESSelector {
      */
     public <V> void executeFailedListener(ActionListener<V> listener, Exception exception) {
         assert isOnCurrentThread() : "Must be on selector thread";
+        long startNanos = System.nanoTime();
+        beginHandler("listener", listener);
         try {
             listener.onFailure(exception);
         } catch (Exception e) {
             eventHandler.listenerException(listener, e);
+        } finally {
+            endHandler();
+            listenerNanos.record(System.nanoTime() - startNanos);
         }
     }
 
     private void handleWrite(NioSocketChannel nioSocketChannel) {
+        beginHandler("write", nioSocketChannel);
         try {
             eventHandler.handleWrite(nioSocketChannel);
         } catch (Exception e) {
             eventHandler.writeException(nioSocketChannel, e);
+        } finally {
+            endHandler();
         }
     }
 
     private void handleRead(NioSocketChannel nioSocketChannel) {
+        beginHandler("read", nioSocketChannel);
         try {
             eventHandler.handleRead(nioSocketChannel);
         } catch (Exception e) {
             eventHandler.readException(nioSocketChannel, e);
+        } finally {
+            endHandler();
         }
     }
 
     private void handleQueuedWrites() {
         WriteOperation writeOperation;
+        int depth = 0;
         while ((writeOperation = queuedWrites.poll()) != null) {
+            depth++;
             if (writeOperation.getChannel().isWritable()) {
                 queueWriteInChannelBuffer(writeOperation);
             } else {
                 executeFailedListener(writeOperation.getListener(), new ClosedChannelException());
             }
         }
+        queuedWriteDepth.record(depth);
+    }
+
+    private void updateRecentBytes() {
+        long now = System.nanoTime();
+        if (now - loadWindowStart >= LOAD_WINDOW_NANOS) {
+            // each window halves the weight of the previous ones, so the average follows shifts in traffic within seconds
+            recentBytes = (recentBytes + loadWindowBytes) / 2;
+            loadWindowBytes = 0;
+            loadWindowStart = now;
+        }
+    }
+
+    private void runQueuedTasks() {
+        Runnable task;
+        while ((task = queuedTasks.poll()) != null) {
+            beginHandler("task", task);
+            try {
+                task.run();
+            } catch (Exception e) {
+                eventHandler.taskException(task, e);
+            } finally {
+                endHandler();
+            }
+        }
     }
 
     private void setUpNewChannels() {
@@ -182,6 +368,7 @@ public class SocketSelector extends ESSelector {
 
     private void setupChannel(NioSocketChannel newChannel) {
         assert newChannel.getSelector() == this : "The channel must be registered with the selector with which it was created";
+        beginHandler("register", newChannel);
         try {
             if (newChannel.isOpen()) {
                 newChannel.register();
@@ -194,6 +381,8 @@ public class SocketSelector extends ESSelector {
             }
         } catch (Exception e) {
             eventHandler.registrationException(newChannel, e);
+        } finally {
+            endHandler();
         }
     }
 
@@ -1,6 +1,8 @@
 package org.elasticsearch.transport.nio;
 
 import org.elasticsearch.common.bytes.BytesReference;
+import org.elasticsearch.common.io.stream.StreamInput;
+import org.elasticsearch.transport.TransportStatus;
 import org.elasticsearch.transport.nio.channel.NioSocketChannel;
 import org.elasticsearch.transport.nio.channel.TcpNioSocketChannel;
 
@@ -17,14 +19,58 @@ public class TcpReadHandler {
     }
 
     public void handleMessage(BytesReference reference, TcpNioSocketChannel channel, int messageBytesLength) {
+        final SocketSelector selector = channel.getSelector();
+        final String action = selector.isWatched() && selector.isOnCurrentThread() ? readAction(reference) : null;
+        if (action != null) {
+            selector.beginTransportAction(action);
+        }
         try {
             transport.messageReceived(reference, channel, profile, channel.getRemoteAddress(), messageBytesLength);
         } catch (IOException e) {
             handleException(channel, e);
+        } finally {
+            if (action != null) {
+                selector.endTransportAction();
+            }
         }
     }
 
     public void handleException(NioSocketChannel channel, Exception e) {
         transport.exceptionCaught(channel, e);
     }
+
+    /**
+     * Reads the action of an uncompressed request the way {@code TcpTransport#messageReceived} does, skipping the
+     * request id, status, version and thread context headers that precede it.
+     *
+     * @param message the message without the marker and length
+     * @return the action, or null for responses, compressed requests and messages that cannot be read
+     */
+    static String readAction(BytesReference message) {
+        try (StreamInput in = message.streamInput()) {
+            in.readLong();
+            byte status = in.readByte();
+            if (TransportStatus.isRequest(status) == false || TransportStatus.isCompress(status)) {
+                return null;
+            }
+            in.readInt();
+            int requestHeaders = in.readVInt();
+            for (int i = 0; i < requestHeaders; ++i) {
+                in.readString();
+                in.readString();
+            }
+            int responseHeaders = in.readVInt();
+            for (int i = 0; i < responseHeaders; ++i) {
+                in.readString();
+                int values = in.readVInt();
+                for (int j = 0; j < values; ++j) {
+                    in.readString();
+                }
+            }
+            return in.readString();
+        } catch (IOException | RuntimeException e) {
+            // the transport reports malformed messages when it reads them
+            return null;
+        }
+    }
 }
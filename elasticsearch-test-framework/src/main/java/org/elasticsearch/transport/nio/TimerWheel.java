@@ -0,0 +1,215 @@
+package org.elasticsearch.transport.nio;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A hashed timer wheel that is driven by a selector thread. Timeouts are kept in doubly linked lists, one
+ * per slot of the wheel, so scheduling, cancelling and expiring a timeout are constant time operations.
+ * The wheel does not have a thread of its own, the selector calls {@link #advance(long)} on each iteration
+ * of its loop and the tasks of expired timeouts run on the selector thread. Timeouts therefore fire up to
+ * one tick plus one loop iteration late. This class is not thread safe and should only be used by the
+ * selector thread.
+ */
+public class TimerWheel {
+
+    public static final long DEFAULT_TICK_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+    public static final int DEFAULT_SLOTS = 512;
+
+    private final long tickNanos;
+    private final Timeout[] slots;
+    private final int mask;
+    private long currentTick;
+    private long lastTickNanos;
+    private int pending;
+    // the earliest deadline of the pending timeouts, only valid while nextDeadlineKnown is set
+    private long nextDeadlineTick = Long.MAX_VALUE;
+    private boolean nextDeadlineKnown = true;
+
+    public TimerWheel(long nowNanos) {
+        this(nowNanos, DEFAULT_TICK_NANOS, DEFAULT_SLOTS);
+    }
+
+    public TimerWheel(long nowNanos, long tickNanos, int slots) {
+        if (Integer.bitCount(slots) != 1) {
+            throw new IllegalArgumentException("slots must be a power of two but was [" + slots + "]");
+        }
+        this.tickNanos = tickNanos;
+        this.slots = new Timeout[slots];
+        this.mask = slots - 1;
+        this.lastTickNanos = nowNanos;
+    }
+
+    /**
+     * Schedules a task to run once the delay has passed. The delay counts from the given time, which may lie several
+     * ticks after the last call to {@link #advance(long)}, for example after the selector blocked in select.
+     *
+     * @param nowNanos the current time
+     * @param delayNanos the delay in nanoseconds
+     * @param task the task to run on the selector thread
+     * @return the timeout, which can be used to cancel the task
+     */
+    public Timeout schedule(long nowNanos, long delayNanos, Runnable task) {
+        // a timeout never fires before its delay has passed, so the ticks the wheel lags behind the current time are
+        // added and partial ticks are rounded up
+        long ticks = Math.max(1, (nowNanos - lastTickNanos + delayNanos + tickNanos - 1) / tickNanos);
+        Timeout timeout = new Timeout(task);
+        timeout.deadlineTick = currentTick + ticks;
+        timeout.rounds = (ticks - 1) / slots.length;
+        timeout.slot = (int) (timeout.deadlineTick & mask);
+        Timeout head = slots[timeout.slot];
+        timeout.next = head;
+        if (head != null) {
+            head.prev = timeout;
+        }
+        slots[timeout.slot] = timeout;
+        pending++;
+        nextDeadlineTick = Math.min(nextDeadlineTick, timeout.deadlineTick);
+        return timeout;
+    }
+
+    /**
+     * Moves the wheel forward to the given time and runs the tasks of all timeouts that expired.
+     *
+     * @param nowNanos the current time
+     * @return the number of timeouts that expired
+     */
+    public int advance(long nowNanos) {
+        int expired = 0;
+        while (nowNanos - lastTickNanos >= tickNanos) {
+            lastTickNanos += tickNanos;
+            currentTick++;
+            if (pending != 0) {
+                expired += expireSlot((int) (currentTick & mask));
+            }
+        }
+        return expired;
+    }
+
+    /**
+     * @return the number of timeouts that were scheduled and have neither expired nor been cancelled
+     */
+    public int getPending() {
+        return pending;
+    }
+
+    public long getTickNanos() {
+        return tickNanos;
+    }
+
+    /**
+     * Returns the time until the tick at which the earliest pending timeout expires. The deadline is cached, so
+     * this only scans the slots after the deadline expired or its timeout was cancelled, and the scan stops at
+     * the first slot that holds a timeout of the current rotation.
+     *
+     * @param nowNanos the current time
+     * @return the nanoseconds until the next timeout expires, 0 if it is overdue, or -1 if no timeout is pending
+     */
+    public long nanosUntilNextDeadline(long nowNanos) {
+        if (pending == 0) {
+            return -1;
+        }
+        if (nextDeadlineKnown == false) {
+            long deadline = Long.MAX_VALUE;
+            // later slots only hold timeouts that expire after the slot passes, so the scan can stop there
+            for (int i = 1; i <= slots.length && deadline > currentTick + i; ++i) {
+                for (Timeout timeout = slots[(int) ((currentTick + i) & mask)]; timeout != null; timeout = timeout.next) {
+                    deadline = Math.min(deadline, timeout.deadlineTick);
+                }
+            }
+            nextDeadlineTick = deadline;
+            nextDeadlineKnown = true;
+        }
+        return Math.max(0, lastTickNanos + (nextDeadlineTick - currentTick) * tickNanos - nowNanos);
+    }
+
+    private int expireSlot(int slot) {
+        // expired timeouts are unlinked before any task runs, so tasks can schedule and cancel timeouts freely
+        int expired = 0;
+        Timeout expiredHead = null;
+        Timeout timeout = slots[slot];
+        while (timeout != null) {
+            Timeout next = timeout.next;
+            if (timeout.rounds == 0) {
+                remove(timeout);
+                timeout.state = Timeout.EXPIRED;
+                timeout.next = expiredHead;
+                expiredHead = timeout;
+                expired++;
+            } else {
+                timeout.rounds--;
+            }
+            timeout = next;
+        }
+        while (expiredHead != null) {
+            timeout = expiredHead;
+            expiredHead = timeout.next;
+            timeout.next = null;
+            timeout.task.run();
+        }
+        return expired;
+    }
+
+    private void remove(Timeout timeout) {
+        if (timeout.prev != null) {
+            timeout.prev.next = timeout.next;
+        } else {
+            slots[timeout.slot] = timeout.next;
+        }
+        if (timeout.next != null) {
+            timeout.next.prev = timeout.prev;
+        }
+        timeout.prev = null;
+        timeout.next = null;
+        pending--;
+        if (pending == 0) {
+            nextDeadlineTick = Long.MAX_VALUE;
+            nextDeadlineKnown = true;
+        } else if (timeout.deadlineTick == nextDeadlineTick) {
+            nextDeadlineKnown = false;
+        }
+    }
+
+    /**
+     * A task that was scheduled with a {@link TimerWheel}.
+     */
+    public final class Timeout {
+
+        private static final int PENDING = 0;
+        private static final int EXPIRED = 1;
+        private static final int CANCELLED = 2;
+
+        private final Runnable task;
+        private int slot;
+        private long deadlineTick;
+        private long rounds;
+        private int state = PENDING;
+        private Timeout prev;
+        private Timeout next;
+
+        private Timeout(Runnable task) {
+            this.task = task;
+        }
+
+        /**
+         * Cancels the timeout if it has not expired yet. This must be called by the selector thread.
+         *
+         * @return true if the timeout was cancelled by this call
+         */
+        public boolean cancel() {
+            if (state != PENDING) {
+                return false;
+            }
+            state = CANCELLED;
+            remove(this);
+            return true;
+        }
+
+        public boolean isExpired() {
+            return state == EXPIRED;
+        }
+
+        public boolean isCancelled() {
+            return state == CANCELLED;
+        }
+    }
+}
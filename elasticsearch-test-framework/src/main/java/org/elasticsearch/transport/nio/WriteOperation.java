@@ -4,34 +4,58 @@ import org.apache.lucene.util.BytesRef;
 import org.apache.lucene.util.BytesRefIterator;
 import org.elasticsearch.action.ActionListener;
 import org.elasticsearch.common.bytes.BytesReference;
+import org.elasticsearch.common.lease.Releasable;
 import org.elasticsearch.transport.nio.channel.NioSocketChannel;
 
 import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.util.ArrayList;
-import java.util.Arrays;
 
+/**
+ * A write operation holds the buffers of a message that is being written to a channel. The progress of
+ * the operation is tracked in place: the position of the first buffer with remaining bytes is moved as
+ * bytes are written and the buffers are handed to the channel without being copied or duplicated. This
+ * means that flushing an operation does not allocate.
+ */
 public class WriteOperation {
 
     private final NioSocketChannel channel;
     private final ActionListener<Void> listener;
     private final ByteBuffer[] buffers;
-    private final int[] offsets;
+    // The end offset of each buffer in the bytes of this operation
+    private final int[] endOffsets;
     private final int length;
     private int internalIndex;
+    private int bufferIndex;
 
     public WriteOperation(NioSocketChannel channel, BytesReference bytesReference, ActionListener<Void> listener) {
+        this(channel, toByteBuffers(bytesReference), listener);
+    }
+
+    /**
+     * Creates a write operation for the bytes written to the stream. The operation takes ownership of the pages
+     * of the stream and releases them once the operation completes or fails, before the listener is called.
+     *
+     * @param channel the channel to write to
+     * @param output the stream holding the bytes to write
+     * @param listener to call once the operation completes or fails
+     */
+    public WriteOperation(NioSocketChannel channel, PagedByteBufferStreamOutput output, ActionListener<Void> listener) {
+        this(channel, output.toByteBuffers(), new ReleasingListener(output, listener));
+    }
+
+    private WriteOperation(NioSocketChannel channel, ByteBuffer[] buffers, ActionListener<Void> listener) {
         this.channel = channel;
         this.listener = listener;
-        this.buffers = toByteBuffers(bytesReference);
-        this.offsets = new int[buffers.length];
+        this.buffers = buffers;
+        this.endOffsets = new int[buffers.length];
         int offset = 0;
         for (int i = 0; i < buffers.length; i++) {
-            ByteBuffer buffer = buffers[i];
-            offsets[i] = offset;
-            offset += buffer.remaining();
+            offset += buffers[i].remaining();
+            endOffsets[i] = offset;
         }
         length = offset;
+        skipWrittenBuffers();
     }
 
     public ByteBuffer[] getByteBuffers() {
@@ -50,31 +74,103 @@ public class WriteOperation {
         return internalIndex == length;
     }
 
+    /**
+     * Returns whether the buffers of this operation can be combined with the buffers of other operations
+     * into a single gathering write. Only then are {@link #getByteBuffers()} and {@link #incrementIndex(int)}
+     * used by the write context.
+     *
+     * @return true if the operation can be part of a gathering write
+     */
+    public boolean isGatherable() {
+        return true;
+    }
+
     public int flush() throws IOException {
-        int written = channel.write(getBuffersToWrite());
-        internalIndex += written;
+        int written = channel.write(buffers, bufferIndex, buffers.length - bufferIndex);
+        incrementIndex(written);
         return written;
     }
 
-    private ByteBuffer[] getBuffersToWrite() {
-        int offsetIndex = getOffsetIndex(internalIndex);
+    /**
+     * Returns the number of bytes of this operation that have not been written yet.
+     *
+     * @return the remaining bytes
+     */
+    public int getRemaining() {
+        return length - internalIndex;
+    }
 
-        ByteBuffer[] postIndexBuffers = new ByteBuffer[buffers.length - offsetIndex];
+    /**
+     * Returns the index of the first buffer in {@link #getByteBuffers()} that has bytes remaining. The
+     * position of that buffer reflects the bytes of it that have already been written.
+     *
+     * @return the index of the first buffer to write
+     */
+    public int getBufferIndex() {
+        return bufferIndex;
+    }
 
-        ByteBuffer firstBuffer = buffers[offsetIndex].duplicate();
-        firstBuffer.position(internalIndex - offsets[offsetIndex]);
-        postIndexBuffers[0] = firstBuffer;
-        int j = 1;
-        for (int i = (offsetIndex + 1); i < buffers.length; ++i) {
-            postIndexBuffers[j++] = buffers[i].duplicate();
+    /**
+     * Marks bytes of this operation as written. This is used if the bytes were written to the channel
+     * outside of {@link #flush()}, for example as part of a gathering write of several operations. The
+     * positions of the buffers are updated to match the new index.
+     *
+     * @param delta the number of bytes written
+     */
+    public void incrementIndex(int delta) {
+        if (delta < 0 || delta > length - internalIndex) {
+            throw new IllegalArgumentException("Cannot increment an index [" + internalIndex + "] with a delta [" + delta +
+                "] with only [" + (length - internalIndex) + "] bytes remaining.");
+        }
+        internalIndex += delta;
+        while (bufferIndex < buffers.length && endOffsets[bufferIndex] <= internalIndex) {
+            ByteBuffer buffer = buffers[bufferIndex++];
+            buffer.position(buffer.limit());
         }
+        if (bufferIndex < buffers.length) {
+            ByteBuffer buffer = buffers[bufferIndex];
+            buffer.position(buffer.limit() - (endOffsets[bufferIndex] - internalIndex));
+        }
+    }
 
-        return postIndexBuffers;
+    private void skipWrittenBuffers() {
+        while (bufferIndex < buffers.length && buffers[bufferIndex].hasRemaining() == false) {
+            bufferIndex++;
+        }
     }
 
-    private int getOffsetIndex(int offset) {
-        final int i = Arrays.binarySearch(offsets, offset);
-        return i < 0 ? (-(i + 1)) - 1 : i;
+    private static class ReleasingListener implements ActionListener<Void> {
+
+        private final Releasable releasable;
+        private final ActionListener<Void> delegate;
+
+        private ReleasingListener(Releasable releasable, ActionListener<Void> delegate) {
+            this.releasable = releasable;
+            this.delegate = delegate;
+        }
+
+        @Override
+        public void onResponse(Void aVoid) {
+            try {
+                releasable.close();
+            } finally {
+                delegate.onResponse(aVoid);
+            }
+        }
+
+        @Override
+        public void onFailure(Exception e) {
+            try {
+                releasable.close();
+            } finally {
+                delegate.onFailure(e);
+            }
+        }
+
+        @Override
+        public String toString() {
+            return delegate.toString();
+        }
     }
 
     private static ByteBuffer[] toByteBuffers(BytesReference bytesReference) {
@@ -7,6 +7,8 @@ import org.elasticsearch.transport.nio.SocketSelector;
 import java.io.Closeable;
 import java.io.IOException;
 import java.net.InetSocketAddress;
+import java.net.SocketOption;
+import java.nio.channels.NetworkChannel;
 import java.nio.channels.ServerSocketChannel;
 import java.nio.channels.SocketChannel;
 
@@ -44,6 +46,39 @@ public abstract class ChannelFactory<ServerSocket extends NioServerSocketChannel
         return serverChannel;
     }
 
+    /**
+     * Claims an address for server channels that are opened with SO_REUSEPORT. Any socket that sets SO_REUSEPORT can
+     * bind a port that is bound by such channels, so binding them does not fail if another node already uses the port.
+     * The address is therefore bound by a server channel without SO_REUSEPORT first, which fails if the port is taken,
+     * and released again right away.
+     *
+     * @param address to claim, the port may be 0
+     * @return the address that was bound, with the picked port if the port was 0
+     * @throws IOException related to binding the address, a {@link java.net.BindException} if it is in use
+     */
+    public InetSocketAddress claimServerAddress(InetSocketAddress address) throws IOException {
+        try (ServerSocketChannel rawChannel = rawChannelFactory.openNioServerSocketChannel(address)) {
+            return (InetSocketAddress) rawChannel.getLocalAddress();
+        }
+    }
+
+    /**
+     * Opens a server channel with SO_REUSEPORT set before it is bound. Several of these channels can be
+     * bound to the same address, the kernel then spreads incoming connections across their listen queues.
+     *
+     * @param address to bind to
+     * @param selector the channel will be registered with
+     * @return the server channel
+     * @throws IOException related to the creation of the channel
+     * @throws UnsupportedOperationException if the platform does not support SO_REUSEPORT
+     */
+    public ServerSocket openReusePortServerSocketChannel(InetSocketAddress address, AcceptingSelector selector) throws IOException {
+        ServerSocketChannel rawChannel = rawChannelFactory.openReusePortServerSocketChannel(address);
+        ServerSocket serverChannel = internalCreateServerChannel(selector, rawChannel);
+        scheduleServerChannel(serverChannel, selector);
+        return serverChannel;
+    }
+
     /**
      * This method should return a new {@link NioSocketChannel} implementation. When this method has
      * returned, the channel should be fully created and setup. Read and write contexts and the channel
@@ -107,6 +142,23 @@ public abstract class ChannelFactory<ServerSocket extends NioServerSocketChannel
         }
     }
 
+    /**
+     * Looks up the SO_REUSEPORT option by name, StandardSocketOptions only declares it from Java 9 on.
+     *
+     * @param channel the channel to look up the option for
+     * @return the option, or null if the channel does not support it
+     */
+    static SocketOption<Boolean> reusePortOption(NetworkChannel channel) {
+        for (SocketOption<?> option : channel.supportedOptions()) {
+            if ("SO_REUSEPORT".equals(option.name()) && option.type() == Boolean.class) {
+                @SuppressWarnings("unchecked")
+                SocketOption<Boolean> reusePort = (SocketOption<Boolean>) option;
+                return reusePort;
+            }
+        }
+        return null;
+    }
+
     private static void closeRawChannel(Closeable c, Exception e) {
         try {
             c.close();
@@ -157,13 +209,28 @@ public abstract class ChannelFactory<ServerSocket extends NioServerSocketChannel
         }
 
         ServerSocketChannel openNioServerSocketChannel(InetSocketAddress address) throws IOException {
+            return openServerSocketChannel(address, false);
+        }
+
+        ServerSocketChannel openReusePortServerSocketChannel(InetSocketAddress address) throws IOException {
+            return openServerSocketChannel(address, true);
+        }
+
+        private ServerSocketChannel openServerSocketChannel(InetSocketAddress address, boolean reusePort) throws IOException {
             ServerSocketChannel serverSocketChannel = ServerSocketChannel.open();
-            serverSocketChannel.configureBlocking(false);
-            java.net.ServerSocket socket = serverSocketChannel.socket();
             try {
+                serverSocketChannel.configureBlocking(false);
+                java.net.ServerSocket socket = serverSocketChannel.socket();
                 socket.setReuseAddress(tcpReusedAddress);
+                if (reusePort) {
+                    SocketOption<Boolean> reusePortOption = reusePortOption(serverSocketChannel);
+                    if (reusePortOption == null) {
+                        throw new UnsupportedOperationException("SO_REUSEPORT is not supported on this platform");
+                    }
+                    serverSocketChannel.setOption(reusePortOption, true);
+                }
                 serverSocketChannel.bind(address);
-            } catch (IOException e) {
+            } catch (IOException | RuntimeException e) {
                 closeRawChannel(serverSocketChannel, e);
                 throw e;
             }
@@ -0,0 +1,61 @@
+package org.elasticsearch.transport.nio.channel;
+
+import org.apache.lucene.util.BytesRef;
+import org.elasticsearch.common.bytes.ByteBufferReference;
+import org.elasticsearch.common.bytes.BytesReference;
+
+import java.nio.ByteBuffer;
+
+/**
+ * A {@link BytesReference} of the remaining bytes of a direct {@link ByteBuffer}. Unlike {@link ByteBufferReference}
+ * it only reads the buffer with absolute gets or through duplicates, so neither a position other than 0 fails the copy
+ * of the bytes nor does reading the reference move the position of the page the buffer was sliced from.
+ */
+final class DirectByteBufferReference extends BytesReference {
+
+    private final ByteBuffer buffer;
+    private final int offset;
+    private final int length;
+
+    DirectByteBufferReference(ByteBuffer buffer) {
+        this.buffer = buffer;
+        this.offset = buffer.position();
+        this.length = buffer.remaining();
+    }
+
+    @Override
+    public byte get(int index) {
+        return buffer.get(index + offset);
+    }
+
+    @Override
+    public int length() {
+        return length;
+    }
+
+    @Override
+    public BytesReference slice(int from, int length) {
+        if (from < 0 || (from + length) > this.length) {
+            throw new IndexOutOfBoundsException("can't slice a buffer with length [" + this.length + "], with slice parameters from ["
+                + from + "], length [" + length + "]");
+        }
+        ByteBuffer newByteBuffer = buffer.duplicate();
+        newByteBuffer.position(offset + from);
+        newByteBuffer.limit(offset + from + length);
+        return new DirectByteBufferReference(newByteBuffer);
+    }
+
+    @Override
+    public BytesRef toBytesRef() {
+        byte[] copy = new byte[length];
+        ByteBuffer duplicate = buffer.duplicate();
+        duplicate.position(offset);
+        duplicate.get(copy, 0, length);
+        return new BytesRef(copy);
+    }
+
+    @Override
+    public long ramBytesUsed() {
+        return buffer.capacity();
+    }
+}
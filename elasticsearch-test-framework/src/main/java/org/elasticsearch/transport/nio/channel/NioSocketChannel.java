@@ -8,6 +8,7 @@ import java.io.IOException;
 import java.net.InetSocketAddress;
 import java.nio.ByteBuffer;
 import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
 import java.nio.channels.SocketChannel;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.atomic.AtomicBoolean;
@@ -23,11 +24,17 @@ public class NioSocketChannel extends AbstractNioChannel<SocketChannel> {
     private ReadContext readContext;
     private BiConsumer<NioSocketChannel, Exception> exceptionContext;
     private Exception connectException;
+    // only updated by the selector thread
+    private volatile long bytesRead;
+    private volatile long bytesWritten;
+    private volatile long lastReadNanos;
+    private volatile long lastWriteNanos;
 
     public NioSocketChannel(SocketChannel socketChannel, SocketSelector selector) throws IOException {
         super(socketChannel, selector);
         this.remoteAddress = (InetSocketAddress) socketChannel.getRemoteAddress();
         this.socketSelector = selector;
+        this.lastReadNanos = this.lastWriteNanos = System.nanoTime();
     }
 
     @Override
@@ -48,11 +55,41 @@ public class NioSocketChannel extends AbstractNioChannel<SocketChannel> {
     }
 
     public int write(ByteBuffer[] buffers) throws IOException {
+        final int written;
         if (buffers.length == 1) {
-            return socketChannel.write(buffers[0]);
+            written = socketChannel.write(buffers[0]);
         } else {
-            return (int) socketChannel.write(buffers);
+            written = (int) socketChannel.write(buffers);
         }
+        recordBytesWritten(written);
+        return written;
+    }
+
+    public int write(ByteBuffer[] buffers, int offset, int length) throws IOException {
+        final int written;
+        if (length == 1) {
+            written = socketChannel.write(buffers[offset]);
+        } else {
+            written = (int) socketChannel.write(buffers, offset, length);
+        }
+        recordBytesWritten(written);
+        return written;
+    }
+
+    /**
+     * Transfers bytes of a file to this channel with {@link FileChannel#transferTo}, which lets the kernel copy
+     * the bytes from the file to the socket without passing them through the heap.
+     *
+     * @param file the file to transfer from
+     * @param position the position in the file of the first byte to transfer
+     * @param count the maximum number of bytes to transfer
+     * @return the number of bytes transferred
+     * @throws IOException if the transfer fails
+     */
+    public int transferFrom(FileChannel file, long position, int count) throws IOException {
+        int written = (int) file.transferTo(position, count, socketChannel);
+        recordBytesWritten(written);
+        return written;
     }
 
     public int read(InboundChannelBuffer buffer) throws IOException {
@@ -63,9 +100,44 @@ public class NioSocketChannel extends AbstractNioChannel<SocketChannel> {
         }
 
         buffer.incrementIndex(bytesRead);
+        this.bytesRead += bytesRead;
+        if (bytesRead > 0) {
+            lastReadNanos = System.nanoTime();
+        }
+        socketSelector.recordBytes(bytesRead);
         return bytesRead;
     }
 
+    /**
+     * @return the {@link System#nanoTime()} of the last read that returned bytes, or of the creation of the channel
+     */
+    public long getLastReadNanos() {
+        return lastReadNanos;
+    }
+
+    /**
+     * @return the {@link System#nanoTime()} of the last write that wrote bytes, or of the creation of the channel
+     */
+    public long getLastWriteNanos() {
+        return lastWriteNanos;
+    }
+
+    public long getBytesRead() {
+        return bytesRead;
+    }
+
+    public long getBytesWritten() {
+        return bytesWritten;
+    }
+
+    private void recordBytesWritten(int written) {
+        bytesWritten += written;
+        if (written > 0) {
+            lastWriteNanos = System.nanoTime();
+        }
+        socketSelector.recordBytes(written);
+    }
+
     public void setContexts(ReadContext readContext, WriteContext writeContext, BiConsumer<NioSocketChannel, Exception> exceptionContext) {
         if (contextsSet.compareAndSet(false, true)) {
             this.readContext = readContext;
@@ -138,6 +210,22 @@ public class NioSocketChannel extends AbstractNioChannel<SocketChannel> {
         return isConnected;
     }
 
+    /**
+     * Fails the connection process of this channel if it has not completed yet. This should only be called
+     * from the selector thread.
+     *
+     * @param exception the reason for the failure
+     * @return true if the connection process was failed by this call
+     */
+    public boolean failConnect(Exception exception) {
+        assert socketSelector.isOnCurrentThread() : "Should only call from selector thread";
+        if (connectContext.isDone()) {
+            return false;
+        }
+        connectException = exception;
+        return connectContext.completeExceptionally(exception);
+    }
+
     public void addConnectListener(ActionListener<Void> listener) {
         connectContext.whenComplete(ActionListener.toBiConsumer(listener));
     }
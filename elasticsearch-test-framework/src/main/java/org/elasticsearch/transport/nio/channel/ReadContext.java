@@ -6,6 +6,12 @@ public interface ReadContext extends AutoCloseable {
 
     int read() throws IOException;
 
+    /**
+     * Releases the buffers that do not hold any read bytes. This should only be called from the selector
+     * thread.
+     */
+    void releaseUnusedBuffers();
+
     @Override
     void close();
 
@@ -0,0 +1,45 @@
+package org.elasticsearch.transport.nio.channel;
+
+/**
+ * Estimates how many pages should be offered to the next read of a channel. The estimate doubles whenever
+ * a read fills all of the space it was offered and it is halved once two reads in a row used no more than
+ * half of the estimate. This follows the receive buffer sizing of other nio libraries.
+ */
+final class ReadSizeEstimator {
+
+    private final int pageSize;
+    private final int minPages;
+    private final int maxPages;
+    private int pages;
+    private boolean shrinkPending;
+
+    ReadSizeEstimator(int pageSize, int minPages, int maxPages) {
+        if (minPages < 1 || minPages > maxPages) {
+            throw new IllegalArgumentException("min pages [" + minPages + "] must be between 1 and max pages [" + maxPages + "]");
+        }
+        this.pageSize = pageSize;
+        this.minPages = minPages;
+        this.maxPages = maxPages;
+        this.pages = minPages;
+    }
+
+    int nextReadSize() {
+        return pages * pageSize;
+    }
+
+    void record(int bytesRead, long bytesOffered) {
+        if (bytesRead >= bytesOffered) {
+            pages = Math.min(maxPages, pages << 1);
+            shrinkPending = false;
+        } else if (pages > minPages && bytesRead <= (pages >> 1) * pageSize) {
+            if (shrinkPending) {
+                pages = Math.max(minPages, pages >> 1);
+                shrinkPending = false;
+            } else {
+                shrinkPending = true;
+            }
+        } else {
+            shrinkPending = false;
+        }
+    }
+}
@@ -1,11 +1,10 @@
 package org.elasticsearch.transport.nio.channel;
 
-import org.elasticsearch.common.bytes.BytesReference;
-import org.elasticsearch.common.io.stream.StreamInput;
 import org.elasticsearch.common.unit.ByteSizeValue;
 import org.elasticsearch.monitor.jvm.JvmInfo;
 import org.elasticsearch.transport.TcpHeader;
 import org.elasticsearch.transport.TcpTransport;
+import org.elasticsearch.transport.nio.InboundChannelBuffer;
 
 import java.io.IOException;
 import java.io.StreamCorruptedException;
@@ -13,50 +12,57 @@ import java.io.StreamCorruptedException;
 public class TcpFrameDecoder {
 
     private static final long NINETY_PER_HEAP_SIZE = (long) (JvmInfo.jvmInfo().getMem().getHeapMax().getBytes() * 0.9);
-    private static final int HEADER_SIZE = TcpHeader.MARKER_BYTES_SIZE + TcpHeader.MESSAGE_LENGTH_SIZE;
+    static final int HEADER_SIZE = TcpHeader.MARKER_BYTES_SIZE + TcpHeader.MESSAGE_LENGTH_SIZE;
 
+    private final byte[] header = new byte[HEADER_SIZE];
     private int expectedMessageLength = -1;
 
-    public BytesReference decode(BytesReference bytesReference) throws IOException {
-        if (bytesReference.length() >= 6) {
-            int messageLength = readHeaderBuffer(bytesReference);
-            int totalLength = messageLength + HEADER_SIZE;
-            if (totalLength > bytesReference.length()) {
-                expectedMessageLength = totalLength;
-                return null;
-            } else if (totalLength == bytesReference.length()) {
-                expectedMessageLength = -1;
-                return bytesReference;
-            } else {
-                expectedMessageLength = -1;
-                return bytesReference.slice(0, totalLength);
+    /**
+     * Decodes the frame at the head of the channel buffer. The header is read in place from the buffer
+     * pages and the expected frame length is kept between calls, so the header of a frame is only parsed
+     * once no matter how many reads it takes for the frame to arrive.
+     *
+     * @param channelBuffer the buffer holding the read bytes from its head up to its index
+     * @return the length of the frame including the header if the whole frame has been read, otherwise -1
+     * @throws IOException if the header is invalid
+     */
+    public int decode(InboundChannelBuffer channelBuffer) throws IOException {
+        long bytesRead = channelBuffer.getIndex();
+        if (expectedMessageLength == -1) {
+            if (bytesRead < HEADER_SIZE) {
+                return -1;
             }
-        } else {
-            return null;
+            for (int i = 0; i < HEADER_SIZE; ++i) {
+                header[i] = channelBuffer.getByte(i);
+            }
+            expectedMessageLength = readHeader() + HEADER_SIZE;
+        }
+        if (bytesRead >= expectedMessageLength) {
+            int frameLength = expectedMessageLength;
+            expectedMessageLength = -1;
+            return frameLength;
         }
+        return -1;
     }
 
     public int expectedMessageLength() {
         return expectedMessageLength;
     }
 
-    private int readHeaderBuffer(BytesReference headerBuffer) throws IOException {
-        if (headerBuffer.get(0) != 'E' || headerBuffer.get(1) != 'S') {
-            if (appearsToBeHTTP(headerBuffer)) {
+    private int readHeader() throws IOException {
+        if (header[0] != 'E' || header[1] != 'S') {
+            if (appearsToBeHTTP(header)) {
                 throw new TcpTransport.HttpOnTransportException("This is not a HTTP port");
             }
 
             throw new StreamCorruptedException("invalid internal transport message format, got ("
-                + Integer.toHexString(headerBuffer.get(0) & 0xFF) + ","
-                + Integer.toHexString(headerBuffer.get(1) & 0xFF) + ","
-                + Integer.toHexString(headerBuffer.get(2) & 0xFF) + ","
-                + Integer.toHexString(headerBuffer.get(3) & 0xFF) + ")");
-        }
-        final int messageLength;
-        try (StreamInput input = headerBuffer.streamInput()) {
-            input.skip(TcpHeader.MARKER_BYTES_SIZE);
-            messageLength = input.readInt();
+                + Integer.toHexString(header[0] & 0xFF) + ","
+                + Integer.toHexString(header[1] & 0xFF) + ","
+                + Integer.toHexString(header[2] & 0xFF) + ","
+                + Integer.toHexString(header[3] & 0xFF) + ")");
         }
+        final int messageLength = ((header[2] & 0xFF) << 24) | ((header[3] & 0xFF) << 16)
+            | ((header[4] & 0xFF) << 8) | (header[5] & 0xFF);
 
         if (messageLength == -1) {
             // This is a ping
@@ -75,22 +81,21 @@ public class TcpFrameDecoder {
         return messageLength;
     }
 
-    private static boolean appearsToBeHTTP(BytesReference headerBuffer) {
-        return bufferStartsWith(headerBuffer, "GET") ||
-            bufferStartsWith(headerBuffer, "POST") ||
-            bufferStartsWith(headerBuffer, "PUT") ||
-            bufferStartsWith(headerBuffer, "HEAD") ||
-            bufferStartsWith(headerBuffer, "DELETE") ||
+    private static boolean appearsToBeHTTP(byte[] header) {
+        return bufferStartsWith(header, "GET") ||
+            bufferStartsWith(header, "POST") ||
+            bufferStartsWith(header, "PUT") ||
+            bufferStartsWith(header, "HEAD") ||
+            bufferStartsWith(header, "DELETE") ||
             // TODO: Actually 'OPTIONS'. But that does not currently fit in 6 bytes
-            bufferStartsWith(headerBuffer, "OPTION") ||
-            bufferStartsWith(headerBuffer, "PATCH") ||
-            bufferStartsWith(headerBuffer, "TRACE");
+            bufferStartsWith(header, "OPTION") ||
+            bufferStartsWith(header, "PATCH") ||
+            bufferStartsWith(header, "TRACE");
     }
 
-    private static boolean bufferStartsWith(BytesReference buffer, String method) {
-        char[] chars = method.toCharArray();
-        for (int i = 0; i < chars.length; i++) {
-            if (buffer.get(i) != chars[i]) {
+    private static boolean bufferStartsWith(byte[] header, String method) {
+        for (int i = 0; i < method.length(); i++) {
+            if (header[i] != method.charAt(i)) {
                 return false;
             }
         }
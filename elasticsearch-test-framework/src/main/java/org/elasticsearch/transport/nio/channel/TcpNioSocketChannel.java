@@ -7,6 +7,7 @@ import org.elasticsearch.transport.nio.SocketSelector;
 
 import java.io.IOException;
 import java.net.StandardSocketOptions;
+import java.nio.channels.FileChannel;
 import java.nio.channels.SocketChannel;
 
 public class TcpNioSocketChannel extends NioSocketChannel implements TcpChannel {
@@ -19,6 +20,13 @@ public class TcpNioSocketChannel extends NioSocketChannel implements TcpChannel
         getWriteContext().sendMessage(reference, listener);
     }
 
+    /**
+     * Sends a header followed by a region of a file, see {@link WriteContext#sendFileRegion}.
+     */
+    public void sendFileRegion(BytesReference header, FileChannel file, long position, long count, ActionListener<Void> listener) {
+        getWriteContext().sendFileRegion(header, file, position, count, listener);
+    }
+
     @Override
     public void setSoLinger(int value) throws IOException {
         if (isOpen()) {
@@ -3,6 +3,7 @@ package org.elasticsearch.transport.nio.channel;
 import org.elasticsearch.common.bytes.ByteBufferReference;
 import org.elasticsearch.common.bytes.BytesReference;
 import org.elasticsearch.common.bytes.CompositeBytesReference;
+import org.elasticsearch.common.util.BigArrays;
 import org.elasticsearch.transport.nio.InboundChannelBuffer;
 import org.elasticsearch.transport.nio.TcpReadHandler;
 
@@ -11,52 +12,112 @@ import java.nio.ByteBuffer;
 
 public class TcpReadContext implements ReadContext {
 
+    private static final int PAGE_SIZE = BigArrays.BYTE_PAGE_SIZE;
+
     private final TcpReadHandler handler;
     private final TcpNioSocketChannel channel;
     private final InboundChannelBuffer channelBuffer;
     private final TcpFrameDecoder frameDecoder = new TcpFrameDecoder();
+    private final ReadSizeEstimator readSizeEstimator;
+    private final long readBudget;
+    private long pingsReceived;
+    private long lastPingNanos;
 
     public TcpReadContext(NioSocketChannel channel, TcpReadHandler handler, InboundChannelBuffer channelBuffer) {
+        this(channel, handler, channelBuffer, 1, 1, PAGE_SIZE);
+    }
+
+    /**
+     * Creates a read context that adapts the number of pages offered to a read to the recent read sizes and
+     * keeps reading while reads fill the offered space, up to a budget of bytes per call to {@link #read()}.
+     * Once the budget is used up the remaining bytes are read on the next iteration of the selector, so a
+     * busy channel cannot starve the other channels of its selector.
+     *
+     * @param channel the channel to read from
+     * @param handler the handler for the messages that were read
+     * @param channelBuffer the buffer to read into
+     * @param minReadPages the minimum number of pages offered to a read
+     * @param maxReadPages the maximum number of pages offered to a read
+     * @param readBudget the number of bytes after which reading stops until the next selector iteration
+     */
+    public TcpReadContext(NioSocketChannel channel, TcpReadHandler handler, InboundChannelBuffer channelBuffer, int minReadPages,
+                          int maxReadPages, long readBudget) {
         this.handler = handler;
         this.channel = (TcpNioSocketChannel) channel;
         this.channelBuffer = channelBuffer;
+        this.readSizeEstimator = new ReadSizeEstimator(PAGE_SIZE, minReadPages, maxReadPages);
+        this.readBudget = readBudget;
     }
 
     @Override
     public int read() throws IOException {
-        if (channelBuffer.getRemaining() == 0) {
-            // Requiring one additional byte will ensure that a new page is allocated.
-            channelBuffer.ensureCapacity(channelBuffer.getCapacity() + 1);
-        }
+        int totalBytesRead = 0;
+        while (true) {
+            int readSize = readSizeEstimator.nextReadSize();
+            if (channelBuffer.getRemaining() <= readSize - PAGE_SIZE) {
+                // Pages are only added once less than the estimate minus one page remains, a partly used page is
+                // filled before a new one is allocated.
+                channelBuffer.ensureCapacity(channelBuffer.getIndex() + readSize);
+            }
 
-        int bytesRead = channel.read(channelBuffer);
+            long bytesOffered = channelBuffer.getRemaining();
+            int bytesRead = channel.read(channelBuffer);
 
-        if (bytesRead == -1) {
-            return bytesRead;
+            if (bytesRead == -1) {
+                return bytesRead;
+            }
+
+            readSizeEstimator.record(bytesRead, bytesOffered);
+            totalBytesRead += bytesRead;
+            handleFrames();
+
+            if (bytesRead < bytesOffered || totalBytesRead >= readBudget) {
+                return totalBytesRead;
+            }
         }
+    }
 
-        BytesReference message;
+    private void handleFrames() throws IOException {
+        int frameLength;
 
         // Frame decoder will throw an exception if the message is improperly formatted, the header is incorrect,
-        // or the message is corrupted
-        while ((message = frameDecoder.decode(toBytesReference(channelBuffer))) != null) {
-            int messageLengthWithHeader = message.length();
-
+        // or the message is corrupted. The bytes are only wrapped in a reference once a whole frame has been read.
+        while ((frameLength = frameDecoder.decode(channelBuffer)) != -1) {
             try {
-                BytesReference messageWithoutHeader = message.slice(6, message.length() - 6);
-
-                // A message length of 6 bytes it is just a ping. Ignore for now.
-                if (messageLengthWithHeader != 6) {
+                // A message length of 6 bytes it is just a ping, it only keeps the connection alive.
+                if (frameLength == TcpFrameDecoder.HEADER_SIZE) {
+                    pingsReceived++;
+                    lastPingNanos = System.nanoTime();
+                } else {
+                    BytesReference messageWithoutHeader = toBytesReference(channelBuffer.sliceBuffers(TcpFrameDecoder.HEADER_SIZE,
+                        frameLength));
                     handler.handleMessage(messageWithoutHeader, channel, messageWithoutHeader.length());
                 }
             } catch (Exception e) {
                 handler.handleException(channel, e);
             } finally {
-                channelBuffer.release(messageLengthWithHeader);
+                channelBuffer.release(frameLength);
             }
         }
+    }
+
+    @Override
+    public void releaseUnusedBuffers() {
+        channelBuffer.releaseUnusedPages();
+    }
 
-        return bytesRead;
+    /**
+     * @return the number of ping frames that were read
+     */
+    public long getPingsReceived() {
+        return pingsReceived;
+    }
+
+    /**
+     * @return the {@link System#nanoTime()} of the last ping frame that was read, or 0 if none was read
+     */
+    public long getLastPingNanos() {
+        return lastPingNanos;
     }
 
     @Override
@@ -64,13 +125,20 @@ public class TcpReadContext implements ReadContext {
         channelBuffer.close();
     }
 
-    private static BytesReference toBytesReference(InboundChannelBuffer channelBuffer) {
-        ByteBuffer[] writtenToBuffers = channelBuffer.sliceBuffersTo(channelBuffer.getIndex());
-        ByteBufferReference[] references = new ByteBufferReference[writtenToBuffers.length];
+    private static BytesReference toBytesReference(ByteBuffer[] writtenToBuffers) {
+        if (writtenToBuffers.length == 1) {
+            return toBytesReference(writtenToBuffers[0]);
+        }
+        BytesReference[] references = new BytesReference[writtenToBuffers.length];
         for (int i = 0; i < references.length; ++i) {
-            references[i] = new ByteBufferReference(writtenToBuffers[i]);
+            references[i] = toBytesReference(writtenToBuffers[i]);
         }
 
         return new CompositeBytesReference(references);
     }
+
+    private static BytesReference toBytesReference(ByteBuffer buffer) {
+        // ByteBufferReference cannot copy the bytes of a direct buffer whose position is not 0, which slices of pages always have
+        return buffer.isDirect() ? new DirectByteBufferReference(buffer) : new ByteBufferReference(buffer);
+    }
 }
@@ -1,31 +1,201 @@
 package org.elasticsearch.transport.nio.channel;
 
 import org.elasticsearch.action.ActionListener;
+import org.elasticsearch.common.breaker.CircuitBreaker;
+import org.elasticsearch.common.breaker.CircuitBreakingException;
 import org.elasticsearch.common.bytes.BytesReference;
+import org.elasticsearch.common.recycler.Recycler;
+import org.elasticsearch.common.util.concurrent.EsRejectedExecutionException;
+import org.elasticsearch.transport.nio.FileRegionWriteOperation;
+import org.elasticsearch.transport.nio.PagedByteBufferStreamOutput;
 import org.elasticsearch.transport.nio.SocketSelector;
 import org.elasticsearch.transport.nio.WriteOperation;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.nio.channels.ClosedChannelException;
-import java.util.LinkedList;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
 
+/**
+ * The write context of a channel. Queued write operations are kept in an array backed ring queue and
+ * gathering writes use an array of buffers that is reused for the life of the channel, so flushing does
+ * not allocate once the queue has grown to the size needed by the channel.
+ * <p>
+ * The bytes of messages that were sent but not yet written are accounted for. The context is no longer
+ * below the high water mark once the pending bytes reach it and only counts as below it again once they
+ * drop to the low water mark. Messages that would take the pending bytes above the limit are rejected, unless
+ * nothing else is pending. The pending bytes can also be charged to a circuit breaker.
+ */
 public class TcpWriteContext implements WriteContext {
 
+    private static final int INITIAL_QUEUE_CAPACITY = 8;
+
     private final NioSocketChannel channel;
-    private final LinkedList<WriteOperation> queued = new LinkedList<>();
+    private final int maxGatheringBytes;
+    private final int maxGatheringBuffers;
+    private final ByteBuffer[] gatheringBuffers;
+    private final long highWaterMark;
+    private final long lowWaterMark;
+    private final long pendingLimit;
+    private final CircuitBreaker breaker;
+    private final Supplier<Recycler.V<ByteBuffer>> writePageSupplier;
+    private final AtomicLong pendingWriteBytes = new AtomicLong();
+    private final AtomicBoolean belowHighWaterMark = new AtomicBoolean(true);
+    private WriteOperation[] queued = new WriteOperation[INITIAL_QUEUE_CAPACITY];
+    private int head;
+    private int size;
 
     public TcpWriteContext(NioSocketChannel channel) {
+        this(channel, 0, 1);
+    }
+
+    /**
+     * Creates a write context that gathers the buffers of several queued write operations into a single
+     * write call to the channel. A gathering write takes the buffers of as many queued operations as fit
+     * into the byte and buffer limits, but at least the buffers of the first operation.
+     *
+     * @param channel the channel to write to
+     * @param maxGatheringBytes the maximum number of bytes in a gathering write, 0 disables gathering writes
+     * @param maxGatheringBuffers the maximum number of buffers in a gathering write
+     */
+    public TcpWriteContext(NioSocketChannel channel, int maxGatheringBytes, int maxGatheringBuffers) {
+        this(channel, maxGatheringBytes, maxGatheringBuffers, Long.MAX_VALUE, Long.MAX_VALUE, -1, null);
+    }
+
+    /**
+     * Creates a write context that limits the bytes of messages that were sent but not yet written.
+     *
+     * @param channel the channel to write to
+     * @param maxGatheringBytes the maximum number of bytes in a gathering write, 0 disables gathering writes
+     * @param maxGatheringBuffers the maximum number of buffers in a gathering write
+     * @param highWaterMark the pending bytes at which the context is no longer below the high water mark
+     * @param lowWaterMark the pending bytes at which the context is below the high water mark again
+     * @param pendingLimit the pending bytes above which messages are rejected, -1 for no limit
+     * @param breaker the circuit breaker that pending bytes are charged to, or null
+     */
+    public TcpWriteContext(NioSocketChannel channel, int maxGatheringBytes, int maxGatheringBuffers, long highWaterMark,
+                           long lowWaterMark, long pendingLimit, CircuitBreaker breaker) {
+        this(channel, maxGatheringBytes, maxGatheringBuffers, highWaterMark, lowWaterMark, pendingLimit, breaker, null);
+    }
+
+    /**
+     * Creates a write context that copies each message into recycled pages on the sending thread. Writing heap
+     * buffers to a socket makes the JDK copy them into a temporary direct buffer on the selector thread, which
+     * it caches per thread at the size of the largest write. With direct pages the copy is done by the sending
+     * thread instead and the memory comes from a bounded pool.
+     *
+     * @param channel the channel to write to
+     * @param maxGatheringBytes the maximum number of bytes in a gathering write, 0 disables gathering writes
+     * @param maxGatheringBuffers the maximum number of buffers in a gathering write
+     * @param highWaterMark the pending bytes at which the context is no longer below the high water mark
+     * @param lowWaterMark the pending bytes at which the context is below the high water mark again
+     * @param pendingLimit the pending bytes above which messages are rejected, -1 for no limit
+     * @param breaker the circuit breaker that pending bytes are charged to, or null
+     * @param writePageSupplier the supplier of the pages messages are copied into, or null to write messages as is
+     */
+    public TcpWriteContext(NioSocketChannel channel, int maxGatheringBytes, int maxGatheringBuffers, long highWaterMark,
+                           long lowWaterMark, long pendingLimit, CircuitBreaker breaker,
+                           Supplier<Recycler.V<ByteBuffer>> writePageSupplier) {
+        if (lowWaterMark > highWaterMark) {
+            throw new IllegalArgumentException("low water mark [" + lowWaterMark + "] must not be greater than high water mark ["
+                + highWaterMark + "]");
+        }
         this.channel = channel;
+        this.maxGatheringBytes = maxGatheringBytes;
+        this.maxGatheringBuffers = maxGatheringBuffers;
+        this.gatheringBuffers = maxGatheringBytes > 0 ? new ByteBuffer[maxGatheringBuffers] : null;
+        this.highWaterMark = highWaterMark;
+        this.lowWaterMark = lowWaterMark;
+        this.pendingLimit = pendingLimit;
+        this.breaker = breaker;
+        this.writePageSupplier = writePageSupplier;
     }
 
     @Override
     public void sendMessage(BytesReference reference, ActionListener<Void> listener) {
+        final int bytes = reference.length();
+        final ActionListener<Void> pendingWriteListener = reservePendingBytes(bytes, bytes, listener);
+        if (pendingWriteListener == null) {
+            return;
+        }
+
+        final WriteOperation writeOperation;
+        if (writePageSupplier == null) {
+            writeOperation = new WriteOperation(channel, reference, pendingWriteListener);
+        } else {
+            PagedByteBufferStreamOutput output = new PagedByteBufferStreamOutput(writePageSupplier);
+            try {
+                reference.writeTo(output);
+            } catch (IOException | RuntimeException e) {
+                output.close();
+                pendingWriteListener.onFailure(e);
+                return;
+            }
+            writeOperation = new WriteOperation(channel, output, pendingWriteListener);
+        }
+        queueWrite(writeOperation);
+    }
+
+    /**
+     * Sends a header followed by a region of a file. The file region is transferred to the socket with
+     * {@link java.nio.channels.FileChannel#transferTo} on the selector thread. The whole region counts towards
+     * the pending bytes of this context, but only the header is charged to the circuit breaker as the file
+     * bytes are never held on the heap. The file must stay open until the listener is called.
+     *
+     * @param header the bytes to write before the file region
+     * @param file the file to transfer from
+     * @param position the position in the file of the first byte of the region
+     * @param count the number of bytes in the region
+     * @param listener to call once the header and the region were written or the write failed
+     */
+    @Override
+    public void sendFileRegion(BytesReference header, FileChannel file, long position, long count, ActionListener<Void> listener) {
+        final ActionListener<Void> pendingWriteListener = reservePendingBytes(header.length() + count, header.length(), listener);
+        if (pendingWriteListener != null) {
+            queueWrite(new FileRegionWriteOperation(channel, header, file, position, count, pendingWriteListener));
+        }
+    }
+
+    /**
+     * Accounts for the bytes of a message that is about to be queued. Returns a listener that releases the bytes
+     * once the message was written, or null if the message was rejected, in which case the listener was failed.
+     */
+    private ActionListener<Void> reservePendingBytes(long bytes, long heapBytes, ActionListener<Void> listener) {
         if (!channel.isWritable()) {
             listener.onFailure(new ClosedChannelException());
-            return;
+            return null;
+        }
+
+        final long pending = pendingWriteBytes.addAndGet(bytes);
+        if (pendingLimit >= 0 && pending > pendingLimit && pending != bytes) {
+            pendingWriteBytes.addAndGet(-bytes);
+            listener.onFailure(new EsRejectedExecutionException("pending writes of [" + channel + "] would be [" + pending
+                + "] bytes, which is larger than the limit of [" + pendingLimit + "] bytes"));
+            return null;
+        }
+        if (breaker != null) {
+            try {
+                breaker.addEstimateBytesAndMaybeBreak(heapBytes, "<nio_pending_writes>");
+            } catch (CircuitBreakingException e) {
+                pendingWriteBytes.addAndGet(-bytes);
+                listener.onFailure(e);
+                return null;
+            }
         }
+        if (pending >= highWaterMark && belowHighWaterMark.compareAndSet(true, false)) {
+            // the pending writes may have been released while the flag was flipped
+            if (pendingWriteBytes.get() <= lowWaterMark) {
+                belowHighWaterMark.set(true);
+            }
+        }
+        return new PendingWriteListener(bytes, heapBytes, listener);
+    }
 
-        WriteOperation writeOperation = new WriteOperation(channel, reference, listener);
+    private void queueWrite(WriteOperation writeOperation) {
         SocketSelector selector = channel.getSelector();
         if (!selector.isOnCurrentThread()) {
             selector.queueWrite(writeOperation);
@@ -39,16 +209,21 @@ public class TcpWriteContext implements WriteContext {
     @Override
     public void queueWriteOperations(WriteOperation writeOperation) {
         assert channel.getSelector().isOnCurrentThread() : "Must be on selector thread to queue writes";
-        queued.add(writeOperation);
+        if (size == queued.length) {
+            grow();
+        }
+        queued[(head + size) & (queued.length - 1)] = writeOperation;
+        size++;
     }
 
     @Override
     public void flushChannel() throws IOException {
         assert channel.getSelector().isOnCurrentThread() : "Must be on selector thread to flush writes";
-        int ops = queued.size();
-        if (ops == 1) {
-            singleFlush(queued.pop());
-        } else if (ops > 1) {
+        if (size == 1) {
+            singleFlush(peek());
+        } else if (size > 1 && gatheringBuffers != null) {
+            gatheringFlush();
+        } else if (size > 1) {
             multiFlush();
         }
     }
@@ -56,39 +231,174 @@ public class TcpWriteContext implements WriteContext {
     @Override
     public boolean hasQueuedWriteOps() {
         assert channel.getSelector().isOnCurrentThread() : "Must be on selector thread to access queued writes";
-        return queued.isEmpty() == false;
+        return size != 0;
     }
 
     @Override
     public void clearQueuedWriteOps(Exception e) {
         assert channel.getSelector().isOnCurrentThread() : "Must be on selector thread to clear queued writes";
-        for (WriteOperation op : queued) {
-            channel.getSelector().executeFailedListener(op.getListener(), e);
+        while (size != 0) {
+            channel.getSelector().executeFailedListener(poll().getListener(), e);
+        }
+    }
+
+    @Override
+    public boolean isBelowHighWaterMark() {
+        return belowHighWaterMark.get();
+    }
+
+    @Override
+    public long getPendingWriteBytes() {
+        return pendingWriteBytes.get();
+    }
+
+    private void releasePendingBytes(long bytes, long heapBytes) {
+        long pending = pendingWriteBytes.addAndGet(-bytes);
+        if (breaker != null) {
+            breaker.addWithoutBreaking(-heapBytes);
+        }
+        if (pending <= lowWaterMark) {
+            belowHighWaterMark.compareAndSet(false, true);
         }
-        queued.clear();
     }
 
     private void singleFlush(WriteOperation headOp) throws IOException {
+        assert headOp == peek() : "Can only flush the head of the queue";
         try {
             headOp.flush();
         } catch (IOException e) {
+            poll();
             channel.getSelector().executeFailedListener(headOp.getListener(), e);
             throw e;
         }
 
         if (headOp.isFullyFlushed()) {
+            poll();
             channel.getSelector().executeListener(headOp.getListener(), null);
-        } else {
-            queued.push(headOp);
         }
     }
 
     private void multiFlush() throws IOException {
         boolean lastOpCompleted = true;
-        while (lastOpCompleted && queued.isEmpty() == false) {
-            WriteOperation op = queued.pop();
+        while (lastOpCompleted && size != 0) {
+            WriteOperation op = peek();
             singleFlush(op);
             lastOpCompleted = op.isFullyFlushed();
         }
     }
+
+    private void gatheringFlush() throws IOException {
+        boolean lastOpCompleted = true;
+        while (lastOpCompleted && size != 0) {
+            WriteOperation headOp = peek();
+            if (headOp.isGatherable() == false || headOp.getByteBuffers().length - headOp.getBufferIndex() > maxGatheringBuffers) {
+                // the head operation cannot be gathered or alone does not fit into the gathering buffers
+                singleFlush(headOp);
+                lastOpCompleted = headOp.isFullyFlushed();
+                continue;
+            }
+
+            int bufferCount = 0;
+            int bytes = 0;
+            for (int i = 0; i < size; ++i) {
+                WriteOperation op = get(i);
+                ByteBuffer[] opBuffers = op.getByteBuffers();
+                int opBufferIndex = op.getBufferIndex();
+                int opBufferCount = opBuffers.length - opBufferIndex;
+                if (i != 0 && (op.isGatherable() == false || bytes + op.getRemaining() > maxGatheringBytes
+                    || bufferCount + opBufferCount > maxGatheringBuffers)) {
+                    break;
+                }
+                System.arraycopy(opBuffers, opBufferIndex, gatheringBuffers, bufferCount, opBufferCount);
+                bufferCount += opBufferCount;
+                bytes += op.getRemaining();
+            }
+
+            int written;
+            try {
+                written = channel.write(gatheringBuffers, 0, bufferCount);
+            } catch (IOException e) {
+                poll();
+                channel.getSelector().executeFailedListener(headOp.getListener(), e);
+                throw e;
+            } finally {
+                // do not hold on to the buffers of written operations
+                Arrays.fill(gatheringBuffers, 0, bufferCount, null);
+            }
+
+            lastOpCompleted = written == bytes;
+            WriteOperation op;
+            while ((op = peek()) != null && op.getRemaining() <= written) {
+                written -= op.getRemaining();
+                op.incrementIndex(op.getRemaining());
+                poll();
+                channel.getSelector().executeListener(op.getListener(), null);
+            }
+            if (written > 0) {
+                // keep the partial progress of the last operation that was not fully written
+                peek().incrementIndex(written);
+            }
+        }
+    }
+
+    private WriteOperation peek() {
+        return size == 0 ? null : queued[head];
+    }
+
+    private WriteOperation get(int index) {
+        return queued[(head + index) & (queued.length - 1)];
+    }
+
+    private WriteOperation poll() {
+        if (size == 0) {
+            return null;
+        }
+        WriteOperation op = queued[head];
+        queued[head] = null;
+        head = (head + 1) & (queued.length - 1);
+        size--;
+        return op;
+    }
+
+    private void grow() {
+        WriteOperation[] newQueued = new WriteOperation[queued.length << 1];
+        for (int i = 0; i < size; ++i) {
+            newQueued[i] = get(i);
+        }
+        queued = newQueued;
+        head = 0;
+    }
+
+    /**
+     * Releases the pending bytes of a message once it was written or failed.
+     */
+    private class PendingWriteListener implements ActionListener<Void> {
+
+        private final long bytes;
+        private final long heapBytes;
+        private final ActionListener<Void> delegate;
+
+        private PendingWriteListener(long bytes, long heapBytes, ActionListener<Void> delegate) {
+            this.bytes = bytes;
+            this.heapBytes = heapBytes;
+            this.delegate = delegate;
+        }
+
+        @Override
+        public void onResponse(Void aVoid) {
+            releasePendingBytes(bytes, heapBytes);
+            delegate.onResponse(aVoid);
+        }
+
+        @Override
+        public void onFailure(Exception e) {
+            releasePendingBytes(bytes, heapBytes);
+            delegate.onFailure(e);
+        }
+
+        @Override
+        public String toString() {
+            return delegate.toString();
+        }
+    }
 }
@@ -5,11 +5,24 @@ import org.elasticsearch.common.bytes.BytesReference;
 import org.elasticsearch.transport.nio.WriteOperation;
 
 import java.io.IOException;
+import java.nio.channels.FileChannel;
 
 public interface WriteContext {
 
     void sendMessage(BytesReference reference, ActionListener<Void> listener);
 
+    /**
+     * Sends a header followed by a region of a file, which is transferred to the channel without passing
+     * through the heap. The file must stay open until the listener is called.
+     *
+     * @param header the bytes to write before the file region
+     * @param file the file to transfer from
+     * @param position the position in the file of the first byte of the region
+     * @param count the number of bytes in the region
+     * @param listener to call once the header and the region were written or the write failed
+     */
+    void sendFileRegion(BytesReference header, FileChannel file, long position, long count, ActionListener<Void> listener);
+
     void queueWriteOperations(WriteOperation writeOperation);
 
     void flushChannel() throws IOException;
@@ -18,4 +31,14 @@ public interface WriteContext {
 
     void clearQueuedWriteOps(Exception e);
 
+    /**
+     * Returns whether the bytes of messages that were sent but not yet written are below the high water
+     * mark. Once this returns false callers should hold back further messages until it returns true again.
+     *
+     * @return true if the channel can take more messages
+     */
+    boolean isBelowHighWaterMark();
+
+    long getPendingWriteBytes();
+
 }
@@ -1,12 +1,26 @@
 package org.elasticsearch.test.disruption;
 
+import org.elasticsearch.common.unit.ByteSizeValue;
+import org.elasticsearch.common.unit.TimeValue;
 import org.elasticsearch.test.ESTestCase;
 import org.elasticsearch.test.disruption.NetworkDisruption.Bridge;
+import org.elasticsearch.test.disruption.NetworkDisruption.JitterDistribution;
+import org.elasticsearch.test.disruption.NetworkDisruption.NetworkBandwidth;
+import org.elasticsearch.test.disruption.NetworkDisruption.NetworkJitter;
+import org.elasticsearch.test.disruption.NetworkDisruption.NetworkPacketLoss;
 import org.elasticsearch.test.disruption.NetworkDisruption.TwoPartitions;
+import org.elasticsearch.test.transport.MockTransportService;
 
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
 
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
+import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+
 public class NetworkDisruptionTests extends ESTestCase {
 
     public void testTwoPartitions() {
@@ -87,6 +101,61 @@ public class NetworkDisruptionTests extends ESTestCase {
         }
     }
 
+    public void testBandwidthDelaysRequestsBeyondBurst() {
+        NetworkBandwidth bandwidth = new NetworkBandwidth(new ByteSizeValue(1024), new ByteSizeValue(1024));
+        long[] nowNanos = new long[] {randomLong()};
+        MockTransportService.LinkShaper shaper = bandwidth.newLinkShaper(() -> nowNanos[0]);
+        List<TimeValue> burstDelays = shaper.shape("action", 1024);
+        assertThat(burstDelays, hasSize(1));
+        assertThat(burstDelays.get(0).nanos(), equalTo(0L));
+        // the bucket is empty, the next kilobyte has to wait for a second
+        List<TimeValue> delays = shaper.shape("action", 1024);
+        assertThat(delays.size(), equalTo(1));
+        assertThat(delays.get(0).millis(), equalTo(1000L));
+        // and the kilobyte after that is queued behind it
+        assertThat(shaper.shape("action", 1024).get(0).millis(), equalTo(2000L));
+        // the bucket is refilled as time passes
+        nowNanos[0] += TimeValue.timeValueSeconds(3).nanos();
+        assertThat(shaper.shape("action", 1024).get(0).millis(), equalTo(0L));
+    }
+
+    public void testJitterIsReproducible() {
+        TimeValue baseDelay = TimeValue.timeValueMillis(randomIntBetween(0, 100));
+        TimeValue jitter = TimeValue.timeValueMillis(randomIntBetween(1, 100));
+        long seed = randomLong();
+        for (JitterDistribution distribution : JitterDistribution.values()) {
+            NetworkJitter networkJitter = new NetworkJitter(baseDelay, jitter, distribution, seed);
+            MockTransportService.LinkShaper shaper = networkJitter.newLinkShaper("node1", "node2");
+            MockTransportService.LinkShaper sameShaper = networkJitter.newLinkShaper("node1", "node2");
+            for (int i = 0; i < 100; i++) {
+                List<TimeValue> delays = shaper.shape("action", randomIntBetween(1, 1024));
+                assertThat(delays, equalTo(sameShaper.shape("action", randomIntBetween(1, 1024))));
+                assertThat(delays.size(), equalTo(1));
+                assertThat(delays.get(0).nanos(), greaterThanOrEqualTo(baseDelay.nanos()));
+                if (distribution == JitterDistribution.UNIFORM) {
+                    assertThat(delays.get(0).nanos(), lessThanOrEqualTo(baseDelay.nanos() + jitter.nanos()));
+                }
+            }
+        }
+    }
+
+    public void testPacketLoss() {
+        long seed = randomLong();
+        assertThat(new NetworkPacketLoss(1, 0, seed).newLinkShaper("node1", "node2").shape("action", 1), empty());
+        assertThat(new NetworkPacketLoss(0, 1, seed).newLinkShaper("node1", "node2").shape("action", 1), hasSize(2));
+        assertThat(new NetworkPacketLoss(0, 0, seed).newLinkShaper("node1", "node2").shape("action", 1), hasSize(1));
+
+        NetworkPacketLoss packetLoss = new NetworkPacketLoss(randomDouble(), randomDouble(), seed);
+        MockTransportService.LinkShaper shaper = packetLoss.newLinkShaper("node1", "node2");
+        MockTransportService.LinkShaper sameShaper = packetLoss.newLinkShaper("node1", "node2");
+        for (int i = 0; i < 100; i++) {
+            assertThat(shaper.shape("action", 1), equalTo(sameShaper.shape("action", 1)));
+        }
+
+        expectThrows(IllegalArgumentException.class, () -> new NetworkPacketLoss(randomFrom(-0.5, 1.5), 0, seed));
+        expectThrows(IllegalArgumentException.class, () -> new NetworkPacketLoss(0, randomFrom(-0.5, 1.5), seed));
+    }
+
     private Set<String> generateRandomStringSet(int minSize, int maxSize) {
         assert maxSize >= minSize;
         Set<String> result = new HashSet<>();
@@ -0,0 +1,72 @@
+package org.elasticsearch.test.transport;
+
+import org.elasticsearch.Version;
+import org.elasticsearch.cluster.node.DiscoveryNode;
+import org.elasticsearch.test.ESTestCase;
+import org.elasticsearch.test.transport.CapturingTransport.CapturedRequest;
+import org.elasticsearch.transport.TransportRequest;
+import org.elasticsearch.transport.TransportRequestOptions;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+
+import static org.hamcrest.Matchers.arrayWithSize;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.hasSize;
+
+public class CapturingTransportTests extends ESTestCase {
+
+    private final DiscoveryNode node1 = new DiscoveryNode("node1", buildNewFakeTransportAddress(), Version.CURRENT);
+    private final DiscoveryNode node2 = new DiscoveryNode("node2", buildNewFakeTransportAddress(), Version.CURRENT);
+
+    public void testIndexesCapturedRequests() throws IOException {
+        CapturingTransport transport = new CapturingTransport();
+        send(transport, node1, "action1");
+        send(transport, node1, "action2");
+        send(transport, node2, "action1");
+
+        assertThat(transport.capturedRequests(), arrayWithSize(3));
+        assertThat(transport.capturedRequestCount(), equalTo(3L));
+        assertThat(transport.capturedRequestsForNode("node1"), hasSize(2));
+        assertThat(transport.capturedRequestsForNode("node3"), empty());
+        List<CapturedRequest> action1Requests = transport.capturedRequestsForAction("action1");
+        assertThat(action1Requests, hasSize(2));
+        assertThat(action1Requests.get(0).node, equalTo(node1));
+        assertThat(action1Requests.get(1).node, equalTo(node2));
+        assertThat(transport.capturedRequestCountForAction("action2"), equalTo(1L));
+
+        Map<String, List<CapturedRequest>> byNode = transport.getCapturedRequestsByTargetNodeAndClear();
+        assertThat(byNode.get("node1"), hasSize(2));
+        assertThat(byNode.get("node2"), hasSize(1));
+        assertThat(transport.capturedRequests(), arrayWithSize(0));
+        assertThat(transport.capturedRequestCount(), equalTo(0L));
+        assertThat(transport.capturedRequestsForAction("action1"), empty());
+    }
+
+    public void testBoundedCaptureOnlyCountsBeyondLimit() throws IOException {
+        int maxCapturedRequests = randomIntBetween(0, 10);
+        CapturingTransport transport = new CapturingTransport(maxCapturedRequests);
+        int requests = maxCapturedRequests + randomIntBetween(1, 100);
+        for (int i = 0; i < requests; i++) {
+            send(transport, randomFrom(node1, node2), "action");
+        }
+        assertThat(transport.capturedRequests(), arrayWithSize(maxCapturedRequests));
+        assertThat(transport.capturedRequestsForAction("action"), hasSize(maxCapturedRequests));
+        assertThat(transport.capturedRequestCount(), equalTo((long) requests));
+        assertThat(transport.capturedRequestCountForAction("action"), equalTo((long) requests));
+        assertThat(transport.capturedRequestCountForNode("node1") + transport.capturedRequestCountForNode("node2"),
+            equalTo((long) requests));
+
+        transport.clear();
+        assertThat(transport.capturedRequestCount(), equalTo(0L));
+        send(transport, node1, "action");
+        assertThat(transport.capturedRequests(), arrayWithSize(Math.min(1, maxCapturedRequests)));
+    }
+
+    private static void send(CapturingTransport transport, DiscoveryNode node, String action) throws IOException {
+        transport.getConnection(node).sendRequest(transport.newRequestId(), action, TransportRequest.Empty.INSTANCE,
+            TransportRequestOptions.EMPTY);
+    }
+}
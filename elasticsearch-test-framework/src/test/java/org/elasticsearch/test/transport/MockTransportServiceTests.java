@@ -0,0 +1,59 @@
+package org.elasticsearch.test.transport;
+
+import org.elasticsearch.Version;
+import org.elasticsearch.cluster.node.DiscoveryNode;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.unit.TimeValue;
+import org.elasticsearch.test.ESTestCase;
+import org.elasticsearch.threadpool.DeterministicThreadPool;
+import org.elasticsearch.threadpool.ThreadPool;
+import org.elasticsearch.transport.Transport;
+import org.elasticsearch.transport.TransportRequest;
+import org.elasticsearch.transport.TransportRequestOptions;
+import org.elasticsearch.transport.TransportService;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.Matchers.arrayWithSize;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+
+public class MockTransportServiceTests extends ESTestCase {
+
+    public void testDelayRuleFollowsVirtualClock() throws IOException {
+        DeterministicThreadPool threadPool = new DeterministicThreadPool(getTestName(), random());
+        CapturingTransport transport = new CapturingTransport();
+        DiscoveryNode localNode = new DiscoveryNode("local", buildNewFakeTransportAddress(), Version.CURRENT);
+        MockTransportService transportService = new MockTransportService(Settings.EMPTY, transport, threadPool,
+            TransportService.NOOP_TRANSPORT_INTERCEPTOR, boundAddress -> localNode, null, Collections.emptySet());
+        try {
+            transportService.start();
+            transportService.acceptIncomingRequests();
+            DiscoveryNode node = new DiscoveryNode("target", buildNewFakeTransportAddress(), Version.CURRENT);
+            TimeValue delay = TimeValue.timeValueMillis(randomLongBetween(1, TimeValue.timeValueMinutes(10).millis()));
+            transportService.addDelayRule(node.getAddress(), delay);
+
+            Transport.Connection connection = transportService.getConnection(node);
+            int requests = randomIntBetween(1, 10);
+            for (int i = 0; i < requests; i++) {
+                connection.sendRequest(transport.newRequestId(), "internal:test", TransportRequest.Empty.INSTANCE,
+                    TransportRequestOptions.EMPTY);
+            }
+            threadPool.runAllRunnableTasks();
+            assertThat(transport.capturedRequests(), arrayWithSize(0));
+
+            // returns as the scheduler only schedules a task on the thread pool while sends are pending
+            threadPool.runAllTasks();
+            assertThat(transport.capturedRequests(), arrayWithSize(requests));
+            assertThat(threadPool.relativeTimeInMillis(), greaterThanOrEqualTo(delay.millis()));
+            assertThat(threadPool.relativeTimeInMillis(), lessThanOrEqualTo(delay.millis() + DelayedSendScheduler.TICK.millis()));
+            assertThat(transport.capturedRequestCountForAction("internal:test"), equalTo((long) requests));
+        } finally {
+            transportService.close();
+            ThreadPool.terminate(threadPool, 10, TimeUnit.SECONDS);
+        }
+    }
+}
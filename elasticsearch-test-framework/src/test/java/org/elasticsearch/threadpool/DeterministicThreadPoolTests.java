@@ -0,0 +1,104 @@
+package org.elasticsearch.threadpool;
+
+import org.elasticsearch.common.unit.TimeValue;
+import org.elasticsearch.test.ESTestCase;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.equalTo;
+
+public class DeterministicThreadPoolTests extends ESTestCase {
+
+    public void testTasksRunOnlyWhenAsked() {
+        DeterministicThreadPool threadPool = new DeterministicThreadPool(getTestName(), random());
+        try {
+            AtomicInteger runs = new AtomicInteger();
+            threadPool.executor(ThreadPool.Names.GENERIC).execute(runs::incrementAndGet);
+            threadPool.executor(ThreadPool.Names.MANAGEMENT).execute(runs::incrementAndGet);
+            assertTrue(threadPool.hasRunnableTasks());
+            assertThat(runs.get(), equalTo(0));
+            threadPool.runRandomTask();
+            assertThat(runs.get(), equalTo(1));
+            threadPool.runAllRunnableTasks();
+            assertThat(runs.get(), equalTo(2));
+            assertFalse(threadPool.hasRunnableTasks());
+            expectThrows(IllegalStateException.class, threadPool::runRandomTask);
+        } finally {
+            ThreadPool.terminate(threadPool, 10, TimeUnit.SECONDS);
+        }
+    }
+
+    public void testOrderIsDeterminedBySeed() {
+        long seed = randomLong();
+        List<Integer> order = runTasksInRandomOrder(seed);
+        assertThat(order, containsInAnyOrder(0, 1, 2, 3, 4, 5, 6, 7, 8, 9));
+        assertThat(runTasksInRandomOrder(seed), equalTo(order));
+    }
+
+    private List<Integer> runTasksInRandomOrder(long seed) {
+        DeterministicThreadPool threadPool = new DeterministicThreadPool(getTestName(), new Random(seed));
+        try {
+            List<Integer> order = new ArrayList<>();
+            for (int i = 0; i < 10; i++) {
+                final int task = i;
+                threadPool.generic().execute(() -> order.add(task));
+            }
+            threadPool.runAllRunnableTasks();
+            return order;
+        } finally {
+            ThreadPool.terminate(threadPool, 10, TimeUnit.SECONDS);
+        }
+    }
+
+    public void testScheduledTasksRunInTimeOrder() {
+        DeterministicThreadPool threadPool = new DeterministicThreadPool(getTestName(), random());
+        try {
+            List<String> order = new ArrayList<>();
+            threadPool.schedule(TimeValue.timeValueHours(1), ThreadPool.Names.GENERIC, () -> order.add("hour"));
+            threadPool.schedule(TimeValue.timeValueSeconds(1), ThreadPool.Names.GENERIC, () -> {
+                order.add("second");
+                threadPool.schedule(TimeValue.timeValueSeconds(1), ThreadPool.Names.GENERIC, () -> order.add("two seconds"));
+            });
+            ScheduledFuture<?> cancelled = threadPool.schedule(TimeValue.timeValueMinutes(1), ThreadPool.Names.GENERIC,
+                () -> order.add("minute"));
+            assertTrue(cancelled.cancel(false));
+            assertFalse(threadPool.hasRunnableTasks());
+            assertTrue(threadPool.hasDeferredTasks());
+
+            threadPool.advanceTime();
+            assertThat(threadPool.relativeTimeInMillis(), equalTo(1000L));
+            threadPool.runAllTasks();
+            assertThat(order, contains("second", "two seconds", "hour"));
+            assertThat(threadPool.relativeTimeInMillis(), equalTo(TimeValue.timeValueHours(1).millis()));
+        } finally {
+            ThreadPool.terminate(threadPool, 10, TimeUnit.SECONDS);
+        }
+    }
+
+    public void testRunAllTasksUntilStopsPeriodicTasks() {
+        DeterministicThreadPool threadPool = new DeterministicThreadPool(getTestName(), random());
+        try {
+            AtomicInteger runs = new AtomicInteger();
+            threadPool.scheduleWithFixedDelay(runs::incrementAndGet, TimeValue.timeValueSeconds(10), ThreadPool.Names.GENERIC);
+            threadPool.runAllTasksUntil(TimeValue.timeValueMinutes(1).millis() + 5);
+            assertThat(runs.get(), equalTo(6));
+            assertThat(threadPool.relativeTimeInMillis(), equalTo(TimeValue.timeValueMinutes(1).millis() + 5));
+        } finally {
+            ThreadPool.terminate(threadPool, 10, TimeUnit.SECONDS);
+        }
+    }
+
+    public void testRejectsTasksAfterShutdown() {
+        DeterministicThreadPool threadPool = new DeterministicThreadPool(getTestName(), random());
+        ThreadPool.terminate(threadPool, 10, TimeUnit.SECONDS);
+        expectThrows(RuntimeException.class, () -> threadPool.generic().execute(() -> {}));
+        expectThrows(RuntimeException.class, () -> threadPool.schedule(TimeValue.timeValueSeconds(1), ThreadPool.Names.GENERIC, () -> {}));
+    }
+}
@@ -0,0 +1,145 @@
+package org.elasticsearch.transport;
+
+import org.elasticsearch.Version;
+import org.elasticsearch.cluster.node.DiscoveryNode;
+import org.elasticsearch.common.io.stream.NamedWriteableRegistry;
+import org.elasticsearch.common.io.stream.StreamInput;
+import org.elasticsearch.common.network.NetworkService;
+import org.elasticsearch.common.settings.ClusterSettings;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.unit.TimeValue;
+import org.elasticsearch.common.util.BigArrays;
+import org.elasticsearch.indices.breaker.NoneCircuitBreakerService;
+import org.elasticsearch.test.VersionUtils;
+import org.elasticsearch.test.transport.MockTransportService;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.util.Collections;
+
+import static java.util.Collections.emptyMap;
+import static java.util.Collections.emptySet;
+
+public class MockLocalTransportTests extends AbstractSimpleTransportTestCase {
+
+    @Override
+    protected MockTransportService build(Settings settings, Version version, ClusterSettings clusterSettings, boolean doHandshake) {
+        NamedWriteableRegistry namedWriteableRegistry = new NamedWriteableRegistry(Collections.emptyList());
+        Transport transport = new MockLocalTransport(settings, threadPool, BigArrays.NON_RECYCLING_INSTANCE,
+            new NoneCircuitBreakerService(), namedWriteableRegistry, new NetworkService(Collections.emptyList()), version) {
+            @Override
+            protected Version executeHandshake(DiscoveryNode node, TcpChannel channel, TimeValue timeout) throws IOException,
+                InterruptedException {
+                if (doHandshake) {
+                    return super.executeHandshake(node, channel, timeout);
+                } else {
+                    return version.minimumCompatibilityVersion();
+                }
+            }
+        };
+        MockTransportService mockTransportService =
+            MockTransportService.createNewService(Settings.EMPTY, transport, version, threadPool, clusterSettings, Collections.emptySet());
+        mockTransportService.start();
+        return mockTransportService;
+    }
+
+    @Override
+    public int channelsPerNodeConnection() {
+        return 1;
+    }
+
+    @Override
+    protected void closeConnectionChannel(Transport transport, Transport.Connection connection) throws IOException {
+        final TcpTransport.NodeChannels channels = (TcpTransport.NodeChannels) connection;
+        TcpChannel.closeChannels(channels.getChannels().subList(0, randomIntBetween(1, channels.getChannels().size())), true);
+    }
+
+    @Override
+    public void testHandshakeWithIncompatVersion() {
+        // same as the base test but with a local peer, the local transport cannot connect to a MockTcpTransport
+        NamedWriteableRegistry namedWriteableRegistry = new NamedWriteableRegistry(Collections.emptyList());
+        Version version = Version.fromString("2.0.0");
+        try (MockLocalTransport transport = new MockLocalTransport(Settings.EMPTY, threadPool, BigArrays.NON_RECYCLING_INSTANCE,
+            new NoneCircuitBreakerService(), namedWriteableRegistry, new NetworkService(Collections.emptyList()), version);
+             MockTransportService service = MockTransportService.createNewService(Settings.EMPTY, transport, version, threadPool, null,
+                 Collections.emptySet())) {
+            service.start();
+            service.acceptIncomingRequests();
+            DiscoveryNode node =
+                new DiscoveryNode("TS_TPC", "TS_TPC", transport.boundAddress().publishAddress(), emptyMap(), emptySet(), version0);
+            expectThrows(ConnectTransportException.class, () -> serviceA.openConnection(node, singleChannelProfile()));
+        }
+    }
+
+    @Override
+    public void testHandshakeUpdatesVersion() throws IOException {
+        // same as the base test but with a local peer, the local transport cannot connect to a MockTcpTransport
+        NamedWriteableRegistry namedWriteableRegistry = new NamedWriteableRegistry(Collections.emptyList());
+        Version version = VersionUtils.randomVersionBetween(random(), Version.CURRENT.minimumCompatibilityVersion(), Version.CURRENT);
+        try (MockLocalTransport transport = new MockLocalTransport(Settings.EMPTY, threadPool, BigArrays.NON_RECYCLING_INSTANCE,
+            new NoneCircuitBreakerService(), namedWriteableRegistry, new NetworkService(Collections.emptyList()), version);
+             MockTransportService service = MockTransportService.createNewService(Settings.EMPTY, transport, version, threadPool, null,
+                 Collections.emptySet())) {
+            service.start();
+            service.acceptIncomingRequests();
+            DiscoveryNode node = new DiscoveryNode("TS_TPC", "TS_TPC", transport.boundAddress().publishAddress(), emptyMap(),
+                emptySet(), Version.fromString("2.0.0"));
+            try (Transport.Connection connection = serviceA.openConnection(node, singleChannelProfile())) {
+                assertEquals(connection.getVersion(), version);
+            }
+        }
+    }
+
+    @Override
+    public void testTcpHandshake() throws IOException, InterruptedException {
+        // same as the base test but with a local peer, the local transport cannot connect to a MockTcpTransport
+        NamedWriteableRegistry namedWriteableRegistry = new NamedWriteableRegistry(Collections.emptyList());
+        MockLocalTransport transport = new MockLocalTransport(Settings.EMPTY, threadPool, BigArrays.NON_RECYCLING_INSTANCE,
+            new NoneCircuitBreakerService(), namedWriteableRegistry, new NetworkService(Collections.emptyList())) {
+            @Override
+            protected String handleRequest(TcpChannel channel, String profileName, StreamInput stream, long requestId,
+                                           int messageLengthBytes, Version version, InetSocketAddress remoteAddress, byte status)
+                throws IOException {
+                return super.handleRequest(channel, profileName, stream, requestId, messageLengthBytes, version, remoteAddress,
+                    (byte) (status & ~(1 << 3))); // we flip the isHandshake bit back and act like the handler is not found
+            }
+        };
+        try (MockTransportService service = MockTransportService.createNewService(Settings.EMPTY, transport, Version.CURRENT, threadPool,
+            null, Collections.emptySet())) {
+            service.start();
+            service.acceptIncomingRequests();
+            // this acts like a node that doesn't have support for handshakes
+            DiscoveryNode node =
+                new DiscoveryNode("TS_TPC", "TS_TPC", transport.boundAddress().publishAddress(), emptyMap(), emptySet(), version0);
+            ConnectTransportException exception = expectThrows(ConnectTransportException.class, () -> serviceA.connectToNode(node));
+            assertTrue(exception.getCause() instanceof IllegalStateException);
+            assertEquals("handshake failed", exception.getCause().getMessage());
+        }
+    }
+
+    private static ConnectionProfile singleChannelProfile() {
+        ConnectionProfile.Builder builder = new ConnectionProfile.Builder();
+        builder.addConnections(1,
+            TransportRequestOptions.Type.BULK,
+            TransportRequestOptions.Type.PING,
+            TransportRequestOptions.Type.RECOVERY,
+            TransportRequestOptions.Type.REG,
+            TransportRequestOptions.Type.STATE);
+        return builder.build();
+    }
+
+    @Override
+    public void testTimeoutPerConnection() {
+        // the local transport cannot connect to a plain server socket
+    }
+
+    @Override
+    public void testTcpHandshakeTimeout() {
+        // the local transport cannot connect to a plain server socket
+    }
+
+    @Override
+    public void testTcpHandshakeConnectionReset() {
+        // the local transport cannot connect to a plain server socket
+    }
+}
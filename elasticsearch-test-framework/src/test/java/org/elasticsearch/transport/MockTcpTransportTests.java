@@ -10,15 +10,19 @@ import org.elasticsearch.common.unit.TimeValue;
 import org.elasticsearch.common.util.BigArrays;
 import org.elasticsearch.indices.breaker.NoneCircuitBreakerService;
 import org.elasticsearch.test.transport.MockTransportService;
+import org.elasticsearch.threadpool.ThreadPool;
 
 import java.io.IOException;
 import java.util.Collections;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
 
 public class MockTcpTransportTests extends AbstractSimpleTransportTestCase {
 
     @Override
     protected MockTransportService build(Settings settings, Version version, ClusterSettings clusterSettings, boolean doHandshake) {
         NamedWriteableRegistry namedWriteableRegistry = new NamedWriteableRegistry(Collections.emptyList());
+        settings = Settings.builder().put(settings).put(MockTcpTransport.VIRTUAL_THREADS.getKey(), randomBoolean()).build();
         Transport transport = new MockTcpTransport(settings, threadPool, BigArrays.NON_RECYCLING_INSTANCE,
             new NoneCircuitBreakerService(), namedWriteableRegistry, new NetworkService(Collections.emptyList()), version) {
             @Override
@@ -42,6 +46,28 @@ public class MockTcpTransportTests extends AbstractSimpleTransportTestCase {
         return 1;
     }
 
+    public void testVirtualThreadsFallBackToPlatformThreads() throws Exception {
+        boolean supported;
+        try {
+            Thread.class.getMethod("ofVirtual");
+            supported = true;
+        } catch (NoSuchMethodException e) {
+            supported = false;
+        }
+        ExecutorService executor = MockTcpTransport.newVirtualThreadExecutor(Transports.TEST_MOCK_TRANSPORT_THREAD_PREFIX);
+        if (supported == false) {
+            assertNull(executor);
+            return;
+        }
+        assertNotNull(executor);
+        try {
+            String threadName = executor.submit(() -> Thread.currentThread().getName()).get();
+            assertTrue(threadName, threadName.startsWith(Transports.TEST_MOCK_TRANSPORT_THREAD_PREFIX + "[T#"));
+        } finally {
+            ThreadPool.terminate(executor, 10, TimeUnit.SECONDS);
+        }
+    }
+
     @Override
     protected void closeConnectionChannel(Transport transport, Transport.Connection connection) throws IOException {
         final MockTcpTransport t = (MockTcpTransport) transport;
@@ -0,0 +1,125 @@
+package org.elasticsearch.transport;
+
+import org.apache.lucene.util.LuceneTestCase;
+import org.elasticsearch.common.network.NetworkModule;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.env.NodeEnvironment;
+import org.elasticsearch.test.ESTestCase;
+import org.elasticsearch.test.InternalTestCluster;
+import org.elasticsearch.test.NodeConfigurationSource;
+import org.elasticsearch.test.disruption.LongGCDisruption;
+import org.elasticsearch.test.discovery.TestZenDiscovery;
+
+import java.lang.management.ManagementFactory;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.lessThan;
+
+/**
+ * Starts a cluster of {@link #NODES} nodes on the mock-tcp transport, once with the accept and read loops of
+ * {@link MockTcpTransport} on platform threads and once on virtual threads, and logs the time until each cluster
+ * formed and the number of platform threads it runs on. Virtual threads need a JVM that supports them, on older
+ * JVMs both clusters run on the same platform threads. Also checks that a {@link LongGCDisruption}, which cannot
+ * suspend virtual threads, refuses to pause a node whose transport runs on them.
+ */
+@LuceneTestCase.SuppressFileSystems("ExtrasFS") // doesn't work with potential multi data path from test cluster yet
+public class MockTcpTransportVirtualThreadsIT extends ESTestCase {
+
+    private static final int NODES = 10;
+
+    public void testVirtualThreadsReducePlatformThreads() throws Exception {
+        // the first cluster of the JVM starts slower, it would favor the mode that starts second
+        startCluster(randomBoolean());
+        ClusterStartup platformThreads = startCluster(false);
+        ClusterStartup virtualThreads = startCluster(true);
+        logger.info("[{}] nodes on platform threads: formed in [{}ms], [{}] live platform threads, [{}] mock transport threads",
+            NODES, platformThreads.startMillis, platformThreads.liveThreads, platformThreads.transportThreads);
+        logger.info("[{}] nodes on virtual threads: formed in [{}ms], [{}] live platform threads, [{}] mock transport threads",
+            NODES, virtualThreads.startMillis, virtualThreads.liveThreads, virtualThreads.transportThreads);
+        if (supportsVirtualThreads()) {
+            // the accept and read loops no longer hold a platform thread each
+            assertThat(virtualThreads.transportThreads, lessThan(platformThreads.transportThreads));
+            assertThat(virtualThreads.liveThreads, lessThan(platformThreads.liveThreads));
+        }
+    }
+
+    private static boolean supportsVirtualThreads() {
+        try {
+            Thread.class.getMethod("ofVirtual");
+            return true;
+        } catch (NoSuchMethodException e) {
+            return false;
+        }
+    }
+
+    public void testLongGCDisruptionRejectsVirtualThreads() throws Exception {
+        assumeTrue("virtual threads are not supported", supportsVirtualThreads());
+        InternalTestCluster cluster = newCluster(true, 1);
+        try {
+            cluster.beforeTest(random(), 0.0);
+            LongGCDisruption disruption = new LongGCDisruption(random(), cluster.getNodeNames()[0]);
+            disruption.applyToCluster(cluster);
+            // the node would keep answering on its virtual transport threads while it is supposed to be paused
+            IllegalStateException e = expectThrows(IllegalStateException.class, disruption::startDisrupting);
+            assertThat(e.getMessage(), containsString(MockTcpTransport.VIRTUAL_THREADS.getKey()));
+        } finally {
+            cluster.close();
+        }
+    }
+
+    private ClusterStartup startCluster(boolean virtualThreads) throws Exception {
+        InternalTestCluster cluster = newCluster(virtualThreads, NODES);
+        try {
+            long startNanos = System.nanoTime();
+            // starts the nodes and returns once they formed a cluster
+            cluster.beforeTest(random(), 0.0);
+            long startMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+            assertEquals(NODES, cluster.size());
+            // only platform threads are listed, virtual threads are not
+            long transportThreads = Thread.getAllStackTraces().keySet().stream()
+                .filter(thread -> thread.getName().contains(Transports.TEST_MOCK_TRANSPORT_THREAD_PREFIX))
+                .count();
+            return new ClusterStartup(startMillis, ManagementFactory.getThreadMXBean().getThreadCount(), transportThreads);
+        } finally {
+            cluster.close();
+        }
+    }
+
+    private InternalTestCluster newCluster(boolean virtualThreads, int nodes) throws Exception {
+        NodeConfigurationSource nodeConfigurationSource = new NodeConfigurationSource() {
+            @Override
+            public Settings nodeSettings(int nodeOrdinal) {
+                return Settings.builder()
+                    .put(NetworkModule.HTTP_ENABLED.getKey(), false)
+                    .put(NodeEnvironment.MAX_LOCAL_STORAGE_NODES_SETTING.getKey(), nodes)
+                    .put(NetworkModule.TRANSPORT_TYPE_KEY, MockTcpTransportPlugin.MOCK_TCP_TRANSPORT_NAME)
+                    .put(MockTcpTransport.VIRTUAL_THREADS.getKey(), virtualThreads)
+                    .build();
+            }
+
+            @Override
+            public Path nodeConfigPath(int nodeOrdinal) {
+                return null;
+            }
+        };
+        return new InternalTestCluster(randomLong(), createTempDir(), false, true, nodes, nodes, "test", nodeConfigurationSource, 0,
+            false, "node", Arrays.asList(MockTcpTransportPlugin.class, TestZenDiscovery.TestPlugin.class), Function.identity());
+    }
+
+    private static final class ClusterStartup {
+
+        private final long startMillis;
+        private final long liveThreads;
+        private final long transportThreads;
+
+        ClusterStartup(long startMillis, long liveThreads, long transportThreads) {
+            this.startMillis = startMillis;
+            this.liveThreads = liveThreads;
+            this.transportThreads = transportThreads;
+        }
+    }
+}
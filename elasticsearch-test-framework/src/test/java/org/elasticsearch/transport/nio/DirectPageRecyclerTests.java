@@ -0,0 +1,55 @@
+package org.elasticsearch.transport.nio;
+
+import org.elasticsearch.common.recycler.Recycler;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.util.BigArrays;
+import org.elasticsearch.test.ESTestCase;
+
+import java.nio.ByteBuffer;
+
+public class DirectPageRecyclerTests extends ESTestCase {
+
+    public void testPagesAreDirect() {
+        try (DirectPageRecycler recycler = new DirectPageRecycler(Settings.EMPTY)) {
+            Recycler.V<ByteBuffer> page = recycler.directPage();
+            assertTrue(page.v().isDirect());
+            assertEquals(BigArrays.BYTE_PAGE_SIZE, page.v().remaining());
+            page.close();
+        }
+    }
+
+    public void testReleasedPageIsCleared() {
+        try (DirectPageRecycler recycler = new DirectPageRecycler(Settings.EMPTY)) {
+            Recycler.V<ByteBuffer> page = recycler.directPage();
+            page.v().position(randomIntBetween(1, BigArrays.BYTE_PAGE_SIZE));
+            page.close();
+
+            Recycler.V<ByteBuffer> page2 = recycler.directPage();
+            assertEquals(0, page2.v().position());
+            assertEquals(BigArrays.BYTE_PAGE_SIZE, page2.v().limit());
+            page2.close();
+        }
+    }
+
+    public void testMockDetectsDoubleRelease() throws Exception {
+        try (DirectPageRecycler recycler = new MockDirectPageRecycler(Settings.EMPTY)) {
+            Recycler.V<ByteBuffer> page = recycler.directPage();
+            page.close();
+            expectThrows(IllegalStateException.class, page::close);
+        }
+        MockDirectPageRecycler.ensureAllPagesAreReleased();
+    }
+
+    public void testInboundChannelBufferReleasesDirectPages() throws Exception {
+        try (DirectPageRecycler recycler = new MockDirectPageRecycler(Settings.EMPTY)) {
+            InboundChannelBuffer channelBuffer = new InboundChannelBuffer(() -> {
+                Recycler.V<ByteBuffer> page = recycler.directPage();
+                return new InboundChannelBuffer.Page(page.v(), page);
+            });
+            channelBuffer.ensureCapacity(BigArrays.BYTE_PAGE_SIZE * randomIntBetween(2, 8));
+            channelBuffer.release(BigArrays.BYTE_PAGE_SIZE);
+            channelBuffer.close();
+        }
+        MockDirectPageRecycler.ensureAllPagesAreReleased();
+    }
+}
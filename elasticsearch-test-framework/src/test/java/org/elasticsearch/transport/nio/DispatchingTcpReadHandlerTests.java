@@ -0,0 +1,107 @@
+package org.elasticsearch.transport.nio;
+
+import org.elasticsearch.common.bytes.BytesArray;
+import org.elasticsearch.common.bytes.BytesReference;
+import org.elasticsearch.test.ESTestCase;
+import org.elasticsearch.transport.nio.channel.TcpNioSocketChannel;
+import org.elasticsearch.transport.nio.utils.TestSelectionKey;
+import org.junit.Before;
+import org.mockito.ArgumentCaptor;
+
+import java.nio.channels.SelectionKey;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class DispatchingTcpReadHandlerTests extends ESTestCase {
+
+    private NioTransport transport;
+    private TcpNioSocketChannel channel;
+    private SocketSelector selector;
+    private TestSelectionKey selectionKey;
+    private ArrayDeque<Runnable> executor;
+    private List<BytesReference> handledMessages;
+    private DispatchingTcpReadHandler handler;
+
+    @Before
+    public void setUpHandler() throws Exception {
+        transport = mock(NioTransport.class);
+        channel = mock(TcpNioSocketChannel.class);
+        selector = mock(SocketSelector.class);
+        selectionKey = new TestSelectionKey(SelectionKey.OP_READ);
+        executor = new ArrayDeque<>();
+        when(channel.getSelector()).thenReturn(selector);
+        when(channel.getSelectionKey()).thenReturn(selectionKey);
+        when(channel.isOpen()).thenReturn(true);
+        when(selector.isOnCurrentThread()).thenReturn(true);
+        handledMessages = new ArrayList<>();
+        handler = new DispatchingTcpReadHandler("default", transport, executor::add, 100) {
+            @Override
+            void handleDispatchedMessage(BytesReference message, TcpNioSocketChannel channel, int messageBytesLength) {
+                handledMessages.add(message);
+            }
+        };
+    }
+
+    public void testMessageIsCopiedAndHandledByExecutor() throws Exception {
+        byte[] bytes = randomByteArrayOfLength(10);
+        handler.handleMessage(new BytesArray(bytes), channel, bytes.length);
+
+        assertTrue(handledMessages.isEmpty());
+        assertEquals(10, handler.getBacklogBytes());
+
+        // the read context releases the bytes of the message once the handler returns
+        bytes[0] = (byte) (bytes[0] + 1);
+        executor.poll().run();
+
+        assertEquals(1, handledMessages.size());
+        assertNotEquals(bytes[0], handledMessages.get(0).get(0));
+        assertEquals(0, handler.getBacklogBytes());
+    }
+
+    public void testReadsArePausedAboveHighWaterMark() throws Exception {
+        handler.handleMessage(new BytesArray(new byte[60]), channel, 60);
+        assertFalse(handler.isReadPaused());
+        assertTrue((selectionKey.interestOps() & SelectionKey.OP_READ) != 0);
+
+        handler.handleMessage(new BytesArray(new byte[60]), channel, 60);
+        assertTrue(handler.isReadPaused());
+        assertTrue((selectionKey.interestOps() & SelectionKey.OP_READ) == 0);
+
+        ArgumentCaptor<Runnable> taskCaptor = ArgumentCaptor.forClass(Runnable.class);
+        executor.poll().run();
+        verify(selector).queueTask(taskCaptor.capture());
+        // reads are only resumed on the selector thread
+        assertTrue(handler.isReadPaused());
+
+        taskCaptor.getValue().run();
+        assertFalse(handler.isReadPaused());
+        assertTrue((selectionKey.interestOps() & SelectionKey.OP_READ) != 0);
+    }
+
+    public void testResumeChecksBacklogOnSelectorThread() throws Exception {
+        handler.handleMessage(new BytesArray(new byte[120]), channel, 120);
+        assertTrue(handler.isReadPaused());
+
+        ArgumentCaptor<Runnable> taskCaptor = ArgumentCaptor.forClass(Runnable.class);
+        executor.poll().run();
+        verify(selector).queueTask(taskCaptor.capture());
+
+        // the read context still dispatches the frames it read before reads were paused
+        handler.handleMessage(new BytesArray(new byte[120]), channel, 120);
+        taskCaptor.getValue().run();
+        assertTrue(handler.isReadPaused());
+        assertTrue((selectionKey.interestOps() & SelectionKey.OP_READ) == 0);
+
+        executor.poll().run();
+        verify(selector, times(2)).queueTask(taskCaptor.capture());
+        taskCaptor.getValue().run();
+        assertFalse(handler.isReadPaused());
+        assertTrue((selectionKey.interestOps() & SelectionKey.OP_READ) != 0);
+    }
+}
@@ -9,9 +9,14 @@ import java.nio.channels.CancelledKeyException;
 import java.nio.channels.ClosedSelectorException;
 import java.nio.channels.SelectionKey;
 import java.nio.channels.Selector;
+import java.util.HashSet;
+import java.util.concurrent.TimeUnit;
 
 import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -70,12 +75,87 @@ public class ESSelectorTests extends ESTestCase {
         verify(rawSelector).close();
     }
 
+    public void testOnlyOneWakeupIsIssuedPerSelectCycle() throws Exception {
+        Thread thread = new Thread(() -> {
+            for (int i = 0; i < 3; ++i) {
+                selector.wakeup();
+            }
+        });
+        thread.start();
+        thread.join();
+
+        verify(rawSelector, times(1)).wakeup();
+        assertEquals(1, selector.getIssuedWakeups());
+        assertEquals(2, selector.getSuppressedWakeups());
+
+        selector.singleLoop();
+        thread = new Thread(selector::wakeup);
+        thread.start();
+        thread.join();
+
+        verify(rawSelector, times(2)).wakeup();
+        assertEquals(2, selector.getIssuedWakeups());
+    }
+
+    public void testWakeupFromSelectorThreadIsSuppressed() {
+        selector.setThread();
+
+        selector.wakeup();
+
+        verify(rawSelector, never()).wakeup();
+        assertEquals(0, selector.getIssuedWakeups());
+        assertEquals(1, selector.getSuppressedWakeups());
+    }
+
+    public void testSpinSelectFindsReadyKeys() throws IOException {
+        selector = new TestSelector(handler, rawSelector, TimeUnit.SECONDS.toNanos(10));
+        when(rawSelector.selectNow()).thenReturn(0, 0, 1);
+        when(rawSelector.selectedKeys()).thenReturn(new HashSet<>());
+
+        selector.singleLoop();
+
+        verify(rawSelector, times(3)).selectNow();
+        verify(rawSelector, never()).select(anyLong());
+        assertEquals(1, selector.getSpinHits());
+        assertEquals(0, selector.getSpinMisses());
+    }
+
+    public void testSpinSelectFallsBackToBlockingSelect() throws IOException {
+        selector = new TestSelector(handler, rawSelector, 1);
+        when(rawSelector.selectNow()).thenReturn(0);
+
+        selector.singleLoop();
+
+        verify(rawSelector).select(anyLong());
+        assertEquals(0, selector.getSpinHits());
+        assertEquals(1, selector.getSpinMisses());
+    }
+
+    public void testSpinSelectReturnsWhenWakeupIsPending() throws Exception {
+        selector = new TestSelector(handler, rawSelector, TimeUnit.SECONDS.toNanos(10));
+        when(rawSelector.selectNow()).thenAnswer(invocationOnMock -> {
+            Thread thread = new Thread(selector::wakeup);
+            thread.start();
+            thread.join();
+            return 0;
+        });
+
+        selector.singleLoop();
+
+        verify(rawSelector).selectNow();
+        verify(rawSelector, never()).select(anyLong());
+    }
+
     private static class TestSelector extends ESSelector {
 
         TestSelector(EventHandler eventHandler, Selector selector) throws IOException {
             super(eventHandler, selector);
         }
 
+        TestSelector(EventHandler eventHandler, Selector selector, long maxSpinNanos) throws IOException {
+            super(eventHandler, selector, maxSpinNanos);
+        }
+
         @Override
         void processKey(SelectionKey selectionKey) throws CancelledKeyException {
 
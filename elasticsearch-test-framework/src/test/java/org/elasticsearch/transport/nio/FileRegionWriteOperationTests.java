@@ -0,0 +1,97 @@
+package org.elasticsearch.transport.nio;
+
+import org.elasticsearch.action.ActionListener;
+import org.elasticsearch.common.bytes.BytesArray;
+import org.elasticsearch.test.ESTestCase;
+import org.elasticsearch.transport.nio.channel.NioSocketChannel;
+import org.junit.After;
+import org.junit.Before;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class FileRegionWriteOperationTests extends ESTestCase {
+
+    private NioSocketChannel channel;
+    private ActionListener<Void> listener;
+    private FileChannel file;
+
+    @Before
+    @SuppressWarnings("unchecked")
+    public void setUpFile() throws IOException {
+        channel = mock(NioSocketChannel.class);
+        listener = mock(ActionListener.class);
+        Path path = createTempFile();
+        Files.write(path, randomByteArrayOfLength(1000));
+        file = FileChannel.open(path, StandardOpenOption.READ);
+    }
+
+    @After
+    public void closeFile() throws IOException {
+        file.close();
+    }
+
+    public void testHeaderIsWrittenBeforeTheFileRegion() throws IOException {
+        FileRegionWriteOperation writeOp = new FileRegionWriteOperation(channel, new BytesArray(new byte[10]), file, 100, 500,
+            listener);
+        assertFalse(writeOp.isGatherable());
+        assertEquals(510, writeOp.getRemaining());
+
+        when(channel.write(any(ByteBuffer[].class), anyInt(), anyInt())).thenReturn(4);
+        assertEquals(4, writeOp.flush());
+        verify(channel, never()).transferFrom(any(), anyLong(), anyInt());
+        assertEquals(506, writeOp.getRemaining());
+
+        when(channel.write(any(ByteBuffer[].class), anyInt(), anyInt())).thenReturn(6);
+        when(channel.transferFrom(file, 100, 500)).thenReturn(300);
+        when(channel.transferFrom(file, 400, 200)).thenReturn(0);
+        assertEquals(306, writeOp.flush());
+        assertFalse(writeOp.isFullyFlushed());
+        assertEquals(200, writeOp.getRemaining());
+
+        when(channel.transferFrom(file, 400, 200)).thenReturn(200);
+        assertEquals(200, writeOp.flush());
+        assertTrue(writeOp.isFullyFlushed());
+        assertEquals(0, writeOp.getRemaining());
+    }
+
+    public void testEmptyHeader() throws IOException {
+        FileRegionWriteOperation writeOp = new FileRegionWriteOperation(channel, new BytesArray(new byte[0]), file, 0, 1000, listener);
+
+        when(channel.transferFrom(eq(file), anyLong(), anyInt())).thenReturn(1000);
+        assertEquals(1000, writeOp.flush());
+
+        assertTrue(writeOp.isFullyFlushed());
+        verify(channel, never()).write(any(ByteBuffer[].class), anyInt(), anyInt());
+    }
+
+    public void testRegionPastTheEndOfTheFileFails() throws IOException {
+        FileRegionWriteOperation writeOp = new FileRegionWriteOperation(channel, new BytesArray(new byte[0]), file, 900, 200, listener);
+
+        when(channel.transferFrom(file, 900, 200)).thenReturn(100);
+        when(channel.transferFrom(file, 1000, 100)).thenReturn(0);
+
+        expectThrows(EOFException.class, writeOp::flush);
+    }
+
+    public void testNegativeRegionIsRejected() {
+        expectThrows(IllegalArgumentException.class,
+            () -> new FileRegionWriteOperation(channel, new BytesArray(new byte[0]), file, -1, 10, listener));
+        expectThrows(IllegalArgumentException.class,
+            () -> new FileRegionWriteOperation(channel, new BytesArray(new byte[0]), file, 0, -1, listener));
+    }
+}
@@ -123,6 +123,50 @@ public class InboundChannelBufferTests extends ESTestCase {
         assertFalse(queue.poll().get());
     }
 
+    public void testReleaseUnusedPagesKeepsPagesInUse() {
+        ConcurrentLinkedQueue<AtomicBoolean> queue = new ConcurrentLinkedQueue<>();
+        Supplier<InboundChannelBuffer.Page> supplier = () -> {
+            AtomicBoolean atomicBoolean = new AtomicBoolean();
+            queue.add(atomicBoolean);
+            return new InboundChannelBuffer.Page(ByteBuffer.allocate(PAGE_SIZE), () -> atomicBoolean.set(true));
+        };
+        InboundChannelBuffer channelBuffer = new InboundChannelBuffer(supplier);
+        channelBuffer.ensureCapacity(PAGE_SIZE * 4);
+        channelBuffer.incrementIndex(PAGE_SIZE + 1);
+
+        channelBuffer.releaseUnusedPages();
+
+        assertEquals(PAGE_SIZE * 2, channelBuffer.getCapacity());
+        assertEquals(PAGE_SIZE + 1, channelBuffer.getIndex());
+        assertFalse(queue.poll().get());
+        assertFalse(queue.poll().get());
+        assertTrue(queue.poll().get());
+        assertTrue(queue.poll().get());
+    }
+
+    public void testReleaseUnusedPagesOfEmptyBuffer() {
+        ConcurrentLinkedQueue<AtomicBoolean> queue = new ConcurrentLinkedQueue<>();
+        Supplier<InboundChannelBuffer.Page> supplier = () -> {
+            AtomicBoolean atomicBoolean = new AtomicBoolean();
+            queue.add(atomicBoolean);
+            return new InboundChannelBuffer.Page(ByteBuffer.allocate(PAGE_SIZE), () -> atomicBoolean.set(true));
+        };
+        InboundChannelBuffer channelBuffer = new InboundChannelBuffer(supplier);
+        channelBuffer.ensureCapacity(PAGE_SIZE * 2);
+        channelBuffer.release(randomInt(300));
+
+        channelBuffer.releaseUnusedPages();
+
+        assertEquals(0, channelBuffer.getCapacity());
+        for (AtomicBoolean closedRef : queue) {
+            assertTrue(closedRef.get());
+        }
+
+        channelBuffer.ensureCapacity(PAGE_SIZE);
+        assertEquals(PAGE_SIZE, channelBuffer.getCapacity());
+        assertEquals(PAGE_SIZE, channelBuffer.sliceBuffersFrom(0)[0].remaining());
+    }
+
     public void testClose() {
         ConcurrentLinkedQueue<AtomicBoolean> queue = new ConcurrentLinkedQueue<>();
         Supplier<InboundChannelBuffer.Page> supplier = () -> {
@@ -188,4 +232,35 @@ public class InboundChannelBufferTests extends ESTestCase {
 
         assertEquals(0, channelBuffer.sliceBuffersFrom(channelBuffer.getIndex()).length);
     }
+
+    public void testSliceBuffersBetweenIndexes() {
+        InboundChannelBuffer channelBuffer = new InboundChannelBuffer(defaultPageSupplier);
+        channelBuffer.ensureCapacity(PAGE_SIZE * 3);
+        int offset = randomInt(300);
+        channelBuffer.release(offset);
+
+        ByteBuffer[] postIndexBuffers = channelBuffer.sliceBuffersFrom(0);
+        int i = 0;
+        for (ByteBuffer buffer : postIndexBuffers) {
+            while (buffer.hasRemaining()) {
+                buffer.put((byte) (i++ % 127));
+            }
+        }
+
+        int from = randomIntBetween(0, PAGE_SIZE * 2);
+        int to = randomIntBetween(from, (int) channelBuffer.getCapacity());
+        ByteBuffer[] slice = channelBuffer.sliceBuffers(from, to);
+        int index = from;
+        for (ByteBuffer buffer : slice) {
+            while (buffer.hasRemaining()) {
+                assertEquals((byte) (index % 127), buffer.get());
+                assertEquals((byte) (index % 127), channelBuffer.getByte(index));
+                index++;
+            }
+        }
+        assertEquals(to, index);
+        assertEquals(0, channelBuffer.sliceBuffers(from, from).length);
+        expectThrows(IndexOutOfBoundsException.class, () -> channelBuffer.sliceBuffers(0, channelBuffer.getCapacity() + 1));
+        expectThrows(IndexOutOfBoundsException.class, () -> channelBuffer.getByte(channelBuffer.getCapacity()));
+    }
 }
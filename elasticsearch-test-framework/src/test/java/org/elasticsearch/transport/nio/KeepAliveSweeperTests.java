@@ -0,0 +1,135 @@
+package org.elasticsearch.transport.nio;
+
+import org.elasticsearch.common.bytes.BytesReference;
+import org.elasticsearch.test.ESTestCase;
+import org.elasticsearch.transport.nio.channel.NioSocketChannel;
+import org.elasticsearch.transport.nio.channel.ReadContext;
+import org.elasticsearch.transport.nio.channel.WriteContext;
+import org.junit.Before;
+import org.mockito.ArgumentCaptor;
+
+import java.io.IOException;
+import java.nio.channels.Selector;
+import java.util.concurrent.TimeUnit;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class KeepAliveSweeperTests extends ESTestCase {
+
+    private static final long INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(10);
+    private static final long TIMEOUT_NANOS = TimeUnit.SECONDS.toNanos(30);
+
+    private SocketSelector selector;
+    private KeepAliveSweeper sweeper;
+    private NioSocketChannel channel;
+    private ReadContext readContext;
+    private WriteContext writeContext;
+    private long nowNanos;
+
+    @Before
+    public void setUpSweeper() throws IOException {
+        selector = new SocketSelector(mock(SocketEventHandler.class), mock(Selector.class));
+        selector.setThread();
+        sweeper = new KeepAliveSweeper(selector, INTERVAL_NANOS, TIMEOUT_NANOS);
+        nowNanos = System.nanoTime();
+
+        channel = mock(NioSocketChannel.class);
+        readContext = mock(ReadContext.class);
+        writeContext = mock(WriteContext.class);
+        when(channel.isOpen()).thenReturn(true);
+        when(channel.isConnectComplete()).thenReturn(true);
+        when(channel.getReadContext()).thenReturn(readContext);
+        when(channel.getWriteContext()).thenReturn(writeContext);
+        when(writeContext.isBelowHighWaterMark()).thenReturn(true);
+        when(channel.getLastReadNanos()).thenReturn(nowNanos);
+        when(channel.getLastWriteNanos()).thenReturn(nowNanos);
+        selector.scheduleForRegistration(channel);
+    }
+
+    public void testActiveChannelIsLeftAlone() {
+        sweeper.sweep(nowNanos + randomLongBetween(0, INTERVAL_NANOS - 1));
+
+        verify(writeContext, never()).sendMessage(any(), any());
+        verify(readContext, never()).releaseUnusedBuffers();
+        verify(channel, never()).close();
+    }
+
+    public void testChannelThatDidNotWriteIsPinged() {
+        when(channel.getLastWriteNanos()).thenReturn(nowNanos - INTERVAL_NANOS);
+
+        sweeper.sweep(nowNanos);
+
+        ArgumentCaptor<BytesReference> ping = ArgumentCaptor.forClass(BytesReference.class);
+        verify(writeContext).sendMessage(ping.capture(), any());
+        assertEquals(6, ping.getValue().length());
+        assertEquals('E', ping.getValue().get(0));
+        assertEquals('S', ping.getValue().get(1));
+        assertEquals(1, sweeper.getPingsSent());
+        verify(channel, never()).close();
+    }
+
+    public void testChannelWithQueuedWritesIsNotPinged() {
+        when(channel.getLastWriteNanos()).thenReturn(nowNanos - INTERVAL_NANOS);
+        when(writeContext.hasQueuedWriteOps()).thenReturn(true);
+
+        sweeper.sweep(nowNanos);
+
+        verify(writeContext, never()).sendMessage(any(), any());
+        assertEquals(0, sweeper.getPingsSent());
+    }
+
+    public void testChannelAboveHighWaterMarkIsNotPinged() {
+        when(channel.getLastWriteNanos()).thenReturn(nowNanos - INTERVAL_NANOS);
+        when(writeContext.isBelowHighWaterMark()).thenReturn(false);
+
+        sweeper.sweep(nowNanos);
+
+        verify(writeContext, never()).sendMessage(any(), any());
+        assertEquals(0, sweeper.getPingsSent());
+    }
+
+    public void testChannelThatDidNotReadReleasesBuffers() {
+        when(channel.getLastReadNanos()).thenReturn(nowNanos - randomLongBetween(INTERVAL_NANOS, TIMEOUT_NANOS - 1));
+
+        sweeper.sweep(nowNanos);
+
+        verify(readContext).releaseUnusedBuffers();
+        verify(channel, never()).close();
+    }
+
+    public void testChannelThatDidNotReadForTheTimeoutIsClosed() {
+        when(channel.getLastReadNanos()).thenReturn(nowNanos - TIMEOUT_NANOS);
+        when(channel.getLastWriteNanos()).thenReturn(nowNanos - TIMEOUT_NANOS);
+
+        sweeper.sweep(nowNanos);
+
+        verify(channel).close();
+        assertEquals(1, sweeper.getChannelsClosed());
+        verify(writeContext, never()).sendMessage(any(), any());
+    }
+
+    public void testChannelsAreNotClosedWithoutTimeout() {
+        sweeper = new KeepAliveSweeper(selector, INTERVAL_NANOS, -1);
+        when(channel.getLastReadNanos()).thenReturn(nowNanos - TIMEOUT_NANOS);
+
+        sweeper.sweep(nowNanos);
+
+        verify(channel, never()).close();
+        verify(readContext).releaseUnusedBuffers();
+    }
+
+    public void testConnectingChannelIsSkipped() {
+        when(channel.isConnectComplete()).thenReturn(false);
+        when(channel.getLastReadNanos()).thenReturn(nowNanos - TIMEOUT_NANOS);
+        when(channel.getLastWriteNanos()).thenReturn(nowNanos - TIMEOUT_NANOS);
+
+        sweeper.sweep(nowNanos);
+
+        verify(channel, never()).close();
+        verify(writeContext, never()).sendMessage(any(), any());
+    }
+}
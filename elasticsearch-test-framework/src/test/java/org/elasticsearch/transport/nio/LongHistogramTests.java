@@ -0,0 +1,63 @@
+package org.elasticsearch.transport.nio;
+
+import org.elasticsearch.test.ESTestCase;
+
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+
+public class LongHistogramTests extends ESTestCase {
+
+    public void testEmptyHistogram() {
+        LongHistogram histogram = new LongHistogram();
+        assertEquals(0, histogram.getCount());
+        assertEquals(0, histogram.getMax());
+        assertEquals(0, histogram.getPercentile(99));
+        assertEquals(0.0, histogram.getMean(), 0.0);
+    }
+
+    public void testCountSumAndMax() {
+        LongHistogram histogram = new LongHistogram();
+        long sum = 0;
+        long max = 0;
+        int count = randomIntBetween(1, 1000);
+        for (int i = 0; i < count; ++i) {
+            long value = randomIntBetween(0, Integer.MAX_VALUE);
+            histogram.record(value);
+            sum += value;
+            max = Math.max(max, value);
+        }
+        assertEquals(count, histogram.getCount());
+        assertEquals(sum, histogram.getSum());
+        assertEquals(max, histogram.getMax());
+    }
+
+    public void testPercentilesAreWithinFactorOfTwo() {
+        LongHistogram histogram = new LongHistogram();
+        for (int i = 1; i <= 1000; ++i) {
+            histogram.record(i);
+        }
+        assertThat(histogram.getPercentile(50), greaterThanOrEqualTo(500L));
+        assertThat(histogram.getPercentile(50), lessThanOrEqualTo(1000L));
+        assertEquals(1000, histogram.getPercentile(100));
+        assertEquals(1, histogram.getPercentile(0));
+        expectThrows(IllegalArgumentException.class, () -> histogram.getPercentile(101));
+    }
+
+    public void testLargeValues() {
+        LongHistogram histogram = new LongHistogram();
+        histogram.record(Long.MAX_VALUE);
+        histogram.record(-1);
+        assertEquals(Long.MAX_VALUE, histogram.getPercentile(100));
+        assertEquals(0, histogram.getPercentile(50));
+    }
+
+    public void testSnapshotIsNotAffectedByLaterRecordings() {
+        LongHistogram histogram = new LongHistogram();
+        histogram.record(10);
+        LongHistogram snapshot = histogram.snapshot();
+        histogram.record(20);
+        assertEquals(1, snapshot.getCount());
+        assertEquals(10, snapshot.getMax());
+        assertEquals(2, histogram.getCount());
+    }
+}
@@ -1,15 +1,25 @@
 package org.elasticsearch.transport.nio;
 
+import org.elasticsearch.action.ActionListener;
 import org.elasticsearch.common.CheckedRunnable;
 import org.elasticsearch.common.settings.Settings;
 import org.elasticsearch.test.ESTestCase;
 import org.elasticsearch.transport.nio.channel.ChannelFactory;
+import org.elasticsearch.transport.nio.channel.NioServerSocketChannel;
+import org.mockito.ArgumentCaptor;
 
 import java.io.IOException;
+import java.net.BindException;
 import java.net.InetSocketAddress;
 
 import static org.elasticsearch.common.util.concurrent.EsExecutors.daemonThreadFactory;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.same;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
 
 public class NioGroupTests extends ESTestCase {
 
@@ -46,6 +56,57 @@ public class NioGroupTests extends ESTestCase {
         assertEquals("NioGroup is closed.", ise.getMessage());
     }
 
+    @SuppressWarnings("unchecked")
+    public void testBindsAServerChannelPerAcceptorWithReusePort() throws IOException {
+        nioGroup.close();
+        int acceptorCount = randomIntBetween(2, 4);
+        nioGroup = new NioGroup(logger, daemonThreadFactory(Settings.EMPTY, "acceptor"), acceptorCount, AcceptorEventHandler::new,
+            daemonThreadFactory(Settings.EMPTY, "selector"), 1, SocketEventHandler::new);
+        ChannelFactory<NioServerSocketChannel, ?> factory = mock(ChannelFactory.class);
+        InetSocketAddress address = mock(InetSocketAddress.class);
+        InetSocketAddress claimedAddress = mock(InetSocketAddress.class);
+        NioServerSocketChannel primary = mock(NioServerSocketChannel.class);
+        NioServerSocketChannel sibling = mock(NioServerSocketChannel.class);
+        when(factory.claimServerAddress(same(address))).thenReturn(claimedAddress);
+        when(factory.openReusePortServerSocketChannel(same(claimedAddress), any())).thenReturn(primary, sibling);
+
+        assertSame(primary, nioGroup.bindServerChannel(address, factory, true));
+
+        verify(factory).claimServerAddress(same(address));
+        verify(factory, times(acceptorCount)).openReusePortServerSocketChannel(same(claimedAddress), any());
+        ArgumentCaptor<ActionListener<Void>> closeListener = ArgumentCaptor.forClass(ActionListener.class);
+        verify(primary).addCloseListener(closeListener.capture());
+        closeListener.getValue().onResponse(null);
+        verify(sibling, times(acceptorCount - 1)).close();
+    }
+
+    @SuppressWarnings("unchecked")
+    public void testReusePortFailsIfThePortCannotBeClaimed() throws IOException {
+        nioGroup.close();
+        nioGroup = new NioGroup(logger, daemonThreadFactory(Settings.EMPTY, "acceptor"), 2, AcceptorEventHandler::new,
+            daemonThreadFactory(Settings.EMPTY, "selector"), 1, SocketEventHandler::new);
+        ChannelFactory<NioServerSocketChannel, ?> factory = mock(ChannelFactory.class);
+        InetSocketAddress address = mock(InetSocketAddress.class);
+        BindException bindException = new BindException("Address already in use");
+        when(factory.claimServerAddress(same(address))).thenThrow(bindException);
+
+        assertSame(bindException, expectThrows(BindException.class, () -> nioGroup.bindServerChannel(address, factory, true)));
+
+        verify(factory, never()).openReusePortServerSocketChannel(any(), any());
+    }
+
+    @SuppressWarnings("unchecked")
+    public void testReusePortWithSingleAcceptorBindsOneChannel() throws IOException {
+        ChannelFactory<NioServerSocketChannel, ?> factory = mock(ChannelFactory.class);
+        InetSocketAddress address = mock(InetSocketAddress.class);
+        NioServerSocketChannel channel = mock(NioServerSocketChannel.class);
+        when(factory.openNioServerSocketChannel(same(address), any())).thenReturn(channel);
+
+        assertSame(channel, nioGroup.bindServerChannel(address, factory, true));
+
+        verify(factory, never()).openReusePortServerSocketChannel(any(), any());
+    }
+
     public void testCanCloseTwice() throws IOException {
         nioGroup.close();
         nioGroup.close();
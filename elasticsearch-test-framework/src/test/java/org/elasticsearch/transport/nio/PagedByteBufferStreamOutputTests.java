@@ -0,0 +1,75 @@
+package org.elasticsearch.transport.nio;
+
+import org.elasticsearch.common.bytes.BytesArray;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.util.BigArrays;
+import org.elasticsearch.test.ESTestCase;
+
+import java.nio.ByteBuffer;
+
+public class PagedByteBufferStreamOutputTests extends ESTestCase {
+
+    public void testWritesSpanPages() throws Exception {
+        try (DirectPageRecycler recycler = new MockDirectPageRecycler(Settings.EMPTY)) {
+            byte[] bytes = randomByteArrayOfLength(randomIntBetween(1, 3 * BigArrays.BYTE_PAGE_SIZE));
+            try (PagedByteBufferStreamOutput output = new PagedByteBufferStreamOutput(recycler::directPage)) {
+                int split = randomIntBetween(0, bytes.length - 1);
+                output.writeBytes(bytes, 0, split);
+                output.writeByte(bytes[split]);
+                output.writeBytes(bytes, split + 1, bytes.length - split - 1);
+
+                assertEquals(bytes.length, output.size());
+                ByteBuffer[] buffers = output.toByteBuffers();
+                assertEquals((bytes.length + BigArrays.BYTE_PAGE_SIZE - 1) / BigArrays.BYTE_PAGE_SIZE, buffers.length);
+                byte[] read = new byte[bytes.length];
+                int offset = 0;
+                for (ByteBuffer buffer : buffers) {
+                    assertTrue(buffer.isDirect());
+                    int length = buffer.remaining();
+                    buffer.get(read, offset, length);
+                    offset += length;
+                }
+                assertArrayEquals(bytes, read);
+            }
+        }
+        MockDirectPageRecycler.ensureAllPagesAreReleased();
+    }
+
+    public void testBytesReferenceCanBeWrittenToStream() throws Exception {
+        try (DirectPageRecycler recycler = new MockDirectPageRecycler(Settings.EMPTY)) {
+            BytesArray reference = new BytesArray(randomByteArrayOfLength(randomIntBetween(1, 2 * BigArrays.BYTE_PAGE_SIZE)));
+            try (PagedByteBufferStreamOutput output = new PagedByteBufferStreamOutput(recycler::directPage)) {
+                reference.writeTo(output);
+                assertEquals(reference.length(), output.size());
+            }
+        }
+        MockDirectPageRecycler.ensureAllPagesAreReleased();
+    }
+
+    public void testResetReleasesPages() throws Exception {
+        try (DirectPageRecycler recycler = new MockDirectPageRecycler(Settings.EMPTY)) {
+            try (PagedByteBufferStreamOutput output = new PagedByteBufferStreamOutput(recycler::directPage)) {
+                output.writeBytes(randomByteArrayOfLength(randomIntBetween(1, 2 * BigArrays.BYTE_PAGE_SIZE)));
+                output.reset();
+                assertEquals(0, output.size());
+                assertEquals(0, output.toByteBuffers().length);
+                MockDirectPageRecycler.ensureAllPagesAreReleased();
+
+                output.writeByte((byte) 1);
+                assertEquals(1, output.size());
+            }
+        }
+        MockDirectPageRecycler.ensureAllPagesAreReleased();
+    }
+
+    public void testCannotWriteAfterClose() throws Exception {
+        try (DirectPageRecycler recycler = new MockDirectPageRecycler(Settings.EMPTY)) {
+            PagedByteBufferStreamOutput output = new PagedByteBufferStreamOutput(recycler::directPage);
+            output.writeByte((byte) 1);
+            output.close();
+            output.close();
+            expectThrows(IllegalStateException.class, () -> output.writeByte((byte) 1));
+        }
+        MockDirectPageRecycler.ensureAllPagesAreReleased();
+    }
+}
@@ -0,0 +1,84 @@
+package org.elasticsearch.transport.nio;
+
+import org.elasticsearch.test.ESTestCase;
+
+import java.util.HashMap;
+import java.util.Map;
+
+public class SelectorSupplierTests extends ESTestCase {
+
+    public void testRoundRobinSupplierHandlesOverflow() {
+        RoundRobinSupplier<String> supplier = new RoundRobinSupplier<>(new String[] {"a", "b", "c"}, Integer.MAX_VALUE - 5);
+
+        for (int i = 0; i < 20; ++i) {
+            assertNotNull(supplier.get());
+        }
+    }
+
+    public void testLeastLoadedSupplierPicksLowestLoad() {
+        Map<String, Long> loads = new HashMap<>();
+        loads.put("a", 10L);
+        loads.put("b", 3L);
+        loads.put("c", 7L);
+        LeastLoadedSupplier<String> supplier = new LeastLoadedSupplier<>(new String[] {"a", "b", "c"}, loads::get);
+
+        for (int i = 0; i < 10; ++i) {
+            assertEquals("b", supplier.get());
+        }
+    }
+
+    public void testLeastLoadedSupplierRotatesBetweenEqualLoads() {
+        Map<String, Long> loads = new HashMap<>();
+        loads.put("a", 0L);
+        loads.put("b", 0L);
+        loads.put("c", 0L);
+        LeastLoadedSupplier<String> supplier = new LeastLoadedSupplier<>(new String[] {"a", "b", "c"}, loads::get);
+
+        Map<String, Integer> counts = new HashMap<>();
+        for (int i = 0; i < 30; ++i) {
+            counts.merge(supplier.get(), 1, Integer::sum);
+        }
+        assertEquals(10, (int) counts.get("a"));
+        assertEquals(10, (int) counts.get("b"));
+        assertEquals(10, (int) counts.get("c"));
+    }
+
+    public void testLeastLoadedSupplierBreaksTiesWithinLoadWindow() {
+        // the recent bytes of idle selectors stay at zero for the whole window while channels are assigned to them
+        Map<String, Long> channels = new HashMap<>();
+        channels.put("a", 4L);
+        channels.put("b", 0L);
+        channels.put("c", 0L);
+        LeastLoadedSupplier<String> supplier = new LeastLoadedSupplier<>(new String[] {"a", "b", "c"}, s -> 0L, channels::get);
+
+        int assignments = 3 * randomIntBetween(10, 100) - 4;
+        for (int i = 0; i < assignments; ++i) {
+            channels.merge(supplier.get(), 1L, Long::sum);
+        }
+        long expected = (assignments + 4) / 3;
+        assertEquals(expected, (long) channels.get("a"));
+        assertEquals(expected, (long) channels.get("b"));
+        assertEquals(expected, (long) channels.get("c"));
+    }
+
+    public void testLeastLoadedSupplierPrefersLoadOverTieBreaker() {
+        Map<String, Long> loads = new HashMap<>();
+        loads.put("a", 5L);
+        loads.put("b", 1L);
+        Map<String, Long> channels = new HashMap<>();
+        channels.put("a", 0L);
+        channels.put("b", 10L);
+        LeastLoadedSupplier<String> supplier = new LeastLoadedSupplier<>(new String[] {"a", "b"}, loads::get, channels::get);
+
+        for (int i = 0; i < 10; ++i) {
+            assertEquals("b", supplier.get());
+        }
+    }
+
+    public void testParseSelectorAssignment() {
+        for (SelectorAssignment assignment : SelectorAssignment.values()) {
+            assertSame(assignment, SelectorAssignment.parse(assignment.toString()));
+        }
+        expectThrows(IllegalArgumentException.class, () -> SelectorAssignment.parse("random"));
+    }
+}
@@ -0,0 +1,158 @@
+package org.elasticsearch.transport.nio;
+
+import org.elasticsearch.Version;
+import org.elasticsearch.common.io.stream.BytesStreamOutput;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.util.concurrent.ThreadContext;
+import org.elasticsearch.test.ESTestCase;
+import org.elasticsearch.transport.TransportStatus;
+import org.junit.After;
+import org.junit.Before;
+
+import java.io.IOException;
+import java.nio.channels.Selector;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.elasticsearch.common.util.concurrent.EsExecutors.daemonThreadFactory;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.mockito.Mockito.mock;
+
+public class SelectorWatchdogTests extends ESTestCase {
+
+    // long enough that the watchdog thread never reports anything by itself, the tests call check directly
+    private static final long THRESHOLD_NANOS = TimeUnit.HOURS.toNanos(1);
+
+    private final List<SelectorWatchdog.SlowHandler> slowHandlers = new ArrayList<>();
+    private SelectorWatchdog watchdog;
+    private SocketSelector selector;
+
+    @Before
+    public void setUpWatchdog() throws IOException {
+        watchdog = new SelectorWatchdog(daemonThreadFactory(Settings.EMPTY, "watchdog"), THRESHOLD_NANOS, slowHandlers::add);
+        selector = new SocketSelector(mock(SocketEventHandler.class), mock(Selector.class));
+        selector.setThread();
+    }
+
+    @After
+    public void closeWatchdog() {
+        watchdog.close();
+    }
+
+    public void testSlowHandlerIsReportedOnce() {
+        watchdog.watch(selector);
+        Object target = new Object();
+        selector.beginHandler("read", target);
+        try {
+            watchdog.check(System.nanoTime() + 2 * THRESHOLD_NANOS);
+            watchdog.check(System.nanoTime() + 3 * THRESHOLD_NANOS);
+        } finally {
+            selector.endHandler();
+        }
+
+        assertEquals(1, slowHandlers.size());
+        assertEquals(1, watchdog.getSlowHandlerCount());
+        SelectorWatchdog.SlowHandler slowHandler = slowHandlers.get(0);
+        assertEquals("read", slowHandler.getAction());
+        assertEquals(target.toString(), slowHandler.getTarget());
+        assertEquals(Thread.currentThread().getName(), slowHandler.getThreadName());
+        assertThat(slowHandler.getElapsedNanos(), greaterThan(THRESHOLD_NANOS));
+        assertThat(slowHandler.getStackTrace().length, greaterThan(0));
+    }
+
+    public void testFastAndFinishedHandlersAreNotReported() {
+        watchdog.watch(selector);
+        selector.beginHandler("write", new Object());
+        try {
+            watchdog.check(System.nanoTime());
+        } finally {
+            selector.endHandler();
+        }
+        watchdog.check(System.nanoTime() + 2 * THRESHOLD_NANOS);
+
+        assertEquals(0, watchdog.getSlowHandlerCount());
+        assertTrue(slowHandlers.isEmpty());
+    }
+
+    public void testNestedHandlersAreAttributedToTheOutermost() {
+        watchdog.watch(selector);
+        selector.beginHandler("read", new Object());
+        try {
+            selector.beginHandler("listener", new Object());
+            selector.endHandler();
+            watchdog.check(System.nanoTime() + 2 * THRESHOLD_NANOS);
+        } finally {
+            selector.endHandler();
+        }
+
+        assertEquals(1, slowHandlers.size());
+        assertEquals("read", slowHandlers.get(0).getAction());
+    }
+
+    public void testEachSlowInvocationIsReported() {
+        watchdog.watch(selector);
+        int invocations = randomIntBetween(2, 5);
+        for (int i = 0; i < invocations; ++i) {
+            selector.beginHandler("task", new Object());
+            try {
+                watchdog.check(System.nanoTime() + 2 * THRESHOLD_NANOS);
+            } finally {
+                selector.endHandler();
+            }
+        }
+
+        assertEquals(invocations, watchdog.getSlowHandlerCount());
+    }
+
+    public void testTransportActionIsReportedAsInvocationOfItsOwn() {
+        watchdog.watch(selector);
+        Object target = new Object();
+        selector.beginHandler("read", target);
+        try {
+            selector.beginTransportAction("internal:test/action");
+            try {
+                watchdog.check(System.nanoTime() + 2 * THRESHOLD_NANOS);
+            } finally {
+                selector.endTransportAction();
+            }
+            watchdog.check(System.nanoTime() + 2 * THRESHOLD_NANOS);
+        } finally {
+            selector.endHandler();
+        }
+
+        assertEquals(2, slowHandlers.size());
+        assertEquals("internal:test/action", slowHandlers.get(0).getAction());
+        assertEquals(target.toString(), slowHandlers.get(0).getTarget());
+        assertEquals("read", slowHandlers.get(1).getAction());
+    }
+
+    public void testReadActionOfRequest() throws IOException {
+        ThreadContext threadContext = new ThreadContext(Settings.EMPTY);
+        threadContext.putHeader("header", randomAlphaOfLength(10));
+        threadContext.addResponseHeader("response", randomAlphaOfLength(10));
+        try (BytesStreamOutput request = new BytesStreamOutput()) {
+            request.writeLong(randomLong());
+            request.writeByte(TransportStatus.setRequest((byte) 0));
+            request.writeInt(Version.CURRENT.id);
+            threadContext.writeTo(request);
+            request.writeString("internal:test/action");
+            assertEquals("internal:test/action", TcpReadHandler.readAction(request.bytes()));
+        }
+        try (BytesStreamOutput response = new BytesStreamOutput()) {
+            response.writeLong(randomLong());
+            response.writeByte(TransportStatus.setResponse((byte) 0));
+            response.writeInt(Version.CURRENT.id);
+            assertNull(TcpReadHandler.readAction(response.bytes()));
+        }
+    }
+
+    public void testUnwatchedSelectorIsNotTracked() {
+        selector.beginHandler("read", new Object());
+        try {
+            assertNull(selector.getHandlerStartedBefore(System.nanoTime() + 2 * THRESHOLD_NANOS));
+        } finally {
+            selector.endHandler();
+        }
+    }
+}
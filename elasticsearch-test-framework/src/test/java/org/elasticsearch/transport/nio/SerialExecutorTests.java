@@ -0,0 +1,95 @@
+package org.elasticsearch.transport.nio;
+
+import org.elasticsearch.common.util.concurrent.EsRejectedExecutionException;
+import org.elasticsearch.test.ESTestCase;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+public class SerialExecutorTests extends ESTestCase {
+
+    public void testTasksRunInSubmissionOrder() throws Exception {
+        ExecutorService executorService = Executors.newFixedThreadPool(randomIntBetween(2, 8));
+        try {
+            SerialExecutor executor = new SerialExecutor(executorService);
+            int taskCount = randomIntBetween(100, 1000);
+            List<Integer> order = new ArrayList<>();
+            CountDownLatch latch = new CountDownLatch(taskCount);
+            for (int i = 0; i < taskCount; ++i) {
+                final int task = i;
+                executor.execute(() -> {
+                    // the tasks never run concurrently so the list does not need to be synchronized
+                    order.add(task);
+                    latch.countDown();
+                });
+            }
+            assertTrue(latch.await(10, TimeUnit.SECONDS));
+            assertBusy(() -> assertEquals(0, executor.getPendingTasks()));
+            for (int i = 0; i < taskCount; ++i) {
+                assertEquals(i, (int) order.get(i));
+            }
+        } finally {
+            terminate(executorService);
+        }
+    }
+
+    public void testTasksAreResubmittedAfterBatch() {
+        ArrayBlockingQueue<Runnable> submitted = new ArrayBlockingQueue<>(10);
+        SerialExecutor executor = new SerialExecutor(submitted::add);
+        int[] ran = new int[1];
+        for (int i = 0; i < SerialExecutor.MAX_TASKS_PER_RUN + 1; ++i) {
+            executor.execute(() -> ran[0]++);
+        }
+        assertEquals(1, submitted.size());
+
+        submitted.poll().run();
+        assertEquals(SerialExecutor.MAX_TASKS_PER_RUN, ran[0]);
+        assertEquals(1, submitted.size());
+
+        submitted.poll().run();
+        assertEquals(SerialExecutor.MAX_TASKS_PER_RUN + 1, ran[0]);
+        assertEquals(0, submitted.size());
+        assertEquals(0, executor.getPendingTasks());
+    }
+
+    public void testFailingTaskDoesNotStallFollowingTasks() {
+        ArrayBlockingQueue<Runnable> submitted = new ArrayBlockingQueue<>(10);
+        SerialExecutor executor = new SerialExecutor(submitted::add);
+        int[] ran = new int[1];
+        executor.execute(() -> {
+            throw new IllegalStateException("boom");
+        });
+        executor.execute(() -> ran[0]++);
+
+        expectThrows(IllegalStateException.class, () -> submitted.poll().run());
+        assertEquals(1, submitted.size());
+        submitted.poll().run();
+        assertEquals(1, ran[0]);
+        assertEquals(0, executor.getPendingTasks());
+    }
+
+    public void testTasksRunOnSubmittingThreadWhenExecutorIsSaturated() {
+        SerialExecutor executor = new SerialExecutor(task -> {
+            throw new EsRejectedExecutionException("queue is full");
+        });
+        int[] ran = new int[1];
+        for (int i = 0; i < SerialExecutor.MAX_TASKS_PER_RUN + 1; ++i) {
+            executor.execute(() -> ran[0]++);
+            assertEquals(i + 1, ran[0]);
+        }
+        assertEquals(0, executor.getPendingTasks());
+    }
+
+    public void testRejectionOfShutDownExecutorIsRethrown() {
+        SerialExecutor executor = new SerialExecutor(task -> {
+            throw new EsRejectedExecutionException("shut down", true);
+        });
+        EsRejectedExecutionException e = expectThrows(EsRejectedExecutionException.class, () -> executor.execute(() -> {}));
+        assertTrue(e.isExecutorShutdown());
+    }
+}
@@ -0,0 +1,20 @@
+package org.elasticsearch.transport.nio;
+
+import org.elasticsearch.Version;
+import org.elasticsearch.common.settings.ClusterSettings;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.test.transport.MockTransportService;
+
+/**
+ * Runs the shared transport tests with inbound messages read into direct pages.
+ */
+public class SimpleNioTransportDirectReadPagesTests extends SimpleNioTransportTests {
+
+    @Override
+    protected MockTransportService build(Settings settings, Version version, ClusterSettings clusterSettings, boolean doHandshake) {
+        settings = Settings.builder().put(settings)
+            .put(NioTransport.NIO_DIRECT_READ_PAGES.getKey(), true)
+            .build();
+        return super.build(settings, version, clusterSettings, doHandshake);
+    }
+}
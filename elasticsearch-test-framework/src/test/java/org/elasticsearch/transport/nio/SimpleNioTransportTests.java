@@ -1,6 +1,7 @@
 package org.elasticsearch.transport.nio;
 
 import org.apache.logging.log4j.Logger;
+import org.apache.lucene.util.IOUtils;
 import org.elasticsearch.Version;
 import org.elasticsearch.cluster.node.DiscoveryNode;
 import org.elasticsearch.common.io.stream.NamedWriteableRegistry;
@@ -25,7 +26,9 @@ import org.elasticsearch.transport.TransportService;
 
 import java.io.IOException;
 import java.net.InetAddress;
+import java.net.InetSocketAddress;
 import java.net.UnknownHostException;
+import java.nio.channels.ServerSocketChannel;
 import java.util.Collections;
 
 import static java.util.Collections.emptyMap;
@@ -120,4 +123,39 @@ public class SimpleNioTransportTests extends AbstractSimpleTransportTestCase {
         });
         assertEquals("Failed to bind to ["+ port + "]", bindTransportException.getMessage());
     }
+
+    public void testReusePortTransportsOnTheSamePortRangeBindDifferentPorts() throws IOException {
+        assumeTrue("SO_REUSEPORT is not supported", supportsReusePort());
+        // the range starts with a port that was free a moment ago, so the first transport is likely to bind it
+        final int port;
+        try (ServerSocketChannel channel = ServerSocketChannel.open()) {
+            channel.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+            port = ((InetSocketAddress) channel.getLocalAddress()).getPort();
+        }
+        Settings settings = Settings.builder()
+            .put(TransportService.TRACE_LOG_INCLUDE_SETTING.getKey(), "")
+            .put(TransportService.TRACE_LOG_EXCLUDE_SETTING.getKey(), "NOTHING")
+            .put("transport.tcp.port", port + "-" + (port + 10))
+            .put(NioTransport.NIO_ACCEPTOR_COUNT.getKey(), 2)
+            .put(NioTransport.NIO_ACCEPTOR_REUSE_PORT.getKey(), true)
+            .build();
+        ClusterSettings clusterSettings = new ClusterSettings(settings, ClusterSettings.BUILT_IN_CLUSTER_SETTINGS);
+        MockTransportService first = nioFromThreadPool(Settings.builder().put(settings).put(Node.NODE_NAME_SETTING.getKey(), "first")
+            .build(), threadPool, Version.CURRENT, clusterSettings, true);
+        MockTransportService second = null;
+        try {
+            second = nioFromThreadPool(Settings.builder().put(settings).put(Node.NODE_NAME_SETTING.getKey(), "second").build(),
+                threadPool, Version.CURRENT, clusterSettings, true);
+            // SO_REUSEPORT must not let the second transport share the port of the first one
+            assertNotEquals(first.boundAddress().publishAddress().getPort(), second.boundAddress().publishAddress().getPort());
+        } finally {
+            IOUtils.close(first, second);
+        }
+    }
+
+    private static boolean supportsReusePort() throws IOException {
+        try (ServerSocketChannel channel = ServerSocketChannel.open()) {
+            return channel.supportedOptions().stream().anyMatch(option -> "SO_REUSEPORT".equals(option.name()));
+        }
+    }
 }
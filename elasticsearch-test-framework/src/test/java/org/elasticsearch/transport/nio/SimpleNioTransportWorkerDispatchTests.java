@@ -0,0 +1,54 @@
+package org.elasticsearch.transport.nio;
+
+import org.elasticsearch.Version;
+import org.elasticsearch.common.settings.ClusterSettings;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.test.transport.MockTransportService;
+import org.elasticsearch.threadpool.ThreadPool;
+import org.elasticsearch.transport.EmptyTransportResponseHandler;
+import org.elasticsearch.transport.TransportRequest;
+import org.elasticsearch.transport.TransportResponse;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.not;
+
+/**
+ * Runs the shared transport tests with the messages of the default profile handled by dispatch threads. Client
+ * channels keep the node level dispatch mode and handle their messages on the selector threads.
+ */
+public class SimpleNioTransportWorkerDispatchTests extends SimpleNioTransportTests {
+
+    private static final String DISPATCH_THREAD_NAME = NioTransport.TRANSPORT_WORKER_THREAD_NAME_PREFIX + "_dispatch";
+
+    @Override
+    protected MockTransportService build(Settings settings, Version version, ClusterSettings clusterSettings, boolean doHandshake) {
+        settings = Settings.builder().put(settings)
+            .put(NioTransport.NIO_DISPATCH_MODE_PROFILE.getConcreteSettingForNamespace("default").getKey(), "worker")
+            .build();
+        return super.build(settings, version, clusterSettings, doHandshake);
+    }
+
+    public void testDefaultProfileDispatchesMessages() throws Exception {
+        final AtomicReference<String> requestThread = new AtomicReference<>();
+        final AtomicReference<String> responseThread = new AtomicReference<>();
+        serviceA.registerRequestHandler("dispatched", TransportRequest.Empty::new, ThreadPool.Names.SAME, (request, channel) -> {
+            requestThread.set(Thread.currentThread().getName());
+            channel.sendResponse(TransportResponse.Empty.INSTANCE);
+        });
+
+        serviceB.submitRequest(nodeA, "dispatched", TransportRequest.Empty.INSTANCE,
+            new EmptyTransportResponseHandler(ThreadPool.Names.SAME) {
+                @Override
+                public void handleResponse(TransportResponse.Empty response) {
+                    responseThread.set(Thread.currentThread().getName());
+                }
+            }).txGet();
+
+        // the request arrived on a channel of the default profile, the response on a client channel
+        assertThat(requestThread.get(), containsString(DISPATCH_THREAD_NAME));
+        assertThat(responseThread.get(), containsString(NioTransport.TRANSPORT_WORKER_THREAD_NAME_PREFIX));
+        assertThat(responseThread.get(), not(containsString(DISPATCH_THREAD_NAME)));
+    }
+}
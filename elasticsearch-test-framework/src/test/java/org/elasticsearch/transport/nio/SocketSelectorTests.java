@@ -17,7 +17,10 @@ import java.nio.channels.SelectionKey;
 import java.nio.channels.Selector;
 import java.util.Collections;
 import java.util.HashSet;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyInt;
 import static org.mockito.ArgumentMatchers.same;
@@ -269,6 +272,26 @@ public class SocketSelectorTests extends ESTestCase {
         verify(eventHandler).readException(channel, ioException);
     }
 
+    public void testTimeoutScheduledAfterLongSelectDoesNotFireEarly() throws Exception {
+        socketSelector.preSelect();
+        // the selector blocks in select for more ticks of its timer wheel than the delay of the timeout a queued task schedules
+        Thread.sleep(randomIntBetween(10, 30) * TimeUnit.NANOSECONDS.toMillis(TimerWheel.DEFAULT_TICK_NANOS));
+        final long delayNanos = 10 * TimerWheel.DEFAULT_TICK_NANOS;
+        final AtomicLong scheduledNanos = new AtomicLong();
+        final AtomicLong firedNanos = new AtomicLong();
+        socketSelector.queueTask(() -> {
+            scheduledNanos.set(System.nanoTime());
+            socketSelector.scheduleTimeout(delayNanos, () -> firedNanos.set(System.nanoTime()));
+        });
+
+        while (firedNanos.get() == 0) {
+            socketSelector.preSelect();
+            Thread.sleep(1);
+        }
+
+        assertThat(firedNanos.get() - scheduledNanos.get(), greaterThanOrEqualTo(delayNanos));
+    }
+
     public void testCleanup() throws Exception {
         NioSocketChannel unRegisteredChannel = mock(NioSocketChannel.class);
 
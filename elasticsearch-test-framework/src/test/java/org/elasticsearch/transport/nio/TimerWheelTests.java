@@ -0,0 +1,150 @@
+package org.elasticsearch.transport.nio;
+
+import org.elasticsearch.test.ESTestCase;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class TimerWheelTests extends ESTestCase {
+
+    private static final long TICK = 10;
+
+    public void testTimeoutExpiresAfterDelay() {
+        TimerWheel wheel = new TimerWheel(0, TICK, 8);
+        List<Integer> fired = new ArrayList<>();
+        wheel.schedule(0, 25, () -> fired.add(1));
+        assertEquals(1, wheel.getPending());
+
+        assertEquals(0, wheel.advance(20));
+        assertTrue(fired.isEmpty());
+        assertEquals(1, wheel.advance(30));
+        assertEquals(1, fired.size());
+        assertEquals(0, wheel.getPending());
+    }
+
+    public void testTimeoutsBeyondOneRotation() {
+        TimerWheel wheel = new TimerWheel(0, TICK, 8);
+        List<Long> fired = new ArrayList<>();
+        long[] now = new long[1];
+        int count = randomIntBetween(1, 50);
+        List<Long> delays = new ArrayList<>();
+        for (int i = 0; i < count; ++i) {
+            long delay = randomLongBetween(1, 100 * TICK);
+            delays.add(delay);
+            wheel.schedule(0, delay, () -> fired.add(now[0]));
+        }
+        for (now[0] = 0; now[0] <= 101 * TICK; now[0] += TICK) {
+            wheel.advance(now[0]);
+        }
+        assertEquals(count, fired.size());
+        assertEquals(0, wheel.getPending());
+        delays.sort(Long::compare);
+        for (int i = 0; i < count; ++i) {
+            // a timeout never fires early and at most one tick late
+            assertTrue(fired.get(i) >= delays.get(i));
+            assertTrue(fired.get(i) < delays.get(i) + 2 * TICK);
+        }
+    }
+
+    public void testTimeoutScheduledAfterLongSelect() {
+        TimerWheel wheel = new TimerWheel(0, TICK, 8);
+        List<Long> fired = new ArrayList<>();
+        long[] now = new long[1];
+        wheel.advance(0);
+        // the selector blocked for many ticks and a task schedules a timeout before the wheel catches up
+        long scheduledAt = randomLongBetween(TICK, 30 * TICK);
+        long delay = randomLongBetween(1, 5 * TICK);
+        wheel.schedule(scheduledAt, delay, () -> fired.add(now[0]));
+        assertEquals(delay, wheel.nanosUntilNextDeadline(scheduledAt), TICK);
+
+        for (now[0] = scheduledAt; fired.isEmpty(); now[0] += randomLongBetween(1, TICK)) {
+            wheel.advance(now[0]);
+        }
+        // the timeout never fires before its delay has passed since it was scheduled and at most one tick late
+        assertTrue(fired.get(0) >= scheduledAt + delay);
+        assertTrue(fired.get(0) < scheduledAt + delay + 2 * TICK);
+    }
+
+    public void testCancelledTimeoutDoesNotFire() {
+        TimerWheel wheel = new TimerWheel(0, TICK, 8);
+        List<Integer> fired = new ArrayList<>();
+        TimerWheel.Timeout first = wheel.schedule(0, TICK, () -> fired.add(1));
+        wheel.schedule(0, TICK, () -> fired.add(2));
+        TimerWheel.Timeout third = wheel.schedule(0, TICK, () -> fired.add(3));
+
+        assertTrue(first.cancel());
+        assertFalse(first.cancel());
+        assertTrue(first.isCancelled());
+        assertEquals(2, wheel.getPending());
+
+        wheel.advance(TICK);
+        assertEquals(2, fired.size());
+        assertFalse(fired.contains(1));
+        assertTrue(third.isExpired());
+        assertFalse(third.cancel());
+    }
+
+    public void testTaskCanScheduleAndCancelTimeouts() {
+        TimerWheel wheel = new TimerWheel(0, TICK, 8);
+        List<Integer> fired = new ArrayList<>();
+        TimerWheel.Timeout[] other = new TimerWheel.Timeout[1];
+        wheel.schedule(0, TICK, () -> {
+            fired.add(1);
+            other[0].cancel();
+            wheel.schedule(TICK, TICK, () -> fired.add(3));
+        });
+        other[0] = wheel.schedule(0, TICK, () -> fired.add(2));
+
+        wheel.advance(TICK);
+        // the tasks of a slot run in no particular order, either the second timeout ran or it was cancelled
+        assertTrue(fired.contains(1));
+        wheel.advance(2 * TICK);
+        assertTrue(fired.contains(3));
+        assertEquals(0, wheel.getPending());
+    }
+
+    public void testNextDeadline() {
+        TimerWheel wheel = new TimerWheel(0, TICK, 8);
+        assertEquals(-1, wheel.nanosUntilNextDeadline(0));
+
+        // beyond one rotation the slot of the timeout comes up before its deadline
+        TimerWheel.Timeout late = wheel.schedule(0, 11 * TICK, () -> {});
+        assertEquals(11 * TICK, wheel.nanosUntilNextDeadline(0));
+        TimerWheel.Timeout early = wheel.schedule(0, 25, () -> {});
+        assertEquals(3 * TICK - 5, wheel.nanosUntilNextDeadline(5));
+        wheel.schedule(0, 5 * TICK, () -> {});
+
+        assertTrue(early.cancel());
+        assertEquals(5 * TICK, wheel.nanosUntilNextDeadline(0));
+        assertEquals(1, wheel.advance(5 * TICK));
+        assertEquals(6 * TICK, wheel.nanosUntilNextDeadline(5 * TICK));
+        // an overdue timeout expires on the next advance
+        assertEquals(0, wheel.nanosUntilNextDeadline(20 * TICK));
+
+        assertTrue(late.cancel());
+        assertEquals(-1, wheel.nanosUntilNextDeadline(5 * TICK));
+    }
+
+    public void testNextDeadlineMatchesEarliestTimeout() {
+        TimerWheel wheel = new TimerWheel(0, TICK, 8);
+        List<Long> deadlines = new ArrayList<>();
+        List<TimerWheel.Timeout> timeouts = new ArrayList<>();
+        for (int i = randomIntBetween(1, 50); i > 0; --i) {
+            long delay = randomLongBetween(1, 30 * TICK);
+            // timeouts expire at the end of the tick their delay falls into
+            deadlines.add((delay + TICK - 1) / TICK * TICK);
+            timeouts.add(wheel.schedule(0, delay, () -> {}));
+        }
+        while (timeouts.isEmpty() == false) {
+            assertEquals((long) deadlines.stream().min(Long::compare).get(), wheel.nanosUntilNextDeadline(0));
+            int index = randomIntBetween(0, timeouts.size() - 1);
+            assertTrue(timeouts.remove(index).cancel());
+            deadlines.remove(index);
+        }
+        assertEquals(-1, wheel.nanosUntilNextDeadline(0));
+    }
+
+    public void testSlotsMustBePowerOfTwo() {
+        expectThrows(IllegalArgumentException.class, () -> new TimerWheel(0, TICK, 6));
+    }
+}
@@ -0,0 +1,107 @@
+package org.elasticsearch.transport.nio;
+
+import org.elasticsearch.action.ActionListener;
+import org.elasticsearch.common.bytes.BytesArray;
+import org.elasticsearch.common.bytes.CompositeBytesReference;
+import org.elasticsearch.test.ESTestCase;
+import org.elasticsearch.transport.nio.channel.NioSocketChannel;
+import org.elasticsearch.transport.nio.channel.TcpWriteContext;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.ByteBuffer;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+
+import static org.hamcrest.Matchers.lessThan;
+import static org.mockito.Mockito.mock;
+
+/**
+ * Checks that flushing queued write operations on the selector thread does not allocate once the write
+ * context has reached its steady state.
+ */
+public class WriteAllocationTests extends ESTestCase {
+
+    public void testSteadyStateFlushDoesNotAllocate() throws IOException {
+        ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+        assumeTrue("allocation counting is not supported by this JVM", threadMXBean instanceof com.sun.management.ThreadMXBean);
+        com.sun.management.ThreadMXBean allocationMXBean = (com.sun.management.ThreadMXBean) threadMXBean;
+        assumeTrue("allocation counting is not enabled", allocationMXBean.isThreadAllocatedMemorySupported()
+            && allocationMXBean.isThreadAllocatedMemoryEnabled());
+
+        SocketSelector selector = new SocketSelector(mock(SocketEventHandler.class), mock(Selector.class));
+        selector.setThread();
+        PartialWritingChannel channel = new PartialWritingChannel(mock(SocketChannel.class), selector, randomIntBetween(1, 64));
+        TcpWriteContext writeContext = new TcpWriteContext(channel, randomIntBetween(0, 1 << 16), randomIntBetween(4, 16));
+        CountingListener listener = new CountingListener();
+
+        int rounds = 2000;
+        int opsPerRound = randomIntBetween(1, 8);
+        byte[] bytes = randomByteArrayOfLength(randomIntBetween(1, 100));
+        WriteOperation[] ops = new WriteOperation[2 * rounds * opsPerRound];
+        for (int i = 0; i < ops.length; ++i) {
+            ops[i] = new WriteOperation(channel, new CompositeBytesReference(new BytesArray(bytes), new BytesArray(bytes)), listener);
+        }
+
+        // the first half warms up and grows the queue of the write context
+        flushRounds(writeContext, ops, 0, rounds, opsPerRound);
+        long threadId = Thread.currentThread().getId();
+        long allocatedBefore = allocationMXBean.getThreadAllocatedBytes(threadId);
+        flushRounds(writeContext, ops, rounds, rounds, opsPerRound);
+        long allocated = allocationMXBean.getThreadAllocatedBytes(threadId) - allocatedBefore;
+
+        assertEquals(ops.length, listener.completed);
+        // leave some room for the allocation counting itself, a single allocation per flush would be far above this
+        assertThat(allocated, lessThan(1024L));
+    }
+
+    private static void flushRounds(TcpWriteContext writeContext, WriteOperation[] ops, int firstRound, int rounds,
+                                    int opsPerRound) throws IOException {
+        for (int round = firstRound; round < firstRound + rounds; ++round) {
+            for (int i = 0; i < opsPerRound; ++i) {
+                writeContext.queueWriteOperations(ops[round * opsPerRound + i]);
+            }
+            while (writeContext.hasQueuedWriteOps()) {
+                writeContext.flushChannel();
+            }
+        }
+    }
+
+    private static class PartialWritingChannel extends NioSocketChannel {
+
+        private final int maxBytesPerWrite;
+
+        PartialWritingChannel(SocketChannel socketChannel, SocketSelector selector, int maxBytesPerWrite) throws IOException {
+            super(socketChannel, selector);
+            this.maxBytesPerWrite = maxBytesPerWrite;
+        }
+
+        @Override
+        public int write(ByteBuffer[] buffers, int offset, int length) {
+            int written = 0;
+            for (int i = offset; i < offset + length && written < maxBytesPerWrite; ++i) {
+                ByteBuffer buffer = buffers[i];
+                int toWrite = Math.min(buffer.remaining(), maxBytesPerWrite - written);
+                buffer.position(buffer.position() + toWrite);
+                written += toWrite;
+            }
+            return written;
+        }
+    }
+
+    private static class CountingListener implements ActionListener<Void> {
+
+        private int completed;
+
+        @Override
+        public void onResponse(Void aVoid) {
+            completed++;
+        }
+
+        @Override
+        public void onFailure(Exception e) {
+            throw new AssertionError(e);
+        }
+    }
+}
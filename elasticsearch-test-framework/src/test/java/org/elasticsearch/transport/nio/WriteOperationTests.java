@@ -3,6 +3,7 @@ package org.elasticsearch.transport.nio;
 import org.elasticsearch.action.ActionListener;
 import org.elasticsearch.common.bytes.BytesArray;
 import org.elasticsearch.common.bytes.CompositeBytesReference;
+import org.elasticsearch.common.settings.Settings;
 import org.elasticsearch.test.ESTestCase;
 import org.elasticsearch.transport.nio.channel.NioSocketChannel;
 import org.junit.Before;
@@ -10,10 +11,13 @@ import org.mockito.ArgumentCaptor;
 
 import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.util.Arrays;
 import java.util.List;
 
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 public class WriteOperationTests extends ESTestCase {
@@ -32,7 +36,7 @@ public class WriteOperationTests extends ESTestCase {
         WriteOperation writeOp = new WriteOperation(channel, new BytesArray(new byte[10]), listener);
 
 
-        when(channel.write(any(ByteBuffer[].class))).thenReturn(10);
+        when(channel.write(any(ByteBuffer[].class), anyInt(), anyInt())).thenReturn(10);
 
         writeOp.flush();
 
@@ -42,7 +46,7 @@ public class WriteOperationTests extends ESTestCase {
     public void testPartialFlush() throws IOException {
         WriteOperation writeOp = new WriteOperation(channel, new BytesArray(new byte[10]), listener);
 
-        when(channel.write(any(ByteBuffer[].class))).thenReturn(5);
+        when(channel.write(any(ByteBuffer[].class), anyInt(), anyInt())).thenReturn(5);
 
         writeOp.flush();
 
@@ -56,44 +60,77 @@ public class WriteOperationTests extends ESTestCase {
         CompositeBytesReference bytesReference = new CompositeBytesReference(bytesReference1, bytesReference2, bytesReference3);
         WriteOperation writeOp = new WriteOperation(channel, bytesReference, listener);
 
-        ArgumentCaptor<ByteBuffer[]> buffersCaptor = ArgumentCaptor.forClass(ByteBuffer[].class);
+        ArgumentCaptor<Integer> offsetCaptor = ArgumentCaptor.forClass(Integer.class);
+        ArgumentCaptor<Integer> lengthCaptor = ArgumentCaptor.forClass(Integer.class);
 
-        when(channel.write(buffersCaptor.capture())).thenReturn(5)
+        when(channel.write(any(ByteBuffer[].class), offsetCaptor.capture(), lengthCaptor.capture())).thenReturn(5)
             .thenReturn(5)
             .thenReturn(2)
             .thenReturn(15)
             .thenReturn(1);
 
+        ByteBuffer[] byteBuffers = writeOp.getByteBuffers();
+        assertEquals(3, byteBuffers.length);
+
         writeOp.flush();
         assertFalse(writeOp.isFullyFlushed());
+        assertEquals(0, writeOp.getBufferIndex());
+        assertEquals(5, byteBuffers[0].remaining());
         writeOp.flush();
         assertFalse(writeOp.isFullyFlushed());
+        assertEquals(1, writeOp.getBufferIndex());
+        assertEquals(15, byteBuffers[1].remaining());
         writeOp.flush();
         assertFalse(writeOp.isFullyFlushed());
+        assertEquals(1, writeOp.getBufferIndex());
+        assertEquals(13, byteBuffers[1].remaining());
         writeOp.flush();
         assertFalse(writeOp.isFullyFlushed());
+        assertEquals(2, writeOp.getBufferIndex());
+        assertEquals(1, byteBuffers[2].remaining());
         writeOp.flush();
         assertTrue(writeOp.isFullyFlushed());
+        assertEquals(0, writeOp.getRemaining());
 
-        List<ByteBuffer[]> values = buffersCaptor.getAllValues();
-        ByteBuffer[] byteBuffers = values.get(0);
-        assertEquals(3, byteBuffers.length);
-        assertEquals(10, byteBuffers[0].remaining());
+        List<Integer> offsets = offsetCaptor.getAllValues();
+        List<Integer> lengths = lengthCaptor.getAllValues();
+        assertEquals(Arrays.asList(0, 0, 1, 1, 2), offsets);
+        assertEquals(Arrays.asList(3, 3, 2, 2, 1), lengths);
+    }
 
-        byteBuffers = values.get(1);
-        assertEquals(3, byteBuffers.length);
-        assertEquals(5, byteBuffers[0].remaining());
+    public void testIncrementIndexMovesBufferPositions() {
+        BytesArray bytesReference1 = new BytesArray(new byte[10]);
+        BytesArray bytesReference2 = new BytesArray(new byte[15]);
+        WriteOperation writeOp = new WriteOperation(channel, new CompositeBytesReference(bytesReference1, bytesReference2), listener);
 
-        byteBuffers = values.get(2);
-        assertEquals(2, byteBuffers.length);
-        assertEquals(15, byteBuffers[0].remaining());
+        writeOp.incrementIndex(12);
 
-        byteBuffers = values.get(3);
-        assertEquals(2, byteBuffers.length);
-        assertEquals(13, byteBuffers[0].remaining());
+        assertEquals(13, writeOp.getRemaining());
+        assertEquals(1, writeOp.getBufferIndex());
+        assertFalse(writeOp.getByteBuffers()[0].hasRemaining());
+        assertEquals(13, writeOp.getByteBuffers()[1].remaining());
+        expectThrows(IllegalArgumentException.class, () -> writeOp.incrementIndex(14));
+    }
 
-        byteBuffers = values.get(4);
-        assertEquals(1, byteBuffers.length);
-        assertEquals(1, byteBuffers[0].remaining());
+    public void testPagesAreReleasedOnceTheOperationCompletes() throws Exception {
+        try (DirectPageRecycler recycler = new MockDirectPageRecycler(Settings.EMPTY)) {
+            PagedByteBufferStreamOutput output = new PagedByteBufferStreamOutput(recycler::directPage);
+            output.writeBytes(new byte[10]);
+            WriteOperation writeOp = new WriteOperation(channel, output, listener);
+
+            when(channel.write(any(ByteBuffer[].class), anyInt(), anyInt())).thenReturn(10);
+            writeOp.flush();
+            assertTrue(writeOp.isFullyFlushed());
+
+            if (randomBoolean()) {
+                writeOp.getListener().onResponse(null);
+                verify(listener).onResponse(null);
+            } else {
+                IOException exception = new IOException();
+                writeOp.getListener().onFailure(exception);
+                verify(listener).onFailure(exception);
+            }
+            MockDirectPageRecycler.ensureAllPagesAreReleased();
+        }
     }
 }
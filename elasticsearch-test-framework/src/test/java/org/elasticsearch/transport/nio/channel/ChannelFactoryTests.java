@@ -8,6 +8,8 @@ import org.junit.After;
 import org.junit.Before;
 
 import java.io.IOException;
+import java.net.BindException;
+import java.net.InetAddress;
 import java.net.InetSocketAddress;
 import java.nio.channels.ServerSocketChannel;
 import java.nio.channels.SocketChannel;
@@ -112,6 +114,49 @@ public class ChannelFactoryTests extends ESTestCase {
         assertFalse(rawServerChannel.isOpen());
     }
 
+    public void testOpenReusePortServerChannel() throws IOException {
+        InetSocketAddress address = mock(InetSocketAddress.class);
+        when(rawChannelFactory.openReusePortServerSocketChannel(same(address))).thenReturn(rawServerChannel);
+
+        NioServerSocketChannel channel = channelFactory.openReusePortServerSocketChannel(address, acceptingSelector);
+
+        verify(acceptingSelector).scheduleForRegistration(channel);
+
+        assertEquals(acceptingSelector, channel.getSelector());
+        assertEquals(rawServerChannel, channel.getRawChannel());
+    }
+
+    public void testReusePortChannelsShareAnAddress() throws IOException {
+        assumeTrue("SO_REUSEPORT is not supported", ChannelFactory.reusePortOption(rawServerChannel) != null);
+        ChannelFactory.RawChannelFactory factory = new ChannelFactory.RawChannelFactory(true, false, true, -1, -1);
+        InetSocketAddress address = new InetSocketAddress(InetAddress.getLoopbackAddress(), 0);
+
+        ServerSocketChannel first = factory.openReusePortServerSocketChannel(address);
+        ServerSocketChannel second = null;
+        try {
+            InetSocketAddress boundAddress = (InetSocketAddress) first.getLocalAddress();
+            second = factory.openReusePortServerSocketChannel(boundAddress);
+            assertEquals(boundAddress, second.getLocalAddress());
+        } finally {
+            IOUtils.close(first, second);
+        }
+    }
+
+    public void testClaimFailsIfReusePortChannelsUseTheAddress() throws IOException {
+        assumeTrue("SO_REUSEPORT is not supported", ChannelFactory.reusePortOption(rawServerChannel) != null);
+        ChannelFactory.RawChannelFactory factory = new ChannelFactory.RawChannelFactory(true, false, true, -1, -1);
+        channelFactory = new TestChannelFactory(factory);
+        InetSocketAddress address = new InetSocketAddress(InetAddress.getLoopbackAddress(), 0);
+
+        InetSocketAddress claimedAddress = channelFactory.claimServerAddress(address);
+        assertNotEquals(0, claimedAddress.getPort());
+        // the claim released the address, so the channels can bind it
+        try (ServerSocketChannel channel = factory.openReusePortServerSocketChannel(claimedAddress)) {
+            assertEquals(claimedAddress, channel.getLocalAddress());
+            expectThrows(BindException.class, () -> channelFactory.claimServerAddress(claimedAddress));
+        }
+    }
+
     private static class TestChannelFactory extends ChannelFactory {
 
         TestChannelFactory(RawChannelFactory rawChannelFactory) {
@@ -0,0 +1,50 @@
+package org.elasticsearch.transport.nio.channel;
+
+import org.elasticsearch.test.ESTestCase;
+
+public class ReadSizeEstimatorTests extends ESTestCase {
+
+    private static final int PAGE_SIZE = 16;
+
+    public void testGrowsWhenReadsFillOfferedSpace() {
+        ReadSizeEstimator estimator = new ReadSizeEstimator(PAGE_SIZE, 1, 8);
+        assertEquals(PAGE_SIZE, estimator.nextReadSize());
+
+        estimator.record(PAGE_SIZE, PAGE_SIZE);
+        assertEquals(2 * PAGE_SIZE, estimator.nextReadSize());
+        estimator.record(2 * PAGE_SIZE, 2 * PAGE_SIZE);
+        assertEquals(4 * PAGE_SIZE, estimator.nextReadSize());
+        estimator.record(4 * PAGE_SIZE, 4 * PAGE_SIZE);
+        estimator.record(8 * PAGE_SIZE, 8 * PAGE_SIZE);
+        assertEquals(8 * PAGE_SIZE, estimator.nextReadSize());
+    }
+
+    public void testShrinksAfterTwoSmallReads() {
+        ReadSizeEstimator estimator = new ReadSizeEstimator(PAGE_SIZE, 1, 8);
+        estimator.record(PAGE_SIZE, PAGE_SIZE);
+        estimator.record(2 * PAGE_SIZE, 2 * PAGE_SIZE);
+        assertEquals(4 * PAGE_SIZE, estimator.nextReadSize());
+
+        estimator.record(1, 4 * PAGE_SIZE);
+        assertEquals(4 * PAGE_SIZE, estimator.nextReadSize());
+        estimator.record(1, 4 * PAGE_SIZE);
+        assertEquals(2 * PAGE_SIZE, estimator.nextReadSize());
+
+        // a read that uses more than half of the estimate resets the pending shrink
+        estimator.record(1, 2 * PAGE_SIZE);
+        estimator.record(PAGE_SIZE + 1, 2 * PAGE_SIZE);
+        estimator.record(1, 2 * PAGE_SIZE);
+        assertEquals(2 * PAGE_SIZE, estimator.nextReadSize());
+        estimator.record(1, 2 * PAGE_SIZE);
+        assertEquals(PAGE_SIZE, estimator.nextReadSize());
+
+        estimator.record(1, PAGE_SIZE);
+        estimator.record(1, PAGE_SIZE);
+        assertEquals(PAGE_SIZE, estimator.nextReadSize());
+    }
+
+    public void testInvalidPages() {
+        expectThrows(IllegalArgumentException.class, () -> new ReadSizeEstimator(PAGE_SIZE, 0, 1));
+        expectThrows(IllegalArgumentException.class, () -> new ReadSizeEstimator(PAGE_SIZE, 2, 1));
+    }
+}
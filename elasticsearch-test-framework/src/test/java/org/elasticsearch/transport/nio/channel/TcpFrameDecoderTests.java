@@ -2,11 +2,14 @@ package org.elasticsearch.transport.nio.channel;
 
 import org.elasticsearch.common.bytes.BytesReference;
 import org.elasticsearch.common.io.stream.BytesStreamOutput;
+import org.elasticsearch.common.util.BigArrays;
 import org.elasticsearch.test.ESTestCase;
 import org.elasticsearch.transport.TcpTransport;
+import org.elasticsearch.transport.nio.InboundChannelBuffer;
 
 import java.io.IOException;
 import java.io.StreamCorruptedException;
+import java.nio.ByteBuffer;
 
 import static org.hamcrest.Matchers.instanceOf;
 
@@ -25,7 +28,7 @@ public class TcpFrameDecoderTests extends ESTestCase {
         streamOutput.write(1);
         streamOutput.write(1);
 
-        assertNull(frameDecoder.decode(streamOutput.bytes()));
+        assertEquals(-1, decode(streamOutput.bytes()));
         assertEquals(-1, frameDecoder.expectedMessageLength());
     }
 
@@ -35,10 +38,8 @@ public class TcpFrameDecoderTests extends ESTestCase {
         streamOutput.write('S');
         streamOutput.writeInt(-1);
 
-        BytesReference message = frameDecoder.decode(streamOutput.bytes());
-
+        assertEquals(6, decode(streamOutput.bytes()));
         assertEquals(-1, frameDecoder.expectedMessageLength());
-        assertEquals(streamOutput.bytes(), message);
     }
 
     public void testDecodePingWithStartOfSecondMessage() throws IOException {
@@ -49,10 +50,8 @@ public class TcpFrameDecoderTests extends ESTestCase {
         streamOutput.write('E');
         streamOutput.write('S');
 
-        BytesReference message = frameDecoder.decode(streamOutput.bytes());
-
-        assertEquals(6, message.length());
-        assertEquals(streamOutput.bytes().slice(0, 6), message);
+        assertEquals(6, decode(streamOutput.bytes()));
+        assertEquals(-1, frameDecoder.expectedMessageLength());
     }
 
     public void testDecodeMessage() throws IOException {
@@ -63,10 +62,8 @@ public class TcpFrameDecoderTests extends ESTestCase {
         streamOutput.write('M');
         streamOutput.write('A');
 
-        BytesReference message = frameDecoder.decode(streamOutput.bytes());
-
+        assertEquals(8, decode(streamOutput.bytes()));
         assertEquals(-1, frameDecoder.expectedMessageLength());
-        assertEquals(streamOutput.bytes(), message);
     }
 
     public void testDecodeIncompleteMessage() throws IOException {
@@ -77,10 +74,8 @@ public class TcpFrameDecoderTests extends ESTestCase {
         streamOutput.write('M');
         streamOutput.write('A');
 
-        BytesReference message = frameDecoder.decode(streamOutput.bytes());
-
+        assertEquals(-1, decode(streamOutput.bytes()));
         assertEquals(9, frameDecoder.expectedMessageLength());
-        assertNull(message);
     }
 
     public void testInvalidLength() throws IOException {
@@ -92,7 +87,7 @@ public class TcpFrameDecoderTests extends ESTestCase {
         streamOutput.write('A');
 
         try {
-            frameDecoder.decode(streamOutput.bytes());
+            decode(streamOutput.bytes());
             fail("Expected exception");
         } catch (Exception ex) {
             assertThat(ex, instanceOf(StreamCorruptedException.class));
@@ -113,7 +108,7 @@ public class TcpFrameDecoderTests extends ESTestCase {
         streamOutput.write(randomByte());
 
         try {
-            frameDecoder.decode(streamOutput.bytes());
+            decode(streamOutput.bytes());
             fail("Expected exception");
         } catch (Exception ex) {
             assertThat(ex, instanceOf(StreamCorruptedException.class));
@@ -136,8 +131,7 @@ public class TcpFrameDecoderTests extends ESTestCase {
             streamOutput.write(new byte[6]);
 
             try {
-                BytesReference bytes = streamOutput.bytes();
-                frameDecoder.decode(bytes);
+                decode(streamOutput.bytes());
                 fail("Expected exception");
             } catch (Exception ex) {
                 assertThat(ex, instanceOf(TcpTransport.HttpOnTransportException.class));
@@ -145,4 +139,68 @@ public class TcpFrameDecoderTests extends ESTestCase {
             }
         }
     }
+
+    public void testDecodeChannelBufferIncrementally() throws IOException {
+        InboundChannelBuffer channelBuffer = new InboundChannelBuffer(() ->
+            new InboundChannelBuffer.Page(ByteBuffer.allocate(BigArrays.BYTE_PAGE_SIZE), () -> {}));
+        byte[] frame = new byte[] {'E', 'S', 0, 0, 0, 3, 'M', 'A', 'B'};
+
+        write(channelBuffer, frame, 0, 4);
+        assertEquals(-1, frameDecoder.decode(channelBuffer));
+        assertEquals(-1, frameDecoder.expectedMessageLength());
+
+        write(channelBuffer, frame, 4, 3);
+        assertEquals(-1, frameDecoder.decode(channelBuffer));
+        assertEquals(9, frameDecoder.expectedMessageLength());
+
+        write(channelBuffer, frame, 7, 2);
+        assertEquals(9, frameDecoder.decode(channelBuffer));
+        assertEquals(-1, frameDecoder.expectedMessageLength());
+    }
+
+    public void testDecodeChannelBufferWithHeaderAcrossPages() throws IOException {
+        InboundChannelBuffer channelBuffer = new InboundChannelBuffer(() ->
+            new InboundChannelBuffer.Page(ByteBuffer.allocate(BigArrays.BYTE_PAGE_SIZE), () -> {}));
+        channelBuffer.ensureCapacity(BigArrays.BYTE_PAGE_SIZE * 2);
+        int shift = randomIntBetween(1, 5);
+        channelBuffer.incrementIndex(BigArrays.BYTE_PAGE_SIZE - shift);
+        channelBuffer.release(BigArrays.BYTE_PAGE_SIZE - shift);
+
+        byte[] frame = new byte[] {'E', 'S', 0, 0, 0, 2, 'M', 'A', 'E', 'S', -1, -1, -1, -1};
+        write(channelBuffer, frame, 0, frame.length);
+
+        assertEquals(8, frameDecoder.decode(channelBuffer));
+        channelBuffer.release(8);
+        assertEquals(6, frameDecoder.decode(channelBuffer));
+        channelBuffer.release(6);
+        assertEquals(-1, frameDecoder.decode(channelBuffer));
+    }
+
+    public void testInvalidHeaderInChannelBuffer() throws IOException {
+        InboundChannelBuffer channelBuffer = new InboundChannelBuffer(() ->
+            new InboundChannelBuffer.Page(ByteBuffer.allocate(BigArrays.BYTE_PAGE_SIZE), () -> {}));
+        write(channelBuffer, new byte[] {'E', 'S', -1, -1, -1, -2}, 0, 6);
+
+        StreamCorruptedException ex = expectThrows(StreamCorruptedException.class, () -> frameDecoder.decode(channelBuffer));
+        assertEquals("invalid data length: -2", ex.getMessage());
+    }
+
+    private int decode(BytesReference bytes) throws IOException {
+        InboundChannelBuffer channelBuffer = new InboundChannelBuffer(() ->
+            new InboundChannelBuffer.Page(ByteBuffer.allocate(BigArrays.BYTE_PAGE_SIZE), () -> {}));
+        channelBuffer.ensureCapacity(bytes.length());
+        write(channelBuffer, BytesReference.toBytes(bytes), 0, bytes.length());
+        return frameDecoder.decode(channelBuffer);
+    }
+
+    private static void write(InboundChannelBuffer channelBuffer, byte[] bytes, int offset, int length) {
+        ByteBuffer[] buffers = channelBuffer.sliceBuffersFrom(channelBuffer.getIndex());
+        int written = 0;
+        for (ByteBuffer buffer : buffers) {
+            int toWrite = Math.min(buffer.remaining(), length - written);
+            buffer.put(bytes, offset + written, toWrite);
+            written += toWrite;
+        }
+        channelBuffer.incrementIndex(length);
+    }
 }
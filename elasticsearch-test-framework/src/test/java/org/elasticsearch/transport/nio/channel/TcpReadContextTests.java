@@ -1,7 +1,9 @@
 package org.elasticsearch.transport.nio.channel;
 
 import org.elasticsearch.common.bytes.BytesArray;
+import org.elasticsearch.common.bytes.BytesReference;
 import org.elasticsearch.common.bytes.CompositeBytesReference;
+import org.elasticsearch.common.io.stream.StreamInput;
 import org.elasticsearch.common.util.BigArrays;
 import org.elasticsearch.test.ESTestCase;
 import org.elasticsearch.transport.nio.InboundChannelBuffer;
@@ -10,11 +12,17 @@ import org.junit.Before;
 
 import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.Supplier;
 
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.same;
+import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyZeroInteractions;
@@ -95,6 +103,98 @@ public class TcpReadContextTests extends ESTestCase {
         verify(handler).handleMessage(reference, channel, messageLength + messageLength);
     }
 
+    public void testReadFromDirectPages() throws IOException {
+        List<ByteBuffer> pages = new ArrayList<>();
+        InboundChannelBuffer channelBuffer = new InboundChannelBuffer(() -> {
+            ByteBuffer page = ByteBuffer.allocateDirect(BigArrays.BYTE_PAGE_SIZE);
+            pages.add(page);
+            return new InboundChannelBuffer.Page(page, () -> {});
+        });
+        readContext = new TcpReadContext(channel, handler, channelBuffer, 2, 2, 2 * BigArrays.BYTE_PAGE_SIZE);
+        // the message spans both pages, so the handler gets a composite of two direct slices
+        byte[] bytes = createMessage(BigArrays.BYTE_PAGE_SIZE + messageLength);
+        byte[] fullMessage = combineMessageAndHeader(bytes);
+
+        when(channel.read(any(InboundChannelBuffer.class))).thenAnswer(invocationOnMock -> {
+            InboundChannelBuffer buffer = (InboundChannelBuffer) invocationOnMock.getArguments()[0];
+            ByteBuffer[] buffers = buffer.sliceBuffersFrom(buffer.getIndex());
+            ByteBuffer message = ByteBuffer.wrap(fullMessage);
+            for (ByteBuffer byteBuffer : buffers) {
+                message.limit(Math.min(fullMessage.length, message.position() + byteBuffer.remaining()));
+                byteBuffer.put(message);
+            }
+            buffer.incrementIndex(fullMessage.length);
+            return fullMessage.length;
+        });
+        final AtomicReference<byte[]> handled = new AtomicReference<>();
+        doAnswer(invocationOnMock -> {
+            BytesReference reference = (BytesReference) invocationOnMock.getArguments()[0];
+            byte[] copy = new byte[reference.length()];
+            try (StreamInput in = reference.streamInput()) {
+                in.readBytes(copy, 0, copy.length);
+            }
+            handled.set(copy);
+            assertEquals(new BytesArray(bytes).toBytesRef(), reference.toBytesRef());
+            return null;
+        }).when(handler).handleMessage(any(BytesReference.class), same(channel), eq(bytes.length));
+
+        readContext.read();
+
+        assertArrayEquals(bytes, handled.get());
+        assertEquals(2, pages.size());
+        // reading the message does not move the pages
+        for (ByteBuffer page : pages) {
+            assertEquals(0, page.position());
+        }
+    }
+
+    public void testReadsUntilBudgetIsUsedUp() throws IOException {
+        InboundChannelBuffer channelBuffer = new InboundChannelBuffer(() ->
+            new InboundChannelBuffer.Page(ByteBuffer.allocate(BigArrays.BYTE_PAGE_SIZE), () -> {}));
+        readContext = new TcpReadContext(channel, handler, channelBuffer, 1, 4, 3 * BigArrays.BYTE_PAGE_SIZE);
+
+        final List<Long> offered = new ArrayList<>();
+        when(channel.read(any(InboundChannelBuffer.class))).thenAnswer(invocationOnMock -> {
+            InboundChannelBuffer buffer = (InboundChannelBuffer) invocationOnMock.getArguments()[0];
+            // fills all of the offered space with the start of a message that never completes
+            long remaining = buffer.getCapacity() - buffer.getIndex();
+            if (buffer.getIndex() == 0) {
+                buffer.sliceBuffersFrom(0)[0].put(combineMessageAndHeader(new byte[0], 1 << 20));
+            }
+            offered.add(remaining);
+            buffer.incrementIndex(remaining);
+            return (int) remaining;
+        });
+
+        int bytesRead = readContext.read();
+
+        // the offered space doubles with every full read and reading stops once the budget is used up
+        assertEquals(Arrays.asList((long) BigArrays.BYTE_PAGE_SIZE, 2L * BigArrays.BYTE_PAGE_SIZE), offered);
+        assertEquals(3 * BigArrays.BYTE_PAGE_SIZE, bytesRead);
+        verifyZeroInteractions(handler);
+    }
+
+    public void testPingsAreRecordedAndNotHandled() throws IOException {
+        byte[] ping = combineMessageAndHeader(new byte[0], -1);
+        int pings = randomIntBetween(1, 5);
+        when(channel.read(any(InboundChannelBuffer.class))).thenAnswer(invocationOnMock -> {
+            InboundChannelBuffer buffer = (InboundChannelBuffer) invocationOnMock.getArguments()[0];
+            ByteBuffer byteBuffer = buffer.sliceBuffersFrom(buffer.getIndex())[0];
+            for (int i = 0; i < pings; ++i) {
+                byteBuffer.put(ping);
+            }
+            buffer.incrementIndex(pings * ping.length);
+            return pings * ping.length;
+        });
+
+        long beforeRead = System.nanoTime();
+        readContext.read();
+
+        assertEquals(pings, readContext.getPingsReceived());
+        assertTrue(readContext.getLastPingNanos() - beforeRead >= 0);
+        verifyZeroInteractions(handler);
+    }
+
     public void testReadThrowsIOException() throws IOException {
         IOException ioException = new IOException();
         when(channel.read(any())).thenThrow(ioException);
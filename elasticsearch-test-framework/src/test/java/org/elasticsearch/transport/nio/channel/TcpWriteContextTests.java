@@ -1,7 +1,10 @@
 package org.elasticsearch.transport.nio.channel;
 
 import org.elasticsearch.action.ActionListener;
+import org.elasticsearch.common.breaker.CircuitBreaker;
+import org.elasticsearch.common.breaker.CircuitBreakingException;
 import org.elasticsearch.common.bytes.BytesArray;
+import org.elasticsearch.common.util.concurrent.EsRejectedExecutionException;
 import org.elasticsearch.test.ESTestCase;
 import org.elasticsearch.transport.nio.SocketSelector;
 import org.elasticsearch.transport.nio.WriteOperation;
@@ -11,8 +14,12 @@ import org.mockito.ArgumentCaptor;
 import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.nio.channels.ClosedChannelException;
+import java.util.List;
 
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
@@ -47,7 +54,7 @@ public class TcpWriteContextTests extends ESTestCase {
     }
 
     public void testSendMessageFromDifferentThreadIsQueuedWithSelector() throws Exception {
-        byte[] bytes = generateBytes(10);
+        byte[] bytes = randomByteArrayOfLength(10);
         BytesArray bytesArray = new BytesArray(bytes);
         ArgumentCaptor<WriteOperation> writeOpCaptor = ArgumentCaptor.forClass(WriteOperation.class);
 
@@ -59,13 +66,17 @@ public class TcpWriteContextTests extends ESTestCase {
         verify(selector).queueWrite(writeOpCaptor.capture());
         WriteOperation writeOp = writeOpCaptor.getValue();
 
-        assertSame(listener, writeOp.getListener());
         assertSame(channel, writeOp.getChannel());
         assertEquals(ByteBuffer.wrap(bytes), writeOp.getByteBuffers()[0]);
+        // the listener is wrapped to release the pending bytes of the message
+        assertEquals(10, writeContext.getPendingWriteBytes());
+        writeOp.getListener().onResponse(null);
+        verify(listener).onResponse(null);
+        assertEquals(0, writeContext.getPendingWriteBytes());
     }
 
     public void testSendMessageFromSameThreadIsQueuedInChannel() throws Exception {
-        byte[] bytes = generateBytes(10);
+        byte[] bytes = randomByteArrayOfLength(10);
         BytesArray bytesArray = new BytesArray(bytes);
         ArgumentCaptor<WriteOperation> writeOpCaptor = ArgumentCaptor.forClass(WriteOperation.class);
 
@@ -76,9 +87,63 @@ public class TcpWriteContextTests extends ESTestCase {
         verify(selector).queueWriteInChannelBuffer(writeOpCaptor.capture());
         WriteOperation writeOp = writeOpCaptor.getValue();
 
-        assertSame(listener, writeOp.getListener());
         assertSame(channel, writeOp.getChannel());
         assertEquals(ByteBuffer.wrap(bytes), writeOp.getByteBuffers()[0]);
+        // the listener is wrapped to release the pending bytes of the message
+        assertEquals(10, writeContext.getPendingWriteBytes());
+        writeOp.getListener().onResponse(null);
+        verify(listener).onResponse(null);
+        assertEquals(0, writeContext.getPendingWriteBytes());
+    }
+
+    public void testBelowHighWaterMarkFollowsWaterMarks() throws Exception {
+        writeContext = new TcpWriteContext(channel, 0, 1, 20, 10, -1, null);
+        ArgumentCaptor<WriteOperation> writeOpCaptor = ArgumentCaptor.forClass(WriteOperation.class);
+        when(channel.isWritable()).thenReturn(true);
+
+        writeContext.sendMessage(new BytesArray(randomByteArrayOfLength(10)), listener);
+        assertTrue(writeContext.isBelowHighWaterMark());
+        writeContext.sendMessage(new BytesArray(randomByteArrayOfLength(10)), listener);
+        assertFalse(writeContext.isBelowHighWaterMark());
+        assertEquals(20, writeContext.getPendingWriteBytes());
+
+        verify(selector, times(2)).queueWriteInChannelBuffer(writeOpCaptor.capture());
+        writeOpCaptor.getAllValues().get(0).getListener().onResponse(null);
+        assertTrue(writeContext.isBelowHighWaterMark());
+        writeOpCaptor.getAllValues().get(1).getListener().onFailure(new ClosedChannelException());
+        assertEquals(0, writeContext.getPendingWriteBytes());
+    }
+
+    public void testMessagesAboveLimitAreRejected() throws Exception {
+        writeContext = new TcpWriteContext(channel, 0, 1, 20, 10, 30, null);
+        when(channel.isWritable()).thenReturn(true);
+
+        // a single message larger than the limit is accepted if nothing else is pending
+        writeContext.sendMessage(new BytesArray(randomByteArrayOfLength(40)), listener);
+        assertEquals(40, writeContext.getPendingWriteBytes());
+
+        writeContext.sendMessage(new BytesArray(randomByteArrayOfLength(1)), listener);
+        verify(listener).onFailure(any(EsRejectedExecutionException.class));
+        assertEquals(40, writeContext.getPendingWriteBytes());
+    }
+
+    public void testPendingBytesAreChargedToBreaker() throws Exception {
+        CircuitBreaker breaker = mock(CircuitBreaker.class);
+        writeContext = new TcpWriteContext(channel, 0, 1, 20, 10, -1, breaker);
+        ArgumentCaptor<WriteOperation> writeOpCaptor = ArgumentCaptor.forClass(WriteOperation.class);
+        when(channel.isWritable()).thenReturn(true);
+
+        writeContext.sendMessage(new BytesArray(randomByteArrayOfLength(10)), listener);
+        verify(breaker).addEstimateBytesAndMaybeBreak(eq(10L), any());
+        verify(selector).queueWriteInChannelBuffer(writeOpCaptor.capture());
+        writeOpCaptor.getValue().getListener().onResponse(null);
+        verify(breaker).addWithoutBreaking(-10L);
+
+        CircuitBreakingException breakingException = new CircuitBreakingException("boom");
+        when(breaker.addEstimateBytesAndMaybeBreak(anyLong(), any())).thenThrow(breakingException);
+        writeContext.sendMessage(new BytesArray(randomByteArrayOfLength(10)), listener);
+        verify(listener).onFailure(breakingException);
+        assertEquals(0, writeContext.getPendingWriteBytes());
     }
 
     public void testWriteIsQueuedInChannel() throws Exception {
@@ -183,6 +248,83 @@ public class TcpWriteContextTests extends ESTestCase {
         assertFalse(writeContext.hasQueuedWriteOps());
     }
 
+    @SuppressWarnings("unchecked")
+    public void testGatheringFlushWritesAllQueuedOpsAtOnce() throws IOException {
+        TcpWriteContext writeContext = new TcpWriteContext(channel, 1024, 64);
+        ActionListener<Void> listener2 = mock(ActionListener.class);
+        ActionListener<Void> listener3 = mock(ActionListener.class);
+        writeContext.queueWriteOperations(new WriteOperation(channel, new BytesArray(generateBytes(10)), listener));
+        writeContext.queueWriteOperations(new WriteOperation(channel, new BytesArray(generateBytes(10)), listener2));
+        writeContext.queueWriteOperations(new WriteOperation(channel, new BytesArray(generateBytes(10)), listener3));
+
+        ArgumentCaptor<Integer> lengthCaptor = ArgumentCaptor.forClass(Integer.class);
+        when(channel.write(any(ByteBuffer[].class), anyInt(), lengthCaptor.capture())).thenReturn(60);
+        writeContext.flushChannel();
+
+        verify(channel, times(1)).write(any(ByteBuffer[].class), anyInt(), anyInt());
+        assertEquals(3, (int) lengthCaptor.getValue());
+        verify(selector).executeListener(listener, null);
+        verify(selector).executeListener(listener2, null);
+        verify(selector).executeListener(listener3, null);
+        assertFalse(writeContext.hasQueuedWriteOps());
+    }
+
+    @SuppressWarnings("unchecked")
+    public void testGatheringFlushKeepsPartialProgress() throws IOException {
+        TcpWriteContext writeContext = new TcpWriteContext(channel, 1024, 64);
+        ActionListener<Void> listener2 = mock(ActionListener.class);
+        WriteOperation writeOperation2 = new WriteOperation(channel, new BytesArray(generateBytes(10)), listener2);
+        writeContext.queueWriteOperations(new WriteOperation(channel, new BytesArray(generateBytes(10)), listener));
+        writeContext.queueWriteOperations(writeOperation2);
+
+        when(channel.write(any(ByteBuffer[].class), anyInt(), anyInt())).thenReturn(25);
+        writeContext.flushChannel();
+
+        verify(selector).executeListener(listener, null);
+        verify(selector, times(0)).executeListener(listener2, null);
+        assertTrue(writeContext.hasQueuedWriteOps());
+        assertEquals(15, writeOperation2.getRemaining());
+
+        when(channel.write(any(ByteBuffer[].class), anyInt(), anyInt())).thenReturn(15);
+        writeContext.flushChannel();
+
+        verify(selector).executeListener(listener2, null);
+        assertFalse(writeContext.hasQueuedWriteOps());
+    }
+
+    @SuppressWarnings("unchecked")
+    public void testGatheringFlushRespectsByteLimit() throws IOException {
+        TcpWriteContext writeContext = new TcpWriteContext(channel, 30, 64);
+        ActionListener<Void> listener2 = mock(ActionListener.class);
+        writeContext.queueWriteOperations(new WriteOperation(channel, new BytesArray(generateBytes(10)), listener));
+        writeContext.queueWriteOperations(new WriteOperation(channel, new BytesArray(generateBytes(10)), listener2));
+
+        ArgumentCaptor<Integer> lengthCaptor = ArgumentCaptor.forClass(Integer.class);
+        when(channel.write(any(ByteBuffer[].class), anyInt(), lengthCaptor.capture())).thenReturn(20);
+        writeContext.flushChannel();
+
+        List<Integer> lengths = lengthCaptor.getAllValues();
+        assertEquals(2, lengths.size());
+        assertEquals(1, (int) lengths.get(0));
+        assertEquals(1, (int) lengths.get(1));
+        verify(selector).executeListener(listener, null);
+        verify(selector).executeListener(listener2, null);
+        assertFalse(writeContext.hasQueuedWriteOps());
+    }
+
+    public void testGatheringFlushFailsHeadOpOnIOException() throws IOException {
+        TcpWriteContext writeContext = new TcpWriteContext(channel, 1024, 64);
+        writeContext.queueWriteOperations(new WriteOperation(channel, new BytesArray(generateBytes(10)), listener));
+        writeContext.queueWriteOperations(new WriteOperation(channel, new BytesArray(generateBytes(10)), listener));
+
+        IOException exception = new IOException();
+        when(channel.write(any(ByteBuffer[].class), anyInt(), anyInt())).thenThrow(exception);
+        expectThrows(IOException.class, () -> writeContext.flushChannel());
+
+        verify(selector).executeFailedListener(listener, exception);
+        assertTrue(writeContext.hasQueuedWriteOps());
+    }
+
     private byte[] generateBytes(int n) {
         n += 10;
         byte[] bytes = new byte[n];
@@ -0,0 +1,104 @@
+package org.elasticsearch.benchmark.transport;
+
+import org.elasticsearch.action.support.PlainActionFuture;
+import org.elasticsearch.benchmark.transport.NioBenchmarkSupport.ByteCounter;
+import org.elasticsearch.transport.TcpChannel;
+import org.elasticsearch.transport.nio.NioGroup;
+import org.elasticsearch.transport.nio.channel.TcpChannelFactory;
+import org.elasticsearch.transport.nio.channel.TcpNioServerSocketChannel;
+import org.elasticsearch.transport.nio.channel.TcpNioSocketChannel;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Measures opening many connections to a server at once, as happens when a whole cluster restarts and all
+ * nodes reconnect. Each invocation opens the connections, waits until the server accepted all of them and
+ * closes them again. With {@code reusePort} every acceptor binds its own SO_REUSEPORT server channel, so the
+ * kernel spreads the connections over the listen queues of the acceptors.
+ * <p>
+ * Every closed connection leaves a socket in TIME_WAIT, which holds an ephemeral port for a minute. The
+ * benchmark therefore runs a fixed number of single shot invocations instead of as many as fit into a time
+ * budget. A trial opens {@code (3 + 10) * connections} connections, which fits into the default ephemeral
+ * port range of Linux (32768-60999). Consecutive trials can still exhaust the range on kernels that do
+ * not reuse TIME_WAIT sockets for loopback connections, which Linux does by default since 4.19.
+ */
+@Fork(1)
+@Warmup(iterations = 3, batchSize = 1)
+@Measurement(iterations = 10, batchSize = 1)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+public class ConnectionStormBenchmark {
+
+    @Param({"1", "4"})
+    public int acceptors;
+
+    @Param({"false", "true"})
+    public boolean reusePort;
+
+    @Param({"1000"})
+    public int connections;
+
+    private final Semaphore accepted = new Semaphore(0);
+    private NioGroup nioGroup;
+    private TcpChannelFactory channelFactory;
+    private InetSocketAddress serverAddress;
+
+    @Setup
+    public void setUp() throws IOException {
+        nioGroup = NioBenchmarkSupport.newNioGroup(acceptors, Runtime.getRuntime().availableProcessors());
+        channelFactory = NioBenchmarkSupport.newChannelFactory(new ByteCounter(), channel -> accepted.release());
+        TcpNioServerSocketChannel serverChannel = nioGroup.bindServerChannel(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0),
+            channelFactory, reusePort);
+        serverAddress = serverChannel.getLocalAddress();
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        nioGroup.close();
+    }
+
+    @Benchmark
+    public int connectionStorm() throws Exception {
+        List<TcpNioSocketChannel> channels = new ArrayList<>(connections);
+        List<PlainActionFuture<Void>> connectFutures = new ArrayList<>(connections);
+        try {
+            for (int i = 0; i < connections; ++i) {
+                TcpNioSocketChannel channel = nioGroup.openChannel(serverAddress, channelFactory);
+                channels.add(channel);
+                PlainActionFuture<Void> connectFuture = PlainActionFuture.newFuture();
+                channel.addConnectListener(connectFuture);
+                connectFutures.add(connectFuture);
+            }
+            for (PlainActionFuture<Void> connectFuture : connectFutures) {
+                connectFuture.get(30, TimeUnit.SECONDS);
+            }
+            if (accepted.tryAcquire(connections, 30, TimeUnit.SECONDS) == false) {
+                throw new TimeoutException("server accepted [" + accepted.availablePermits() + "] of [" + connections + "] connections");
+            }
+        } finally {
+            // the accepted channels are closed by the server once it reads the end of the stream
+            TcpChannel.closeChannels(channels, true);
+        }
+        return channels.size();
+    }
+}
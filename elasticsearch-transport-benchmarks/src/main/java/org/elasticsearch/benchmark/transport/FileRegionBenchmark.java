@@ -0,0 +1,129 @@
+package org.elasticsearch.benchmark.transport;
+
+import org.elasticsearch.action.ActionListener;
+import org.elasticsearch.action.support.PlainActionFuture;
+import org.elasticsearch.benchmark.transport.NioBenchmarkSupport.ByteCounter;
+import org.elasticsearch.common.bytes.BytesArray;
+import org.elasticsearch.common.bytes.BytesReference;
+import org.elasticsearch.common.bytes.CompositeBytesReference;
+import org.elasticsearch.transport.nio.NioGroup;
+import org.elasticsearch.transport.nio.channel.TcpChannelFactory;
+import org.elasticsearch.transport.nio.channel.TcpNioServerSocketChannel;
+import org.elasticsearch.transport.nio.channel.TcpNioSocketChannel;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures streaming a file over loopback in chunks that are each preceded by a small header, like the file
+ * chunks of a recovery. {@link #heapChunks()} reads every chunk into a heap array and sends the array,
+ * {@link #fileRegions()} sends every chunk as a file region with transferTo. Each invocation streams the whole
+ * file and waits until the receiving side read all bytes.
+ */
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 10)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Benchmark)
+public class FileRegionBenchmark {
+
+    private static final int FILE_SIZE = 64 * 1024 * 1024;
+    private static final int HEADER_SIZE = 128;
+
+    @Param({"65536", "524288", "4194304"})
+    public int chunkSize;
+
+    private final ByteCounter bytesReceived = new ByteCounter();
+    private final BytesReference header = new BytesArray(new byte[HEADER_SIZE]);
+    private Path path;
+    private FileChannel file;
+    private NioGroup nioGroup;
+    private TcpNioSocketChannel channel;
+
+    @Setup
+    public void setUp() throws Exception {
+        path = Files.createTempFile("file-region-benchmark", ".bin");
+        byte[] bytes = new byte[FILE_SIZE];
+        new Random(0).nextBytes(bytes);
+        Files.write(path, bytes);
+        file = FileChannel.open(path, StandardOpenOption.READ);
+
+        nioGroup = NioBenchmarkSupport.newNioGroup(1, 2);
+        TcpChannelFactory channelFactory = NioBenchmarkSupport.newChannelFactory(bytesReceived, acceptedChannel -> {});
+        TcpNioServerSocketChannel serverChannel = nioGroup.bindServerChannel(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0),
+            channelFactory);
+        channel = nioGroup.openChannel(serverChannel.getLocalAddress(), channelFactory);
+        PlainActionFuture<Void> connectFuture = PlainActionFuture.newFuture();
+        channel.addConnectListener(connectFuture);
+        connectFuture.get(30, TimeUnit.SECONDS);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        try {
+            nioGroup.close();
+            file.close();
+        } finally {
+            Files.deleteIfExists(path);
+        }
+    }
+
+    @Benchmark
+    public long heapChunks() throws Exception {
+        final long target = bytesReceived.get() + expectedBytes();
+        for (long position = 0; position < FILE_SIZE; position += chunkSize) {
+            int length = (int) Math.min(chunkSize, FILE_SIZE - position);
+            byte[] chunk = new byte[length];
+            ByteBuffer buffer = ByteBuffer.wrap(chunk);
+            while (buffer.hasRemaining()) {
+                file.read(buffer, position + buffer.position());
+            }
+            channel.sendMessage(new CompositeBytesReference(header, new BytesArray(chunk)), failureListener());
+        }
+        bytesReceived.awaitAtLeast(target, 60, TimeUnit.SECONDS);
+        return target;
+    }
+
+    @Benchmark
+    public long fileRegions() throws Exception {
+        final long target = bytesReceived.get() + expectedBytes();
+        for (long position = 0; position < FILE_SIZE; position += chunkSize) {
+            int length = (int) Math.min(chunkSize, FILE_SIZE - position);
+            channel.sendFileRegion(header, file, position, length, failureListener());
+        }
+        bytesReceived.awaitAtLeast(target, 60, TimeUnit.SECONDS);
+        return target;
+    }
+
+    private long expectedBytes() {
+        long chunks = (FILE_SIZE + chunkSize - 1) / chunkSize;
+        return FILE_SIZE + chunks * HEADER_SIZE;
+    }
+
+    private static ActionListener<Void> failureListener() {
+        return ActionListener.wrap(v -> {}, e -> {
+            throw new IllegalStateException("failed to send a chunk", e);
+        });
+    }
+}
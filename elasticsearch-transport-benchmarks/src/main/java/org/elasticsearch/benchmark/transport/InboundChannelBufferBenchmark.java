@@ -0,0 +1,77 @@
+package org.elasticsearch.benchmark.transport;
+
+import org.elasticsearch.common.util.BigArrays;
+import org.elasticsearch.transport.nio.InboundChannelBuffer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Measures growing an {@link InboundChannelBuffer} for a message and releasing the message again, as the read
+ * context does for every frame. Pages either come from a pool, as with a page recycler, or are allocated.
+ */
+@Fork(1)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Benchmark)
+public class InboundChannelBufferBenchmark {
+
+    @Param({"64", "1024", "65536", "1048576"})
+    public int messageSize;
+
+    @Param({"true", "false"})
+    public boolean pooledPages;
+
+    private final ArrayDeque<ByteBuffer> pool = new ArrayDeque<>();
+    private InboundChannelBuffer channelBuffer;
+
+    @Setup
+    public void setUp() {
+        Supplier<InboundChannelBuffer.Page> pageSupplier;
+        if (pooledPages) {
+            pageSupplier = () -> {
+                ByteBuffer page = pool.poll();
+                if (page == null) {
+                    page = ByteBuffer.allocate(BigArrays.BYTE_PAGE_SIZE);
+                }
+                final ByteBuffer pooledPage = page;
+                return new InboundChannelBuffer.Page(pooledPage, () -> {
+                    pooledPage.clear();
+                    pool.offer(pooledPage);
+                });
+            };
+        } else {
+            pageSupplier = () -> new InboundChannelBuffer.Page(ByteBuffer.allocate(BigArrays.BYTE_PAGE_SIZE), () -> {});
+        }
+        channelBuffer = new InboundChannelBuffer(pageSupplier);
+    }
+
+    @TearDown
+    public void tearDown() {
+        channelBuffer.close();
+    }
+
+    @Benchmark
+    public long ensureCapacityAndRelease() {
+        channelBuffer.ensureCapacity(channelBuffer.getIndex() + messageSize);
+        channelBuffer.incrementIndex(messageSize);
+        channelBuffer.release(messageSize);
+        return channelBuffer.getCapacity();
+    }
+}
@@ -0,0 +1,118 @@
+package org.elasticsearch.benchmark.transport;
+
+import org.apache.logging.log4j.Logger;
+import org.elasticsearch.common.logging.Loggers;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.util.BigArrays;
+import org.elasticsearch.transport.TcpTransport;
+import org.elasticsearch.transport.nio.AcceptorEventHandler;
+import org.elasticsearch.transport.nio.InboundChannelBuffer;
+import org.elasticsearch.transport.nio.NioGroup;
+import org.elasticsearch.transport.nio.SocketEventHandler;
+import org.elasticsearch.transport.nio.channel.NioSocketChannel;
+import org.elasticsearch.transport.nio.channel.ReadContext;
+import org.elasticsearch.transport.nio.channel.TcpChannelFactory;
+import org.elasticsearch.transport.nio.channel.TcpWriteContext;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Consumer;
+
+import static org.elasticsearch.common.util.concurrent.EsExecutors.daemonThreadFactory;
+
+/**
+ * Sets up NIO channels without a transport for the benchmarks that measure the channel layer. The channels
+ * discard the bytes they read and only count them.
+ */
+final class NioBenchmarkSupport {
+
+    private static final Logger logger = Loggers.getLogger(NioBenchmarkSupport.class);
+
+    private NioBenchmarkSupport() {
+    }
+
+    static NioGroup newNioGroup(int acceptorCount, int selectorCount) throws IOException {
+        return new NioGroup(logger, daemonThreadFactory(Settings.EMPTY, "benchmark_acceptor"), acceptorCount, AcceptorEventHandler::new,
+            daemonThreadFactory(Settings.EMPTY, "benchmark_selector"), selectorCount, SocketEventHandler::new);
+    }
+
+    /**
+     * Creates a channel factory for channels that count the bytes they read.
+     *
+     * @param bytesRead counts the bytes read by all channels of the factory
+     * @param acceptContext is called with every channel accepted by a server channel of the factory
+     * @return the channel factory
+     */
+    static TcpChannelFactory newChannelFactory(ByteCounter bytesRead, Consumer<NioSocketChannel> acceptContext) {
+        return new TcpChannelFactory(new TcpTransport.ProfileSettings(Settings.EMPTY, "default"),
+            channel -> channel.setContexts(new CountingReadContext(channel, bytesRead), new TcpWriteContext(channel),
+                (c, e) -> logger.warn("benchmark channel failed", e)),
+            serverChannel -> serverChannel.setAcceptContext(acceptContext));
+    }
+
+    /**
+     * Counts bytes and lets a thread wait for a number of bytes to be counted.
+     */
+    static final class ByteCounter {
+
+        private long count;
+
+        synchronized void add(long bytes) {
+            count += bytes;
+            if (bytes > 0) {
+                notifyAll();
+            }
+        }
+
+        synchronized long get() {
+            return count;
+        }
+
+        synchronized void awaitAtLeast(long bytes, long timeout, TimeUnit unit) throws InterruptedException, TimeoutException {
+            final long deadline = System.nanoTime() + unit.toNanos(timeout);
+            while (count < bytes) {
+                long remainingMillis = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+                if (remainingMillis <= 0) {
+                    throw new TimeoutException("counted [" + count + "] of [" + bytes + "] bytes");
+                }
+                wait(remainingMillis);
+            }
+        }
+    }
+
+    private static final class CountingReadContext implements ReadContext {
+
+        private final NioSocketChannel channel;
+        private final ByteCounter bytesRead;
+        private final InboundChannelBuffer channelBuffer = new InboundChannelBuffer(
+            () -> new InboundChannelBuffer.Page(ByteBuffer.allocate(BigArrays.BYTE_PAGE_SIZE), () -> {}));
+
+        private CountingReadContext(NioSocketChannel channel, ByteCounter bytesRead) {
+            this.channel = channel;
+            this.bytesRead = bytesRead;
+        }
+
+        @Override
+        public int read() throws IOException {
+            channelBuffer.ensureCapacity(BigArrays.BYTE_PAGE_SIZE);
+            int read = channel.read(channelBuffer);
+            if (read > 0) {
+                channelBuffer.release(read);
+                bytesRead.add(read);
+            }
+            return read;
+        }
+
+        @Override
+        public void releaseUnusedBuffers() {
+            channelBuffer.releaseUnusedPages();
+        }
+
+        @Override
+        public void close() {
+            channelBuffer.close();
+        }
+    }
+}
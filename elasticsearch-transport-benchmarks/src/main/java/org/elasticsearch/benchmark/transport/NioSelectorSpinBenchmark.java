@@ -0,0 +1,76 @@
+package org.elasticsearch.benchmark.transport;
+
+import org.apache.lucene.util.IOUtils;
+import org.elasticsearch.benchmark.transport.TransportRoundTripBenchmark.EchoRequest;
+import org.elasticsearch.benchmark.transport.TransportRoundTripBenchmark.EchoResponse;
+import org.elasticsearch.cluster.node.DiscoveryNode;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.node.Node;
+import org.elasticsearch.test.transport.MockTransportService;
+import org.elasticsearch.threadpool.ThreadPool;
+import org.elasticsearch.transport.nio.NioTransport;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the round-trips of {@link TransportRoundTripBenchmark} on the {@code nio} transport with selectors that
+ * block in select and with selectors that spin on selectNow before they block. Spinning trades CPU for the latency
+ * of waking up a blocked selector, so the benchmark needs at least as many idle cores as there are selectors.
+ */
+@Fork(1)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+public class NioSelectorSpinBenchmark {
+
+    @Param({"0ms", "50micros"})
+    public String spinTime;
+
+    @Param({"64", "4096"})
+    public int messageSize;
+
+    private ThreadPool threadPool;
+    private MockTransportService server;
+    private MockTransportService client;
+    private DiscoveryNode serverNode;
+    private EchoRequest request;
+
+    @Setup
+    public void setUp() {
+        threadPool = new ThreadPool(Settings.builder().put(Node.NODE_NAME_SETTING.getKey(), "benchmark").build());
+        Settings nodeSettings = Settings.builder().put(NioTransport.NIO_SELECTOR_SPIN_TIME.getKey(), spinTime).build();
+        server = TransportRoundTripBenchmark.newService("nio", "server", nodeSettings, threadPool);
+        client = TransportRoundTripBenchmark.newService("nio", "client", nodeSettings, threadPool);
+        serverNode = TransportRoundTripBenchmark.connect(client, server);
+        request = TransportRoundTripBenchmark.newRequest(messageSize);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        try {
+            IOUtils.close(client, server);
+        } finally {
+            ThreadPool.terminate(threadPool, 10, TimeUnit.SECONDS);
+        }
+    }
+
+    @Benchmark
+    public EchoResponse roundTrip() {
+        return TransportRoundTripBenchmark.roundTrip(client, serverNode, request);
+    }
+}
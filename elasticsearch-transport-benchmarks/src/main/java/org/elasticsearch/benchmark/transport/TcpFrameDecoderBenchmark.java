@@ -0,0 +1,209 @@
+package org.elasticsearch.benchmark.transport;
+
+import org.elasticsearch.common.bytes.ByteBufferReference;
+import org.elasticsearch.common.bytes.BytesReference;
+import org.elasticsearch.common.bytes.CompositeBytesReference;
+import org.elasticsearch.common.util.BigArrays;
+import org.elasticsearch.transport.nio.InboundChannelBuffer;
+import org.elasticsearch.transport.nio.TcpReadHandler;
+import org.elasticsearch.transport.nio.channel.TcpNioSocketChannel;
+import org.elasticsearch.transport.nio.channel.TcpReadContext;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.io.StreamCorruptedException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures decoding frames that arrive in fragments of a fixed size. {@link #readContext()} runs the read
+ * context, which reads the frame header in place and only wraps complete frames in a reference.
+ * {@link #bytesReferenceDecoder()} is the previous approach as a baseline: it wraps all buffered bytes in a
+ * reference after every read and decodes the header from that reference. Run with {@code -prof gc} to get the
+ * bytes allocated per message, reported as {@code gc.alloc.rate.norm}.
+ */
+@Fork(1)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@OperationsPerInvocation(TcpFrameDecoderBenchmark.MESSAGES)
+@State(Scope.Benchmark)
+public class TcpFrameDecoderBenchmark {
+
+    static final int MESSAGES = 100;
+    private static final int HEADER_SIZE = 6;
+
+    @Param({"64", "1024", "65536"})
+    public int messageSize;
+
+    @Param({"1500", "16384", "65536"})
+    public int fragmentSize;
+
+    private byte[] frames;
+    private FragmentingChannel channel;
+    private TcpReadContext readContext;
+    private InboundChannelBuffer decoderBuffer;
+    private BytesReferenceFrameDecoder decoder;
+    private long messagesHandled;
+
+    @Setup
+    public void setUp() throws IOException {
+        frames = new byte[MESSAGES * (HEADER_SIZE + messageSize)];
+        Random random = new Random(0);
+        int offset = 0;
+        for (int i = 0; i < MESSAGES; ++i) {
+            frames[offset] = 'E';
+            frames[offset + 1] = 'S';
+            ByteBuffer.wrap(frames, offset + 2, 4).putInt(messageSize);
+            byte[] payload = new byte[messageSize];
+            random.nextBytes(payload);
+            System.arraycopy(payload, 0, frames, offset + HEADER_SIZE, messageSize);
+            offset += HEADER_SIZE + messageSize;
+        }
+        channel = new FragmentingChannel(fragmentSize);
+        TcpReadHandler handler = new TcpReadHandler("default", null) {
+            @Override
+            public void handleMessage(BytesReference reference, TcpNioSocketChannel nioChannel, int messageBytesLength) {
+                messagesHandled++;
+            }
+        };
+        readContext = new TcpReadContext(channel, handler, new InboundChannelBuffer(TcpFrameDecoderBenchmark::newPage));
+        decoderBuffer = new InboundChannelBuffer(TcpFrameDecoderBenchmark::newPage);
+        decoder = new BytesReferenceFrameDecoder();
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        readContext.close();
+        decoderBuffer.close();
+        channel.getRawChannel().close();
+    }
+
+    @Benchmark
+    public long readContext() throws IOException {
+        channel.reset(frames);
+        while (channel.hasRemaining()) {
+            readContext.read();
+        }
+        return messagesHandled;
+    }
+
+    @Benchmark
+    public long bytesReferenceDecoder() throws IOException {
+        channel.reset(frames);
+        long messages = 0;
+        while (channel.hasRemaining()) {
+            decoderBuffer.ensureCapacity(decoderBuffer.getIndex() + fragmentSize);
+            channel.read(decoderBuffer);
+            BytesReference message;
+            while ((message = decoder.decode(toBytesReference(decoderBuffer.sliceBuffersTo(decoderBuffer.getIndex())))) != null) {
+                messages++;
+                decoderBuffer.release(message.length());
+            }
+        }
+        return messages;
+    }
+
+    private static BytesReference toBytesReference(ByteBuffer[] buffers) {
+        if (buffers.length == 1) {
+            return new ByteBufferReference(buffers[0]);
+        }
+        ByteBufferReference[] references = new ByteBufferReference[buffers.length];
+        for (int i = 0; i < references.length; ++i) {
+            references[i] = new ByteBufferReference(buffers[i]);
+        }
+        return new CompositeBytesReference(references);
+    }
+
+    /**
+     * The decoder the read context used before it decoded frames from the channel buffer: it parses the header from a
+     * reference to all buffered bytes on every call and returns a slice of the reference once the frame is complete.
+     */
+    private static final class BytesReferenceFrameDecoder {
+
+        private final byte[] header = new byte[HEADER_SIZE];
+
+        BytesReference decode(BytesReference bytesReference) throws IOException {
+            if (bytesReference.length() < HEADER_SIZE) {
+                return null;
+            }
+            for (int i = 0; i < HEADER_SIZE; ++i) {
+                header[i] = bytesReference.get(i);
+            }
+            if (header[0] != 'E' || header[1] != 'S') {
+                throw new StreamCorruptedException("invalid internal transport message format");
+            }
+            int messageLength = ((header[2] & 0xFF) << 24) | ((header[3] & 0xFF) << 16)
+                | ((header[4] & 0xFF) << 8) | (header[5] & 0xFF);
+            int totalLength = (messageLength == -1 ? 0 : messageLength) + HEADER_SIZE;
+            if (totalLength > bytesReference.length()) {
+                return null;
+            } else if (totalLength == bytesReference.length()) {
+                return bytesReference;
+            } else {
+                return bytesReference.slice(0, totalLength);
+            }
+        }
+    }
+
+    private static InboundChannelBuffer.Page newPage() {
+        return new InboundChannelBuffer.Page(ByteBuffer.allocate(BigArrays.BYTE_PAGE_SIZE), () -> {});
+    }
+
+    /**
+     * A channel that is not connected and returns the bytes it was reset with in reads of at most the
+     * fragment size, like a socket that receives one fragment at a time.
+     */
+    private static final class FragmentingChannel extends TcpNioSocketChannel {
+
+        private final int fragmentSize;
+        private byte[] bytes;
+        private int offset;
+
+        FragmentingChannel(int fragmentSize) throws IOException {
+            super(SocketChannel.open(), null);
+            this.fragmentSize = fragmentSize;
+        }
+
+        void reset(byte[] newBytes) {
+            bytes = newBytes;
+            offset = 0;
+        }
+
+        boolean hasRemaining() {
+            return offset < bytes.length;
+        }
+
+        @Override
+        public int read(InboundChannelBuffer buffer) {
+            int toRead = (int) Math.min(Math.min(fragmentSize, bytes.length - offset), buffer.getRemaining());
+            int read = 0;
+            for (ByteBuffer target : buffer.sliceBuffersFrom(buffer.getIndex())) {
+                int length = Math.min(target.remaining(), toRead - read);
+                target.put(bytes, offset + read, length);
+                read += length;
+                if (read == toRead) {
+                    break;
+                }
+            }
+            offset += read;
+            buffer.incrementIndex(read);
+            return read;
+        }
+    }
+}
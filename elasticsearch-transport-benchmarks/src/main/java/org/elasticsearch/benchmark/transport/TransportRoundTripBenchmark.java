@@ -0,0 +1,228 @@
+package org.elasticsearch.benchmark.transport;
+
+import org.apache.lucene.util.IOUtils;
+import org.elasticsearch.Version;
+import org.elasticsearch.cluster.node.DiscoveryNode;
+import org.elasticsearch.common.io.stream.NamedWriteableRegistry;
+import org.elasticsearch.common.io.stream.StreamInput;
+import org.elasticsearch.common.io.stream.StreamOutput;
+import org.elasticsearch.common.network.NetworkService;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.util.BigArrays;
+import org.elasticsearch.common.util.PageCacheRecycler;
+import org.elasticsearch.indices.breaker.NoneCircuitBreakerService;
+import org.elasticsearch.node.Node;
+import org.elasticsearch.test.transport.MockTransportService;
+import org.elasticsearch.threadpool.ThreadPool;
+import org.elasticsearch.transport.MockLocalTransport;
+import org.elasticsearch.transport.MockTcpTransport;
+import org.elasticsearch.transport.TcpTransport;
+import org.elasticsearch.transport.Transport;
+import org.elasticsearch.transport.TransportException;
+import org.elasticsearch.transport.TransportRequest;
+import org.elasticsearch.transport.TransportResponse;
+import org.elasticsearch.transport.TransportResponseHandler;
+import org.elasticsearch.transport.nio.NioTransport;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures request/response round-trips of a message between two transport services over loopback. The
+ * sample mode reports latency percentiles, so the tail latency of the transports can be compared. The
+ * selectors of the {@code nio} transport block in select, {@link NioSelectorSpinBenchmark} compares this with
+ * the spin/select mode.
+ */
+@Fork(1)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+public class TransportRoundTripBenchmark {
+
+    private static final String ACTION = "internal:benchmark/echo";
+
+    @Param({"nio", "mock-tcp", "local"})
+    public String transport;
+
+    @Param({"64", "4096", "262144"})
+    public int messageSize;
+
+    private ThreadPool threadPool;
+    private MockTransportService server;
+    private MockTransportService client;
+    private DiscoveryNode serverNode;
+    private EchoRequest request;
+
+    @Setup
+    public void setUp() {
+        threadPool = new ThreadPool(Settings.builder().put(Node.NODE_NAME_SETTING.getKey(), "benchmark").build());
+        server = newService(transport, "server", Settings.EMPTY, threadPool);
+        client = newService(transport, "client", Settings.EMPTY, threadPool);
+        serverNode = connect(client, server);
+        request = newRequest(messageSize);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        try {
+            IOUtils.close(client, server);
+        } finally {
+            ThreadPool.terminate(threadPool, 10, TimeUnit.SECONDS);
+        }
+    }
+
+    @Benchmark
+    public EchoResponse roundTrip() {
+        return roundTrip(client, serverNode, request);
+    }
+
+    /**
+     * Starts a transport service that listens on an ephemeral port of the loopback interface.
+     *
+     * @param transport the transport of the service, one of {@code nio}, {@code mock-tcp} and {@code local}
+     * @param name the node name of the service
+     * @param nodeSettings additional settings of the node
+     * @param threadPool the thread pool of the service
+     * @return the started service
+     */
+    static MockTransportService newService(String transport, String name, Settings nodeSettings, ThreadPool threadPool) {
+        Settings settings = Settings.builder()
+            .put(Node.NODE_NAME_SETTING.getKey(), name)
+            .put(TcpTransport.PORT.getKey(), "0")
+            .put(NetworkService.GLOBAL_NETWORK_HOST_SETTING.getKey(), "127.0.0.1")
+            .put(nodeSettings)
+            .build();
+        NetworkService networkService = new NetworkService(Collections.emptyList());
+        NamedWriteableRegistry namedWriteableRegistry = new NamedWriteableRegistry(Collections.emptyList());
+        final Transport nodeTransport;
+        switch (transport) {
+            case "nio":
+                nodeTransport = new NioTransport(settings, threadPool, networkService, BigArrays.NON_RECYCLING_INSTANCE,
+                    new PageCacheRecycler(settings), namedWriteableRegistry, new NoneCircuitBreakerService());
+                break;
+            case "mock-tcp":
+                nodeTransport = new MockTcpTransport(settings, threadPool, BigArrays.NON_RECYCLING_INSTANCE,
+                    new NoneCircuitBreakerService(), namedWriteableRegistry, networkService);
+                break;
+            case "local":
+                nodeTransport = new MockLocalTransport(settings, threadPool, BigArrays.NON_RECYCLING_INSTANCE,
+                    new NoneCircuitBreakerService(), namedWriteableRegistry, networkService);
+                break;
+            default:
+                throw new IllegalArgumentException("unknown transport [" + transport + "]");
+        }
+        MockTransportService service = MockTransportService.createNewService(settings, nodeTransport, Version.CURRENT, threadPool,
+            null, Collections.emptySet());
+        service.start();
+        service.acceptIncomingRequests();
+        return service;
+    }
+
+    /**
+     * Registers the echo handler with the server and connects the client to it.
+     *
+     * @return the node of the server
+     */
+    static DiscoveryNode connect(MockTransportService client, MockTransportService server) {
+        server.registerRequestHandler(ACTION, EchoRequest::new, ThreadPool.Names.SAME,
+            (echoRequest, channel) -> channel.sendResponse(new EchoResponse(echoRequest.payload)));
+        DiscoveryNode serverNode = server.getLocalNode();
+        client.connectToNode(serverNode);
+        return serverNode;
+    }
+
+    static EchoRequest newRequest(int messageSize) {
+        byte[] payload = new byte[messageSize];
+        new Random(0).nextBytes(payload);
+        return new EchoRequest(payload);
+    }
+
+    static EchoResponse roundTrip(MockTransportService client, DiscoveryNode serverNode, EchoRequest request) {
+        return client.submitRequest(serverNode, ACTION, request, new EchoResponseHandler()).txGet();
+    }
+
+    public static final class EchoRequest extends TransportRequest {
+
+        private byte[] payload;
+
+        public EchoRequest() {
+        }
+
+        EchoRequest(byte[] payload) {
+            this.payload = payload;
+        }
+
+        @Override
+        public void readFrom(StreamInput in) throws IOException {
+            super.readFrom(in);
+            payload = in.readByteArray();
+        }
+
+        @Override
+        public void writeTo(StreamOutput out) throws IOException {
+            super.writeTo(out);
+            out.writeByteArray(payload);
+        }
+    }
+
+    public static final class EchoResponse extends TransportResponse {
+
+        private byte[] payload;
+
+        public EchoResponse() {
+        }
+
+        EchoResponse(byte[] payload) {
+            this.payload = payload;
+        }
+
+        @Override
+        public void readFrom(StreamInput in) throws IOException {
+            super.readFrom(in);
+            payload = in.readByteArray();
+        }
+
+        @Override
+        public void writeTo(StreamOutput out) throws IOException {
+            super.writeTo(out);
+            out.writeByteArray(payload);
+        }
+    }
+
+    private static final class EchoResponseHandler implements TransportResponseHandler<EchoResponse> {
+
+        @Override
+        public EchoResponse newInstance() {
+            return new EchoResponse();
+        }
+
+        @Override
+        public void handleResponse(EchoResponse response) {
+        }
+
+        @Override
+        public void handleException(TransportException exp) {
+        }
+
+        @Override
+        public String executor() {
+            return ThreadPool.Names.SAME;
+        }
+    }
+}
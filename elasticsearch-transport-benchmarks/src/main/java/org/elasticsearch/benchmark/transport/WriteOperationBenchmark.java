@@ -0,0 +1,99 @@
+package org.elasticsearch.benchmark.transport;
+
+import org.elasticsearch.action.ActionListener;
+import org.elasticsearch.common.bytes.BytesReference;
+import org.elasticsearch.common.io.stream.BytesStreamOutput;
+import org.elasticsearch.transport.nio.WriteOperation;
+import org.elasticsearch.transport.nio.channel.NioSocketChannel;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures flushing a {@link WriteOperation} to a channel that only accepts a limited number of bytes per
+ * write, like a socket with a full send buffer. The message is a paged reference, as produced by the transport
+ * when it serializes a message.
+ */
+@Fork(1)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Benchmark)
+public class WriteOperationBenchmark {
+
+    @Param({"64", "1024", "65536", "1048576"})
+    public int messageSize;
+
+    @Param({"8192", "65536", "1048576"})
+    public int writeLimit;
+
+    private BytesReference message;
+    private LimitedChannel channel;
+    private final ActionListener<Void> listener = ActionListener.wrap(() -> {});
+
+    @Setup
+    public void setUp() throws IOException {
+        byte[] bytes = new byte[messageSize];
+        new Random(0).nextBytes(bytes);
+        BytesStreamOutput output = new BytesStreamOutput(messageSize);
+        output.writeBytes(bytes);
+        message = output.bytes();
+        channel = new LimitedChannel(writeLimit);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        channel.getRawChannel().close();
+    }
+
+    @Benchmark
+    public int flush() throws IOException {
+        WriteOperation writeOperation = new WriteOperation(channel, message, listener);
+        int flushes = 0;
+        while (writeOperation.isFullyFlushed() == false) {
+            writeOperation.flush();
+            flushes++;
+        }
+        return flushes;
+    }
+
+    /**
+     * A channel that is not connected and consumes at most the write limit of the offered bytes per write.
+     */
+    private static final class LimitedChannel extends NioSocketChannel {
+
+        private final int writeLimit;
+
+        LimitedChannel(int writeLimit) throws IOException {
+            super(SocketChannel.open(), null);
+            this.writeLimit = writeLimit;
+        }
+
+        @Override
+        public int write(ByteBuffer[] buffers, int offset, int length) {
+            int written = 0;
+            for (int i = offset; i < offset + length && written < writeLimit; ++i) {
+                int toWrite = Math.min(buffers[i].remaining(), writeLimit - written);
+                buffers[i].position(buffers[i].position() + toWrite);
+                written += toWrite;
+            }
+            return written;
+        }
+    }
+}